@@ -0,0 +1,128 @@
+package fr.univubs.inf2165.discover;
+
+import fr.univubs.inf2165.gossiper.format.Util;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class paces the beacons in the manner of the Trickle algorithm (RFC 6206).
+ * Each beacon is sent at a random time in the second half of the current interval,
+ * and the interval doubles after each beacon up to the maximum interval. The
+ * interval falls back to the minimum when the neighborhood changes, so that a new
+ * neighbor is answered quickly while a stable neighborhood beacons rarely.
+ *
+ * The random times keep the beacons of nodes started together from colliding.
+ * The timer does not wait: the beacons are sent by the caller once the deadline is reached.
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public class BeaconTimer {
+
+    private final long minInterval;
+    private final long maxInterval;
+    private final Random random;
+
+    /**
+     * The current interval (milliseconds), guarded by this
+     */
+    private long interval;
+    /**
+     * The time of the next beacon (System.nanoTime), guarded by this
+     */
+    private long deadline;
+
+    /**
+     * Constructs a new BeaconTimer object.
+     *
+     * @param minInterval The minimum interval (milliseconds), positive
+     * @param maxInterval The maximum interval (milliseconds), not less than the minimum
+     * @param random      The source of the random times. Must not be null.
+     */
+    public BeaconTimer(long minInterval, long maxInterval, Random random) {
+        Util.checkNotNull("BeaconTimer -> random", random);
+        if (minInterval <= 0 || maxInterval < minInterval) {
+            throw new IllegalArgumentException("Invalid beacon timer -> min=" + minInterval + " max=" + maxInterval);
+        }
+        this.minInterval = minInterval;
+        this.maxInterval = maxInterval;
+        this.random = random;
+        this.interval = minInterval;
+        this.deadline = System.nanoTime(); // the first beacon is sent at once
+    }
+
+    /**
+     * Return the delay before the next beacon, in the second half of the current
+     * interval, and doubles the interval.
+     *
+     * @return the delay before the next beacon (milliseconds).
+     */
+    public synchronized long nextDelay() {
+        long delay = jitter(this.interval);
+        this.interval = Math.min(this.interval * 2, this.maxInterval);
+        return delay;
+    }
+
+    /**
+     * Sets the interval back to the minimum. A beacon waited for beyond the minimum
+     * interval is brought forward.
+     *
+     * @return true if the interval was above the minimum.
+     */
+    public synchronized boolean reset() {
+        if (this.interval == this.minInterval) {
+            return false;
+        }
+        this.interval = this.minInterval;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(jitter(this.minInterval));
+        if (deadline - this.deadline < 0) {
+            // the beacon of the minimum interval is the awaited one
+            this.deadline = deadline;
+            this.interval = Math.min(this.minInterval * 2, this.maxInterval);
+        }
+        return true;
+    }
+
+    /**
+     * Schedules the next beacon, after the one which has just been sent.
+     *
+     * @return the time of the next beacon (System.nanoTime).
+     */
+    public synchronized long schedule() {
+        this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(nextDelay());
+        return this.deadline;
+    }
+
+    /**
+     * Return the time of the next beacon (System.nanoTime).
+     * @return the time of the next beacon.
+     */
+    public synchronized long getDeadline() {
+        return this.deadline;
+    }
+
+    /**
+     * Return the current interval (milliseconds).
+     * @return the current interval.
+     */
+    public synchronized long getInterval() {
+        return this.interval;
+    }
+
+    /**
+     * Return the maximum interval (milliseconds).
+     * @return the maximum interval.
+     */
+    public long getMaxInterval() {
+        return this.maxInterval;
+    }
+
+    /**
+     * Return a random time in the second half of the given interval.
+     */
+    private long jitter(long interval) {
+        long half = interval / 2;
+        return half + (long) (this.random.nextDouble() * (interval - half));
+    }
+}
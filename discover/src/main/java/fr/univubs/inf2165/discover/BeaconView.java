@@ -0,0 +1,143 @@
+package fr.univubs.inf2165.discover;
+
+import fr.univubs.inf2165.gossiper.format.Address;
+import fr.univubs.inf2165.gossiper.format.MessageView;
+
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+
+/**
+ * This class is the flyweight view of a beacon message. @link{BeaconMessageFormat}
+ *
+ * <pre>
+ *     Format:
+ *                        ------------------------------------------------------
+ *             message =  |  code  |   address   |   userInfo   |   addressed ?   |
+ *                        ------------------------------------------------------
+ *          byte  ->          1           6              x             0 | 1
+ * </pre>
+ *
+ * The addressed flag is sent for the users hosted by a gossiper besides its default
+ * user: the messages to them must be addressed. The beacon of the default user, and
+ * the beacon of a gossiper hosting a single user, has none.
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public class BeaconView extends MessageView {
+
+    private int usernameOffset;
+    private int usernameLength;
+    private boolean addressed;
+
+    /**
+     * The size of the addressed flag
+     */
+    public static final int ADDRESSED_SIZE = 1;
+
+    /**
+     * Wraps the view around the beacon message starting at the buffer current position.
+     *
+     * @param buffer The buffer containing message data. Must not be null.
+     * @return this view.
+     * @throws IllegalArgumentException if the buffer does not contain a valid message.
+     */
+    public BeaconView wrap(ByteBuffer buffer) {
+        wrapBuffer(buffer);
+        return this;
+    }
+
+    @Override
+    protected void parse() {
+        int index = this.start + CODE_SIZE;
+        checkAvailable(index, ADDRESS_SIZE);
+        index += ADDRESS_SIZE;
+        this.usernameLength = readInfoLength(index);
+        this.usernameOffset = index + 1;
+        index = this.usernameOffset + this.usernameLength;
+        this.addressed = this.buffer.limit() - index >= ADDRESSED_SIZE && this.buffer.get(index) != 0;
+    }
+
+    /**
+     * Return the IP address as a big endian integer.
+     * @return the IP address as a big endian integer.
+     */
+    public int getIp() {
+        return this.buffer.getInt(this.start + CODE_SIZE);
+    }
+
+    /**
+     * Return the UDP port number of the gossiper.
+     * @return the UDP port number of the gossiper.
+     */
+    public short getPort() {
+        return this.buffer.getShort(this.start + CODE_SIZE + 4);
+    }
+
+    /**
+     * Return true if the user name is equal to the given bytes.
+     *
+     * @param username The user name bytes
+     * @return true if the user name is equal to the given bytes.
+     */
+    public boolean usernameEquals(byte[] username) {
+        return dataEquals(this.usernameOffset, this.usernameLength, username);
+    }
+
+    /**
+     * Return a hash of the user name bytes.
+     * @return a hash of the user name bytes.
+     */
+    public int usernameHash() {
+        int hash = 1;
+        for (int i = 0; i < this.usernameLength; i++) {
+            hash = 31 * hash + this.buffer.get(this.usernameOffset + i);
+        }
+        return hash;
+    }
+
+    /**
+     * Return the user name. This allocates a string.
+     * @return the user name.
+     */
+    public String getUsername() {
+        return getString(this.usernameOffset, this.usernameLength);
+    }
+
+    /**
+     * Return true if the user is not the default user of its gossiper.
+     * @return true if the messages to the user must be addressed.
+     */
+    public boolean isAddressed() {
+        return this.addressed;
+    }
+
+    /**
+     * Writes the addressed flag at the end of a beacon message written in the given buffer.
+     *
+     * @param dst The buffer in which the message is written
+     */
+    public static void encodeAddressed(ByteBuffer dst) {
+        dst.put((byte) 1);
+    }
+
+    /**
+     * Return the address. This allocates an address.
+     *
+     * @return the address.
+     * @throws UnknownHostException if the IP address can not be read.
+     */
+    public Address getAddress() throws UnknownHostException {
+        ByteBuffer duplicate = this.buffer.duplicate();
+        duplicate.position(this.start + CODE_SIZE);
+        return new Address(duplicate);
+    }
+
+    @Override
+    public String toString() {
+        int ip = getIp();
+        return "Message [type=" + getMessageType() + "] {ip=" + (ip >>> 24) + "." + ((ip >> 16) & 0xFF) + "."
+                + ((ip >> 8) & 0xFF) + "." + (ip & 0xFF) + " | port=" + getPort() + " | username=" + getUsername()
+                + (isAddressed() ? " | addressed" : "") + "}";
+    }
+}
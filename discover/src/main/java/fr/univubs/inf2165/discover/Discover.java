@@ -1,8 +1,10 @@
 package fr.univubs.inf2165.discover;
 
 import fr.univubs.inf2165.gossiper.Gossiper;
-import fr.univubs.inf2165.gossiper.GossipingSession;
+import fr.univubs.inf2165.gossiper.SelectHandler;
+import fr.univubs.inf2165.gossiper.Tenant;
 import fr.univubs.inf2165.gossiper.format.Address;
+import fr.univubs.inf2165.gossiper.format.MessageRegistry;
 import fr.univubs.inf2165.gossiper.format.MessageType;
 import fr.univubs.inf2165.gossiper.format.UserInfo;
 import fr.univubs.inf2165.gossiper.format.Util;
@@ -10,11 +12,26 @@ import fr.univubs.inf2165.gossiper.format.Util;
 import java.io.IOException;
 import java.net.*;
 import java.nio.ByteBuffer;
-import java.time.Duration;
-import java.time.LocalDate;
-import java.util.HashMap;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
+ * Discovers the neighbors and gossips with them. A single thread runs a selector
+ * on the multicast channel and on the channel of the gossiper: it receives the
+ * beacons and the gossiping messages, and sends the beacons and launches the gossip
+ * rounds when their time has come. The gossiping sessions and the file transfers,
+ * which block, are run by pools of threads released when idle.
  *
  * @author aliyou sylla
  * @version 1.0.0
@@ -25,11 +42,38 @@ public class Discover extends Thread {
 
     private Address groupAddress;
     private Gossiper gossiper;
-    private HashMap<String, LocalDate> neighbors;
+    private NeighborTable neighbors;
+    private SessionLauncher launcher;
+    private BeaconTimer beaconTimer;
+    private final Random random = new Random();
+    /**
+     * The executor of the files requested to the gossiper
+     */
+    private final ThreadPoolExecutor transfers;
+    private volatile Selector selector;
 
     private int delay = 5; // seconds
 
-    private boolean running = false;
+    /**
+     * The number of beacon periods after which a silent neighbor is forgotten
+     */
+    private static final int NEIGHBOR_TTL_BEACONS = 3;
+    /**
+     * The number of times the beacon interval doubles in a stable neighborhood
+     */
+    private static final int MAX_BEACON_DOUBLINGS = 2;
+    /**
+     * The default number of neighbors a gossip round is run with
+     */
+    public static final int DEFAULT_FANOUT = 3;
+    /**
+     * The maximum number of files sent at the same time
+     */
+    private static final int TRANSFER_THREADS = 4;
+
+    private volatile int fanout = DEFAULT_FANOUT;
+
+    private volatile boolean running = false;
 
     /**
      * Constructor with the group address, group port and a gossiper server.
@@ -41,8 +85,39 @@ public class Discover extends Thread {
      * @throws IOException
      */
     public Discover(String groupAddress, short groupPort, Gossiper gossiper, int delay) throws IOException {
-        this(groupAddress, groupPort, gossiper);
+        Util.checkNotNull("Discover -> groupAddress", groupAddress);
+        Util.checkNotNull("Discover -> gossiper", gossiper);
+        this.groupAddress = new Address(groupAddress, groupPort);
+        this.gossiper = gossiper;
         this.delay = delay;
+        long interval = TimeUnit.SECONDS.toMillis(delay);
+        this.beaconTimer = new BeaconTimer(interval, interval << MAX_BEACON_DOUBLINGS, this.random);
+        // a neighbor is forgotten after missing three beacons of the longest interval
+        this.neighbors = new NeighborTable(NEIGHBOR_TTL_BEACONS * this.beaconTimer.getMaxInterval(),
+                this.beaconTimer.getMaxInterval());
+        // the gossiper does not waste its datagrams and connections on the suspected neighbors
+        gossiper.setPeerMonitor(this.neighbors);
+        // the mails are only offered toward the neighbors hosting their recipients
+        gossiper.setRoutingTable(this.neighbors);
+        this.neighbors.addListener(new NeighborTable.Listener() {
+            @Override
+            public void added(NeighborTable.Neighbor neighbor) {
+                // the new neighbor learns about this node quickly
+                beaconTimer.reset();
+            }
+        });
+        // the sessions are run apart so that the beacons keep being received
+        this.launcher = new SessionLauncher(gossiper);
+        AtomicInteger count = new AtomicInteger();
+        this.transfers = new ThreadPoolExecutor(TRANSFER_THREADS, TRANSFER_THREADS, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "FileTransfer-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.transfers.allowCoreThreadTimeOut(true);
+        System.out.println("\n[Discover]: groupAddress -> " + groupAddress);
+        System.out.println("[Discover]: groupPort    -> " + groupPort);
     }
 
     /**
@@ -54,111 +129,278 @@ public class Discover extends Thread {
      * @throws IOException
      */
     public Discover(String groupAddress, short groupPort, Gossiper gossiper) throws IOException {
-        Util.checkNotNull("Discover -> groupAddress", groupAddress);
-        Util.checkNotNull("Discover -> gossiper", gossiper);
-        this.groupAddress = new Address(groupAddress, groupPort);
-        this.gossiper = gossiper;
-        this.neighbors = new HashMap<>();
-        System.out.println("\n[Discover]: groupAddress -> " + groupAddress);
-        System.out.println("[Discover]: groupPort    -> " + groupPort);
+        this(groupAddress, groupPort, gossiper, 5);
     }
 
     @Override
     public void run() {
         this.running = true;
+        try (Selector selector = Selector.open();
+             DatagramChannel multicastChannel = DatagramChannel.open(StandardProtocolFamily.INET);
+             DatagramChannel publishChannel = DatagramChannel.open(StandardProtocolFamily.INET)) {
+            this.selector = selector;
+            if (this.gossiper.isAlive()) {
+                System.out.println("[Discover]: the gossiper runs its own threads");
+            } else {
+                this.gossiper.setTransferExecutor(this.transfers);
+                this.gossiper.register(selector);
+            }
+            NetworkInterface networkInterface = multicastInterface();
+            multicastChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            multicastChannel.bind(new InetSocketAddress(this.groupAddress.getPort()));
+            //Joint the Multicast group.
+            multicastChannel.join(this.groupAddress.getIp(), networkInterface);
+            multicastChannel.configureBlocking(false);
+            multicastChannel.register(selector, SelectionKey.OP_READ, new MulticastReceiver(multicastChannel));
+            publishChannel.setOption(StandardSocketOptions.IP_MULTICAST_IF, networkInterface);
+            MulticastPublisher publisher = new MulticastPublisher(publishChannel);
+            System.out.println("[Discover]: waiting for data ... ");
+
+            long nextRound = System.nanoTime() + nextRoundDelay();
+            while (this.running) {
+                long now = System.nanoTime();
+                if (now - this.beaconTimer.getDeadline() >= 0) {
+                    publisher.publish();
+                    this.beaconTimer.schedule();
+                }
+                if (now - nextRound >= 0) {
+                    gossipRound();
+                    nextRound = now + nextRoundDelay();
+                }
+                now = System.nanoTime();
+                long timeout = Math.min(this.beaconTimer.getDeadline() - now, nextRound - now);
+                selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(timeout) + 1));
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (key.isValid()) {
+                        selected(key);
+                    }
+                }
+            }
+        } catch (IOException ioe) {
+            System.err.println("[Discover]: error while running the selector\n\t cause -> " + ioe.getMessage());
+        } finally {
+            this.selector = null;
+        }
+    }
 
-        MulticastPublisher publisher = new MulticastPublisher();
-        publisher.start();
+    /**
+     * Calls the handler attached to a selected key.
+     */
+    private void selected(SelectionKey key) {
+        try {
+            ((SelectHandler) key.attachment()).selected(key);
+        } catch (ClosedChannelException cce) {
+            key.cancel(); // the channel has been closed by its owner, the gossiper
+        } catch (IOException ioe) {
+            System.err.println("[Discover]: error while handling a datagram\n\t cause -> " + ioe.getMessage());
+        }
+    }
 
-        MulticastReceiver receiver = new MulticastReceiver();
-        receiver.run();
+    /**
+     * Return the delay before the next gossip round (nanoseconds), delay seconds give or take.
+     */
+    private long nextRoundDelay() {
+        return TimeUnit.MILLISECONDS.toNanos(Fanout.jitter(TimeUnit.SECONDS.toMillis(this.delay), this.random));
+    }
+
+    /**
+     * Launches a gossiping session with a few random neighbors, among those which are not suspected.
+     */
+    private void gossipRound() {
+        for (NeighborTable.Neighbor neighbor : Fanout.choose(this.neighbors.getLiveNeighbors(), this.fanout, this.random)) {
+            try {
+                // the default user of a peer is reached by unaddressed messages
+                this.launcher.launch(neighbor.getAddress(), neighbor.isAddressed() ? neighbor.getUsername() : null);
+            } catch (IOException ioe) {
+                System.err.println("[Discover]: error while launching a session with " + neighbor + "\n\t cause -> " + ioe.getMessage());
+            }
+        }
     }
 
     public synchronized void stopServer() {
         this.running = false;
+        Selector selector = this.selector;
+        if (selector != null) {
+            selector.wakeup();
+        }
+        this.neighbors.close();
+        this.launcher.close();
+        this.transfers.shutdown();
     }
 
     /**
+     * Return the number of neighbors a gossip round is run with.
+     * @return the number of neighbors a gossip round is run with.
+     */
+    public int getFanout() {
+        return this.fanout;
+    }
+
+    /**
+     * Sets the number of neighbors a gossip round is run with. All the neighbors if not positive.
      *
+     * @param fanout The number of neighbors a gossip round is run with
+     */
+    public void setFanout(int fanout) {
+        this.fanout = fanout;
+    }
+
+    /**
+     * Return the table of the discovered neighbors.
+     * @return the table of the discovered neighbors.
+     */
+    public NeighborTable getNeighborTable() {
+        return this.neighbors;
+    }
+
+    /**
+     * Return the network interface on which the multicast group is joined: the
+     * interface of the gossiper address if it supports multicast, else the first
+     * non loopback interface which does.
      */
-    class MulticastReceiver extends Thread {
+    private NetworkInterface multicastInterface() throws IOException {
+        NetworkInterface local = NetworkInterface.getByInetAddress(InetAddress.getByName(this.gossiper.getIP()));
+        if (local != null && local.isUp() && local.supportsMulticast()) {
+            return local;
+        }
+        NetworkInterface loopback = null;
+        for (NetworkInterface networkInterface : Collections.list(NetworkInterface.getNetworkInterfaces())) {
+            if (networkInterface.isUp() && networkInterface.supportsMulticast()) {
+                if (!networkInterface.isLoopback()) {
+                    return networkInterface;
+                }
+                loopback = networkInterface;
+            }
+        }
+        if (loopback == null) {
+            throw new IOException("No network interface supports multicast");
+        }
+        return loopback;
+    }
+
+    /**
+     * Receives the beacons. The receive buffer and the beacon view are reused, and
+     * a beacon from a known neighbor is recognized in place, from a small cache of
+     * the neighbors indexed by their address and user name, so that it allocates nothing.
+     */
+    class MulticastReceiver implements SelectHandler {
+
+        /**
+         * The number of slots of the neighbor cache, a power of two
+         */
+        private static final int CACHE_SIZE = 256;
+
+        private final DatagramChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        /**
+         * The decoders and handlers of the received multicast messages
+         */
+        private final MessageRegistry registry = new MessageRegistry();
+        private final BeaconView beaconView = new BeaconView();
+        private final NeighborTable.Neighbor[] cache = new NeighborTable.Neighbor[CACHE_SIZE];
+
+        MulticastReceiver(DatagramChannel channel) {
+            this.channel = channel;
+            this.registry.register(MessageType.BEACON, this.beaconView::wrap, (message, source) -> handleBeacon(message));
+        }
 
         @Override
-        public void run() {
-            byte[] buffer = new byte[BUFFER_SIZE];
-            try (MulticastSocket multicastSocket = new MulticastSocket(groupAddress.getPort())){
-                //Joint the Multicast group.
-                multicastSocket.joinGroup(groupAddress.getIp());
-                while (running) {
-                    DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
-                    System.out.println("[Discover]: waiting for data ... ");
-                    multicastSocket.receive(packet);
-                    //System.out.println("packet : " +packet.toString());
-                    //System.out.println("length : " +packet.getLength());
-                    //System.out.println("\t from : " +packet.getAddress() + " : " + packet.getPort());
-                    ByteBuffer recBuf = ByteBuffer.wrap(packet.getData());
-                    //ByteBuffer recBuf = ByteBuffer.wrap(buffer, 0, buffer.length);
-                    if(recBuf != null) {
-                        byte code = recBuf.get();
-                        recBuf.position(0);
-                        //System.out.println(" code = " + code);
-                        MessageType messageType = MessageType.getMessageType(code);
-                        if (messageType != null && messageType == MessageType.BEACON) {
-                            BeaconMessageFormat message = new BeaconMessageFormat(recBuf);
-                            System.out.println("[Discover]: Receive -> " + message);
-                            if (!neighbors.containsKey(message.getUserInfo().getUsername())) {
-                                System.out.println("[Discover]: never see the user -> " + message.getUserInfo().getUsername());
-                                neighbors.put(message.getUserInfo().getUsername(), LocalDate.now());
-                                try (GossipingSession session = new GossipingSession(gossiper, message.getAddress())) {
-                                    session.run();
-                                }
-                            } else {
-                                LocalDate date = neighbors.get(message.getUserInfo().getUsername());
-                                LocalDate now = LocalDate.now();
-                                long duration = Duration.between(date, now).getSeconds();
-                                if (duration > delay) {
-                                    System.out.println("[Discover]: it's been a while -> " + message.getUserInfo().getUsername());
-                                    neighbors.put(message.getUserInfo().getUsername(), now);
-                                    try (GossipingSession session = new GossipingSession(gossiper, message.getAddress())) {
-                                        session.run();
-                                    }
-                                }
-                            }
-                        } else {
+        public void selected(SelectionKey key) throws IOException {
+            SocketAddress source;
+            while ((source = receive()) != null) {
+                if (this.buffer.hasRemaining()) {
+                    try {
+                        if ( ! this.registry.dispatch(this.buffer, source)) {
                             System.out.println("[Discover]: unknown message type received.");
                         }
+                    } catch (IllegalArgumentException iae) {
+                        System.err.println("[Discover]: malformed message received -> " + iae.getMessage());
                     }
                 }
-            } catch (IOException ioe) {
-                System.err.println("[Discover]: error while receiving multicast message\n\t cause -> " + ioe.getMessage());
-                //ioe.printStackTrace(System.out);
             }
         }
+
+        /**
+         * Receives a datagram in the buffer, flipped.
+         * @return the source of the datagram, null if none is available.
+         */
+        private SocketAddress receive() throws IOException {
+            this.buffer.clear();
+            SocketAddress source = this.channel.receive(this.buffer);
+            this.buffer.flip();
+            return source;
+        }
+
+        /**
+         * Handles a beacon: the neighbor is recorded, the gossip rounds choose the
+         * neighbors to run a session with. The beacon of a cached neighbor only
+         * refreshes it.
+         */
+        private void handleBeacon(BeaconView beacon) throws IOException {
+            long packedAddress = NeighborTable.pack(beacon.getIp(), beacon.getPort());
+            int slot = (int) ((packedAddress ^ beacon.usernameHash()) * 0x9E3779B97F4A7C15L >>> 56) & (CACHE_SIZE - 1);
+            NeighborTable.Neighbor cached = this.cache[slot];
+            if (cached != null && cached.matches(packedAddress, beacon) && cached.touch()) {
+                return;
+            }
+            String username = beacon.getUsername();
+            Address address = beacon.getAddress();
+            if (neighbors.getNeighbor(username, address) == null) {
+                System.out.println("[Discover]: never see the user -> " + username + "@" + address);
+            }
+            this.cache[slot] = neighbors.seen(username, address, beacon.isAddressed());
+        }
     }
 
     /**
-     *
+     * Sends the beacons, encoded once: one for each user hosted by the gossiper, so that
+     * the peers gossip with each of them. The beacons of the users besides the default
+     * one are flagged, the peers address their messages to these users only.
      */
-    class MulticastPublisher extends Thread {
+    class MulticastPublisher {
 
-        @Override
-        public void run() {
-            try(MulticastSocket multicastSocket = new MulticastSocket()) {
-                byte[] buffer;
-                //System.out.println("gossiper ip : " + gossiper.getIP());
-                Address address = new Address(gossiper.getIP(), gossiper.getUdpPort());
-                UserInfo userInfo = new UserInfo(gossiper.getUsername());
-                while (running) {
-                    BeaconMessageFormat message = new BeaconMessageFormat(address, userInfo);
-                    System.out.println("[Discover]: Publish -> " + message);
-                    buffer = message.getPacket().array();
-                    DatagramPacket packet = new DatagramPacket(buffer, buffer.length, groupAddress.getIp(), groupAddress.getPort());
-                    multicastSocket.send(packet);
-                    Thread.sleep(delay * 1000); // sleep delay seconds
+        private final DatagramChannel channel;
+        private final List<ByteBuffer> beacons = new ArrayList<>();
+        private final List<String> descriptions = new ArrayList<>();
+        private final InetSocketAddress group;
+
+        MulticastPublisher(DatagramChannel channel) throws IOException {
+            this.channel = channel;
+            //System.out.println("gossiper ip : " + gossiper.getIP());
+            Address address = new Address(gossiper.getIP(), gossiper.getUdpPort());
+            Tenant defaultTenant = gossiper.getDefaultTenant();
+            for (Tenant tenant : gossiper.getTenants()) {
+                UserInfo userInfo = new UserInfo(tenant.getUsername());
+                BeaconMessageFormat message = new BeaconMessageFormat(address, userInfo);
+                boolean addressed = tenant != defaultTenant;
+                ByteBuffer beacon = ByteBuffer.allocate(message.getSize() + (addressed ? BeaconView.ADDRESSED_SIZE : 0));
+                message.writePacket(beacon);
+                if (addressed) {
+                    BeaconView.encodeAddressed(beacon);
+                }
+                beacon.flip();
+                this.beacons.add(beacon);
+                this.descriptions.add(message + (addressed ? " (addressed)" : ""));
+            }
+            this.group = groupAddress.getInetSocketAddress();
+        }
+
+        /**
+         * Sends the beacons to the group.
+         */
+        void publish() {
+            for (int i = 0; i < this.beacons.size(); i++) {
+                try {
+                    System.out.println("[Discover]: Publish -> " + this.descriptions.get(i));
+                    ByteBuffer beacon = this.beacons.get(i);
+                    beacon.rewind();
+                    this.channel.send(beacon, this.group);
+                } catch (IOException ioe) {
+                    System.err.println("[Discover]: error while publishing multicast message\n\t cause -> " + ioe.getMessage());
                 }
-            } catch (InterruptedException | IOException e) {
-                System.err.println("[Discover]: error while publishing multicast message\n\t cause -> " + e.getMessage());
-                //e.printStackTrace(System.out);
             }
         }
     }
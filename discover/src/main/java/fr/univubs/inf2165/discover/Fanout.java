@@ -0,0 +1,56 @@
+package fr.univubs.inf2165.discover;
+
+import fr.univubs.inf2165.gossiper.format.Util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * This class chooses the peers of a gossip round. Gossiping with a few random
+ * peers per round instead of all of them keeps the number of sessions linear in
+ * the number of nodes, while the files still spread in a logarithmic number of
+ * rounds.
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public final class Fanout {
+
+    private Fanout() {
+    }
+
+    /**
+     * Chooses at most k distinct candidates at random (partial Fisher-Yates shuffle).
+     *
+     * @param candidates The candidates. Must not be null.
+     * @param k          The number of candidates to choose. All of them if not positive.
+     * @param random     The source of randomness. Must not be null.
+     * @param <T>        The type of the candidates
+     * @return the chosen candidates.
+     */
+    public static <T> List<T> choose(List<T> candidates, int k, Random random) {
+        Util.checkNotNull("Fanout -> candidates", candidates);
+        Util.checkNotNull("Fanout -> random", random);
+        List<T> chosen = new ArrayList<>(candidates);
+        if (k <= 0 || k >= chosen.size()) {
+            return chosen;
+        }
+        for (int i = 0; i < k; i++) {
+            Collections.swap(chosen, i, i + random.nextInt(chosen.size() - i));
+        }
+        return new ArrayList<>(chosen.subList(0, k));
+    }
+
+    /**
+     * Return a random period around the given period, between half and one and a half of it.
+     *
+     * @param period The period (milliseconds)
+     * @param random The source of randomness. Must not be null.
+     * @return a random period around the given period.
+     */
+    public static long jitter(long period, Random random) {
+        return period / 2 + (long) (random.nextDouble() * period);
+    }
+}
@@ -16,7 +16,7 @@ public class Main {
      * Prints how to use the program.
      */
     private static void usage() {
-        System.out.println("Usage: Discover <multicast Address> <multicast port> <username> <baseDirectory> <UDPport> <TCPport> [IP] [delay]");
+        System.out.println("Usage: Discover <multicast Address> <multicast port> <username> <baseDirectory> <UDPport> <TCPport> [IP] [delay] [channels]");
         System.out.println("With:");
         System.out.println("\t multicast address:  multicast address");
         System.out.println("\t multicast port:     multicast port");
@@ -26,6 +26,8 @@ public class Main {
         System.out.println("\t TCPport:            local TCP port number for receiving files");
         System.out.println("\t IP                  local IP address - localhost by default");
         System.out.println("\t delay               delay (seconds) before announcing it's presence - 5 seconds by default");
+        System.out.println("\t channels            number of UDP receive channels (SO_REUSEPORT), each read by its own thread - 1 by default");
+        System.out.println("Other users can be hosted on the same endpoint with -Dgossiper.tenants=user1,user2");
         System.exit(-1);
     }
 
@@ -55,15 +57,26 @@ public class Main {
             } else {
                 gossiper = new Gossiper(username, baseDirectory, udpPort, tcpPort);
             }
-            gossiper.start();
-
-            Thread.sleep(1000);
+            if(args.length > 8) {
+                gossiper.setReceiveChannels(Integer.parseInt(args[8]));
+            }
+            // other users hosted on the same endpoint, -Dgossiper.tenants=user1,user2
+            for (String tenant : System.getProperty("gossiper.tenants", "").split(",")) {
+                if ( ! tenant.trim().isEmpty()) {
+                    gossiper.addTenant(tenant.trim());
+                }
+            }
+            if (gossiper.getReceiveChannels() > 1) {
+                // each channel is read by its own thread, otherwise discover's selector reads it
+                gossiper.start();
+                Thread.sleep(1000);
+            }
 
             int delay = (args.length > 7) ? Integer.parseInt(args[7]) : 5;
             Discover discover = new Discover(groupAddress, groupPort, gossiper, delay);
             discover.run();
 
-        } catch(IOException | InterruptedException | NumberFormatException ioe) {
+        } catch(IOException | InterruptedException | IllegalArgumentException ioe) {
             System.err.println(ioe.getMessage());
             usage();
         }
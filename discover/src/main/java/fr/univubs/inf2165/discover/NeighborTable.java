@@ -0,0 +1,481 @@
+package fr.univubs.inf2165.discover;
+
+import fr.univubs.inf2165.gossiper.PeerMonitor;
+import fr.univubs.inf2165.gossiper.RoutingTable;
+import fr.univubs.inf2165.gossiper.format.Address;
+import fr.univubs.inf2165.gossiper.format.MessageView;
+import fr.univubs.inf2165.gossiper.format.Util;
+
+import java.io.Closeable;
+import java.net.Inet4Address;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is the table of the neighbors discovered by their beacons. A neighbor
+ * is identified by its user name and its address, and is forgotten when no beacon
+ * has been received from it during the time to live. The times are monotonic
+ * (System.nanoTime), and the expiry is driven by a timing wheel.
+ *
+ * The table is thread safe and can be queried by other components. It is also a
+ * monitor of the peers liveness: a phi accrual failure detector is fed by the beacons
+ * of each neighbor, and a neighbor is suspected long before it is forgotten.
+ * Since the beacons carry the user names, the table is also a routing table which
+ * gives the neighbors hosting a user.
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public class NeighborTable implements Closeable, PeerMonitor, RoutingTable {
+
+    /**
+     * This interface is implemented by the objects notified of the changes of the table.
+     */
+    public interface Listener {
+
+        /**
+         * Called when a beacon is received from a new neighbor.
+         * @param neighbor The neighbor
+         */
+        default void added(Neighbor neighbor) {
+        }
+
+        /**
+         * Called when a neighbor is forgotten.
+         * @param neighbor The neighbor
+         */
+        default void expired(Neighbor neighbor) {
+        }
+    }
+
+    /**
+     * The duration of a tick of the timing wheel (milliseconds)
+     */
+    private static final long TICK = 100;
+    /**
+     * The number of slots of the timing wheel
+     */
+    private static final int SLOTS = 512;
+
+    private final ConcurrentMap<Key, Neighbor> neighbors = new ConcurrentHashMap<>();
+    /**
+     * The neighbors by their packed address, the last one seen if several users share an address
+     */
+    private final ConcurrentMap<Long, Neighbor> byAddress = new ConcurrentHashMap<>();
+    /**
+     * The neighbors by user name
+     */
+    private final ConcurrentMap<String, Set<Neighbor>> byUsername = new ConcurrentHashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final TimingWheel<Neighbor> wheel;
+    private final long timeToLive;
+    private final long beaconInterval;
+    private volatile double threshold = PhiAccrualDetector.DEFAULT_THRESHOLD;
+
+    /**
+     * Constructs a new NeighborTable object.
+     *
+     * @param timeToLive     The time after which a silent neighbor is forgotten (milliseconds)
+     * @param beaconInterval The longest expected time between two beacons of a neighbor (milliseconds)
+     */
+    public NeighborTable(long timeToLive, long beaconInterval) {
+        if (timeToLive <= 0 || beaconInterval <= 0) {
+            throw new IllegalArgumentException("Invalid neighbor table -> ttl=" + timeToLive + " beacon=" + beaconInterval);
+        }
+        this.timeToLive = TimeUnit.MILLISECONDS.toNanos(timeToLive);
+        this.beaconInterval = beaconInterval;
+        this.wheel = new TimingWheel<>(TICK, SLOTS, this::check);
+        this.wheel.start();
+    }
+
+    /**
+     * Records a beacon received from the default user of a gossiper.
+     *
+     * @param username The user name of the neighbor. Must not be null.
+     * @param address  The address of the neighbor. Must not be null.
+     * @return the neighbor.
+     */
+    public Neighbor seen(String username, Address address) {
+        return seen(username, address, false);
+    }
+
+    /**
+     * Records a beacon received from a neighbor.
+     *
+     * @param username  The user name of the neighbor. Must not be null.
+     * @param address   The address of the neighbor. Must not be null.
+     * @param addressed True if the neighbor is not the default user of its gossiper.
+     * @return the neighbor.
+     */
+    public Neighbor seen(String username, Address address, boolean addressed) {
+        Util.checkNotNull("NeighborTable -> username", username);
+        Util.checkNotNull("NeighborTable -> address", address);
+        long now = System.nanoTime();
+        Key key = new Key(username, address);
+        Neighbor neighbor = this.neighbors.get(key);
+        if (neighbor == null) {
+            Neighbor created = new Neighbor(username, address, now, this.beaconInterval);
+            neighbor = this.neighbors.putIfAbsent(key, created);
+            if (neighbor == null) {
+                neighbor = created;
+                neighbor.addressed = addressed;
+                this.byAddress.put(key.address, neighbor);
+                this.byUsername.computeIfAbsent(username, u -> ConcurrentHashMap.newKeySet()).add(neighbor);
+                this.wheel.schedule(neighbor, this.timeToLive);
+                for (Listener listener : this.listeners) {
+                    listener.added(neighbor);
+                }
+                return neighbor; // the first beacon is the start of the detector
+            }
+        }
+        neighbor.addressed = addressed;
+        neighbor.heartbeat(now);
+        return neighbor;
+    }
+
+    /**
+     * Checks a neighbor whose time to live may have elapsed: the neighbor is removed
+     * if no beacon has been received meanwhile, rescheduled otherwise.
+     */
+    private void check(Neighbor neighbor) {
+        long silence = System.nanoTime() - neighbor.lastSeen;
+        if (silence < this.timeToLive) {
+            this.wheel.schedule(neighbor, this.timeToLive - silence);
+        } else if (this.neighbors.remove(neighbor.key, neighbor)) {
+            neighbor.expired = true;
+            this.byAddress.remove(neighbor.key.address, neighbor);
+            this.byUsername.computeIfPresent(neighbor.username, (u, set) -> set.remove(neighbor) && set.isEmpty() ? null : set);
+            System.out.println("[Discover]: neighbor expired -> " + neighbor);
+            for (Listener listener : this.listeners) {
+                listener.expired(neighbor);
+            }
+        }
+    }
+
+    /**
+     * Return the given IP address and port packed in a long.
+     *
+     * @param ip   The IP address as a big endian integer
+     * @param port The port number
+     * @return the IP address and port packed in a long.
+     */
+    public static long pack(int ip, short port) {
+        return ((ip & 0xFFFFFFFFL) << 16) | (port & 0xFFFF);
+    }
+
+    /**
+     * Return the neighbor of the given user name and address.
+     *
+     * @param username The user name
+     * @param address  The address
+     * @return the neighbor, null if unknown.
+     */
+    public Neighbor getNeighbor(String username, Address address) {
+        return this.neighbors.get(new Key(username, address));
+    }
+
+    /**
+     * Return true if the neighbor listening on the given address is suspected to be down.
+     * An unknown peer is not suspected.
+     *
+     * @param peer The gossiping (UDP) address of the neighbor
+     * @return true if the neighbor is suspected to be down.
+     */
+    @Override
+    public boolean isSuspected(InetSocketAddress peer) {
+        if (peer == null || !(peer.getAddress() instanceof Inet4Address)) {
+            return false;
+        }
+        long packedAddress = pack(MessageView.toInt(peer.getAddress().getAddress()), (short) peer.getPort());
+        Neighbor neighbor = this.byAddress.get(packedAddress);
+        return neighbor != null && isSuspected(neighbor);
+    }
+
+    /**
+     * Return true if all the neighbors of the given user are suspected to be down.
+     * An unknown user is not suspected.
+     *
+     * @param username The user name
+     * @return true if all the neighbors of the given user are suspected to be down.
+     */
+    @Override
+    public boolean isSuspected(String username) {
+        Set<Neighbor> neighbors = this.byUsername.get(username);
+        if (neighbors == null) {
+            return false;
+        }
+        boolean known = false;
+        for (Neighbor neighbor : neighbors) {
+            if (!isSuspected(neighbor)) {
+                return false;
+            }
+            known = true;
+        }
+        return known;
+    }
+
+    /**
+     * Return the gossiping addresses of the neighbors of the given user which are
+     * not suspected to be down.
+     *
+     * @param username The user name
+     * @return the gossiping addresses, empty if the user is unknown or all its neighbors are suspected.
+     */
+    @Override
+    public Collection<InetSocketAddress> getRoutes(String username) {
+        Set<Neighbor> neighbors = this.byUsername.get(username);
+        if (neighbors == null) {
+            return Collections.emptyList();
+        }
+        List<InetSocketAddress> routes = new ArrayList<>(neighbors.size());
+        long now = System.nanoTime();
+        for (Neighbor neighbor : neighbors) {
+            if (!neighbor.detector.isSuspected(now, this.threshold)) {
+                try {
+                    routes.add(neighbor.address.getInetSocketAddress());
+                } catch (UnknownHostException uhe) {
+                    // never thrown, the address is numeric
+                }
+            }
+        }
+        return routes;
+    }
+
+    /**
+     * Return true if the given neighbor is suspected to be down.
+     *
+     * @param neighbor The neighbor. Must not be null.
+     * @return true if the neighbor is suspected to be down.
+     */
+    public boolean isSuspected(Neighbor neighbor) {
+        return neighbor.detector.isSuspected(System.nanoTime(), this.threshold);
+    }
+
+    /**
+     * Return the neighbors which are not suspected to be down.
+     * @return the neighbors which are not suspected to be down.
+     */
+    public List<Neighbor> getLiveNeighbors() {
+        List<Neighbor> neighbors = new ArrayList<>();
+        long now = System.nanoTime();
+        for (Neighbor neighbor : this.neighbors.values()) {
+            if (!neighbor.detector.isSuspected(now, this.threshold)) {
+                neighbors.add(neighbor);
+            }
+        }
+        return neighbors;
+    }
+
+    /**
+     * Return the suspicion threshold.
+     * @return the suspicion threshold.
+     */
+    public double getThreshold() {
+        return this.threshold;
+    }
+
+    /**
+     * Sets the suspicion threshold: the higher, the fewer mistakes but the slower the detection.
+     *
+     * @param threshold The suspicion threshold, positive
+     */
+    public void setThreshold(double threshold) {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("The suspicion threshold must be positive -> " + threshold);
+        }
+        this.threshold = threshold;
+    }
+
+    /**
+     * Return the neighbors with the given user name.
+     *
+     * @param username The user name
+     * @return the neighbors with the given user name.
+     */
+    public List<Neighbor> getNeighbors(String username) {
+        Set<Neighbor> neighbors = this.byUsername.get(username);
+        return neighbors == null ? new ArrayList<>() : new ArrayList<>(neighbors);
+    }
+
+    /**
+     * Return a snapshot of the neighbors.
+     * @return a snapshot of the neighbors.
+     */
+    public List<Neighbor> getNeighbors() {
+        return new ArrayList<>(this.neighbors.values());
+    }
+
+    /**
+     * Return the number of neighbors.
+     * @return the number of neighbors.
+     */
+    public int size() {
+        return this.neighbors.size();
+    }
+
+    /**
+     * Adds a listener notified of the changes of the table.
+     *
+     * @param listener The listener. Must not be null.
+     */
+    public void addListener(Listener listener) {
+        Util.checkNotNull("NeighborTable -> listener", listener);
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Stops the expiry of the neighbors.
+     */
+    @Override
+    public void close() {
+        this.wheel.close();
+    }
+
+    /**
+     * This class represents a neighbor.
+     */
+    public static class Neighbor {
+
+        private final Key key;
+        private final String username;
+        private final byte[] usernameBytes;
+        private final Address address;
+        private final long firstSeen;
+        private volatile long lastSeen;
+        private volatile boolean expired = false;
+        /**
+         * True if the neighbor is not the default user of its gossiper, the messages to it
+         * are then addressed
+         */
+        private volatile boolean addressed = false;
+        private final PhiAccrualDetector detector;
+
+        private Neighbor(String username, Address address, long now, long beaconInterval) {
+            this.key = new Key(username, address);
+            this.username = username;
+            this.usernameBytes = username.getBytes(StandardCharsets.UTF_8);
+            this.address = address;
+            this.firstSeen = now;
+            this.lastSeen = now;
+            // the standard deviation does not drop below a quarter of the beacon interval,
+            // the beacons being sent at random times
+            this.detector = new PhiAccrualDetector(PhiAccrualDetector.DEFAULT_WINDOW_SIZE, beaconInterval,
+                    beaconInterval / 4, now);
+        }
+
+        /**
+         * Records a beacon from the neighbor.
+         */
+        private void heartbeat(long now) {
+            this.lastSeen = now;
+            this.detector.heartbeat(now);
+        }
+
+        /**
+         * Records a beacon from the neighbor without looking the table up.
+         *
+         * @return false if the neighbor has expired meanwhile, in which case it must be seen again.
+         */
+        boolean touch() {
+            if (this.expired) {
+                return false;
+            }
+            heartbeat(System.nanoTime());
+            return true;
+        }
+
+        /**
+         * Return true if the neighbor has the given packed address and user name bytes.
+         */
+        boolean matches(long packedAddress, BeaconView beacon) {
+            return this.key.address == packedAddress && beacon.usernameEquals(this.usernameBytes);
+        }
+
+        public String getUsername() {
+            return this.username;
+        }
+
+        public Address getAddress() {
+            return this.address;
+        }
+
+        /**
+         * Return true if the neighbor is not the default user of its gossiper.
+         * @return true if the messages to the neighbor must be addressed.
+         */
+        public boolean isAddressed() {
+            return this.addressed;
+        }
+
+        /**
+         * Return the time of the first beacon (System.nanoTime).
+         * @return the time of the first beacon.
+         */
+        public long getFirstSeen() {
+            return this.firstSeen;
+        }
+
+        /**
+         * Return the current suspicion level of the neighbor.
+         * @return the current suspicion level of the neighbor.
+         */
+        public double getPhi() {
+            return this.detector.phi(System.nanoTime());
+        }
+
+        /**
+         * Return the time of the last beacon (System.nanoTime).
+         * @return the time of the last beacon.
+         */
+        public long getLastSeen() {
+            return this.lastSeen;
+        }
+
+        @Override
+        public String toString() {
+            return this.username + "@" + this.address;
+        }
+    }
+
+    /**
+     * The key of a neighbor: its user name, IP address and port.
+     */
+    private static final class Key {
+
+        private final String username;
+        private final long address;
+
+        private Key(String username, Address address) {
+            this.username = username;
+            this.address = pack(MessageView.toInt(address.getIp().getAddress()), address.getPort());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return this.address == key.address && this.username.equals(key.username);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.username, this.address);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package fr.univubs.inf2165.discover;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is a phi accrual failure detector (Hayashibara et al.). Rather than a
+ * yes or no answer after a fixed timeout, it gives a suspicion level phi, which grows
+ * with the time elapsed since the last heartbeat, compared to the distribution of the
+ * previous inter-arrival times. A phi of 1 means a 10% chance that the peer is still
+ * alive, 2 a 1% chance, and so on.
+ *
+ * The inter-arrival times are assumed to be normally distributed, and the distribution
+ * is estimated on a sliding window. The window is primed with the expected interval so
+ * that a peer heard only once is judged as well.
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public class PhiAccrualDetector {
+
+    /**
+     * The default suspicion threshold
+     */
+    public static final double DEFAULT_THRESHOLD = 8.0;
+    /**
+     * The default number of inter-arrival times of the window
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 100;
+
+    /**
+     * The inter-arrival times (milliseconds), in a ring
+     */
+    private final double[] intervals;
+    private int count = 0;
+    private int index = 0;
+    private double sum = 0;
+    private double sumOfSquares = 0;
+    private final double minStdDeviation;
+    /**
+     * The time of the last heartbeat (System.nanoTime)
+     */
+    private long last;
+
+    /**
+     * Constructs a new PhiAccrualDetector object, on the first heartbeat.
+     *
+     * @param windowSize       The number of inter-arrival times of the window, at least 2
+     * @param expectedInterval The expected inter-arrival time (milliseconds), positive
+     * @param minStdDeviation  The minimum standard deviation (milliseconds), so that very
+     *                         regular heartbeats do not make the detector too sensitive
+     * @param now              The time of the first heartbeat (System.nanoTime)
+     */
+    public PhiAccrualDetector(int windowSize, long expectedInterval, long minStdDeviation, long now) {
+        if (windowSize < 2 || expectedInterval <= 0 || minStdDeviation < 0) {
+            throw new IllegalArgumentException("Invalid failure detector -> window=" + windowSize
+                    + " interval=" + expectedInterval + " deviation=" + minStdDeviation);
+        }
+        this.intervals = new double[windowSize];
+        this.minStdDeviation = minStdDeviation;
+        this.last = now;
+        // the window starts with a deviation of a quarter of the expected interval
+        add(expectedInterval * 0.75);
+        add(expectedInterval * 1.25);
+    }
+
+    /**
+     * Records a heartbeat.
+     *
+     * @param now The time of the heartbeat (System.nanoTime)
+     */
+    public synchronized void heartbeat(long now) {
+        add((now - this.last) / (double) TimeUnit.MILLISECONDS.toNanos(1));
+        this.last = now;
+    }
+
+    /**
+     * Return the suspicion level at the given time.
+     *
+     * @param now The time (System.nanoTime)
+     * @return the suspicion level, 0 just after a heartbeat.
+     */
+    public synchronized double phi(long now) {
+        double elapsed = (now - this.last) / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        double mean = this.sum / this.count;
+        double variance = this.sumOfSquares / this.count - mean * mean;
+        double stdDeviation = Math.max(Math.sqrt(Math.max(variance, 0)), this.minStdDeviation);
+        return phi(elapsed, mean, stdDeviation);
+    }
+
+    /**
+     * Return true if the suspicion level at the given time reaches the threshold.
+     *
+     * @param now       The time (System.nanoTime)
+     * @param threshold The suspicion threshold
+     * @return true if the peer is suspected to be down.
+     */
+    public boolean isSuspected(long now, double threshold) {
+        return phi(now) >= threshold;
+    }
+
+    /**
+     * Return the suspicion level after the given elapsed time, with the logistic
+     * approximation of the normal cumulative distribution function.
+     */
+    static double phi(double elapsed, double mean, double stdDeviation) {
+        double y = (elapsed - mean) / stdDeviation;
+        double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+        if (elapsed > mean) {
+            return -Math.log10(e / (1.0 + e));
+        }
+        return -Math.log10(1.0 - 1.0 / (1.0 + e));
+    }
+
+    /**
+     * Adds an inter-arrival time to the window, replacing the oldest one when full.
+     */
+    private void add(double interval) {
+        if (this.count == this.intervals.length) {
+            double oldest = this.intervals[this.index];
+            this.sum -= oldest;
+            this.sumOfSquares -= oldest * oldest;
+        } else {
+            this.count++;
+        }
+        this.intervals[this.index] = interval;
+        this.index = (this.index + 1) % this.intervals.length;
+        this.sum += interval;
+        this.sumOfSquares += interval * interval;
+    }
+}
@@ -0,0 +1,184 @@
+package fr.univubs.inf2165.discover;
+
+import fr.univubs.inf2165.gossiper.Gossiper;
+import fr.univubs.inf2165.gossiper.GossipingSession;
+import fr.univubs.inf2165.gossiper.Tenant;
+import fr.univubs.inf2165.gossiper.format.Address;
+import fr.univubs.inf2165.gossiper.format.Util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class runs the gossiping sessions asynchronously, on a bounded pool of threads,
+ * so that the beacons keep being received while sessions are running.
+ *
+ * At most one session runs at a time with a peer. A session triggered while another
+ * one is running with the same peer is coalesced: a single session is run again once
+ * the current one is over, whatever the number of triggers.
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public class SessionLauncher implements Closeable {
+
+    /**
+     * The default number of threads
+     */
+    public static final int DEFAULT_THREADS = 4;
+    /**
+     * The default number of sessions waiting for a thread
+     */
+    public static final int DEFAULT_QUEUE_SIZE = 64;
+
+    /**
+     * The time after which an idle thread is released (seconds)
+     */
+    private static final long KEEP_ALIVE = 30;
+
+    /*
+     * The states of a peer: a session is running, and another one is due after it
+     */
+    private static final int RUNNING = 1;
+    private static final int RUNNING_AND_DUE = 2;
+
+    private final Gossiper gossiper;
+    private final ThreadPoolExecutor executor;
+    /**
+     * The state of the peers with which a session is running
+     */
+    private final ConcurrentMap<InetSocketAddress, Integer> states = new ConcurrentHashMap<>();
+    /**
+     * The users of the peers with which the next session is due
+     */
+    private final ConcurrentMap<InetSocketAddress, Set<String>> users = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new SessionLauncher object with the default number of threads and queue size.
+     *
+     * @param gossiper The gossiper server. Must not be null.
+     */
+    public SessionLauncher(Gossiper gossiper) {
+        this(gossiper, DEFAULT_THREADS, DEFAULT_QUEUE_SIZE);
+    }
+
+    /**
+     * Constructs a new SessionLauncher object.
+     *
+     * @param gossiper  The gossiper server. Must not be null.
+     * @param threads   The number of threads running the sessions
+     * @param queueSize The number of sessions waiting for a thread
+     */
+    public SessionLauncher(Gossiper gossiper, int threads, int queueSize) {
+        Util.checkNotNull("SessionLauncher -> gossiper", gossiper);
+        this.gossiper = gossiper;
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "GossipingSession-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        // the idle threads are released, a node at rest runs none
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Triggers a gossiping session with the given peer. The session is run later,
+     * or coalesced with the session running with the peer.
+     *
+     * @param peerAddress The address of the peer. Must not be null.
+     * @return false if the session has been rejected because too many sessions are waiting.
+     * @throws IOException if the peer address can not be resolved.
+     */
+    public boolean launch(Address peerAddress) throws IOException {
+        return launch(peerAddress, null);
+    }
+
+    /**
+     * Triggers a gossiping session with one of the users hosted by the given peer. The
+     * session is run later, or coalesced with the session running with the peer, which
+     * then gossips with all the users of the peer it has been triggered for.
+     *
+     * @param peerAddress The address of the peer. Must not be null.
+     * @param peerUser    The user of the peer, null for the user the peer was started with
+     * @return false if the session has been rejected because too many sessions are waiting.
+     * @throws IOException if the peer address can not be resolved.
+     */
+    public boolean launch(Address peerAddress, String peerUser) throws IOException {
+        Util.checkNotNull("SessionLauncher -> peerAddress", peerAddress);
+        InetSocketAddress peer = peerAddress.getInetSocketAddress();
+        if (peerUser != null) {
+            this.users.computeIfAbsent(peer, key -> ConcurrentHashMap.newKeySet()).add(peerUser);
+        }
+        boolean[] submit = {false};
+        this.states.compute(peer, (key, state) -> {
+            if (state == null) {
+                submit[0] = true;
+                return RUNNING;
+            }
+            return RUNNING_AND_DUE;
+        });
+        if (!submit[0]) {
+            System.out.println("[Discover]: session coalesced -> " + peer);
+            return true;
+        }
+        try {
+            this.executor.execute(() -> runSessions(peer, peerAddress));
+            return true;
+        } catch (RejectedExecutionException ree) {
+            this.states.remove(peer);
+            this.users.remove(peer);
+            System.err.println("[Discover]: session rejected, too many sessions waiting -> " + peer);
+            return false;
+        }
+    }
+
+    /**
+     * Runs sessions with a peer as long as new ones are triggered meanwhile.
+     */
+    private void runSessions(InetSocketAddress peer, Address peerAddress) {
+        do {
+            Set<String> peerUsers = this.users.remove(peer);
+            try (GossipingSession session = new GossipingSession(this.gossiper, peerAddress)) {
+                // one channel for all the users hosted by the gossiper and by the peer
+                for (Tenant tenant : this.gossiper.getTenants()) {
+                    if (peerUsers == null || peerUsers.isEmpty()) {
+                        session.gossip(tenant, null);
+                        continue;
+                    }
+                    for (String peerUser : peerUsers) {
+                        session.gossip(tenant, peerUser);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.println("[Discover]: error during the session with " + peer + "\n\t cause -> " + e.getMessage());
+            }
+        } while (this.states.compute(peer, (key, state) -> state == RUNNING_AND_DUE ? RUNNING : null) != null);
+    }
+
+    /**
+     * Return the number of peers with which a session is running or waiting.
+     * @return the number of peers with which a session is running or waiting.
+     */
+    public int getActiveCount() {
+        return this.states.size();
+    }
+
+    /**
+     * Stops the launcher. The running sessions are finished, the waiting ones are dropped.
+     */
+    @Override
+    public void close() {
+        this.executor.shutdownNow();
+    }
+}
@@ -0,0 +1,139 @@
+package fr.univubs.inf2165.discover;
+
+import fr.univubs.inf2165.gossiper.format.Util;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * This class is a hashed timing wheel. Items are scheduled in the slot of their
+ * deadline, and a single thread moves to the next slot at each tick and hands the
+ * items whose deadline has been reached to the expiry action. Scheduling an item
+ * costs O(1) whatever the number of scheduled items.
+ *
+ * The deadlines are rounded up to the next tick.
+ *
+ * @param <T> The type of the scheduled items
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public class TimingWheel<T> extends Thread implements Closeable {
+
+    private final long tick;
+    private final List<Entry<T>>[] slots;
+    private final Consumer<T> action;
+
+    /**
+     * The number of ticks elapsed, guarded by this
+     */
+    private long ticks = 0;
+    private final long start;
+
+    private boolean closed = false;
+
+    /**
+     * Constructs a new TimingWheel object.
+     *
+     * @param tick      The duration of a tick (milliseconds), positive
+     * @param slotCount The number of slots, positive
+     * @param action    The action applied to the expired items. Must not be null.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public TimingWheel(long tick, int slotCount, Consumer<T> action) {
+        super("TimingWheel");
+        Util.checkNotNull("TimingWheel -> action", action);
+        if (tick <= 0 || slotCount <= 0) {
+            throw new IllegalArgumentException("Invalid timing wheel -> tick=" + tick + " slots=" + slotCount);
+        }
+        setDaemon(true);
+        this.tick = TimeUnit.MILLISECONDS.toNanos(tick);
+        this.slots = new List[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            this.slots[i] = new ArrayList<>();
+        }
+        this.action = action;
+        this.start = System.nanoTime();
+    }
+
+    /**
+     * Schedules an item.
+     *
+     * @param item  The item. Must not be null.
+     * @param delay The delay after which the item expires (nanoseconds)
+     */
+    public synchronized void schedule(T item, long delay) {
+        Util.checkNotNull("TimingWheel -> item", item);
+        // the tick at which the item expires, counted from the start of the wheel
+        long elapsed = System.nanoTime() - this.start;
+        long deadline = Math.max(this.ticks + 1, (elapsed + Math.max(0, delay) + this.tick - 1) / this.tick);
+        this.slots[(int) (deadline % this.slots.length)].add(new Entry<>(item, deadline));
+    }
+
+    @Override
+    public void run() {
+        List<T> expired = new ArrayList<>();
+        try {
+            while (true) {
+                synchronized (this) {
+                    long next = this.start + (this.ticks + 1) * this.tick;
+                    long wait = next - System.nanoTime();
+                    while (!this.closed && wait > 0) {
+                        TimeUnit.NANOSECONDS.timedWait(this, wait);
+                        wait = next - System.nanoTime();
+                    }
+                    if (this.closed) {
+                        return;
+                    }
+                    this.ticks++;
+                    Iterator<Entry<T>> iterator = this.slots[(int) (this.ticks % this.slots.length)].iterator();
+                    while (iterator.hasNext()) {
+                        Entry<T> entry = iterator.next();
+                        if (entry.deadline <= this.ticks) {
+                            expired.add(entry.item);
+                            iterator.remove();
+                        }
+                    }
+                }
+                // the action may schedule items again, hence out of the lock
+                for (T item : expired) {
+                    try {
+                        this.action.accept(item);
+                    } catch (RuntimeException re) {
+                        System.err.println("[Discover]: error while expiring -> " + item + "\n\t cause -> " + re.getMessage());
+                    }
+                }
+                expired.clear();
+            }
+        } catch (InterruptedException ie) {
+            // the wheel has been closed
+        }
+    }
+
+    /**
+     * Stops the wheel. The scheduled items never expire.
+     */
+    @Override
+    public synchronized void close() {
+        this.closed = true;
+        notifyAll();
+    }
+
+    /**
+     * A scheduled item and the tick at which it expires.
+     */
+    private static class Entry<T> {
+
+        private final T item;
+        private final long deadline;
+
+        private Entry(T item, long deadline) {
+            this.item = item;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package fr.univubs.inf2165.discover;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Discrete event simulation of the discovery and gossip of N nodes on one machine.
+ * Each node starts with one file of its own; the simulation runs until every node
+ * holds every file, and counts the beacons and the gossiping messages sent.
+ *
+ * A session between two nodes is a SYNC and a DIGEST, plus an offer and a transfer
+ * for each file one of them misses.
+ *
+ * Run the main method for the 10 to 1000 nodes comparison of the full and random fanouts.
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+class GossipSimulation {
+
+    private static final long DELAY = 5_000; // milliseconds
+    private static final long TIME_LIMIT = 3_600_000;
+
+    private final int nodeCount;
+    private final int fanout;
+    private final Random random;
+
+    private final BitSet[] files;
+    private final List<List<Integer>> neighbors = new ArrayList<>();
+    private final BitSet[] known;
+    private final BeaconTimer[] timers;
+
+    private long beacons = 0;
+    private long sessions = 0;
+    private long messages = 0;
+    private int complete = 0;
+
+    GossipSimulation(int nodeCount, int fanout, long seed) {
+        this.nodeCount = nodeCount;
+        this.fanout = fanout;
+        this.random = new Random(seed);
+        this.files = new BitSet[nodeCount];
+        this.known = new BitSet[nodeCount];
+        this.timers = new BeaconTimer[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            this.files[i] = new BitSet(nodeCount);
+            this.files[i].set(i);
+            this.known[i] = new BitSet(nodeCount);
+            this.neighbors.add(new ArrayList<>());
+            this.timers[i] = new BeaconTimer(DELAY, DELAY << 2, this.random);
+        }
+        this.complete = nodeCount == 1 ? 1 : 0;
+    }
+
+    /**
+     * Runs the simulation.
+     * @return the convergence time (milliseconds), -1 if the time limit is reached.
+     */
+    long run() {
+        PriorityQueue<long[]> events = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+        for (int i = 0; i < this.nodeCount; i++) {
+            // the nodes start within a beacon period, each beacon then gossip round
+            long start = (long) (this.random.nextDouble() * DELAY);
+            events.add(new long[] {start, i, 0});
+            events.add(new long[] {start + Fanout.jitter(DELAY, this.random), i, 1});
+        }
+        while (this.complete < this.nodeCount) {
+            long[] event = events.poll();
+            long now = event[0];
+            if (now > TIME_LIMIT) {
+                return -1;
+            }
+            int node = (int) event[1];
+            if (event[2] == 0) {
+                beacon(node);
+                events.add(new long[] {now + this.timers[node].nextDelay(), node, 0});
+            } else {
+                for (int peer : Fanout.choose(this.neighbors.get(node), this.fanout, this.random)) {
+                    session(node, peer);
+                }
+                events.add(new long[] {now + Fanout.jitter(DELAY, this.random), node, 1});
+            }
+            if (this.complete == this.nodeCount) {
+                return now;
+            }
+        }
+        return 0;
+    }
+
+    private void beacon(int node) {
+        this.beacons++;
+        for (int i = 0; i < this.nodeCount; i++) {
+            if (i != node && !this.known[i].get(node)) {
+                this.known[i].set(node);
+                this.neighbors.get(i).add(node);
+            }
+        }
+    }
+
+    private void session(int a, int b) {
+        this.sessions++;
+        BitSet missingA = (BitSet) this.files[b].clone();
+        missingA.andNot(this.files[a]);
+        BitSet missingB = (BitSet) this.files[a].clone();
+        missingB.andNot(this.files[b]);
+        this.messages += 2 + 2L * (missingA.cardinality() + missingB.cardinality());
+        update(a, missingA);
+        update(b, missingB);
+    }
+
+    private void update(int node, BitSet missing) {
+        if (!missing.isEmpty()) {
+            this.files[node].or(missing);
+            if (this.files[node].cardinality() == this.nodeCount) {
+                this.complete++;
+            }
+        }
+    }
+
+    long getBeacons() {
+        return this.beacons;
+    }
+
+    long getSessions() {
+        return this.sessions;
+    }
+
+    long getMessages() {
+        return this.messages;
+    }
+
+    public static void main(String[] args) {
+        System.out.printf("%6s %7s %10s %8s %10s %12s%n", "nodes", "fanout", "time(s)", "beacons", "sessions", "messages");
+        for (int n : new int[] {10, 100, 1000}) {
+            for (int fanout : new int[] {0, Discover.DEFAULT_FANOUT}) {
+                GossipSimulation simulation = new GossipSimulation(n, fanout, 42);
+                long time = simulation.run();
+                System.out.printf("%6d %7s %10.1f %8d %10d %12d%n", n, fanout <= 0 ? "all" : String.valueOf(fanout),
+                        time / 1000.0, simulation.getBeacons(), simulation.getSessions(), simulation.getMessages());
+            }
+        }
+    }
+}
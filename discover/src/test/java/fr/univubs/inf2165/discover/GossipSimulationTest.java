@@ -0,0 +1,21 @@
+package fr.univubs.inf2165.discover;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GossipSimulationTest {
+
+    @org.junit.jupiter.api.Test
+    void converges() {
+        System.out.println("converges");
+        for (int n : new int[] {10, 100}) {
+            GossipSimulation full = new GossipSimulation(n, 0, 42);
+            GossipSimulation random = new GossipSimulation(n, Discover.DEFAULT_FANOUT, 42);
+            assertTrue(full.run() > 0);
+            assertTrue(random.run() > 0);
+            if (n > 10) {
+                // with many nodes, the random fanout runs fewer sessions than the full one
+                assertTrue(random.getSessions() < full.getSessions());
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package fr.univubs.inf2165.discover;
+
+import fr.univubs.inf2165.gossiper.format.Address;
+import fr.univubs.inf2165.gossiper.format.UserInfo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NeighborTableTest {
+
+    @org.junit.jupiter.api.Test
+    void seen() throws IOException {
+        System.out.println("seen");
+        Address address = new Address("127.0.0.1", (short) 4000);
+        try (NeighborTable instance = new NeighborTable(60_000, 60_000)) {
+            assertSame(instance.seen("aliyou", address), instance.seen("aliyou", address));
+            // another user at the same address is another neighbor
+            assertNotSame(instance.seen("aliyou", address), instance.seen("sylla", address));
+            assertEquals(2, instance.size());
+            assertEquals(1, instance.getNeighbors("aliyou").size());
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void expire() throws IOException, InterruptedException {
+        System.out.println("expire");
+        Address address = new Address("127.0.0.1", (short) 4000);
+        try (NeighborTable instance = new NeighborTable(300, 100)) {
+            instance.seen("aliyou", address);
+            Thread.sleep(200);
+            instance.seen("aliyou", address); // the time to live starts again
+            Thread.sleep(200);
+            assertNotNull(instance.getNeighbor("aliyou", address));
+            Thread.sleep(500);
+            assertNull(instance.getNeighbor("aliyou", address));
+            assertEquals(0, instance.size());
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void addressed() throws IOException {
+        System.out.println("addressed");
+        Address address = new Address("127.0.0.1", (short) 4000);
+        BeaconMessageFormat message = new BeaconMessageFormat(address, new UserInfo("sylla"));
+        ByteBuffer beacon = ByteBuffer.allocate(message.getSize() + BeaconView.ADDRESSED_SIZE);
+        message.writePacket(beacon);
+        BeaconView.encodeAddressed(beacon);
+        beacon.flip();
+        BeaconView view = new BeaconView();
+        assertTrue(view.wrap(beacon).isAddressed());
+        assertFalse(view.wrap(message.getPacket()).isAddressed());
+        try (NeighborTable instance = new NeighborTable(60_000, 60_000)) {
+            assertFalse(instance.seen("aliyou", address).isAddressed());
+            assertTrue(instance.seen("sylla", address, true).isAddressed());
+        }
+    }
+}
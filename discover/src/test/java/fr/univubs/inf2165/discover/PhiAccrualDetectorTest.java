@@ -0,0 +1,25 @@
+package fr.univubs.inf2165.discover;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PhiAccrualDetectorTest {
+
+    @org.junit.jupiter.api.Test
+    void phi() {
+        System.out.println("phi");
+        long second = TimeUnit.SECONDS.toNanos(1);
+        long now = 0;
+        PhiAccrualDetector instance = new PhiAccrualDetector(10, 1000, 100, now);
+        for (int i = 0; i < 20; i++) {
+            now += second;
+            instance.heartbeat(now);
+        }
+        assertEquals(0, instance.phi(now), 0.01);
+        // a late heartbeat is not suspected, a missing one is
+        assertFalse(instance.isSuspected(now + second + second / 5, PhiAccrualDetector.DEFAULT_THRESHOLD));
+        assertTrue(instance.isSuspected(now + 3 * second, PhiAccrualDetector.DEFAULT_THRESHOLD));
+        assertTrue(instance.phi(now + 2 * second) < instance.phi(now + 3 * second));
+    }
+}
@@ -0,0 +1,22 @@
+package fr.univubs.inf2165.filereceiver;
+
+import java.nio.file.Path;
+
+/**
+ * This interface is implemented by the objects notified of the files delivered by a
+ * {@link FileReceiver}, for instance to update an index without reading the directory.
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public interface DeliveryListener {
+
+    /**
+     * Called once a received file is durable under its final name, before it is
+     * acknowledged to the sender. Must not block.
+     *
+     * @param path    The path of the file
+     * @param headers The headers parsed during the reception
+     */
+    void delivered(Path path, HeaderParser headers);
+}
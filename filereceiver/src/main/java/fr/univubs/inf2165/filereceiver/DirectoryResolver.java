@@ -0,0 +1,22 @@
+package fr.univubs.inf2165.filereceiver;
+
+import java.nio.file.Path;
+
+/**
+ * This interface is implemented by the objects choosing the directory of each file
+ * received by a {@link FileReceiver}, for instance when several users share the receiver.
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public interface DirectoryResolver {
+
+    /**
+     * Return the directory in which a received file is committed. Must not block.
+     *
+     * @param filename The name of the file
+     * @return the directory of the file, on the same file system as the base directory
+     * of the receiver, null for the base directory.
+     */
+    Path getDirectory(String filename);
+}
@@ -12,15 +12,29 @@ import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 
-import fr.ubs.io.MailFile;
-
 /**
  * This program receives files send by clients. Files are stored in the
  * given directory path.
  *
+ * A file is received in a temporary directory and committed by a {@link GroupCommitter}:
+ * once it is durable under its final name, an acknowledgement byte is sent back to the
+ * client before the connection is closed.
+ *
+ * The files are committed in the base directory, or in the directory chosen for each
+ * file by a {@link DirectoryResolver}.
+ *
+ * The size and the hash of a requested file can be given beforehand (see {@link #expect}):
+ * the file is then checked on arrival, and rejected without acknowledgement if it differs.
+ *
  * @author Aliyou Sylla
  * @version 08/10/2019
  */
@@ -37,6 +51,50 @@ public class FileReceiver extends Thread {
 
     private String ip;
 
+    /**
+     * The acknowledgement sent once a file is durable
+     */
+    public static final byte ACK = 0x06;
+    /**
+     * The name of the directory of the files being received, in the base directory
+     */
+    public static final String INCOMING_DIRECTORY_NAME = ".incoming";
+
+    /**
+     * The directory of the files being received
+     */
+    private Path incomingDirectory;
+    /**
+     * The committer of the received files
+     */
+    private GroupCommitter committer;
+    /**
+     * The listener of the delivered files, null if none
+     */
+    private volatile DeliveryListener deliveryListener;
+    /**
+     * The resolver of the directories of the received files, null to commit them in the base directory
+     */
+    private volatile DirectoryResolver directoryResolver;
+    /**
+     * Released when the server is stopped
+     */
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    /**
+     * The maximum number of expected files kept, the oldest are forgotten
+     */
+    public static final int MAX_EXPECTED = 4096;
+    /**
+     * The size and hash of the expected files, by file name
+     */
+    private final Map<String, Expected> expected = Collections.synchronizedMap(
+            new LinkedHashMap<String, Expected>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Expected> eldest) {
+                    return size() > MAX_EXPECTED;
+                }
+            });
+
     /**
      * Constructor with the port number and the base directory.
      *
@@ -62,98 +120,291 @@ public class FileReceiver extends Thread {
             Files.createDirectories(this.baseDirectory);
             System.out.println("[FileReceiver]: I've just created the directory -> " + this.baseDirectory.toString());
         }
+        this.incomingDirectory = this.baseDirectory.resolve(INCOMING_DIRECTORY_NAME);
+        Files.createDirectories(this.incomingDirectory);
+        this.committer = new GroupCommitter(this.baseDirectory);
         this.ip = Inet4Address.getLocalHost().getHostName();
     }
 
     @Override
     public void run() {
+        if ( ! this.committer.isAlive()) {
+            this.committer.start();
+        }
         try (final AsynchronousServerSocketChannel serverChannel = AsynchronousServerSocketChannel.open()) {
             InetSocketAddress inetAddress = new InetSocketAddress(this.ip, this.port);
             serverChannel.bind(inetAddress);
             System.out.println("[FileReceiver]: hey ! I'm running on " + serverChannel.getLocalAddress());
             System.out.println("[FileReceiver]: baseDirectory -> " + this.baseDirectory);
 
-            while (true) {
-                serverChannel.accept(null, new CompletionHandler<AsynchronousSocketChannel, Object>() {
-
-                    @Override
-                    public void completed(AsynchronousSocketChannel ch, Object attachement) {
-                        try {
-                            if (serverChannel.isOpen()) {
-                                System.out.println("[FileReceiver]: incoming connection from -> " + ch.getRemoteAddress());
-                                serverChannel.accept(null, this);
-                            }
-                            handle(ch, baseDirectory);
-                        } catch (IOException e) {
-                            System.err.println("[FileReceiver]: input/output error -> " + e.getMessage());
-                            //usage();
+            serverChannel.accept(null, new CompletionHandler<AsynchronousSocketChannel, Object>() {
+
+                @Override
+                public void completed(AsynchronousSocketChannel ch, Object attachement) {
+                    try {
+                        if (serverChannel.isOpen()) {
+                            System.out.println("[FileReceiver]: incoming connection from -> " + ch.getRemoteAddress());
+                            serverChannel.accept(null, this);
                         }
+                        handle(ch, baseDirectory);
+                    } catch (IOException e) {
+                        System.err.println("[FileReceiver]: input/output error -> " + e.getMessage());
+                        //usage();
                     }
+                }
 
-                    @Override
-                    public void failed(Throwable exc, Object attachement) {
-                        System.err.println("[FileReceiver]: Failed to accept connection");
-                    }
-                });
-                System.in.read();
-            }
+                @Override
+                public void failed(Throwable exc, Object attachement) {
+                    System.err.println("[FileReceiver]: Failed to accept connection");
+                }
+            });
+            // the connections are accepted by the channel group, until the server is stopped
+            this.stopped.await();
         } catch (IOException ioe) {
             System.err.println("[FileReceiver]: I/O Error occurs -> " + ioe.getMessage());
+        } catch (InterruptedException ie) {
+            System.err.println("[FileReceiver]: interrupted");
         }
+        this.committer.close();
+    }
+
+    /**
+     * Stops the server: no connection is accepted anymore.
+     */
+    public void stopServer() {
+        this.stopped.countDown();
     }
 
     /**
-     * Handle a client connection.
+     * Handle a client connection. The headers of the mail are parsed while it is
+     * received, and the file is then committed under its Message-ID without being read again.
+     * The connection is closed once the file is committed.
      *
      * @param clientChannel
      * @param directory
      * @throws IOException
      */
     private void handle(AsynchronousSocketChannel clientChannel, Path directory) throws IOException {
+        String name = clientChannel.getRemoteAddress()
+                .toString().substring(1).replace(".", ",").replace(":", "-") + "--" + System.currentTimeMillis();
+        Path path = this.incomingDirectory.resolve(name);
+        HeaderParser headers = new HeaderParser();
+        // the received bytes are always hashed: the file may be expected after its connection is accepted
+        MessageDigest digest = newDigest();
+        FileChannel file = FileChannel.open(path, EnumSet.of(StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+        long bytesReceived;
         try {
-            String filename = clientChannel.getRemoteAddress()
-                    .toString().substring(1).replace(".", ",").replace(":", "-") + "--" + System.currentTimeMillis();
-            Path path = directory.resolve(filename);
-            long bytesReceived = receiveFile(clientChannel, path);
-            MailFile mailFile = new MailFile(path.toFile());
-            if (mailFile.getMessageId() != null) {
-                mailFile.updateFilename();
-                filename = mailFile.getMessageId();
+            bytesReceived = receiveFile(clientChannel, file, headers, digest);
+        } catch (IOException | ExecutionException | InterruptedException e) {
+            file.close();
+            Files.deleteIfExists(path);
+            clientChannel.close();
+            if (e instanceof IOException) {
+                throw (IOException) e;
+            }
+            e.printStackTrace(System.out);
+            return;
+        }
+        headers.finish();
+        String filename = headers.getMessageId() != null ? toFilename(headers.getMessageId()) : name;
+        Expected expected = this.expected.get(filename);
+        if (expected != null && ! expected.matches(bytesReceived, digest)) {
+            System.err.println("[FileReceiver]: file rejected, it differs from the offered one -> " + filename
+                    + " (" + bytesReceived + " bytes received, " + expected.size + " expected)");
+            file.close();
+            Files.deleteIfExists(path);
+            closeQuietly(clientChannel);
+            return;
+        }
+        if (expected != null) {
+            this.expected.remove(filename, expected);
+        }
+        this.committer.commit(file, path, resolve(filename)).whenComplete((target, failure) -> {
+            if (failure != null) {
+                System.err.println("[FileReceiver]: error while committing the file -> " + filename
+                        + "\n\t cause -> " + failure.getMessage());
+                closeQuietly(clientChannel);
+                return;
             }
             System.out.println("[FileReceiver]: file \'" + filename
                     + "\' successfully received -> " + bytesReceived + " bytes received !");
-        } catch (ExecutionException | InterruptedException e) {
-            e.printStackTrace(System.out);
+            DeliveryListener listener = this.deliveryListener;
+            if (listener != null) {
+                try {
+                    listener.delivered(target, headers);
+                } catch (RuntimeException re) {
+                    System.err.println("[FileReceiver]: error while notifying the delivery -> " + re);
+                }
+            }
+            acknowledge(clientChannel);
+        });
+    }
+
+    /**
+     * Gives the size and the hash of a file which is about to be received. The file
+     * is rejected if it differs, and the sender is not acknowledged.
+     *
+     * @param filename The name of the file, after its Message-ID
+     * @param size     The size of the file in bytes
+     * @param hash     The SHA-256 hash of the file, in hexadecimal
+     */
+    public void expect(String filename, long size, String hash) {
+        if (filename == null) {
+            throw new NullPointerException("filename == null");
+        }
+        if (hash == null) {
+            throw new NullPointerException("hash == null");
+        }
+        this.expected.put(filename, new Expected(size, hash));
+    }
+
+    /**
+     * Return a new SHA-256 digest.
+     */
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new IllegalStateException("SHA-256 is not supported", nsae); // required by every Java platform
+        }
+    }
+
+    /**
+     * Sets the listener notified of each delivered file.
+     *
+     * @param deliveryListener The listener, null if none
+     */
+    public void setDeliveryListener(DeliveryListener deliveryListener) {
+        this.deliveryListener = deliveryListener;
+    }
+
+    /**
+     * Sets the resolver of the directory of each received file.
+     *
+     * @param directoryResolver The resolver, null to commit the files in the base directory
+     */
+    public void setDirectoryResolver(DirectoryResolver directoryResolver) {
+        this.directoryResolver = directoryResolver;
+    }
+
+    /**
+     * Return the final path of a received file, in the directory given by the resolver if any.
+     */
+    private Path resolve(String filename) {
+        DirectoryResolver resolver = this.directoryResolver;
+        Path directory = resolver != null ? resolver.getDirectory(filename) : null;
+        if (directory == null) {
+            directory = this.baseDirectory;
+        }
+        return directory.resolve(filename);
+    }
+
+    /**
+     * Return the listener notified of each delivered file.
+     * @return the listener notified of each delivered file, null if none.
+     */
+    public DeliveryListener getDeliveryListener() {
+        return this.deliveryListener;
+    }
+
+    /**
+     * Sends the acknowledgement to the client, then closes the connection.
+     */
+    private static void acknowledge(AsynchronousSocketChannel clientChannel) {
+        clientChannel.write(ByteBuffer.wrap(new byte[]{ACK}), null, new CompletionHandler<Integer, Object>() {
+            @Override
+            public void completed(Integer written, Object attachment) {
+                closeQuietly(clientChannel);
+            }
+
+            @Override
+            public void failed(Throwable exc, Object attachment) {
+                closeQuietly(clientChannel);
+            }
+        });
+    }
+
+    /**
+     * Closes a client connection.
+     */
+    private static void closeQuietly(AsynchronousSocketChannel clientChannel) {
+        try {
+            clientChannel.close();
+        } catch (IOException ioe) {
+            System.err.println("[FileReceiver]: error while closing the connection -> " + ioe.getMessage());
         }
     }
 
     /**
-     * Receives data from a given channel and write it to a file.
+     * Return the file name of a mail from its Message-ID, in which the path
+     * separators are replaced so that the file stays in the directory.
+     *
+     * @param messageId The Message-ID
+     * @return the file name.
+     */
+    static String toFilename(String messageId) {
+        return messageId.replace('/', '_').replace('\\', '_');
+    }
+
+    /**
+     * Receives data from a given channel and write it to a file, which is left open.
      *
      * @param clientChannel The client channel
-     * @param path
+     * @param inChannel The file
+     * @param headers The parser fed with the received bytes
+     * @param digest The digest updated with the received bytes, null if none
      * @return the number of bytes received..
      * @throws IOException
      * @throws ExecutionException
      * @throws InterruptedException
      */
-    private static long receiveFile(AsynchronousSocketChannel clientChannel, Path path)
-            throws IOException, ExecutionException, InterruptedException {
+    private static long receiveFile(AsynchronousSocketChannel clientChannel, FileChannel inChannel, HeaderParser headers,
+                                    MessageDigest digest) throws IOException, ExecutionException, InterruptedException {
         long bytesReceived = 0;
-        try (FileChannel inChannel = FileChannel.open(path,
-                EnumSet.of(StandardOpenOption.CREATE,
-                        StandardOpenOption.TRUNCATE_EXISTING,
-                        StandardOpenOption.WRITE))
-        ) {
-            ByteBuffer buffer = ByteBuffer.allocate(1024);
-            while (clientChannel.read(buffer).get() != -1) {
-                buffer.flip();
-                bytesReceived += buffer.limit();
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        while (clientChannel.read(buffer).get() != -1) {
+            buffer.flip();
+            bytesReceived += buffer.limit();
+            if ( ! headers.isComplete()) {
+                headers.feed(buffer);
+            }
+            if (digest != null) {
+                digest.update(buffer);
+                buffer.rewind();
+            }
+            while (buffer.hasRemaining()) {
                 inChannel.write(buffer);
-                buffer.clear();
             }
+            buffer.clear();
         }
         return bytesReceived;
     }
 
+    /**
+     * The size and the hash of an expected file.
+     */
+    private static class Expected {
+        private final long size;
+        private final String hash;
+
+        private Expected(long size, String hash) {
+            this.size = size;
+            this.hash = hash;
+        }
+
+        /**
+         * Return true if the received file has the expected size and the expected hash.
+         */
+        private boolean matches(long size, MessageDigest digest) {
+            if (size != this.size) {
+                return false;
+            }
+            StringBuilder sb = new StringBuilder(64);
+            for (byte b : digest.digest()) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString().equalsIgnoreCase(this.hash);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,241 @@
+package fr.univubs.inf2165.filereceiver;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * This class makes the received files durable by batches (group commit). A received
+ * file is written in a temporary file and handed over to the committer, which flushes
+ * it to the disk, renames it atomically to its final name and flushes the directory.
+ * The files queued while a batch is being flushed form the next batch, so that under
+ * load many files share the flush of the directory, and a single file is committed
+ * without waiting.
+ *
+ * The files are committed in the directory of the committer, or in a directory given
+ * for each file, flushed once per batch as well.
+ *
+ * The future returned for a file completes once the file is durable under its final
+ * name, which is the time to acknowledge it to the sender.
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public class GroupCommitter extends Thread implements Closeable {
+
+    /**
+     * The default maximum number of files committed together
+     */
+    public static final int DEFAULT_MAX_BATCH = 256;
+
+    private final Path directory;
+    private final int maxBatch;
+    private final BlockingQueue<Commit> queue = new LinkedBlockingQueue<>();
+    private volatile boolean closed = false;
+    /**
+     * false once the directory could not be opened to be flushed (not supported on some platforms)
+     */
+    private volatile boolean directorySync = true;
+
+    private long batches = 0;
+    private long files = 0;
+
+    /**
+     * Constructs a new GroupCommitter object.
+     *
+     * @param directory The directory of the committed files. Must not be null.
+     * @param maxBatch  The maximum number of files committed together, positive
+     */
+    public GroupCommitter(Path directory, int maxBatch) {
+        super("GroupCommitter");
+        if (directory == null) {
+            throw new NullPointerException("directory == null");
+        }
+        if (maxBatch <= 0) {
+            throw new IllegalArgumentException("Invalid batch size -> " + maxBatch);
+        }
+        this.directory = directory;
+        this.maxBatch = maxBatch;
+        setDaemon(true);
+    }
+
+    /**
+     * Constructs a new GroupCommitter object with the default batch size.
+     *
+     * @param directory The directory of the committed files. Must not be null.
+     */
+    public GroupCommitter(Path directory) {
+        this(directory, DEFAULT_MAX_BATCH);
+    }
+
+    /**
+     * Queues a received file to be committed. The committer takes over the file channel
+     * and closes it.
+     *
+     * @param file     The open channel of the temporary file
+     * @param tmp      The temporary file, on the same file system as the directory
+     * @param filename The final name of the file in the directory
+     * @return a future completed with the final path once the file is durable.
+     */
+    public CompletableFuture<Path> commit(FileChannel file, Path tmp, String filename) {
+        return commit(file, tmp, this.directory.resolve(filename));
+    }
+
+    /**
+     * Queues a received file to be committed under the given path, in another directory
+     * than the directory of the committer. The committer takes over the file channel
+     * and closes it.
+     *
+     * @param file   The open channel of the temporary file
+     * @param tmp    The temporary file, on the same file system as the target
+     * @param target The final path of the file
+     * @return a future completed with the final path once the file is durable.
+     */
+    public CompletableFuture<Path> commit(FileChannel file, Path tmp, Path target) {
+        if (target == null) {
+            throw new NullPointerException("target == null");
+        }
+        Commit commit = new Commit(file, tmp, target);
+        if (this.closed) {
+            commit.fail(new IOException("the committer is closed"));
+        } else {
+            this.queue.add(commit);
+        }
+        return commit.future;
+    }
+
+    @Override
+    public void run() {
+        List<Commit> batch = new ArrayList<>(this.maxBatch);
+        try {
+            while ( ! this.closed) {
+                batch.add(this.queue.take());
+                this.queue.drainTo(batch, this.maxBatch - 1);
+                commitBatch(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException ie) {
+            // closed
+        }
+        for (Commit commit : batch) {
+            commit.fail(new IOException("the committer is closed"));
+        }
+        Commit commit;
+        while ((commit = this.queue.poll()) != null) {
+            commit.fail(new IOException("the committer is closed"));
+        }
+    }
+
+    /**
+     * Commits a batch: flushes the files, renames them and flushes the directory once.
+     */
+    private void commitBatch(List<Commit> batch) {
+        List<Commit> renamed = new ArrayList<>(batch.size());
+        for (Commit commit : batch) {
+            try (FileChannel file = commit.file) {
+                file.force(false);
+            } catch (IOException ioe) {
+                commit.fail(ioe);
+                continue;
+            }
+            try {
+                Files.move(commit.tmp, commit.target, StandardCopyOption.ATOMIC_MOVE);
+                renamed.add(commit);
+            } catch (IOException ioe) {
+                commit.fail(ioe);
+            }
+        }
+        try {
+            Set<Path> directories = new HashSet<>();
+            for (Commit commit : renamed) {
+                if (directories.add(commit.target.getParent())) {
+                    syncDirectory(commit.target.getParent());
+                }
+            }
+        } catch (IOException ioe) {
+            System.err.println("[FileReceiver]: error while flushing the directory -> " + ioe.getMessage());
+            for (Commit commit : renamed) {
+                commit.fail(ioe);
+            }
+            return;
+        }
+        for (Commit commit : renamed) {
+            commit.future.complete(commit.target);
+        }
+        this.batches++;
+        this.files += renamed.size();
+        if (Main.DEBUG) {
+            System.out.println("[FileReceiver]: committed -> " + renamed.size() + " files ("
+                    + this.files + " files in " + this.batches + " batches)");
+        }
+    }
+
+    /**
+     * Flushes a directory, so that the renamed entries survive a crash.
+     */
+    private void syncDirectory(Path directory) throws IOException {
+        if ( ! this.directorySync) {
+            return;
+        }
+        FileChannel dir;
+        try {
+            dir = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException ioe) {
+            this.directorySync = false;
+            System.err.println("[FileReceiver]: the directory can't be flushed on this platform -> " + ioe.getMessage());
+            return;
+        }
+        try (dir) {
+            dir.force(true);
+        }
+    }
+
+    /**
+     * Stops the committer, the queued files are not committed.
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        interrupt();
+    }
+
+    /**
+     * A received file waiting to be committed.
+     */
+    private static class Commit {
+        private final FileChannel file;
+        private final Path tmp;
+        private final Path target;
+        private final CompletableFuture<Path> future = new CompletableFuture<>();
+
+        private Commit(FileChannel file, Path tmp, Path target) {
+            this.file = file;
+            this.tmp = tmp;
+            this.target = target;
+        }
+
+        /**
+         * Fails the commit and deletes the temporary file.
+         */
+        private void fail(IOException cause) {
+            try {
+                this.file.close();
+                Files.deleteIfExists(this.tmp);
+            } catch (IOException ioe) {
+                // the file is left in the temporary directory
+            }
+            this.future.completeExceptionally(cause);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package fr.univubs.inf2165.filereceiver;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class extracts the headers of a mail while its bytes are received, so that the
+ * received file never has to be read again. The bytes are given buffer by buffer, and
+ * the parser stops at the empty line which ends the headers.
+ *
+ * Only the Message-ID, From, To, Date and Subject headers are kept. Folded headers
+ * are unfolded, and the lines may end with CRLF or LF.
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public class HeaderParser {
+
+    /**
+     * The maximum number of bytes kept for a header, longer headers are truncated
+     */
+    public static final int MAX_HEADER_LENGTH = 8 * 1024;
+
+    private static final String[] NAMES = {"Message-ID", "From", "To", "Date", "Subject"};
+    private static final int MESSAGE_ID = 0;
+    private static final int FROM = 1;
+    private static final int TO = 2;
+    private static final int DATE = 3;
+    private static final int SUBJECT = 4;
+
+    private final String[] values = new String[NAMES.length];
+    /**
+     * The current line, without its line terminator
+     */
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+    /**
+     * The value of the header being read, null if it is not kept
+     */
+    private ByteArrayOutputStream value;
+    /**
+     * The index of the header being read in NAMES
+     */
+    private int field = -1;
+    /**
+     * The number of bytes parsed
+     */
+    private long offset = 0;
+    /**
+     * The offset of the first byte of the body, -1 until the end of the headers
+     */
+    private long headerEnd = -1;
+
+    /**
+     * Parses the bytes of the given buffer between its position and its limit. The
+     * position of the buffer is left unchanged. Does nothing once the headers are complete.
+     *
+     * @param buffer The received bytes
+     */
+    public void feed(ByteBuffer buffer) {
+        for (int i = buffer.position(); i < buffer.limit() && ! isComplete(); i++) {
+            feed(buffer.get(i));
+        }
+    }
+
+    /**
+     * Parses the given bytes.
+     *
+     * @param data   The received bytes
+     * @param off    The offset of the first byte
+     * @param length The number of bytes
+     */
+    public void feed(byte[] data, int off, int length) {
+        for (int i = off; i < off + length && ! isComplete(); i++) {
+            feed(data[i]);
+        }
+    }
+
+    /**
+     * Parses one byte.
+     */
+    private void feed(byte b) {
+        this.offset++;
+        if (b != '\n') {
+            if (this.line.size() < MAX_HEADER_LENGTH) {
+                this.line.write(b);
+            }
+            return;
+        }
+        byte[] bytes = this.line.toByteArray();
+        int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+        this.line.reset();
+        if (length == 0) {
+            endField();
+            this.headerEnd = this.offset;
+        } else if (bytes[0] == ' ' || bytes[0] == '\t') {
+            if (this.value != null) { // continuation of a folded header
+                append(bytes, 0, length);
+            }
+        } else {
+            endField();
+            startField(bytes, length);
+        }
+    }
+
+    /**
+     * Ends the parsing, when the received file has no body: the last header is kept.
+     */
+    public void finish() {
+        if ( ! isComplete() && this.line.size() > 0) {
+            feed((byte) '\n');
+        }
+        endField();
+    }
+
+    /**
+     * Starts a header line, which is kept if its name is one of NAMES.
+     */
+    private void startField(byte[] bytes, int length) {
+        int colon = -1;
+        for (int i = 0; i < length; i++) {
+            if (bytes[i] == ':') {
+                colon = i;
+                break;
+            }
+        }
+        if (colon <= 0) {
+            return;
+        }
+        String name = new String(bytes, 0, colon, StandardCharsets.US_ASCII).trim();
+        for (int i = 0; i < NAMES.length; i++) {
+            if (NAMES[i].equalsIgnoreCase(name) && this.values[i] == null) {
+                this.field = i;
+                this.value = new ByteArrayOutputStream(length);
+                append(bytes, colon + 1, length);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Appends the given part of a line to the value of the header being read.
+     */
+    private void append(byte[] bytes, int from, int to) {
+        int length = Math.min(to - from, MAX_HEADER_LENGTH - this.value.size());
+        if (length > 0) {
+            this.value.write(bytes, from, length);
+        }
+    }
+
+    /**
+     * Ends the header being read.
+     */
+    private void endField() {
+        if (this.value != null) {
+            String text = this.value.toString(StandardCharsets.UTF_8).replaceAll("[\\r\\n]+", "").trim();
+            if ( ! text.isEmpty()) {
+                this.values[this.field] = text;
+            }
+            this.value = null;
+            this.field = -1;
+        }
+    }
+
+    /**
+     * Return true if the end of the headers has been reached.
+     * @return true if the end of the headers has been reached.
+     */
+    public boolean isComplete() {
+        return this.headerEnd != -1;
+    }
+
+    /**
+     * Return the offset of the first byte of the body.
+     * @return the offset of the first byte of the body, -1 if the end of the headers has not been reached.
+     */
+    public long getHeaderEnd() {
+        return this.headerEnd;
+    }
+
+    public String getMessageId() {
+        return this.values[MESSAGE_ID];
+    }
+
+    public String getFrom() {
+        return this.values[FROM];
+    }
+
+    public String getTo() {
+        return this.values[TO];
+    }
+
+    public String getDate() {
+        return this.values[DATE];
+    }
+
+    public String getSubject() {
+        return this.values[SUBJECT];
+    }
+
+    @Override
+    public String toString() {
+        return "HeaderParser {messageId=" + getMessageId() + " | from=" + getFrom() + " | to=" + getTo()
+                + " | date=" + getDate() + " | subject=" + getSubject() + " | headerEnd=" + this.headerEnd + "}";
+    }
+}
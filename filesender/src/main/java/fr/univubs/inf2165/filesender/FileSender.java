@@ -2,7 +2,9 @@ package fr.univubs.inf2165.filesender;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
 import java.nio.channels.FileChannel;
 import java.nio.channels.SocketChannel;
 import java.nio.file.Path;
@@ -18,6 +20,15 @@ import java.nio.file.Path;
 
 public class FileSender implements Closeable {
 
+    /**
+     * The acknowledgement sent by the receiver once the file is durable
+     */
+    public static final byte ACK = 0x06;
+    /**
+     * The default time to wait for the acknowledgement (ms)
+     */
+    public static final int DEFAULT_ACK_TIMEOUT = 30_000;
+
     private String host;
     private int port;
 
@@ -79,6 +90,38 @@ public class FileSender implements Closeable {
         return bytesSent;
     }
 
+    /**
+     * Ends the sending of the file and waits until the receiver acknowledges that the
+     * file is durable. Nothing can be sent afterwards.
+     *
+     * @param timeout The time to wait for the acknowledgement (ms), 0 to wait forever
+     * @return true if the file has been acknowledged, false if the receiver closed the
+     *         connection without acknowledging it or did not answer in time.
+     * @throws IOException if some input/output error occurs.
+     */
+    public boolean awaitAck(int timeout) throws IOException {
+        this.socketChannel.shutdownOutput();
+        this.socketChannel.socket().setSoTimeout(timeout);
+        // the stream of the socket honours the timeout, unlike the channel
+        InputStream in = this.socketChannel.socket().getInputStream();
+        try {
+            return in.read() == ACK;
+        } catch (SocketTimeoutException ste) {
+            return false;
+        }
+    }
+
+    /**
+     * Ends the sending of the file and waits until the receiver acknowledges it,
+     * for {@link #DEFAULT_ACK_TIMEOUT} ms at most.
+     *
+     * @return true if the file has been acknowledged.
+     * @throws IOException if some input/output error occurs.
+     */
+    public boolean awaitAck() throws IOException {
+        return awaitAck(DEFAULT_ACK_TIMEOUT);
+    }
+
     @Override
     public synchronized void close() {
         if (!this.closed) {
@@ -0,0 +1,117 @@
+package fr.univubs.inf2165.gossiper;
+
+/**
+ * This class is the receive window of the reliable messages of a peer. It tells
+ * whether a sequence number is received for the first time, and gives the state
+ * sent back in the ack messages: the base (first sequence number not received yet)
+ * and the bitmap of the 64 following ones (bit i for base + 1 + i).
+ *
+ * The window of an epoch of the peer starts at its initial sequence number 0, whichever
+ * message arrives first, so that a lost first message is still retransmitted. A message
+ * of another epoch means the peer has restarted: the window restarts with it.
+ *
+ * Sequence numbers are compared modulo 2^32. This class is not thread safe.
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public class AckWindow {
+
+    /**
+     * The number of sequence numbers tracked after the base
+     */
+    public static final int SIZE = 64;
+
+    private int epoch;
+    private int base;
+    private long bitmap;
+
+    /**
+     * Constructs a new AckWindow object for the given epoch of the peer, starting at
+     * its initial sequence number 0.
+     *
+     * @param epoch The epoch of the peer
+     */
+    public AckWindow(int epoch) {
+        this(epoch, 0);
+    }
+
+    /**
+     * Constructs a new AckWindow object for the given epoch of the peer, starting at
+     * the given sequence number.
+     *
+     * @param epoch The epoch of the peer
+     * @param base  The first sequence number
+     */
+    public AckWindow(int epoch, int base) {
+        this.epoch = epoch;
+        this.base = base;
+        this.bitmap = 0;
+    }
+
+    /**
+     * Records the reception of the given sequence number.
+     *
+     * @param epoch    The epoch of the peer which sent the sequence number
+     * @param sequence The sequence number
+     * @return true if the sequence number has not been received before.
+     */
+    public boolean receive(int epoch, int sequence) {
+        if (epoch != this.epoch) { // the peer has restarted
+            this.epoch = epoch;
+            this.base = 0;
+            this.bitmap = 0;
+        }
+        int distance = sequence - this.base;
+        if (distance < 0) { // already received
+            return false;
+        }
+        if (distance == 0) {
+            this.base++;
+            // the base moves over the sequence numbers already received
+            while ((this.bitmap & 1) != 0) {
+                this.bitmap >>>= 1;
+                this.base++;
+            }
+            this.bitmap >>>= 1;
+            return true;
+        }
+        if (distance > SIZE) {
+            // the peer is far ahead (this window has been lost): its unacknowledged
+            // messages, at most SIZE ones, are kept in the window
+            this.base = sequence - SIZE;
+            this.bitmap = 1L << (SIZE - 1);
+            return true;
+        }
+        long bit = 1L << (distance - 1);
+        if ((this.bitmap & bit) != 0) {
+            return false;
+        }
+        this.bitmap |= bit;
+        return true;
+    }
+
+    /**
+     * Return the epoch of the peer.
+     * @return the epoch of the peer.
+     */
+    public int getEpoch() {
+        return this.epoch;
+    }
+
+    /**
+     * Return the first sequence number not received yet.
+     * @return the first sequence number not received yet.
+     */
+    public int getBase() {
+        return this.base;
+    }
+
+    /**
+     * Return the bitmap of the sequence numbers received after the base.
+     * @return the bitmap of the sequence numbers received after the base.
+     */
+    public long getBitmap() {
+        return this.bitmap;
+    }
+}
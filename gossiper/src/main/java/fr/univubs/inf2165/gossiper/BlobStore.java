@@ -0,0 +1,293 @@
+package fr.univubs.inf2165.gossiper;
+
+import fr.univubs.inf2165.gossiper.format.Util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.UUID;
+
+/**
+ * This class is a content addressed store of files, shared by the users hosted on a
+ * node. Each content is stored once, under the SHA-256 hash of its bytes, and the files
+ * of the send and receive directories are hard links to the stored contents (blobs), so
+ * that the same mail offered or received by many users occupies the disk once.
+ *
+ * <pre>
+ *     Layout:
+ *              .blobs/ab/ab12...ef     the blob of hash ab12...ef
+ *              .blobs/tmp/             the links being created
+ * </pre>
+ *
+ * The blobs are never modified: a file of the user directory, which the user may edit,
+ * is copied into the store if its content is not stored yet, while a received file is
+ * stored in place by linking it. When the file system does not support hard links,
+ * the references are copies.
+ *
+ * The store does not remove every duplicate:
+ * <ul>
+ *     <li>a file the user writes outside the send directory remains, next to the stored
+ *     copy linked into the send directory: the send path keeps one copy besides the store;</li>
+ *     <li>a mail received while the gossiper runs is not stored: the receive directories
+ *     are only stored at startup, so such a mail is stored on the next start. Meanwhile,
+ *     a mail received for several hosted users is linked between their directories.</li>
+ * </ul>
+ * The blobs whose last reference has been deleted are collected by {@link #collect()},
+ * which the gossiper calls periodically. They are never collected when the references
+ * are copies.
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public class BlobStore {
+
+    /**
+     * The name of the store directory, in the base directory
+     */
+    public static final String DIRECTORY_NAME = ".blobs";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path directory;
+    private final Path tmpDirectory;
+    /**
+     * false once the file system has refused a hard link
+     */
+    private volatile boolean linkSupported = true;
+
+    /**
+     * Constructs a new BlobStore object, and creates its directory if it doesn't exist.
+     *
+     * @param directory The store directory. Must not be null.
+     * @throws IOException if the directory can't be created.
+     */
+    public BlobStore(Path directory) throws IOException {
+        Util.checkNotNull("BlobStore -> directory", directory);
+        this.directory = directory;
+        this.tmpDirectory = directory.resolve("tmp");
+        Files.createDirectories(this.tmpDirectory);
+    }
+
+    /**
+     * Return the SHA-256 hash of the content of the given file, in hexadecimal.
+     *
+     * @param file The file. Must not be null.
+     * @return the hash of the content of the file.
+     * @throws IOException if the file can't be read.
+     */
+    public static String hash(Path file) throws IOException {
+        return toHex(digest(file));
+    }
+
+    /**
+     * Return the SHA-256 hash of the content of the given file.
+     *
+     * @param file The file. Must not be null.
+     * @return the hash of the content of the file, 32 bytes.
+     * @throws IOException if the file can't be read.
+     */
+    public static byte[] digest(Path file) throws IOException {
+        Util.checkNotNull("BlobStore -> file", file);
+        MessageDigest digest = newDigest();
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Return a new SHA-256 digest.
+     *
+     * @return a new SHA-256 digest.
+     */
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new IllegalStateException("SHA-256 is not supported", nsae); // required by every Java platform
+        }
+    }
+
+    /**
+     * Return the given bytes in hexadecimal.
+     *
+     * @param bytes The bytes
+     * @return the bytes in hexadecimal.
+     */
+    public static String toHex(byte[] bytes) {
+        return Util.toHex(bytes);
+    }
+
+    /**
+     * Return the path of the blob of the given hash.
+     *
+     * @param hash The hash, in hexadecimal
+     * @return the path of the blob.
+     */
+    public Path getBlob(String hash) {
+        if (hash == null || hash.length() < 3) {
+            throw new IllegalArgumentException("Invalid hash -> " + hash);
+        }
+        return this.directory.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    /**
+     * Return true if the content of the given hash is stored.
+     *
+     * @param hash The hash, in hexadecimal
+     * @return true if the content is stored.
+     */
+    public boolean contains(String hash) {
+        return Files.isRegularFile(getBlob(hash));
+    }
+
+    /**
+     * Stores a copy of the content of the given file, unless it is already stored.
+     * The file itself is left untouched.
+     *
+     * @param source The file. Must not be null.
+     * @return the hash of the content.
+     * @throws IOException if the file can't be read or stored.
+     */
+    public String put(Path source) throws IOException {
+        String hash = hash(source);
+        Path blob = getBlob(hash);
+        if ( ! Files.exists(blob)) {
+            Path tmp = newTmpFile();
+            try {
+                Files.copy(source, tmp);
+                Files.createDirectories(blob.getParent());
+                Files.move(tmp, blob, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Stores the content of the given file in place: if the content is already stored,
+     * the file is replaced by a link to the blob and its bytes are released, otherwise
+     * the file becomes the blob. The file must not be modified afterwards.
+     *
+     * @param file The file. Must not be null.
+     * @return the hash of the content.
+     * @throws IOException if the file can't be read or stored.
+     */
+    public String ingest(Path file) throws IOException {
+        String hash = hash(file);
+        Path blob = getBlob(hash);
+        if (Files.exists(blob)) {
+            link(hash, file);
+        } else if (this.linkSupported) {
+            Files.createDirectories(blob.getParent());
+            try {
+                Files.createLink(blob, file);
+            } catch (FileAlreadyExistsException faee) {
+                link(hash, file); // stored meanwhile
+            } catch (UnsupportedOperationException | FileSystemException e) {
+                this.linkSupported = false;
+                put(file);
+            }
+        } else {
+            put(file);
+        }
+        return hash;
+    }
+
+    /**
+     * Makes the given file a reference of the blob of the given hash, replacing it
+     * atomically if it exists.
+     *
+     * @param hash   The hash of a stored content
+     * @param target The file. Must not be null.
+     * @throws IOException if the blob does not exist or the file can't be written.
+     */
+    public void link(String hash, Path target) throws IOException {
+        Util.checkNotNull("BlobStore -> target", target);
+        Path blob = getBlob(hash);
+        if (Files.exists(target) && Files.isSameFile(blob, target)) {
+            return;
+        }
+        Path tmp = newTmpFile();
+        try {
+            if (this.linkSupported) {
+                try {
+                    Files.createLink(tmp, blob);
+                } catch (UnsupportedOperationException | FileSystemException e) {
+                    if (e instanceof NoSuchFileException) {
+                        throw (NoSuchFileException) e;
+                    }
+                    this.linkSupported = false;
+                    Files.copy(blob, tmp);
+                }
+            } else {
+                Files.copy(blob, tmp);
+            }
+            // the link is renamed in place, so that the target never appears partially written
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Deletes the blobs which are no longer referenced by any file. Needs the number
+     * of links of the files, which is only available on unix file systems.
+     *
+     * @return the number of deleted blobs.
+     * @throws IOException if the store can't be read.
+     */
+    public int collect() throws IOException {
+        if ( ! this.linkSupported || ! this.directory.getFileSystem().supportedFileAttributeViews().contains("unix")) {
+            return 0;
+        }
+        int count = 0;
+        try (DirectoryStream<Path> prefixes = Files.newDirectoryStream(this.directory, Files::isDirectory)) {
+            for (Path prefix : prefixes) {
+                if (prefix.equals(this.tmpDirectory)) {
+                    continue;
+                }
+                try (DirectoryStream<Path> blobs = Files.newDirectoryStream(prefix)) {
+                    for (Path blob : blobs) {
+                        if ((Integer) Files.getAttribute(blob, "unix:nlink") == 1 && Files.deleteIfExists(blob)) {
+                            count++;
+                        }
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Return the path of a new temporary file, in the store so that it can be renamed
+     * anywhere on the same file system.
+     */
+    private Path newTmpFile() {
+        return this.tmpDirectory.resolve(UUID.randomUUID().toString());
+    }
+
+    /**
+     * Return the store directory.
+     * @return the store directory.
+     */
+    public Path getDirectory() {
+        return this.directory;
+    }
+}
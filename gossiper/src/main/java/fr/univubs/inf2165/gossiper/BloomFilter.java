@@ -0,0 +1,255 @@
+package fr.univubs.inf2165.gossiper;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class is a Bloom filter over file names. It is used as a compact digest
+ * of the files a gossiper has already received, so that a peer only offers the
+ * files that are (probably) missing.
+ *
+ * A Bloom filter never answers "absent" for a present element, but it may answer
+ * "present" for an absent one. Each filter is built with a seed chosen by its creator:
+ * a file hidden by a false positive in one round is very unlikely to be hidden
+ * again in the next round, which uses another seed.
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public class BloomFilter {
+
+    /**
+     * The number of bits per element. 10 bits per element with 7 hash functions
+     * gives a false positive rate of about 1%.
+     */
+    private static final int BITS_PER_ELEMENT = 10;
+    /**
+     * The maximum number of hash functions, reached by the filters with few elements
+     */
+    private static final int MAX_HASH_COUNT = 16;
+    /**
+     * The minimum size of a filter in bytes
+     */
+    private static final int MIN_SIZE = 8;
+    /**
+     * The seed of the hash which splits the file names into segments
+     */
+    private static final int SEGMENT_SEED = 0x5EED;
+
+    private final byte[] bits;
+    private final int bitCount;
+    private final int hashCount;
+    private final int seed;
+
+    /**
+     * Constructs an empty filter sized for the given number of elements. The filter
+     * is never larger than the given maximum size, and its number of hash functions
+     * is the optimal one for its actual number of bits per element. A filter holding
+     * more than {@link #getCapacity(int)} elements gives more false positives than 1%.
+     *
+     * @param expectedElements The expected number of elements
+     * @param maxSize The maximum size of the filter in bytes
+     * @param seed The seed of the hash functions
+     */
+    public BloomFilter(int expectedElements, int maxSize, int seed) {
+        this(new byte[size(expectedElements, maxSize)], hashCount(size(expectedElements, maxSize) * 8, expectedElements), seed);
+    }
+
+    /**
+     * Constructs a filter with the given bits, for instance read from a digest message.
+     *
+     * @param bits The bits of the filter. Must not be null nor empty.
+     * @param hashCount The number of hash functions
+     * @param seed The seed of the hash functions
+     */
+    public BloomFilter(byte[] bits, int hashCount, int seed) {
+        if (bits == null || bits.length == 0) {
+            throw new IllegalArgumentException("BloomFilter -> bits == null or empty");
+        }
+        if (hashCount <= 0) {
+            throw new IllegalArgumentException("BloomFilter -> hashCount <= 0");
+        }
+        this.bits = bits;
+        this.bitCount = bits.length * 8;
+        this.hashCount = hashCount;
+        this.seed = seed;
+    }
+
+    /**
+     * Adds a file name to the filter.
+     * @param filename The file name
+     */
+    public void add(String filename) {
+        byte[] data = filename.getBytes(StandardCharsets.UTF_8);
+        add(data, 0, data.length);
+    }
+
+    /**
+     * Adds a file name given as bytes to the filter.
+     *
+     * @param data   The array containing the file name
+     * @param offset The offset of the file name in the array
+     * @param length The length of the file name
+     */
+    public void add(byte[] data, int offset, int length) {
+        int h1 = murmur3(data, offset, length, this.seed);
+        int h2 = murmur3(data, offset, length, h1);
+        for (int i = 0; i < this.hashCount; i++) {
+            int bit = Math.floorMod(h1 + i * h2, this.bitCount);
+            this.bits[bit >>> 3] |= (byte) (1 << (bit & 7));
+        }
+    }
+
+    /**
+     * Return true if the file name might have been added to the filter, false
+     * if it has certainly not been added.
+     *
+     * @param filename The file name
+     * @return true if the file name might have been added to the filter.
+     */
+    public boolean mightContain(String filename) {
+        byte[] data = filename.getBytes(StandardCharsets.UTF_8);
+        return mightContain(data, 0, data.length);
+    }
+
+    /**
+     * Return true if the file name given as bytes might have been added to the
+     * filter, false if it has certainly not been added.
+     *
+     * @param data   The array containing the file name
+     * @param offset The offset of the file name in the array
+     * @param length The length of the file name
+     * @return true if the file name might have been added to the filter.
+     */
+    public boolean mightContain(byte[] data, int offset, int length) {
+        int h1 = murmur3(data, offset, length, this.seed);
+        int h2 = murmur3(data, offset, length, h1);
+        for (int i = 0; i < this.hashCount; i++) {
+            int bit = Math.floorMod(h1 + i * h2, this.bitCount);
+            if ((this.bits[bit >>> 3] & (1 << (bit & 7))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return the bits of the filter.
+     * @return the bits of the filter.
+     */
+    public byte[] getBits() {
+        return this.bits;
+    }
+
+    /**
+     * Return the number of hash functions.
+     * @return the number of hash functions.
+     */
+    public int getHashCount() {
+        return this.hashCount;
+    }
+
+    /**
+     * Return the seed of the hash functions.
+     * @return the seed of the hash functions.
+     */
+    public int getSeed() {
+        return this.seed;
+    }
+
+    /**
+     * Return the number of elements a filter of the given size holds with a false
+     * positive rate of about 1%.
+     *
+     * @param maxSize The maximum size of the filter in bytes
+     * @return the number of elements the filter holds.
+     */
+    public static int getCapacity(int maxSize) {
+        return maxSize * 8 / BITS_PER_ELEMENT;
+    }
+
+    /**
+     * Return the segment of a file name among the given number of segments. The segment
+     * does not depend on the seed of the filters, so that peers agree on it.
+     *
+     * @param filename The file name
+     * @param segments The number of segments
+     * @return the segment of the file name, from 0 to segments - 1.
+     */
+    public static int segment(String filename, int segments) {
+        byte[] data = filename.getBytes(StandardCharsets.UTF_8);
+        return segment(data, 0, data.length, segments);
+    }
+
+    /**
+     * Return the segment of a file name given as bytes among the given number of segments.
+     *
+     * @param data     The array containing the file name
+     * @param offset   The offset of the file name in the array
+     * @param length   The length of the file name
+     * @param segments The number of segments
+     * @return the segment of the file name, from 0 to segments - 1.
+     */
+    public static int segment(byte[] data, int offset, int length, int segments) {
+        return Math.floorMod(murmur3(data, offset, length, SEGMENT_SEED), segments);
+    }
+
+    /**
+     * Return the size in bytes of a filter for the given number of elements.
+     */
+    private static int size(int expectedElements, int maxSize) {
+        long size = ((long) expectedElements * BITS_PER_ELEMENT + 7) / 8;
+        return (int) Math.min(maxSize, Math.max(MIN_SIZE, size));
+    }
+
+    /**
+     * Return the optimal number of hash functions for the given number of bits
+     * per element: (bits / elements) * ln 2.
+     */
+    private static int hashCount(int bitCount, int expectedElements) {
+        long hashCount = Math.round((double) bitCount / Math.max(1, expectedElements) * Math.log(2));
+        return (int) Math.max(1, Math.min(MAX_HASH_COUNT, hashCount));
+    }
+
+    /**
+     * MurmurHash3 (x86, 32 bits) of the given bytes.
+     */
+    @SuppressWarnings("fallthrough")
+    private static int murmur3(byte[] data, int offset, int length, int seed) {
+        final int c1 = 0xcc9e2d51;
+        final int c2 = 0x1b873593;
+        int h = seed;
+        int end = offset + (length & ~3);
+        for (int i = offset; i < end; i += 4) {
+            int k = (data[i] & 0xff) | ((data[i + 1] & 0xff) << 8)
+                    | ((data[i + 2] & 0xff) << 16) | (data[i + 3] << 24);
+            k *= c1;
+            k = Integer.rotateLeft(k, 15);
+            k *= c2;
+            h ^= k;
+            h = Integer.rotateLeft(h, 13);
+            h = h * 5 + 0xe6546b64;
+        }
+        int k = 0;
+        switch (length & 3) {
+            case 3:
+                k = (data[end + 2] & 0xff) << 16;
+                // fall through
+            case 2:
+                k |= (data[end + 1] & 0xff) << 8;
+                // fall through
+            case 1:
+                k |= (data[end] & 0xff);
+                k *= c1;
+                k = Integer.rotateLeft(k, 15);
+                k *= c2;
+                h ^= k;
+        }
+        h ^= length;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
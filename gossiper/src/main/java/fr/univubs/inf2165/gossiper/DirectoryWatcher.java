@@ -0,0 +1,170 @@
+package fr.univubs.inf2165.gossiper;
+
+import fr.univubs.inf2165.gossiper.format.Util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * This class watches directories and notifies a listener of each change. A single
+ * watch service and a single thread are used whatever the number of watched directories.
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public class DirectoryWatcher extends Thread implements Closeable {
+
+    /**
+     * This interface is implemented by the objects notified of the changes of a
+     * watched directory.
+     */
+    public interface Listener {
+
+        /**
+         * Called when an entry is created in a watched directory.
+         * @param path The path of the created entry
+         */
+        void created(Path path);
+
+        /**
+         * Called when an entry of a watched directory is modified.
+         * @param path The path of the modified entry
+         */
+        void modified(Path path);
+
+        /**
+         * Called when an entry of a watched directory is deleted.
+         * @param path The path of the deleted entry
+         */
+        void deleted(Path path);
+
+        /**
+         * Called when events of a watched directory may have been lost. The
+         * listener should rescan the directory.
+         * @param dir The watched directory
+         */
+        void overflowed(Path dir);
+
+        /**
+         * Called once all the pending events of a directory have been notified.
+         */
+        default void processed() {
+        }
+    }
+
+    private final WatchService watchService;
+
+    /**
+     * The watched directories and their listener, by watch key
+     */
+    private final Map<WatchKey, Registration> registrations;
+
+    private boolean closed = false;
+
+    /**
+     * Constructs a new DirectoryWatcher object.
+     *
+     * @throws IOException if the watch service can not be opened.
+     */
+    public DirectoryWatcher() throws IOException {
+        super("DirectoryWatcher");
+        setDaemon(true);
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.registrations = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Watches the given directory. The listener is notified of the changes of the
+     * directory entries, sub directories are not watched.
+     *
+     * @param dir The directory to watch. Must not be null.
+     * @param listener The listener. Must not be null.
+     * @throws IOException if the directory can not be watched.
+     */
+    public void register(Path dir, Listener listener) throws IOException {
+        Util.checkNotNull("DirectoryWatcher -> dir", dir);
+        Util.checkNotNull("DirectoryWatcher -> listener", listener);
+        WatchKey key = dir.register(this.watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+        this.registrations.put(key, new Registration(dir, listener));
+    }
+
+    @Override
+    public void run() {
+        try {
+            while ( ! this.closed) {
+                WatchKey key = this.watchService.take();
+                Registration registration = this.registrations.get(key);
+                if (registration != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        notify(registration, event);
+                    }
+                    registration.listener.processed();
+                }
+                if ( ! key.reset()) { // the directory is no longer accessible
+                    this.registrations.remove(key);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // the watcher is closed
+        }
+    }
+
+    /**
+     * Notifies the listener of the given registration of an event.
+     */
+    private static void notify(Registration registration, WatchEvent<?> event) {
+        try {
+            if (event.kind() == OVERFLOW) {
+                registration.listener.overflowed(registration.dir);
+            } else {
+                Path path = registration.dir.resolve((Path) event.context());
+                if (event.kind() == ENTRY_CREATE) {
+                    registration.listener.created(path);
+                } else if (event.kind() == ENTRY_MODIFY) {
+                    registration.listener.modified(path);
+                } else {
+                    registration.listener.deleted(path);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("[DirectoryWatcher]: error while notifying a change of -> " + registration.dir
+                    + "\n\t cause -> " + e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if ( ! this.closed) {
+            this.closed = true;
+            try {
+                this.watchService.close();
+            } catch (IOException ioe) {
+                System.err.println("[DirectoryWatcher]: error while closing the watch service -> " + ioe.getMessage());
+            }
+        }
+    }
+
+    /**
+     * A watched directory and its listener.
+     */
+    private static class Registration {
+
+        private final Path dir;
+        private final Listener listener;
+
+        private Registration(Path dir, Listener listener) {
+            this.dir = dir;
+            this.listener = listener;
+        }
+    }
+}
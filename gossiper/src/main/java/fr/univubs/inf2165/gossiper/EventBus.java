@@ -0,0 +1,90 @@
+package fr.univubs.inf2165.gossiper;
+
+import fr.univubs.inf2165.gossiper.format.Util;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * This class carries the mail events between the components running in the same
+ * process (file receiver, gossiper, POP3 server), so that their indexes are updated
+ * as soon as a mail is delivered or deleted rather than by watching the directories.
+ *
+ * The listeners are called synchronously, in the thread of the publisher, and must
+ * not block. A failing listener does not prevent the others from being notified.
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public class EventBus {
+
+    /**
+     * This interface is implemented by the objects notified of the mail events.
+     */
+    public interface Listener {
+
+        /**
+         * Called when a mail has been delivered.
+         * @param event The event
+         */
+        default void delivered(MailDelivered event) {
+        }
+
+        /**
+         * Called when a mail has been deleted.
+         * @param event The event
+         */
+        default void deleted(MailDeleted event) {
+        }
+
+        /**
+         * Called when a mail offered with its content has been requested.
+         * @param event The event
+         */
+        default void expected(MailExpected event) {
+        }
+    }
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Adds a listener.
+     *
+     * @param listener The listener. Must not be null.
+     */
+    public void subscribe(Listener listener) {
+        Util.checkNotNull("EventBus -> listener", listener);
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener.
+     *
+     * @param listener The listener
+     */
+    public void unsubscribe(Listener listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Notifies all the listeners of an event.
+     *
+     * @param event The event. Must not be null.
+     */
+    public void publish(MailEvent event) {
+        Util.checkNotNull("EventBus -> event", event);
+        for (Listener listener : this.listeners) {
+            try {
+                if (event instanceof MailDelivered) {
+                    listener.delivered((MailDelivered) event);
+                } else if (event instanceof MailDeleted) {
+                    listener.deleted((MailDeleted) event);
+                } else if (event instanceof MailExpected) {
+                    listener.expected((MailExpected) event);
+                }
+            } catch (RuntimeException re) {
+                System.err.println("[Gossiper]: error while notifying " + event + "\n\t cause -> " + re);
+            }
+        }
+    }
+}
@@ -0,0 +1,347 @@
+package fr.univubs.inf2165.gossiper;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/**
+ * This class is a concurrent set of file names. File names are stored once, as
+ * UTF-8 byte arrays, in an open addressing hash table (linear probing), which is
+ * far more compact than a set of strings or paths. Lookups can be done directly
+ * on bytes, for instance on a file name read from a received packet.
+ *
+ * Lookups are lock free in the common case (optimistic read), updates are serialized.
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public class FilenameSet {
+
+    /**
+     * The initial capacity of the table (power of 2)
+     */
+    private static final int INITIAL_CAPACITY = 64;
+    /**
+     * The table is grown when it is more than 3/4 full
+     */
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private final StampedLock lock = new StampedLock();
+    private Table table = new Table(INITIAL_CAPACITY);
+    private int size = 0;
+
+    /**
+     * Adds a file name to the set.
+     *
+     * @param filename The file name
+     * @return true if the file name was not in the set.
+     */
+    public boolean add(String filename) {
+        byte[] key = filename.getBytes(StandardCharsets.UTF_8);
+        long stamp = this.lock.writeLock();
+        try {
+            return insert(key, hash(key, 0, key.length));
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes a file name from the set.
+     *
+     * @param filename The file name
+     * @return true if the file name was in the set.
+     */
+    public boolean remove(String filename) {
+        byte[] key = filename.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(key, 0, key.length);
+        long stamp = this.lock.writeLock();
+        try {
+            int slot = find(this.table, key, 0, key.length, hash);
+            if (slot < 0) {
+                return false;
+            }
+            delete(slot);
+            this.size--;
+            return true;
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Return true if the set contains the given file name.
+     *
+     * @param filename The file name
+     * @return true if the set contains the given file name.
+     */
+    public boolean contains(String filename) {
+        byte[] key = filename.getBytes(StandardCharsets.UTF_8);
+        return contains(key, 0, key.length);
+    }
+
+    /**
+     * Return true if the set contains the file name given as UTF-8 bytes.
+     *
+     * @param data   The array containing the file name
+     * @param offset The offset of the file name in the array
+     * @param length The length of the file name
+     * @return true if the set contains the file name.
+     */
+    public boolean contains(byte[] data, int offset, int length) {
+        int hash = hash(data, offset, length);
+        long stamp = this.lock.tryOptimisticRead();
+        boolean found = find(this.table, data, offset, length, hash) >= 0;
+        if ( ! this.lock.validate(stamp)) { // the table has been updated meanwhile
+            stamp = this.lock.readLock();
+            try {
+                found = find(this.table, data, offset, length, hash) >= 0;
+            } finally {
+                this.lock.unlockRead(stamp);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Return true if the set contains the file name given as UTF-8 bytes in a buffer,
+     * for instance a received packet. Neither the buffer position nor its limit are used.
+     *
+     * @param buffer The buffer containing the file name
+     * @param index  The index of the file name in the buffer
+     * @param length The length of the file name
+     * @return true if the set contains the file name.
+     */
+    public boolean contains(ByteBuffer buffer, int index, int length) {
+        if (buffer.hasArray()) {
+            return contains(buffer.array(), buffer.arrayOffset() + index, length);
+        }
+        int hash = hash(buffer, index, length);
+        long stamp = this.lock.tryOptimisticRead();
+        boolean found = find(this.table, buffer, index, length, hash);
+        if ( ! this.lock.validate(stamp)) { // the table has been updated meanwhile
+            stamp = this.lock.readLock();
+            try {
+                found = find(this.table, buffer, index, length, hash);
+            } finally {
+                this.lock.unlockRead(stamp);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Performs the given action on each file name of the set, given as UTF-8 bytes.
+     * The arrays must not be modified.
+     *
+     * @param action The action
+     */
+    public void forEach(Consumer<byte[]> action) {
+        long stamp = this.lock.readLock();
+        try {
+            for (byte[] key : this.table.keys) {
+                if (key != null) {
+                    action.accept(key);
+                }
+            }
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Removes all the file names of the set.
+     */
+    public void clear() {
+        long stamp = this.lock.writeLock();
+        try {
+            this.table = new Table(INITIAL_CAPACITY);
+            this.size = 0;
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Return the number of file names in the set.
+     * @return the number of file names in the set.
+     */
+    public int size() {
+        long stamp = this.lock.readLock();
+        try {
+            return this.size;
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Inserts a key, the write lock must be held.
+     */
+    private boolean insert(byte[] key, int hash) {
+        if (find(this.table, key, 0, key.length, hash) >= 0) {
+            return false;
+        }
+        if (this.size + 1 > this.table.keys.length * LOAD_FACTOR) {
+            resize();
+        }
+        put(this.table, key, hash);
+        this.size++;
+        return true;
+    }
+
+    /**
+     * Doubles the capacity of the table, the write lock must be held.
+     */
+    private void resize() {
+        Table old = this.table;
+        Table table = new Table(old.keys.length * 2);
+        for (int i = 0; i < old.keys.length; i++) {
+            if (old.keys[i] != null) {
+                put(table, old.keys[i], old.hashes[i]);
+            }
+        }
+        this.table = table;
+    }
+
+    /**
+     * Removes the key of the given slot and shifts back the following keys of
+     * the probe sequence, so that no tombstone is needed. The write lock must be held.
+     */
+    private void delete(int slot) {
+        Table table = this.table;
+        int mask = table.keys.length - 1;
+        int hole = slot;
+        int i = slot;
+        while (true) {
+            i = (i + 1) & mask;
+            if (table.keys[i] == null) {
+                break;
+            }
+            int home = table.hashes[i] & mask;
+            // the key at i can fill the hole if its home slot is not in ]hole, i]
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                table.keys[hole] = table.keys[i];
+                table.hashes[hole] = table.hashes[i];
+                hole = i;
+            }
+        }
+        table.keys[hole] = null;
+        table.hashes[hole] = 0;
+    }
+
+    /**
+     * Puts a key in the first free slot of its probe sequence.
+     */
+    private static void put(Table table, byte[] key, int hash) {
+        int mask = table.keys.length - 1;
+        int i = hash & mask;
+        while (table.keys[i] != null) {
+            i = (i + 1) & mask;
+        }
+        table.keys[i] = key;
+        table.hashes[i] = hash;
+    }
+
+    /**
+     * Return the slot of the given key, -1 if the key is not in the table.
+     */
+    private static int find(Table table, byte[] data, int offset, int length, int hash) {
+        byte[][] keys = table.keys;
+        int[] hashes = table.hashes;
+        int mask = keys.length - 1;
+        int i = hash & mask;
+        for (int probes = 0; probes < keys.length; probes++) {
+            byte[] key = keys[i];
+            if (key == null) {
+                return -1;
+            }
+            if (hashes[i] == hash && key.length == length
+                    && Arrays.equals(key, 0, length, data, offset, offset + length)) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Return true if the key given in a buffer is in the table.
+     */
+    private static boolean find(Table table, ByteBuffer buffer, int index, int length, int hash) {
+        byte[][] keys = table.keys;
+        int[] hashes = table.hashes;
+        int mask = keys.length - 1;
+        int i = hash & mask;
+        for (int probes = 0; probes < keys.length; probes++) {
+            byte[] key = keys[i];
+            if (key == null) {
+                return false;
+            }
+            if (hashes[i] == hash && key.length == length && equals(key, buffer, index)) {
+                return true;
+            }
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Return true if the given key is equal to the bytes of the buffer from the given index.
+     */
+    private static boolean equals(byte[] key, ByteBuffer buffer, int index) {
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] != buffer.get(index + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return the hash of the given bytes (FNV-1a, with a final mix).
+     */
+    static int hash(byte[] data, int offset, int length) {
+        int h = 0x811c9dc5;
+        for (int i = offset; i < offset + length; i++) {
+            h ^= data[i] & 0xff;
+            h *= 0x01000193;
+        }
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h;
+    }
+
+    /**
+     * Return the hash of the given bytes of a buffer, equal to the hash of the same bytes in an array.
+     */
+    static int hash(ByteBuffer buffer, int index, int length) {
+        int h = 0x811c9dc5;
+        for (int i = index; i < index + length; i++) {
+            h ^= buffer.get(i) & 0xff;
+            h *= 0x01000193;
+        }
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h;
+    }
+
+    /**
+     * The keys and their hash. Both arrays are replaced together on resize, so
+     * that an optimistic reader always sees arrays of the same length.
+     */
+    private static class Table {
+
+        private final byte[][] keys;
+        private final int[] hashes;
+
+        private Table(int capacity) {
+            this.keys = new byte[capacity][];
+            this.hashes = new int[capacity];
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package fr.univubs.inf2165.gossiper;
+
+import java.net.SocketAddress;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class keeps the gossip state of the offered files, so that a file is not
+ * offered forever on every round. For each file of each hosted user, it records
+ * when the file was first seen, how many hops it has travelled, and for each peer
+ * whether the peer is known to hold it and when it may be offered to it again. The
+ * users hosted by a peer are tracked apart when they are known. A file is first seen
+ * when the ledger is first asked about it.
+ *
+ * A file is no longer offered:
+ * <ul>
+ *     <li>to a peer known to hold it (it answered an offer with a delete);</li>
+ *     <li>to any peer once it is known to be held by enough peers (replicated), if enabled;</li>
+ *     <li>once its time to live has elapsed, if enabled, or its hop count reached the limit.</li>
+ * </ul>
+ * Otherwise the offers of a file to a peer are spaced out exponentially, so that the
+ * volume of offers shrinks as the file ages instead of staying flat.
+ *
+ * The replication and the time to live are disabled by default: as long as the mails
+ * are not relayed, a peer holding a file is not necessarily one of its recipients,
+ * and a file that stops being offered may never reach them.
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public class GossipLedger {
+
+    /**
+     * The default time to live of a file (ms), 0 for no limit
+     */
+    public static final long DEFAULT_TIME_TO_LIVE = 0;
+    /**
+     * The default number of peers holding a file after which it is no longer offered, 0 for no limit
+     */
+    public static final int DEFAULT_REPLICATION = 0;
+    /**
+     * The default maximum number of hops of a file
+     */
+    public static final int DEFAULT_MAX_HOPS = 8;
+    /**
+     * The default delay between the first two offers of a file to a peer (ms)
+     */
+    public static final long DEFAULT_MIN_BACKOFF = TimeUnit.SECONDS.toMillis(5);
+    /**
+     * The default maximum delay between two offers of a file to a peer (ms)
+     */
+    public static final long DEFAULT_MAX_BACKOFF = TimeUnit.MINUTES.toMillis(30);
+
+    /**
+     * The entries of the files, by user name and file name
+     */
+    private final ConcurrentMap<String, ConcurrentMap<String, Entry>> users = new ConcurrentHashMap<>();
+
+    private volatile long timeToLive = DEFAULT_TIME_TO_LIVE;
+    private volatile int replication = DEFAULT_REPLICATION;
+    private volatile int maxHops = DEFAULT_MAX_HOPS;
+    private volatile long minBackoff = DEFAULT_MIN_BACKOFF;
+    private volatile long maxBackoff = DEFAULT_MAX_BACKOFF;
+
+    /**
+     * Return true if a file should be offered to the given peer now.
+     *
+     * @param username The user offering the file
+     * @param filename The file name
+     * @param peer     The gossiping address of the peer
+     * @param now      The current time (ms since the epoch)
+     * @return true if the file should be offered to the peer.
+     */
+    public boolean shouldOffer(String username, String filename, SocketAddress peer, long now) {
+        return shouldOffer(username, filename, peer, null, now);
+    }
+
+    /**
+     * Return true if a file should be offered to the given user of a peer now.
+     *
+     * @param username The user offering the file
+     * @param filename The file name
+     * @param peer     The gossiping address of the peer
+     * @param peerUser The user of the peer, null for the user the peer was started with
+     * @param now      The current time (ms since the epoch)
+     * @return true if the file should be offered to the user of the peer.
+     */
+    public boolean shouldOffer(String username, String filename, SocketAddress peer, String peerUser, long now) {
+        Entry entry = entry(username, filename, now);
+        long timeToLive = this.timeToLive;
+        int replication = this.replication;
+        if ((timeToLive > 0 && now - entry.firstSeen > timeToLive) || entry.hops >= this.maxHops
+                || (replication > 0 && entry.deliveredCount() >= replication)) {
+            return false;
+        }
+        PeerState state = entry.peers.get(key(peer, peerUser));
+        return state == null || ( ! state.delivered && now >= state.nextOffer);
+    }
+
+    /**
+     * Records that a file has been offered to a peer: the next offer is delayed
+     * twice as long as the previous one.
+     *
+     * @param username The user offering the file
+     * @param filename The file name
+     * @param peer     The gossiping address of the peer
+     * @param now      The current time (ms since the epoch)
+     */
+    public void offered(String username, String filename, SocketAddress peer, long now) {
+        offered(username, filename, peer, null, now);
+    }
+
+    /**
+     * Records that a file has been offered to a user of a peer.
+     *
+     * @param username The user offering the file
+     * @param filename The file name
+     * @param peer     The gossiping address of the peer
+     * @param peerUser The user of the peer, null for the user the peer was started with
+     * @param now      The current time (ms since the epoch)
+     */
+    public void offered(String username, String filename, SocketAddress peer, String peerUser, long now) {
+        PeerState state = entry(username, filename, now).peers.computeIfAbsent(key(peer, peerUser), p -> new PeerState());
+        synchronized (state) {
+            long backoff = this.minBackoff << Math.min(state.offers, 30);
+            state.nextOffer = now + Math.min(backoff, this.maxBackoff);
+            state.offers++;
+        }
+    }
+
+    /**
+     * Records that a peer holds a file.
+     *
+     * @param username The user offering the file
+     * @param filename The file name
+     * @param peer     The gossiping address of the peer
+     */
+    public void delivered(String username, String filename, SocketAddress peer) {
+        delivered(username, filename, peer, null);
+    }
+
+    /**
+     * Records that a user of a peer holds a file.
+     *
+     * @param username The user offering the file
+     * @param filename The file name
+     * @param peer     The gossiping address of the peer
+     * @param peerUser The user of the peer, null for the user the peer was started with
+     */
+    public void delivered(String username, String filename, SocketAddress peer, String peerUser) {
+        ConcurrentMap<String, Entry> entries = this.users.get(username);
+        Entry entry = entries == null ? null : entries.get(filename);
+        if (entry != null) { // only the offered files are tracked
+            entry.peers.computeIfAbsent(key(peer, peerUser), p -> new PeerState()).delivered = true;
+        }
+    }
+
+    /**
+     * Records the first time a file has been seen and its hop count, if it is not tracked yet.
+     * A file which is not recorded is first seen when the ledger is first asked about it.
+     *
+     * @param username  The user offering the file
+     * @param filename  The file name
+     * @param firstSeen The time the file was first seen (ms since the epoch)
+     * @param hops      The number of hops the file has travelled, 0 for a local file
+     */
+    public void seen(String username, String filename, long firstSeen, int hops) {
+        this.users.computeIfAbsent(username, u -> new ConcurrentHashMap<>())
+                .putIfAbsent(filename, new Entry(firstSeen, hops));
+    }
+
+    /**
+     * Return true if a file is tracked.
+     *
+     * @param username The user offering the file
+     * @param filename The file name
+     * @return true if the file is tracked.
+     */
+    public boolean contains(String username, String filename) {
+        ConcurrentMap<String, Entry> entries = this.users.get(username);
+        return entries != null && entries.containsKey(filename);
+    }
+
+    /**
+     * Forgets the files of a user which are no longer offered.
+     *
+     * @param username  The user
+     * @param filenames The names of the offered files
+     */
+    public void retain(String username, Collection<String> filenames) {
+        ConcurrentMap<String, Entry> entries = this.users.get(username);
+        if (entries != null && entries.size() > filenames.size()) {
+            entries.keySet().retainAll(filenames);
+        }
+    }
+
+    /**
+     * Return the number of peers known to hold a file.
+     *
+     * @param username The user offering the file
+     * @param filename The file name
+     * @return the number of peers known to hold the file, 0 if it is not tracked.
+     */
+    public int getDeliveredCount(String username, String filename) {
+        ConcurrentMap<String, Entry> entries = this.users.get(username);
+        Entry entry = entries == null ? null : entries.get(filename);
+        return entry == null ? 0 : entry.deliveredCount();
+    }
+
+    /**
+     * Return the key of a user of a peer: its address alone for the user it was started with.
+     */
+    private static Object key(SocketAddress peer, String peerUser) {
+        return peerUser == null ? peer : new PeerUser(peer, peerUser);
+    }
+
+    private Entry entry(String username, String filename, long now) {
+        return this.users.computeIfAbsent(username, u -> new ConcurrentHashMap<>())
+                .computeIfAbsent(filename, f -> new Entry(now, 0));
+    }
+
+    public long getTimeToLive() {
+        return this.timeToLive;
+    }
+
+    /**
+     * Sets the time after which a file is no longer offered.
+     *
+     * @param timeToLive The time to live (ms), positive, or 0 for no limit
+     */
+    public void setTimeToLive(long timeToLive) {
+        if (timeToLive < 0) {
+            throw new IllegalArgumentException("The time to live must not be negative -> " + timeToLive);
+        }
+        this.timeToLive = timeToLive;
+    }
+
+    public int getReplication() {
+        return this.replication;
+    }
+
+    /**
+     * Sets the number of peers holding a file after which it is no longer offered. Every
+     * peer holding the file is counted, whether it hosts one of its recipients or not.
+     *
+     * @param replication The number of peers, positive, or 0 for no limit
+     */
+    public void setReplication(int replication) {
+        if (replication < 0) {
+            throw new IllegalArgumentException("The replication must not be negative -> " + replication);
+        }
+        this.replication = replication;
+    }
+
+    public int getMaxHops() {
+        return this.maxHops;
+    }
+
+    /**
+     * Sets the number of hops after which a file is no longer offered.
+     *
+     * @param maxHops The maximum number of hops, positive
+     */
+    public void setMaxHops(int maxHops) {
+        if (maxHops <= 0) {
+            throw new IllegalArgumentException("The maximum number of hops must be positive -> " + maxHops);
+        }
+        this.maxHops = maxHops;
+    }
+
+    /**
+     * Sets the delays between the offers of a file to a peer.
+     *
+     * @param minBackoff The delay between the first two offers (ms), positive
+     * @param maxBackoff The maximum delay (ms), at least minBackoff
+     */
+    public void setBackoff(long minBackoff, long maxBackoff) {
+        if (minBackoff <= 0 || maxBackoff < minBackoff) {
+            throw new IllegalArgumentException("Invalid backoff -> " + minBackoff + " " + maxBackoff);
+        }
+        this.minBackoff = minBackoff;
+        this.maxBackoff = maxBackoff;
+    }
+
+    /**
+     * The gossip state of a file.
+     */
+    private static class Entry {
+        private final long firstSeen;
+        private final int hops;
+        private final ConcurrentMap<Object, PeerState> peers = new ConcurrentHashMap<>();
+
+        private Entry(long firstSeen, int hops) {
+            this.firstSeen = firstSeen;
+            this.hops = hops;
+        }
+
+        private int deliveredCount() {
+            int count = 0;
+            for (PeerState state : this.peers.values()) {
+                if (state.delivered) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * A user hosted by a peer.
+     */
+    private static class PeerUser {
+        private final SocketAddress peer;
+        private final String user;
+
+        private PeerUser(SocketAddress peer, String user) {
+            this.peer = peer;
+            this.user = user;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if ( ! (o instanceof PeerUser)) {
+                return false;
+            }
+            PeerUser other = (PeerUser) o;
+            return this.peer.equals(other.peer) && this.user.equals(other.user);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * this.peer.hashCode() + this.user.hashCode();
+        }
+    }
+
+    /**
+     * The gossip state of a file for a peer.
+     */
+    private static class PeerState {
+        private volatile boolean delivered = false;
+        private int offers = 0;
+        private volatile long nextOffer = 0;
+    }
+}
@@ -1,11 +1,29 @@
 package fr.univubs.inf2165.gossiper;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.net.*;
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import fr.univubs.inf2165.filesender.FileSender;
 import fr.univubs.inf2165.gossiper.format.*;
@@ -19,9 +37,10 @@ import fr.univubs.inf2165.gossiper.format.*;
 public class Gossiper extends Thread {
 
     /**
-     * The size of the buffer
+     * The size of the buffer. It is the maximum UDP payload, so that any
+     * datagram can be received.
      */
-    private static final int BUFFER_SIZE = 1 + 4 + 2 + 1 + 256 + 1 + 256;
+    private static final int BUFFER_SIZE = 65507;
 
     private String username;
     private Path baseDirectory;
@@ -29,7 +48,161 @@ public class Gossiper extends Thread {
     private short tcpPort;
     private String ip;
 
-    public static final boolean DEBUG = true;
+    /**
+     * If true, sessions ask peers for a digest and only offer the missing files.
+     * Disabled unless the "gossiper.antiEntropy" system property is true.
+     */
+    private boolean antiEntropy = Boolean.getBoolean("gossiper.antiEntropy");
+    /**
+     * The tenants and users of the peers which answered the last sync with a digest
+     */
+    private final Set<String> digestPeers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The monitor of the peers liveness, null if all the peers are deemed alive
+     */
+    private volatile PeerMonitor peerMonitor;
+
+    /**
+     * The executor of the requested file transfers, null if the files are sent by the receiving thread
+     */
+    private volatile Executor transferExecutor;
+
+    /**
+     * The outbound queue of the sent datagrams, null if the datagrams are sent directly.
+     * It is created when the server starts, on the channel bound to the UDP port.
+     */
+    private volatile Outbox outbox;
+    /**
+     * The sending rate to a peer of the outbox (bytes per second), 0 to send the datagrams directly
+     */
+    private long sendRate = Outbox.DEFAULT_RATE;
+    /**
+     * true if the outbox sends the datagrams reliably
+     */
+    private boolean reliable = Boolean.getBoolean("gossiper.reliable");
+    /**
+     * The channel bound to the UDP port on which the outbox sends, null until the server starts
+     */
+    private DatagramChannel outboxChannel;
+
+    /**
+     * The watcher of the user directory
+     */
+    private DirectoryWatcher watcher;
+    /**
+     * The store of the contents of the offered and received files, shared by the tenants
+     */
+    private BlobStore blobStore;
+    /**
+     * The user given at construction, which handles the messages of the users not hosted here
+     */
+    private Tenant tenant;
+    /**
+     * The peers of the users, used to offer a mail only toward its recipients, null to flood
+     */
+    private volatile RoutingTable routingTable;
+    /**
+     * The gossip state of the offered files, which bounds how long and how often a file is offered
+     */
+    private final GossipLedger ledger = new GossipLedger();
+    /**
+     * The files being received, so that a file offered by several peers is requested from one at a time
+     */
+    private final TransferTable transfers = new TransferTable();
+    /**
+     * The minimum delay between two collections of the unreferenced blobs (ms)
+     */
+    public static final long COLLECT_INTERVAL = TimeUnit.MINUTES.toMillis(5);
+    /**
+     * The time of the next collection of the unreferenced blobs (ms since the epoch)
+     */
+    private final AtomicLong nextCollect = new AtomicLong(System.currentTimeMillis() + COLLECT_INTERVAL);
+    /**
+     * The bus of the mail events shared with the components of the node, null if none
+     */
+    private volatile EventBus eventBus;
+    /**
+     * The listener of the mail events, which updates the receive indexes
+     */
+    private final EventBus.Listener mailListener = new EventBus.Listener() {
+        @Override
+        public void delivered(MailDelivered event) {
+            Tenant tenant = tenants.get(event.getUsername());
+            if (tenant != null && event.getPath().getParent().equals(tenant.getRecvDirectory())) {
+                tenant.getRecvIndex().received(event.getFilename());
+                transfers.completed(tenant.getUsername(), event.getFilename());
+                if (tenants.size() > 1) {
+                    share(event);
+                }
+            }
+        }
+
+        @Override
+        public void deleted(MailDeleted event) {
+            Tenant tenant = tenants.get(event.getUsername());
+            if (tenant != null && event.getPath().getParent().equals(tenant.getRecvDirectory())) {
+                tenant.getRecvIndex().removed(event.getFilename());
+                collectBlobs();
+            }
+        }
+    };
+    /**
+     * The hosted users, by user name
+     */
+    private final ConcurrentMap<String, Tenant> tenants = new ConcurrentHashMap<>();
+
+    /**
+     * If true, each received and sent packet is printed. Can be disabled with -Dgossiper.debug=false
+     */
+    public static final boolean DEBUG = Boolean.parseBoolean(System.getProperty("gossiper.debug", "true"));
+
+    /**
+     * The number of channels bound to the UDP port, each one read by its own thread
+     */
+    private int receiveChannels = 1;
+    /**
+     * The receivers of the bound channels
+     */
+    private final List<Receiver> receivers = new CopyOnWriteArrayList<>();
+    /**
+     * The socket addresses of the peers, shared by the receivers
+     */
+    private final SocketAddressCache addressCache = new SocketAddressCache();
+    /**
+     * The decoders and handlers of the message types registered by other modules
+     */
+    private final MessageRegistry registry = new MessageRegistry();
+    /**
+     * The receive windows of the reliable messages, by peer (the least recently used are evicted)
+     */
+    private final Map<SocketAddress, AckWindow> ackWindows = Collections.synchronizedMap(
+            new LinkedHashMap<SocketAddress, AckWindow>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<SocketAddress, AckWindow> eldest) {
+                    return size() > MAX_ACK_WINDOWS;
+                }
+            });
+    /**
+     * The maximum number of receive windows
+     */
+    private static final int MAX_ACK_WINDOWS = 1024;
+
+    /**
+     * The own address, resolved once
+     */
+    private InetAddress inetAddress;
+
+    /**
+     * The name of the tenant header of the messages addressed to the user the peer was started with
+     */
+    private static final byte[] NO_ADDRESSEE = new byte[0];
+
+    /**
+     * The buffer in which the messages are written before being sent, one per sending thread
+     */
+    private static final ThreadLocal<ByteBuffer> SEND_BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(AbstractBatchMessageFormat.MAX_PACKET_SIZE));
 
     /**
      * Constructs a new Gossiper object whit the user name, the base directory, the UDP port
@@ -44,6 +217,7 @@ public class Gossiper extends Thread {
         this(username, baseDirectory, tcpPort, udpPort);
         Util.checkNotNull("Gossiper -> ip", ip);
         this.ip = ip;
+        createTemplates();
     }
 
     /**
@@ -60,98 +234,349 @@ public class Gossiper extends Thread {
         Util.checkNotNull("Gossiper -> baseDirectory", baseDirectory);
         this.username = username;
         this.baseDirectory = baseDirectory;
-        createDirectoryIfNotExists(this.getSendDirectory());
-        createDirectoryIfNotExists(this.getRecvDirectory());
         this.udpPort = udpPort;
         this.tcpPort = tcpPort;
         this.ip = Inet4Address.getLocalHost().getHostName();
+        this.watcher = new DirectoryWatcher();
+        this.blobStore = new BlobStore(baseDirectory.resolve(BlobStore.DIRECTORY_NAME));
+        this.tenant = new Tenant(username, baseDirectory, this.watcher, this.blobStore);
+        watchTransfers(this.tenant);
+        this.tenant.open();
+        this.tenants.put(username, this.tenant);
+        createTemplates();
+    }
+
+    /**
+     * Completes the transfers of a tenant when the directory watcher sees their file in the
+     * receive directory, where the file receiver moves a file once it is fully received.
+     * Without the bus of the mail events, as in a standalone gossiper, a transfer would
+     * otherwise only end at its timeout; the timeout remains if the watcher overflows.
+     */
+    private void watchTransfers(Tenant tenant) {
+        tenant.getRecvIndex().setListener(filename -> this.transfers.completed(tenant.getUsername(), filename));
     }
 
     /**
-     * Create a directory if it doesn't exist.
+     * Resolves the own IP address and encodes the prefixes of the messages sent by the tenants.
+     * This is the only name resolution done for the sent messages.
      *
-     * @param dir Tjhe directory to create
-     * @throws IOException
+     * @throws UnknownHostException if the IP address can't be resolved.
+     */
+    private void createTemplates() throws UnknownHostException {
+        this.inetAddress = Inet4Address.getByName(this.ip);
+        int selfIp = MessageView.toInt(this.inetAddress.getAddress());
+        for (Tenant tenant : this.tenants.values()) {
+            tenant.createTemplates(selfIp, this.udpPort, this.tcpPort);
+        }
+    }
+
+    /**
+     * Hosts a new user on this gossiper: the user shares the channels, the watcher,
+     * the outbound queue and the thread pools of the gossiper, and the messages addressed
+     * to it (see {@link TenantView}) are handled with its own directories. The messages
+     * which are not addressed are handled by the user given at construction.
+     *
+     * @param username The user name. Must not be null.
+     * @return the new tenant.
+     * @throws IOException if the directories of the user can't be created or read.
+     * @throws IllegalArgumentException if the user is already hosted.
+     */
+    public Tenant addTenant(String username) throws IOException {
+        Util.checkNotNull("Gossiper -> username", username);
+        if (this.tenants.containsKey(username)) {
+            throw new IllegalArgumentException("The user is already hosted -> " + username);
+        }
+        Tenant tenant = new Tenant(username, this.baseDirectory, this.watcher, this.blobStore);
+        tenant.createTemplates(MessageView.toInt(this.inetAddress.getAddress()), this.udpPort, this.tcpPort);
+        watchTransfers(tenant);
+        tenant.open();
+        if (this.tenants.putIfAbsent(username, tenant) != null) {
+            throw new IllegalArgumentException("The user is already hosted -> " + username);
+        }
+        System.out.println("[Gossiper]: tenant added -> " + username);
+        return tenant;
+    }
+
+    /**
+     * Return the tenant of the given user name.
+     *
+     * @param username The user name
+     * @return the tenant, null if the user is not hosted.
+     */
+    public Tenant getTenant(String username) {
+        return this.tenants.get(username);
+    }
+
+    /**
+     * Return the user given at construction.
+     * @return the user given at construction.
+     */
+    public Tenant getDefaultTenant() {
+        return this.tenant;
+    }
+
+    /**
+     * Return the hosted users.
+     * @return the hosted users.
+     */
+    public Collection<Tenant> getTenants() {
+        return Collections.unmodifiableCollection(this.tenants.values());
+    }
+
+    /**
+     * Return the hosted user of the given name, the default tenant if the user is not hosted.
+     */
+    private Tenant route(String username) {
+        Tenant tenant = this.tenants.get(username);
+        return tenant != null ? tenant : this.tenant;
+    }
+
+    /**
+     * Writes the tenant header of a message sent by a tenant, when the message has to be
+     * addressed: the messages of the tenants other than the default one are addressed, so
+     * that the peer addresses its answers to them, and so are the messages to a given user
+     * of the peer.
+     *
+     * @param dst       The buffer in which the header is written
+     * @param tenant    The tenant which sends the message
+     * @param addressee The name bytes of the user of the peer, null for the user the peer was started with
      */
-    private void createDirectoryIfNotExists(Path dir) throws IOException {
-        if (!Files.isDirectory(dir)) {
-            Files.createDirectories(dir);
-            System.out.println("[Gossiper]: I've just created the directory -> " + dir.toString());
+    private void writeAddress(ByteBuffer dst, Tenant tenant, byte[] addressee) {
+        if (addressee != null) {
+            TenantView.encodeHeader(dst, addressee);
+        } else if (tenant != this.tenant) {
+            TenantView.encodeHeader(dst, NO_ADDRESSEE);
         }
     }
 
+    /**
+     * Return true if the messages of a tenant to the given user of a peer are addressed.
+     */
+    private boolean isAddressed(Tenant tenant, byte[] addressee) {
+        return addressee != null || tenant != this.tenant;
+    }
+
+    /**
+     * Return the name bytes of the given user of a peer, null for the user the peer was started with.
+     */
+    private static byte[] toAddressee(String peerUser) {
+        return peerUser != null ? MessageTemplate.toInfoBytes(peerUser) : null;
+    }
+
     @Override
     public void run() {
+        try {
+            openReceivers();
+        } catch (IOException ioe) {
+            System.err.println("[Gossiper]: error while starting the server on the ip -> " + this.ip + "\n\t cause -> " + ioe.getMessage());
+            return;
+        }
+        for (int i = 1; i < this.receivers.size(); i++) {
+            this.receivers.get(i).start();
+        }
+        this.receivers.get(0).run(); // the first channel is read by the server thread
+        closeReceivers();
+    }
+
+    /**
+     * Starts the server without its threads: the channels bound to the UDP port are
+     * registered in non blocking mode with the given selector, which is run by the
+     * caller. The attachment of their keys is a @link{SelectHandler} that reads and
+     * handles the received datagrams. The requested files should be sent by a
+     * transfer executor (@link{#setTransferExecutor}) so as not to block the selector.
+     *
+     * @param selector The selector. Must not be null.
+     * @throws IOException if the channels can't be bound or registered.
+     */
+    public void register(Selector selector) throws IOException {
+        Util.checkNotNull("Gossiper -> selector", selector);
+        openReceivers();
+        try {
+            for (Receiver receiver : this.receivers) {
+                receiver.channel.configureBlocking(false);
+                receiver.channel.register(selector, SelectionKey.OP_READ, receiver);
+            }
+        } catch (IOException ioe) {
+            closeReceivers();
+            throw ioe;
+        }
+    }
+
+    /**
+     * Starts the watcher and binds the receive channels.
+     *
+     * @throws IOException if a channel can't be bound.
+     */
+    private void openReceivers() throws IOException {
+        if ( ! this.watcher.isAlive()) {
+            this.watcher.start();
+        }
+        InetSocketAddress socketAddress = new InetSocketAddress(this.inetAddress, udpPort);
+        int channels = this.receiveChannels;
+        if (channels > 1 && !isReusePortSupported()) {
+            System.err.println("[Gossiper]: SO_REUSEPORT is not supported, a single channel is used");
+            channels = 1;
+        }
+        try {
+            for (int i = 0; i < channels; i++) {
+                this.receivers.add(new Receiver(openChannel(socketAddress, channels > 1), i));
+            }
+        } catch (IOException ioe) {
+            closeReceivers();
+            throw ioe;
+        }
+        synchronized (this) {
+            this.outboxChannel = this.receivers.get(0).channel;
+            openOutbox();
+        }
+
+        System.out.println("[Gossiper]: I'm running on " + socketAddress.getHostString() + ":" + udpPort);
+        System.out.println("[Gossiper]: baseDirectory -> " + this.baseDirectory);
+        System.out.println("[Gossiper]: username      -> " + this.username);
+        System.out.println("[Gossiper]: channels      -> " + channels);
+    }
+
+    /**
+     * Creates and starts the outbox on the bound channel, if the datagrams are paced
+     * and the server is started. The lock must be held.
+     */
+    private void openOutbox() {
+        if (this.outbox != null || this.sendRate == 0 || this.outboxChannel == null) {
+            return;
+        }
+        Outbox outbox = new Outbox(this.outboxChannel, this.sendRate, Outbox.DEFAULT_BURST, Outbox.DEFAULT_FLUSH_DELAY);
+        outbox.setReliable(this.reliable);
+        outbox.start();
+        this.outbox = outbox;
+    }
+
+    /**
+     * Opens a channel bound to the given address. With SO_REUSEPORT, several channels
+     * can be bound to the same address and the kernel spreads the datagrams among them.
+     *
+     * @param socketAddress The address to which the channel is bound
+     * @param reusePort     true to enable SO_REUSEPORT
+     * @return the bound channel.
+     * @throws IOException if the channel can't be bound.
+     */
+    private static DatagramChannel openChannel(InetSocketAddress socketAddress, boolean reusePort) throws IOException {
+        DatagramChannel channel = DatagramChannel.open();
+        try {
+            if (reusePort) {
+                channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            }
+            channel.bind(socketAddress);
+        } catch (IOException ioe) {
+            channel.close();
+            throw ioe;
+        }
+        return channel;
+    }
+
+    /**
+     * Return true if the datagram channels of the platform support SO_REUSEPORT.
+     */
+    private static boolean isReusePortSupported() {
         try (DatagramChannel channel = DatagramChannel.open()) {
-            InetAddress inetAddress = Inet4Address.getByName(this.ip);
-            InetSocketAddress socketAddress = new InetSocketAddress(inetAddress, udpPort);
-            channel.socket().bind(socketAddress);
-
-            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
-
-            System.out.println("[Gossiper]: I'm running on " + socketAddress.getHostString() + ":" + udpPort);
-            System.out.println("[Gossiper]: baseDirectory -> " + this.baseDirectory);
-            System.out.println("[Gossiper]: username      -> " + this.username);
-            while (true) {
-                System.out.println("\n[Gossiper]: waiting for data ... ");
-                channel.receive(buffer);
-                buffer.flip();
-
-                byte code = buffer.get();
-                //System.out.println(" code = " + code);
-                MessageType messageType = MessageType.getMessageType(code);
-                buffer.position(0);
-                if (messageType != null) {
-                    switch (messageType) {
-
-                        case OFFER: {
-                            OfferMessageFormat message = new OfferMessageFormat(buffer);
-                            System.out.println("[Gossiper]: " + message);
-                            Path requestedFile = this.getRecvDirectory().resolve(message.getFileInfo().getFilename());
-                            if (!Files.exists(requestedFile)) { // file is not in the user' receive directory
-                                sendRequest(channel, message.getFileInfo().getFilename(), message.getAddress().getInetSocketAddress());
-                            } else {
-                                sendDelete(channel, message.getFileInfo().getFilename(), message.getAddress().getInetSocketAddress());
-                            }
-                            break;
-                        }
-                        case REQUEST: {
-                            RequestMessageFormat message = new RequestMessageFormat(buffer);
-                            System.out.println("[Gossiper]: " + message);
-                            Path requestedFile = this.getSendDirectory().resolve(message.getFileInfo().getFilename());
-                            if (Files.exists(requestedFile)) { // if file exists
-                                String host = message.getAddress().getIp().getHostAddress();
-                                try (FileSender fileSender = new FileSender(host, message.getAddress().getPort())) {
-                                    fileSender.sendFile(requestedFile);
-                                }
-                            } else {
-                                System.out.println("[Gossiper]: file not found -> " + message.getFileInfo().getFilename());
-                            }
-                            break;
-                        }
-
-                        case DELETE: {
-                            DeleteMessageFormat message = new DeleteMessageFormat(buffer);
-                            System.out.println("[Gossiper]: " + message);
-                            Path requestedFile = this.getRecvDirectory().resolve(message.getFileInfo().getFilename());
-                            System.out.print("[Gossiper]:");
-                            System.out.print(Files.deleteIfExists(requestedFile) ? " file deleted" : " file not found");
-                            System.out.println(" -> " + message.getFileInfo().getFilename());
-                            break;
-                        }
-                    } // switch
-                } else {
-                    System.err.println("[Gossiper]: unknown message type received");
+            return channel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+        } catch (IOException ioe) {
+            return false;
+        }
+    }
+
+    /**
+     * Closes the channels of the receivers, which stops them.
+     */
+    private void closeReceivers() {
+        for (Receiver receiver : this.receivers) {
+            receiver.close();
+        }
+        this.receivers.clear();
+    }
+
+    /**
+     * Sends a file of the send directory of a tenant to the given host.
+     */
+    private void sendFile(Tenant tenant, String username, String host, short port, String filename) throws IOException {
+        PeerMonitor monitor = this.peerMonitor;
+        if (monitor != null && monitor.isSuspected(username)) {
+            System.out.println("[Gossiper]: suspected peer, file not sent -> " + username + "@" + host);
+            return;
+        }
+        if (tenant.getSendIndex().contains(filename)) { // if file exists
+            Path requestedFile = tenant.getSendDirectory().resolve(filename);
+            try (FileSender fileSender = new FileSender(host, port)) {
+                fileSender.sendFile(requestedFile);
+                if ( ! fileSender.awaitAck()) {
+                    System.out.println("[Gossiper]: file not acknowledged -> " + filename + " to " + username + "@" + host);
                 }
-                buffer.clear();
             }
-        } catch (IOException ioe) {
-            System.err.println("[Gossiper]: error while starting the server on the ip -> " + this.ip + "\n\t cause -> " + ioe.getMessage());
+        } else {
+            System.out.println("[Gossiper]: file not found -> " + filename);
         }
     }
 
     /**
-     * Sends a request packet to the given target.
+     * Return true if the given peer is suspected to be down by the peer monitor.
+     */
+    private boolean isSuspected(InetSocketAddress target) {
+        PeerMonitor monitor = this.peerMonitor;
+        if (monitor != null && monitor.isSuspected(target)) {
+            if (DEBUG) System.out.println("[Gossiper]: suspected peer skipped -> " + target);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Sends a file requested by a peer, on the transfer executor if any. The file
+     * is not sent if all the peers of the user are suspected to be down.
+     */
+    private void transfer(Tenant tenant, String username, String host, short port, String filename) throws IOException {
+        Executor executor = this.transferExecutor;
+        if (executor == null) {
+            sendFile(tenant, username, host, port, filename);
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                sendFile(tenant, username, host, port, filename);
+            } catch (IOException ioe) {
+                System.err.println("[Gossiper]: error while sending the file -> " + filename + "\n\t cause -> " + ioe.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Deletes the blobs no longer referenced by any file, on the transfer executor if any.
+     * Called on the deletions and on the received messages, but done at most once per
+     * {@link #COLLECT_INTERVAL}, since the whole store is scanned.
+     */
+    private void collectBlobs() {
+        BlobStore store = this.blobStore;
+        long now = System.currentTimeMillis();
+        long next = this.nextCollect.get();
+        if (store == null || now < next || ! this.nextCollect.compareAndSet(next, now + COLLECT_INTERVAL)) {
+            return;
+        }
+        Runnable collect = () -> {
+            try {
+                int count = store.collect();
+                if (DEBUG && count > 0) System.out.println("[Gossiper]: unreferenced blobs deleted -> " + count);
+            } catch (IOException ioe) {
+                System.err.println("[Gossiper]: error while collecting the blobs\n\t cause -> " + ioe.getMessage());
+            }
+        };
+        Executor executor = this.transferExecutor;
+        if (executor != null) {
+            executor.execute(collect);
+        } else {
+            collect.run();
+        }
+    }
+
+    /**
+     * As the default tenant, sends a request packet to the given target.
      *
      * @param channel  The channel
      * @param filename The name of the requested file
@@ -159,15 +584,39 @@ public class Gossiper extends Thread {
      * @throws IOException
      */
     public void sendRequest(DatagramChannel channel, String filename, InetSocketAddress target) throws IOException {
-        Address address = new Address(this.ip, this.tcpPort);
-        UserInfo userInfo = new UserInfo(this.username);
-        FileInfo fileInfo = new FileInfo(filename);
-        RequestMessageFormat messageFormat = new RequestMessageFormat(address, userInfo, fileInfo);
-        this.send(channel, messageFormat, target);
+        sendRequest(this.tenant, channel, filename, target);
+    }
+
+    /**
+     * Sends a request packet to the given target.
+     *
+     * @param tenant   The tenant which sends the packet
+     * @param channel  The channel
+     * @param filename The name of the requested file
+     * @param target   The target to which the packet is sent.
+     * @throws IOException
+     */
+    public void sendRequest(Tenant tenant, DatagramChannel channel, String filename, InetSocketAddress target) throws IOException {
+        sendRequest(tenant, channel, filename, target, null);
+    }
+
+    /**
+     * Sends a request packet to the given user of the target.
+     *
+     * @param tenant   The tenant which sends the packet
+     * @param channel  The channel
+     * @param filename The name of the requested file
+     * @param target   The target to which the packet is sent.
+     * @param peerUser The user of the target to which the packet is addressed, null for the user it was started with
+     * @throws IOException
+     */
+    public void sendRequest(Tenant tenant, DatagramChannel channel, String filename, InetSocketAddress target,
+                            String peerUser) throws IOException {
+        this.send(channel, tenant, toAddressee(peerUser), tenant.requestTemplate, tenant.requestBatchTemplate, filename, null, target);
     }
 
     /**
-     * Sends an offer packet to the given target.
+     * As the default tenant, sends an offer packet to the given target.
      *
      * @param channel  The channel
      * @param filename The name of the offering file
@@ -175,65 +624,499 @@ public class Gossiper extends Thread {
      * @throws IOException
      */
     public void sendOffer(DatagramChannel channel, String filename, InetSocketAddress target) throws IOException {
-        Address address = new Address(this.ip, this.udpPort);
-        UserInfo userInfo = new UserInfo(this.username);
-        FileInfo fileInfo = new FileInfo(filename);
-        OfferMessageFormat messageFormat = new OfferMessageFormat(address, userInfo, fileInfo);
-        this.send(channel, messageFormat, target);
+        sendOffer(this.tenant, channel, filename, target);
     }
 
     /**
-     * Sends a delete packet to the given target.
+     * Sends an offer packet to the given target. Without the outbox, the offer carries
+     * the content (size and hash) of the file; the outbox coalesces the file names only.
      *
+     * @param tenant   The tenant which sends the packet
      * @param channel  The channel
-     * @param filename The name of the requested file to be deleted
+     * @param filename The name of the offering file
      * @param target   The target to which the packet is sent.
      * @throws IOException
      */
-    public void sendDelete(DatagramChannel channel, String filename, InetSocketAddress target) throws IOException {
-        UserInfo userInfo = new UserInfo(this.username);
-        FileInfo fileInfo = new FileInfo(filename);
-        DeleteMessageFormat messageFormat = new DeleteMessageFormat(userInfo, fileInfo);
-        this.send(channel, messageFormat, target);
+    public void sendOffer(Tenant tenant, DatagramChannel channel, String filename, InetSocketAddress target) throws IOException {
+        sendOffer(tenant, channel, filename, target, null);
     }
 
     /**
-     * Sends the packet from the given message format to the given target.
+     * Sends an offer packet to the given user of the target.
      *
-     * @param channel
-     * @param messageFormat
-     * @param target
+     * @param tenant   The tenant which sends the packet
+     * @param channel  The channel
+     * @param filename The name of the offering file
+     * @param target   The target to which the packet is sent.
+     * @param peerUser The user of the target to which the packet is addressed, null for the user it was started with
      * @throws IOException
      */
-    private void send(DatagramChannel channel, AbstractMessageFormat messageFormat, InetSocketAddress target) throws IOException {
-        channel.send(messageFormat.getPacket(), target);
-        if (DEBUG) System.out.println("[Gossiper]: packet sent -> " + messageFormat);
+    public void sendOffer(Tenant tenant, DatagramChannel channel, String filename, InetSocketAddress target,
+                          String peerUser) throws IOException {
+        FileInfo content = tenant.getSendIndex().getFileInfo(filename);
+        boolean sent = this.send(channel, tenant, toAddressee(peerUser), tenant.offerTemplate, tenant.offerBatchTemplate,
+                filename, content, target);
+        if (sent) {
+            this.ledger.offered(tenant.getUsername(), filename, target, peerUser, System.currentTimeMillis());
+        }
     }
 
     /**
-     * Stops the server
+     * As the default tenant, sends a delete packet to the given target.
+     *
+     * @param channel  The channel
+     * @param filename The name of the requested file to be deleted
+     * @param target   The target to which the packet is sent.
+     * @throws IOException
      */
-    public void stopServer() {
-        this.interrupt();
-        System.out.println("[Gossiper]: server stopped");
+    public void sendDelete(DatagramChannel channel, String filename, InetSocketAddress target) throws IOException {
+        sendDelete(this.tenant, channel, filename, target);
     }
 
-    public Path getUserDirectory() {
-        return this.baseDirectory.resolve(this.username);
+    /**
+     * Sends a delete packet to the given target.
+     *
+     * @param tenant   The tenant which sends the packet
+     * @param channel  The channel
+     * @param filename The name of the requested file to be deleted
+     * @param target   The target to which the packet is sent.
+     * @throws IOException
+     */
+    public void sendDelete(Tenant tenant, DatagramChannel channel, String filename, InetSocketAddress target) throws IOException {
+        sendDelete(tenant, channel, filename, target, null);
     }
 
-    public Path getSendDirectory() {
-        return getUserDirectory().resolve("send");
+    /**
+     * Sends a delete packet to the given user of the target.
+     *
+     * @param tenant   The tenant which sends the packet
+     * @param channel  The channel
+     * @param filename The name of the requested file to be deleted
+     * @param target   The target to which the packet is sent.
+     * @param peerUser The user of the target to which the packet is addressed, null for the user it was started with
+     * @throws IOException
+     */
+    public void sendDelete(Tenant tenant, DatagramChannel channel, String filename, InetSocketAddress target,
+                           String peerUser) throws IOException {
+        ByteBuffer buffer = sendBuffer();
+        writeAddress(buffer, tenant, toAddressee(peerUser));
+        tenant.deleteTemplate.write(buffer, MessageTemplate.toInfoBytes(filename));
+        this.send(channel, buffer, target);
     }
 
-    public Path getRecvDirectory() {
-        return getUserDirectory().resolve("recv");
+    /**
+     * As the default tenant, sends batch offer packets to the given target. The file names are packed
+     * in as few packets as possible, each packet fitting in a single datagram.
+     *
+     * @param channel   The channel
+     * @param filenames The names of the offering files
+     * @param target    The target to which the packets are sent.
+     * @throws IOException
+     */
+    public void sendOfferBatch(DatagramChannel channel, Collection<String> filenames, InetSocketAddress target) throws IOException {
+        sendOfferBatch(this.tenant, channel, filenames, target);
     }
 
     /**
-     * Return the IP address
+     * Sends batch offer packets to the given target. The file names are packed
+     * in as few packets as possible, each packet fitting in a single datagram.
+     * The packets end with the contents (size and hash) of their files. The offers
+     * of the files are recorded in the ledger once their packet is sent.
      *
-     * @return the IP address
+     * @param tenant    The tenant which sends the packet
+     * @param channel   The channel
+     * @param filenames The names of the offering files
+     * @param target    The target to which the packets are sent.
+     * @throws IOException
+     */
+    public void sendOfferBatch(Tenant tenant, DatagramChannel channel, Collection<String> filenames, InetSocketAddress target) throws IOException {
+        sendOfferBatch(tenant, channel, filenames, target, null);
+    }
+
+    /**
+     * Sends batch offer packets to the given user of the target.
+     *
+     * @param tenant    The tenant which sends the packet
+     * @param channel   The channel
+     * @param filenames The names of the offering files
+     * @param target    The target to which the packets are sent.
+     * @param peerUser  The user of the target to which the packets are addressed, null for the user it was started with
+     * @throws IOException
+     */
+    public void sendOfferBatch(Tenant tenant, DatagramChannel channel, Collection<String> filenames, InetSocketAddress target,
+                               String peerUser) throws IOException {
+        List<String> sent = new ArrayList<>(filenames.size());
+        this.sendBatches(channel, tenant, toAddressee(peerUser), tenant.offerBatchTemplate, filenames, tenant.getSendIndex(), target, sent);
+        long now = System.currentTimeMillis();
+        for (String filename : sent) {
+            this.ledger.offered(tenant.getUsername(), filename, target, peerUser, now);
+        }
+    }
+
+    /**
+     * As the default tenant, sends batch request packets to the given target. The file names are packed
+     * in as few packets as possible, each packet fitting in a single datagram.
+     *
+     * @param channel   The channel
+     * @param filenames The names of the requested files
+     * @param target    The target to which the packets are sent.
+     * @throws IOException
+     */
+    public void sendRequestBatch(DatagramChannel channel, Collection<String> filenames, InetSocketAddress target) throws IOException {
+        sendRequestBatch(this.tenant, channel, filenames, target);
+    }
+
+    /**
+     * Sends batch request packets to the given target. The file names are packed
+     * in as few packets as possible, each packet fitting in a single datagram.
+     *
+     * @param tenant    The tenant which sends the packet
+     * @param channel   The channel
+     * @param filenames The names of the requested files
+     * @param target    The target to which the packets are sent.
+     * @throws IOException
+     */
+    public void sendRequestBatch(Tenant tenant, DatagramChannel channel, Collection<String> filenames, InetSocketAddress target) throws IOException {
+        this.sendBatches(channel, tenant, null, tenant.requestBatchTemplate, filenames, null, target, null);
+    }
+
+    /**
+     * As the default tenant, sends a sync packet to the given target. The target answers with a digest
+     * of the files it has already received.
+     *
+     * @param channel The channel
+     * @param target  The target to which the packet is sent.
+     * @throws IOException
+     */
+    public void sendSync(DatagramChannel channel, InetSocketAddress target) throws IOException {
+        sendSync(this.tenant, channel, target);
+    }
+
+    /**
+     * Sends a sync packet to the given target. The target answers with a digest
+     * of the files it has already received.
+     *
+     * @param tenant  The tenant which sends the packet
+     * @param channel The channel
+     * @param target  The target to which the packet is sent.
+     * @throws IOException
+     */
+    public void sendSync(Tenant tenant, DatagramChannel channel, InetSocketAddress target) throws IOException {
+        sendSync(tenant, channel, target, null);
+    }
+
+    /**
+     * Sends a sync packet to the given user of the target.
+     *
+     * @param tenant   The tenant which sends the packet
+     * @param channel  The channel
+     * @param target   The target to which the packet is sent.
+     * @param peerUser The user of the target to which the packet is addressed, null for the user it was started with
+     * @throws IOException
+     */
+    public void sendSync(Tenant tenant, DatagramChannel channel, InetSocketAddress target, String peerUser) throws IOException {
+        // until its digest comes back, the peer is deemed not to answer
+        this.digestPeers.remove(digestKey(tenant, target, peerUser));
+        ByteBuffer buffer = sendBuffer();
+        writeAddress(buffer, tenant, toAddressee(peerUser));
+        tenant.syncTemplate.writePrefix(buffer);
+        this.send(channel, buffer, target);
+    }
+
+    /**
+     * As the default tenant, sends a digest packet of the receive directory to the given target. A new
+     * seed is used for each digest so that false positives differ from one round to another.
+     *
+     * @param channel The channel
+     * @param target  The target to which the packet is sent.
+     * @throws IOException
+     */
+    public void sendDigest(DatagramChannel channel, InetSocketAddress target) throws IOException {
+        sendDigest(this.tenant, channel, target);
+    }
+
+    /**
+     * Sends a digest packet of the receive directory to the given target. A new
+     * seed is used for each digest so that false positives differ from one round to another.
+     *
+     * @param tenant  The tenant which sends the packet
+     * @param channel The channel
+     * @param target  The target to which the packet is sent.
+     * @throws IOException
+     */
+    public void sendDigest(Tenant tenant, DatagramChannel channel, InetSocketAddress target) throws IOException {
+        sendDigest(tenant, channel, target, null);
+    }
+
+    /**
+     * Sends the digest packets of the receive directory to the given user of the target. The received
+     * files are split into as many segments as needed for each filter to fit in a packet, one packet
+     * per segment.
+     *
+     * @param tenant   The tenant which sends the packets
+     * @param channel  The channel
+     * @param target   The target to which the packets are sent.
+     * @param peerUser The user of the target to which the packets are addressed, null for the user it was started with
+     * @throws IOException
+     */
+    public void sendDigest(Tenant tenant, DatagramChannel channel, InetSocketAddress target, String peerUser) throws IOException {
+        byte[] addressee = toAddressee(peerUser);
+        FilenameSet filenames = tenant.getRecvIndex().getFilenames();
+        int header = isAddressed(tenant, addressee) ? 2 + (addressee != null ? addressee.length : 0) : 0;
+        int maxSize = getPacketSize() - header - tenant.digestTemplate.getPrefixSize() - DigestMessageFormat.FILTER_HEADER_SIZE;
+        // the segments are not even: each one is filled to three quarters of the capacity of a filter
+        int capacity = Math.max(1, BloomFilter.getCapacity(maxSize) * 3 / 4);
+        int segments = Math.max(1, (filenames.size() + capacity - 1) / capacity);
+        if (segments > DigestMessageFormat.MAX_SEGMENTS) {
+            // an overfull filter would hide missing files: the peer falls back to plain offers
+            System.out.println("[Gossiper]: too many received files for a digest -> " + filenames.size());
+            return;
+        }
+        int[] counts = new int[segments];
+        filenames.forEach(filename -> counts[BloomFilter.segment(filename, 0, filename.length, segments)]++);
+        int seed = ThreadLocalRandom.current().nextInt();
+        BloomFilter[] filters = new BloomFilter[segments];
+        for (int i = 0; i < segments; i++) {
+            filters[i] = new BloomFilter(counts[i], maxSize, seed);
+        }
+        filenames.forEach(filename -> filters[BloomFilter.segment(filename, 0, filename.length, segments)]
+                .add(filename, 0, filename.length));
+        for (int i = 0; i < segments; i++) {
+            byte[] bits = filters[i].getBits();
+            ByteBuffer buffer = sendBuffer();
+            writeAddress(buffer, tenant, addressee);
+            tenant.digestTemplate.writePrefix(buffer);
+            buffer.put((byte) i);
+            buffer.put((byte) segments);
+            buffer.putInt(seed);
+            buffer.put((byte) filters[i].getHashCount());
+            buffer.putShort((short) bits.length);
+            buffer.put(bits);
+            this.send(channel, buffer, target);
+        }
+    }
+
+    /**
+     * Sends batch packets of the given template to the given target. The file names are
+     * appended to the template prefix until the packet would exceed
+     * {@link #getPacketSize()} bytes. With a send index, the
+     * contents of the files are appended after the file names.
+     *
+     * @param channel   The channel
+     * @param tenant    The tenant which sends the packets
+     * @param addressee The name bytes of the user of the target, null for the user it was started with
+     * @param template  The template of the batch packets
+     * @param filenames The file names
+     * @param contents  The index giving the contents of the files, null to send the file names only
+     * @param target    The target to which the packets are sent.
+     * @param sent      The list to which the names of the files actually sent are added, null if not needed
+     * @throws IOException
+     */
+    private void sendBatches(DatagramChannel channel, Tenant tenant, byte[] addressee, MessageTemplate template,
+                             Collection<String> filenames, SendIndex contents, InetSocketAddress target,
+                             List<String> sent) throws IOException {
+        ByteBuffer buffer = sendBuffer();
+        writeAddress(buffer, tenant, addressee);
+        int countIndex = buffer.position() + template.getPrefixSize();
+        int count = 0;
+        int contentSize = contents != null ? FileInfo.CONTENT_SIZE : 0;
+        int packetSize = getPacketSize();
+        List<FileInfo> infos = contents != null ? new ArrayList<>() : null;
+        List<String> batch = sent != null ? new ArrayList<>() : null;
+        for (String filename : filenames) {
+            byte[] filenameBytes = MessageTemplate.toInfoBytes(filename);
+            if (count > 0 && buffer.position() + 1 + filenameBytes.length + (count + 1) * contentSize
+                    > packetSize) {
+                sendBatch(channel, buffer, countIndex, count, infos, target, batch, sent);
+                count = 0;
+            }
+            if (count == 0) {
+                buffer.clear();
+                writeAddress(buffer, tenant, addressee);
+                template.writePrefix(buffer);
+                buffer.putShort((short) 0);
+            }
+            BatchView.putFile(buffer, filenameBytes);
+            if (infos != null) {
+                infos.add(contents.getFileInfo(filename));
+            }
+            if (batch != null) {
+                batch.add(filename);
+            }
+            count++;
+        }
+        if (count > 0) {
+            sendBatch(channel, buffer, countIndex, count, infos, target, batch, sent);
+        }
+    }
+
+    /**
+     * Sends the batch packet written in the given buffer, after appending the contents of its files.
+     * Once sent, the names of its files are moved from the batch to the sent list.
+     */
+    private void sendBatch(DatagramChannel channel, ByteBuffer buffer, int countIndex, int count,
+                           List<FileInfo> infos, InetSocketAddress target, List<String> batch,
+                           List<String> sent) throws IOException {
+        BatchView.setCount(buffer, countIndex, count);
+        if (infos != null) {
+            for (FileInfo info : infos) {
+                if (info != null) {
+                    BatchView.putContent(buffer, info.getFileSize(), info.getHash());
+                } else {
+                    BatchView.putContent(buffer, FileInfo.UNKNOWN_SIZE, null);
+                }
+            }
+            infos.clear();
+        }
+        if (this.send(channel, buffer, target) && batch != null) {
+            sent.addAll(batch);
+        }
+        if (batch != null) {
+            batch.clear();
+        }
+    }
+
+    /**
+     * Return the maximum size of the packed messages: smaller when the outbox sends them
+     * reliably, so that they are not fragmented once wrapped in a reliable message.
+     *
+     * @return the maximum size of the packed messages in bytes.
+     */
+    private int getPacketSize() {
+        Outbox outbox = this.outbox;
+        return outbox != null ? outbox.getPacketSize() : AbstractBatchMessageFormat.MAX_PACKET_SIZE;
+    }
+
+    /**
+     * Return the cleared send buffer of the current thread.
+     *
+     * @return the cleared send buffer of the current thread.
+     */
+    private static ByteBuffer sendBuffer() {
+        ByteBuffer buffer = SEND_BUFFER.get();
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Sends a single file message to the given target. With the outbox, the file name
+     * is coalesced with the other file names sent to the target in a batch message.
+     * The offers end with the content of their file, whether they are coalesced or not.
+     * Nothing is sent to a suspected target.
+     *
+     * @param channel       The channel
+     * @param tenant        The tenant which sends the message
+     * @param addressee     The name bytes of the user of the target, null for the user it was started with
+     * @param template      The template of the single message
+     * @param batchTemplate The template of the batch message
+     * @param filename      The file name
+     * @param content       The content of the offered file, null for a request or an unknown content
+     * @param target        The target to which the packet is sent.
+     * @return true if the message has been sent or queued.
+     * @throws IOException
+     */
+    private boolean send(DatagramChannel channel, Tenant tenant, byte[] addressee, MessageTemplate template,
+                         MessageTemplate batchTemplate, String filename, FileInfo content,
+                         InetSocketAddress target) throws IOException {
+        if (isSuspected(target)) {
+            return false;
+        }
+        byte[] filenameBytes = MessageTemplate.toInfoBytes(filename);
+        Outbox outbox = this.outbox;
+        if (outbox != null && ! isAddressed(tenant, addressee)) { // the addressed messages are not coalesced
+            if (template == tenant.offerTemplate) {
+                return outbox.queue(target, template, batchTemplate, filenameBytes, content);
+            }
+            return outbox.queue(target, template, batchTemplate, filenameBytes);
+        }
+        ByteBuffer buffer = sendBuffer();
+        writeAddress(buffer, tenant, addressee);
+        template.write(buffer, filenameBytes);
+        if (content != null) {
+            RequestOfferView.encodeContent(buffer, content.getFileSize(), content.getHash());
+        }
+        return this.send(channel, buffer, target);
+    }
+
+    /**
+     * Sends the message written in the given buffer to the given target, through
+     * the outbox if any. Nothing is sent to a suspected target.
+     *
+     * @param channel The channel
+     * @param buffer  The buffer containing the message, from index 0 to its position
+     * @param target  The target to which the packet is sent.
+     * @return true if the message has been sent or queued.
+     * @throws IOException
+     */
+    private boolean send(DatagramChannel channel, ByteBuffer buffer, InetSocketAddress target) throws IOException {
+        buffer.flip();
+        if (isSuspected(target)) {
+            return false;
+        }
+        Outbox outbox = this.outbox;
+        if (outbox != null) {
+            return outbox.queue(target, buffer);
+        }
+        if (channel.send(buffer, target) == 0) {
+            return false;
+        }
+        if (DEBUG) System.out.println("[Gossiper]: packet sent -> " + MessageType.getMessageType(buffer.get(0)) + " to " + target);
+        return true;
+    }
+
+    /**
+     * Return the registry of the message types handled besides the gossiping ones.
+     * Other message types can be registered on it before the server is started.
+     * With several receive channels, the decoders and handlers are called by
+     * several threads.
+     *
+     * @return the registry of the received messages.
+     */
+    public MessageRegistry getMessageRegistry() {
+        return this.registry;
+    }
+
+    /**
+     * Stops the server
+     */
+    public void stopServer() {
+        this.interrupt();
+        synchronized (this) {
+            if (this.outbox != null) {
+                this.outbox.close();
+                this.outbox = null;
+            }
+            this.outboxChannel = null;
+        }
+        closeReceivers();
+        this.watcher.close();
+        System.out.println("[Gossiper]: server stopped");
+    }
+
+    public Path getUserDirectory() {
+        return this.tenant.getUserDirectory();
+    }
+
+    public Path getSendDirectory() {
+        return this.tenant.getSendDirectory();
+    }
+
+    public Path getRecvDirectory() {
+        return this.tenant.getRecvDirectory();
+    }
+
+    /**
+     * Return an immutable snapshot of the names of the files to offer.
+     * @return an immutable snapshot of the names of the files to offer.
+     */
+    public Set<String> getSendSnapshot() {
+        return this.tenant.getSendSnapshot();
+    }
+
+    /**
+     * Return the IP address
+     *
+     * @return the IP address
      * @throws UnknownHostException
      */
     public String getIP() throws UnknownHostException {
@@ -256,6 +1139,14 @@ public class Gossiper extends Thread {
         return this.baseDirectory;
     }
 
+    /**
+     * Return the store of the contents of the offered and received files.
+     * @return the store of the contents of the offered and received files.
+     */
+    public BlobStore getBlobStore() {
+        return this.blobStore;
+    }
+
     public short getUdpPort() {
         return udpPort;
     }
@@ -264,4 +1155,864 @@ public class Gossiper extends Thread {
         return tcpPort;
     }
 
+    /**
+     * Return true if sessions exchange digests before offering files.
+     * @return true if sessions exchange digests before offering files.
+     */
+    public boolean isAntiEntropy() {
+        return this.antiEntropy;
+    }
+
+    /**
+     * Enables or disables the digest exchange, disabled by default. When disabled, sessions
+     * offer every file of the send directory, which is understood by older peers. When
+     * enabled, sessions still offer the files plainly to the peers which did not answer
+     * their last sync with a digest.
+     *
+     * @param antiEntropy true to enable the digest exchange.
+     */
+    public void setAntiEntropy(boolean antiEntropy) {
+        this.antiEntropy = antiEntropy;
+    }
+
+    /**
+     * Return true if the given user of a peer answered the last sync of a tenant with a digest.
+     *
+     * @param tenant   The hosted user which sent the sync. Must not be null.
+     * @param peer     The gossiping address of the peer
+     * @param peerUser The user of the peer, null for the user the peer was started with
+     * @return true if the peer answered the last sync with a digest.
+     */
+    public boolean isDigestAnswered(Tenant tenant, InetSocketAddress peer, String peerUser) {
+        return this.digestPeers.contains(digestKey(tenant, peer, peerUser));
+    }
+
+    private static String digestKey(Tenant tenant, InetSocketAddress peer, String peerUser) {
+        return tenant.getUsername() + '/' + peer + '/' + peerUser;
+    }
+
+    /**
+     * Return the sending rate to a peer (bytes per second), 0 if the datagrams are not paced.
+     * @return the sending rate to a peer (bytes per second).
+     */
+    public synchronized long getSendRate() {
+        return this.sendRate;
+    }
+
+    /**
+     * Sets the sending rate to a peer. The sent datagrams
+     * are queued by peer, coalesced and paced at this rate, and sent on the channel
+     * bound to the UDP port once the server is started. With a rate of 0, the
+     * datagrams are sent directly on the channel given by the caller.
+     *
+     * @param sendRate The sending rate to a peer (bytes per second), 0 to disable the outbox
+     * @throws IllegalStateException if the rate is 0 while the datagrams are sent reliably.
+     */
+    public synchronized void setSendRate(long sendRate) {
+        if (sendRate < 0) {
+            throw new IllegalArgumentException("The send rate must not be negative -> " + sendRate);
+        }
+        if (sendRate == 0 && this.reliable) {
+            throw new IllegalStateException("The reliable sending needs the outbox (send rate > 0)");
+        }
+        this.sendRate = sendRate;
+        if (sendRate == 0) {
+            if (this.outbox != null) {
+                this.outbox.close();
+                this.outbox = null;
+            }
+        } else if (this.outbox != null) {
+            this.outbox.setRate(sendRate);
+        } else {
+            openOutbox();
+        }
+    }
+
+    /**
+     * Return the number of datagrams dropped by the outbox because the queue of their
+     * peer was full.
+     * @return the number of dropped datagrams, 0 without outbox.
+     */
+    public long getDroppedCount() {
+        Outbox outbox = this.outbox;
+        return outbox != null ? outbox.getDropped() : 0;
+    }
+
+    /**
+     * Return the number of datagrams sent reliably by the outbox and not acknowledged yet.
+     * @return the number of datagrams in flight, 0 without outbox.
+     */
+    public int getInFlightCount() {
+        Outbox outbox = this.outbox;
+        return outbox != null ? outbox.getInFlightCount() : 0;
+    }
+
+    /**
+     * Return true if the datagrams are sent reliably.
+     * @return true if the datagrams are sent reliably.
+     */
+    public synchronized boolean isReliable() {
+        return this.reliable;
+    }
+
+    /**
+     * Enables or disables the reliable sending of the datagrams: they are numbered,
+     * acknowledged by the peer and retransmitted if lost. The peers must understand
+     * the reliable and ack messages. Can be enabled with -Dgossiper.reliable=true
+     *
+     * @param reliable true to send the datagrams reliably.
+     * @throws IllegalStateException if the outbox is disabled (send rate of 0).
+     */
+    public synchronized void setReliable(boolean reliable) {
+        if (reliable && this.sendRate == 0) {
+            throw new IllegalStateException("The reliable sending needs the outbox (send rate > 0)");
+        }
+        this.reliable = reliable;
+        if (this.outbox != null) {
+            this.outbox.setReliable(reliable);
+        }
+    }
+
+    /**
+     * Return the monitor of the peers liveness.
+     * @return the monitor of the peers liveness, null if all the peers are deemed alive.
+     */
+    public PeerMonitor getPeerMonitor() {
+        return this.peerMonitor;
+    }
+
+    /**
+     * Sets the monitor of the peers liveness. No datagram is sent to a suspected peer,
+     * and no file is sent to a user whose peers are all suspected.
+     *
+     * @param peerMonitor The monitor, null to deem all the peers alive
+     */
+    public void setPeerMonitor(PeerMonitor peerMonitor) {
+        this.peerMonitor = peerMonitor;
+    }
+
+    /**
+     * Return the table of the peers of the users.
+     * @return the table of the peers of the users, null if the files are offered to every peer.
+     */
+    public RoutingTable getRoutingTable() {
+        return this.routingTable;
+    }
+
+    /**
+     * Sets the table of the peers of the users: a mail is then only offered to the
+     * peers hosting its recipients, and to every peer if one of its recipients is unknown.
+     *
+     * @param routingTable The table, null to offer every file to every peer
+     */
+    public void setRoutingTable(RoutingTable routingTable) {
+        this.routingTable = routingTable;
+    }
+
+    /**
+     * Return true if a file of a tenant should be offered to the given peer: the peer
+     * hosts one of the recipients of the file, or the file is flooded because it has no
+     * recipient or one of its recipients is unknown or unreachable.
+     *
+     * @param tenant   The hosted user which offers the file. Must not be null.
+     * @param filename The file name
+     * @param peer     The gossiping address of the peer
+     * @return true if the file should be offered to the peer.
+     */
+    public boolean isRouted(Tenant tenant, String filename, InetSocketAddress peer) {
+        RoutingTable table = this.routingTable;
+        if (table == null) {
+            return true;
+        }
+        Set<String> recipients = tenant.getSendIndex().getRecipients(filename);
+        if (recipients.isEmpty()) {
+            return true;
+        }
+        for (String recipient : recipients) {
+            Collection<InetSocketAddress> routes = table.getRoutes(recipient);
+            if (routes.isEmpty() || routes.contains(peer)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return the files of a tenant to offer to the given peer.
+     *
+     * @param tenant The hosted user which offers the files. Must not be null.
+     * @param peer   The gossiping address of the peer
+     * @return the names of the files to offer.
+     */
+    public Collection<String> getOfferedFiles(Tenant tenant, InetSocketAddress peer) {
+        return getOfferedFiles(tenant, peer, null);
+    }
+
+    /**
+     * Return the files of a tenant to offer to the given user of a peer. Their offers
+     * are recorded in the ledger when they are sent, see {@link #sendOfferBatch}.
+     *
+     * @param tenant   The hosted user which offers the files. Must not be null.
+     * @param peer     The gossiping address of the peer
+     * @param peerUser The user of the peer, null for the user the peer was started with
+     * @return the names of the files to offer.
+     */
+    public Collection<String> getOfferedFiles(Tenant tenant, InetSocketAddress peer, String peerUser) {
+        Set<String> filenames = tenant.getSendSnapshot();
+        this.ledger.retain(tenant.getUsername(), filenames);
+        List<String> offered = new ArrayList<>(filenames.size());
+        for (String filename : filenames) {
+            if (isRouted(tenant, filename, peer) && isDue(tenant, filename, peer, peerUser)) {
+                offered.add(filename);
+            }
+        }
+        return offered;
+    }
+
+    /**
+     * Return true if a file of a tenant is due to be offered to the given peer according
+     * to the ledger. The offer is not recorded, as the send may still be suppressed.
+     *
+     * @param tenant   The hosted user which offers the file. Must not be null.
+     * @param filename The file name
+     * @param peer     The gossiping address of the peer
+     * @param peerUser The user of the peer, null for the user the peer was started with
+     * @return true if the file should be offered to the peer now.
+     */
+    private boolean isDue(Tenant tenant, String filename, InetSocketAddress peer, String peerUser) {
+        // the ledger records the first time it sees a file
+        return this.ledger.shouldOffer(tenant.getUsername(), filename, peer, peerUser, System.currentTimeMillis());
+    }
+
+    /**
+     * Return the gossip state of the offered files, whose limits can be tuned.
+     * @return the gossip state of the offered files.
+     */
+    public GossipLedger getGossipLedger() {
+        return this.ledger;
+    }
+
+    /**
+     * Return the table of the files being received.
+     * @return the table of the files being received.
+     */
+    public TransferTable getTransferTable() {
+        return this.transfers;
+    }
+
+    /**
+     * Delivers an offered file whose content is already stored on this node under another
+     * name, by linking the stored content in the receive directory of the tenant. The hash
+     * is claimed by the peer: only a content the tenant has already held is linked, so that
+     * a peer knowing the hash of a mail of another tenant can't have it delivered to this one.
+     *
+     * @param tenant   The hosted user receiving the file
+     * @param filename The file name
+     * @param hash     The SHA-256 hash of the file, in hexadecimal
+     * @return true if the file has been delivered without being transferred.
+     */
+    private boolean deliverStored(Tenant tenant, String filename, String hash) {
+        BlobStore store = this.blobStore;
+        if (store == null || filename.startsWith(".")) {
+            return false;
+        }
+        Path target;
+        try {
+            target = tenant.getRecvDirectory().resolve(filename);
+            if ( ! target.getParent().equals(tenant.getRecvDirectory())) {
+                return false; // the name must stay in the receive directory
+            }
+            if ( ! tenant.references(hash) || ! store.contains(hash)) {
+                return false;
+            }
+            store.link(hash, target);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("[Gossiper]: error while linking the stored file -> " + filename + "\n\t cause -> " + e.getMessage());
+            return false;
+        }
+        tenant.getRecvIndex().received(filename, hash);
+        this.transfers.completed(tenant.getUsername(), filename);
+        EventBus bus = this.eventBus;
+        if (bus != null) {
+            // a received mail is named after its Message-ID
+            bus.publish(new MailDelivered(tenant.getUsername(), target, filename));
+        }
+        if (DEBUG) System.out.println("[Gossiper]: file delivered from the store -> " + filename);
+        return true;
+    }
+
+    /**
+     * Publishes the content of a requested file, so that the file receiver can check it on arrival.
+     */
+    private void expect(Tenant tenant, String filename, long size, String hash) {
+        EventBus bus = this.eventBus;
+        if (bus != null) {
+            bus.publish(new MailExpected(tenant.getUsername(), tenant.getRecvDirectory().resolve(filename), size, hash));
+        }
+    }
+
+    /**
+     * Return the receive directory of a file being transferred to this node: the directory
+     * of a hosted user waiting for the file, the one of the default tenant if none. The
+     * file receiver shared by the tenants commits each received file there.
+     *
+     * @param filename The file name
+     * @return the receive directory of the file.
+     */
+    public Path getRecvDirectory(String filename) {
+        if (this.tenants.size() > 1) {
+            for (String username : this.transfers.getReceivers(filename)) {
+                Tenant tenant = this.tenants.get(username);
+                if (tenant != null) {
+                    return tenant.getRecvDirectory();
+                }
+            }
+        }
+        return this.tenant.getRecvDirectory();
+    }
+
+    /**
+     * Delivers a file received by a tenant to the other hosted users waiting for it,
+     * with a hard link: the file is transferred once for all of them.
+     */
+    private void share(MailDelivered event) {
+        EventBus bus = this.eventBus;
+        String filename = event.getFilename();
+        for (String username : this.transfers.getReceivers(filename)) {
+            Tenant tenant = this.tenants.get(username);
+            if (bus == null || tenant == null || ! this.transfers.isInFlight(username, filename)) {
+                continue; // completed meanwhile
+            }
+            Path target = tenant.getRecvDirectory().resolve(filename);
+            try {
+                if ( ! Files.exists(target)) {
+                    Files.createLink(target, event.getPath());
+                }
+            } catch (IOException | UnsupportedOperationException e) {
+                System.err.println("[Gossiper]: error while sharing the received file -> " + filename + "\n\t cause -> " + e.getMessage());
+                continue; // requested again once its transfer times out
+            }
+            // the tenant is completed by its own event
+            bus.publish(new MailDelivered(username, target, event.getMessageId()));
+        }
+    }
+
+    /**
+     * Return the bus of the mail events.
+     * @return the bus of the mail events, null if none.
+     */
+    public EventBus getEventBus() {
+        return this.eventBus;
+    }
+
+    /**
+     * Sets the bus of the mail events shared with the other components of the node:
+     * the receive indexes are updated from the delivered and deleted mails, and the
+     * files deleted by a gossiped delete are published. Without the bus, the transfers
+     * are completed when the directory watcher sees their file, or at their timeout.
+     *
+     * @param eventBus The bus, null to rely on the directory watcher only
+     */
+    public synchronized void setEventBus(EventBus eventBus) {
+        if (this.eventBus != null) {
+            this.eventBus.unsubscribe(this.mailListener);
+        }
+        this.eventBus = eventBus;
+        if (eventBus != null) {
+            eventBus.subscribe(this.mailListener);
+        }
+    }
+
+    /**
+     * Return the executor of the requested file transfers.
+     * @return the executor of the requested file transfers, null if the files are sent by the receiving thread.
+     */
+    public Executor getTransferExecutor() {
+        return this.transferExecutor;
+    }
+
+    /**
+     * Sets the executor of the requested file transfers. Without executor, the files
+     * are sent by the thread that received the request.
+     *
+     * @param transferExecutor The executor, null to send the files from the receiving thread
+     */
+    public void setTransferExecutor(Executor transferExecutor) {
+        this.transferExecutor = transferExecutor;
+    }
+
+    /**
+     * Return the number of channels bound to the UDP port.
+     * @return the number of channels bound to the UDP port.
+     */
+    public int getReceiveChannels() {
+        return this.receiveChannels;
+    }
+
+    /**
+     * Sets the number of channels bound to the UDP port, before the server is started.
+     * Several channels are bound with SO_REUSEPORT, and each one is read by its own
+     * thread, so that the received datagrams are processed on several cores.
+     *
+     * @param receiveChannels The number of channels, at least 1
+     */
+    public void setReceiveChannels(int receiveChannels) {
+        if (receiveChannels < 1) {
+            throw new IllegalArgumentException("The number of receive channels must be positive -> " + receiveChannels);
+        }
+        this.receiveChannels = receiveChannels;
+    }
+
+    /**
+     * This class reads the messages received on a channel. Each receiver has its own
+     * buffers and views, reused from one packet to another, and answers on its channel.
+     * A receiver either runs its own thread on a blocking channel, or is called by
+     * the thread of a selector on a non blocking one.
+     */
+    class Receiver extends Thread implements Closeable, SelectHandler {
+
+        /**
+         * The maximum number of datagrams read at each selection, so that the other
+         * channels of the selector are not starved
+         */
+        private static final int MAX_READS = 64;
+
+
+        private final DatagramChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private final RequestOfferView requestOfferView = new RequestOfferView();
+        private final BatchView batchView = new BatchView();
+        private final DeleteView deleteView = new DeleteView();
+        private final ByteBuffer replyBuffer = ByteBuffer.allocate(AbstractBatchMessageFormat.MAX_PACKET_SIZE);
+        private final ByteBuffer deleteBuffer = ByteBuffer.allocate(AbstractBatchMessageFormat.MAX_PACKET_SIZE);
+        /**
+         * The decoders and handlers of the gossiping messages
+         */
+        private final MessageRegistry registry = new MessageRegistry();
+        private final ReliableView reliableView = new ReliableView();
+        private final ByteBuffer ackBuffer = ByteBuffer.allocate(AckView.SIZE);
+        private final AckView ackView = new AckView();
+        private final TenantView tenantView = new TenantView();
+        /**
+         * The tenant to which the message being handled is addressed, null if it is not
+         * addressed: it is then handled by the default tenant and answered without address
+         */
+        private Tenant addressed;
+
+        Receiver(DatagramChannel channel, int index) {
+            super("gossiper-receiver-" + index);
+            setDaemon(true);
+            this.channel = channel;
+            this.registry.register(MessageType.OFFER, this.requestOfferView::wrap, (offer, source) -> handleOffer(offer));
+            this.registry.register(MessageType.REQUEST, this.requestOfferView::wrap, (request, source) -> handleRequest(request));
+            this.registry.register(MessageType.OFFER_BATCH, this.batchView::wrap, (offer, source) -> handleOfferBatch(offer));
+            this.registry.register(MessageType.REQUEST_BATCH, this.batchView::wrap, (request, source) -> handleRequestBatch(request));
+            this.registry.register(MessageType.SYNC, SyncMessageFormat::new, (sync, source) -> handleSync(sync));
+            this.registry.register(MessageType.DIGEST, DigestMessageFormat::new, (digest, source) -> handleDigest(digest));
+            this.registry.register(MessageType.DELETE, this.deleteView::wrap, this::handleDelete);
+            this.registry.register(MessageType.DELETE_BATCH, this.batchView::wrap, this::handleDeleteBatch);
+            this.registry.register(MessageType.RELIABLE, this.reliableView::wrap, this::handleReliable);
+            this.registry.register(MessageType.ACK, this.ackView::wrap, this::handleAck);
+            this.registry.register(MessageType.TENANT, this.tenantView::wrap, this::handleTenant);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    if (DEBUG) System.out.println("\n[Gossiper]: waiting for data ... ");
+                    this.buffer.clear();
+                    SocketAddress source = this.channel.receive(this.buffer);
+                    this.buffer.flip();
+                    if ( ! this.buffer.hasRemaining()) {
+                        continue;
+                    }
+
+                    dispatch(this.buffer, source);
+                }
+            } catch (ClosedChannelException cce) {
+                // the server has been stopped
+            } catch (IOException ioe) {
+                System.err.println("[Gossiper]: error while receiving on " + getName() + "\n\t cause -> " + ioe.getMessage());
+            }
+        }
+
+        @Override
+        public void selected(SelectionKey key) throws IOException {
+            for (int i = 0; i < MAX_READS; i++) {
+                this.buffer.clear();
+                SocketAddress source = this.channel.receive(this.buffer);
+                if (source == null) {
+                    return;
+                }
+                this.buffer.flip();
+                if (this.buffer.hasRemaining()) {
+                    dispatch(this.buffer, source);
+                }
+            }
+        }
+
+        /**
+         * Dispatches a received message to its handler.
+         */
+        private void dispatch(ByteBuffer buffer, SocketAddress source) throws IOException {
+            retryTransfers();
+            collectBlobs();
+            try {
+                if ( ! this.registry.dispatch(buffer, source) && ! Gossiper.this.registry.dispatch(buffer, source)) {
+                    System.err.println("[Gossiper]: unknown message type received");
+                }
+            } catch (IllegalArgumentException iae) {
+                System.err.println("[Gossiper]: malformed message received -> " + iae.getMessage());
+            }
+        }
+
+        /**
+         * Requests the files whose transfer has timed out from their next offering peer.
+         */
+        private void retryTransfers() throws IOException {
+            for (TransferTable.Transfer transfer : transfers.expire(System.currentTimeMillis())) {
+                Tenant tenant = route(transfer.getUsername());
+                if (tenant.getRecvIndex().contains(transfer.getFilename())) { // received in the meantime
+                    transfers.completed(transfer.getUsername(), transfer.getFilename());
+                    continue;
+                }
+                if (DEBUG) System.out.println("[Gossiper]: transfer timed out, requesting from -> " + transfer);
+                sendRequest(tenant, this.channel, transfer.getFilename(), transfer.getPeer());
+            }
+        }
+
+        /**
+         * Handles a reliable message: the message is acknowledged, then handled
+         * unless it has already been received.
+         */
+        private void handleReliable(ReliableView reliable, SocketAddress source) throws IOException {
+            int sequence = reliable.getSequence();
+            int epoch = reliable.getEpoch();
+            // the window starts at the first sequence number of the peer, not at the first one received
+            AckWindow window = ackWindows.computeIfAbsent(source, address -> new AckWindow(epoch));
+            boolean received;
+            this.ackBuffer.clear();
+            synchronized (window) {
+                received = window.receive(epoch, sequence);
+                AckView.encode(this.ackBuffer, window.getEpoch(), window.getBase(), window.getBitmap());
+            }
+            this.ackBuffer.flip();
+            this.channel.send(this.ackBuffer, source);
+            if (received) {
+                ByteBuffer message = reliable.getMessage();
+                if (message.get(message.position()) != MessageType.RELIABLE.getCode()) {
+                    dispatch(message, source);
+                }
+            } else if (DEBUG) {
+                System.out.println("[Gossiper]: duplicate message dropped -> " + reliable);
+            }
+        }
+
+        /**
+         * Handles a tenant message: the carried message is handled by the addressed
+         * tenant, the default one if the user is not hosted, and answered with messages
+         * addressed to its sender.
+         */
+        private void handleTenant(TenantView message, SocketAddress source) throws IOException {
+            ByteBuffer carried = message.getMessage();
+            if (this.addressed != null || carried.get(carried.position()) == MessageType.TENANT.getCode()) {
+                throw new IllegalArgumentException("nested tenant message");
+            }
+            Tenant tenant = tenants.size() == 1 || message.getTargetLength() == 0
+                    ? Gossiper.this.tenant : route(message.getTarget());
+            this.addressed = tenant;
+            try {
+                dispatch(carried, source);
+            } finally {
+                this.addressed = null;
+            }
+        }
+
+        /**
+         * Return the tenant which handles the message being handled.
+         */
+        private Tenant tenant() {
+            return this.addressed != null ? this.addressed : Gossiper.this.tenant;
+        }
+
+        /**
+         * Writes the tenant header of an answer, addressed to the sender of the message
+         * being handled if this message was addressed.
+         *
+         * @param dst            The buffer in which the header is written
+         * @param src            The buffer of the handled message
+         * @param usernameOffset The index of the user name of the sender in the source buffer
+         * @param usernameLength The length of the user name
+         */
+        private void writeAddress(ByteBuffer dst, ByteBuffer src, int usernameOffset, int usernameLength) {
+            if (this.addressed != null) {
+                TenantView.encodeHeader(dst, src, usernameOffset, usernameLength);
+            }
+        }
+
+        /**
+         * Return the user of the peer to which the answers are addressed: the sender of the
+         * message being handled if this message was addressed, null otherwise.
+         */
+        private String replyTo(String sender) {
+            return this.addressed != null ? sender : null;
+        }
+
+        /**
+         * Handles an ack of the datagrams sent reliably by the outbox.
+         */
+        private void handleAck(AckView ack, SocketAddress source) {
+            Outbox outbox = Gossiper.this.outbox;
+            if (outbox != null) {
+                outbox.acknowledge((InetSocketAddress) source, ack.getEpoch(), ack.getBase(), ack.getBitmap());
+            }
+        }
+
+        /**
+         * Sends a reply to the given target. When the outbox sends reliably, the reply
+         * goes through the outbox as well, so that it is retransmitted if lost.
+         */
+        private void reply(ByteBuffer reply, InetSocketAddress target) throws IOException {
+            Outbox outbox = Gossiper.this.outbox;
+            if (outbox != null && outbox.isReliable()) {
+                outbox.queue(target, reply);
+            } else {
+                this.channel.send(reply, target);
+            }
+        }
+
+        /**
+         * Handles an offer: the file is requested if it has not been received yet and is
+         * not being received from another peer, otherwise the peer is asked to delete it.
+         * A file whose content is already stored under another name is not requested.
+         * The answer is built without any allocation, unless the file has to be requested.
+         */
+        private void handleOffer(RequestOfferView offer) throws IOException {
+            ByteBuffer buffer = offer.getBuffer();
+            if (DEBUG) System.out.println("[Gossiper]: " + offer);
+            InetSocketAddress target = addressCache.get(offer.getIp(), offer.getPort());
+            Tenant tenant = tenant();
+            int offset = offer.getFilenameOffset();
+            int length = offer.getFilenameLength();
+            this.replyBuffer.clear();
+            boolean received = tenant.getRecvIndex().getFilenames().contains(buffer, offset, length);
+            if ( ! received) { // file is not in the user' receive directory
+                String filename = offer.getFilename();
+                String hash = offer.getHash();
+                if (hash != null && deliverStored(tenant, filename, hash)) {
+                    received = true;
+                } else if ( ! transfers.begin(tenant.getUsername(), filename, target, System.currentTimeMillis())) {
+                    if (DEBUG) System.out.println("[Gossiper]: transfer in flight -> " + filename);
+                    return;
+                } else if (hash != null) {
+                    expect(tenant, filename, offer.getFileSize(), hash);
+                }
+            }
+            writeAddress(this.replyBuffer, buffer, offer.getUsernameOffset(), offer.getUsernameLength());
+            if ( ! received) {
+                tenant.requestTemplate.write(this.replyBuffer, buffer, offset, length);
+            } else {
+                tenant.deleteTemplate.write(this.replyBuffer, buffer, offset, length);
+            }
+            this.replyBuffer.flip();
+            reply(this.replyBuffer, target);
+            if (DEBUG) System.out.println("[Gossiper]: packet sent -> " + (received ? MessageType.DELETE : MessageType.REQUEST));
+        }
+
+        /**
+         * Handles a batch offer: the files that have not been received yet, nor are being
+         * received from another peer, are requested in batch request packets, the peer is
+         * asked to delete the received ones, and those whose content is already stored,
+         * in batch delete packets.
+         */
+        private void handleOfferBatch(BatchView offer) throws IOException {
+            ByteBuffer buffer = offer.getBuffer();
+            if (DEBUG) System.out.println("[Gossiper]: " + offer);
+            InetSocketAddress target = addressCache.get(offer.getIp(), offer.getPort());
+            Tenant tenant = tenant();
+            FilenameSet received = tenant.getRecvIndex().getFilenames();
+            int countIndex = -1;
+            int count = 0;
+            int deleteIndex = -1;
+            int deleteCount = 0;
+            int packetSize = getPacketSize();
+            long now = System.currentTimeMillis();
+            while (offer.next()) {
+                int offset = offer.getFilenameOffset();
+                int length = offer.getFilenameLength();
+                boolean have = received.contains(buffer, offset, length);
+                if ( ! have) { // file is not in the user' receive directory
+                    String filename = offer.getFilename();
+                    String hash = offer.getHash();
+                    if (hash != null && deliverStored(tenant, filename, hash)) {
+                        have = true;
+                    } else if ( ! transfers.begin(tenant.getUsername(), filename, target, now)) {
+                        continue; // being received from another peer
+                    } else if (hash != null) {
+                        expect(tenant, filename, offer.getFileSize(), hash);
+                    }
+                }
+                if ( ! have) {
+                    if (countIndex >= 0 && this.replyBuffer.position() + 1 + length > packetSize) {
+                        sendBatch(this.replyBuffer, tenant.requestBatchTemplate, countIndex, count, target);
+                        countIndex = -1;
+                    }
+                    if (countIndex < 0) {
+                        countIndex = startBatch(this.replyBuffer, tenant.requestBatchTemplate, offer);
+                        count = 0;
+                    }
+                    BatchView.putFile(this.replyBuffer, buffer, offset, length);
+                    count++;
+                } else {
+                    if (deleteIndex >= 0 && this.deleteBuffer.position() + 1 + length > packetSize) {
+                        sendBatch(this.deleteBuffer, tenant.deleteBatchTemplate, deleteIndex, deleteCount, target);
+                        deleteIndex = -1;
+                    }
+                    if (deleteIndex < 0) {
+                        deleteIndex = startBatch(this.deleteBuffer, tenant.deleteBatchTemplate, offer);
+                        deleteCount = 0;
+                    }
+                    BatchView.putFile(this.deleteBuffer, buffer, offset, length);
+                    deleteCount++;
+                }
+            }
+            if (countIndex >= 0) {
+                sendBatch(this.replyBuffer, tenant.requestBatchTemplate, countIndex, count, target);
+            }
+            if (deleteIndex >= 0) {
+                sendBatch(this.deleteBuffer, tenant.deleteBatchTemplate, deleteIndex, deleteCount, target);
+            }
+        }
+
+        /**
+         * Writes the header of a batch answering the given batch offer in the given buffer.
+         *
+         * @return the index of the count in the buffer.
+         */
+        private int startBatch(ByteBuffer dst, MessageTemplate template, BatchView offer) {
+            dst.clear();
+            writeAddress(dst, offer.getBuffer(), offer.getUsernameOffset(), offer.getUsernameLength());
+            int countIndex = dst.position() + template.getPrefixSize();
+            template.writePrefix(dst);
+            dst.putShort((short) 0);
+            return countIndex;
+        }
+
+        /**
+         * Sends the batch being written in the given buffer.
+         */
+        private void sendBatch(ByteBuffer batch, MessageTemplate template, int countIndex, int count,
+                               InetSocketAddress target) throws IOException {
+            BatchView.setCount(batch, countIndex, count);
+            batch.flip();
+            reply(batch, target);
+            if (DEBUG) System.out.println("[Gossiper]: packet sent -> " + template.getMessageType() + " count=" + count);
+        }
+
+        /**
+         * Handles a request: the requested file is sent to the peer over TCP.
+         */
+        private void handleRequest(RequestOfferView request) throws IOException {
+            if (DEBUG) System.out.println("[Gossiper]: " + request);
+            String host = addressCache.get(request.getIp(), request.getPort()).getAddress().getHostAddress();
+            String username = request.getUsername();
+            transfer(tenant(), username, host, request.getPort(), request.getFilename());
+        }
+
+        /**
+         * Handles a batch request: the requested files are sent to the peer over TCP.
+         */
+        private void handleRequestBatch(BatchView request) throws IOException {
+            if (DEBUG) System.out.println("[Gossiper]: " + request);
+            String host = addressCache.get(request.getIp(), request.getPort()).getAddress().getHostAddress();
+            String username = request.getUsername();
+            Tenant tenant = tenant();
+            while (request.next()) {
+                // the receiver names a file after its connection, hence one connection per file
+                transfer(tenant, username, host, request.getPort(), request.getFilename());
+            }
+        }
+
+        /**
+         * Handles a sync: a digest of the received files is sent to the peer.
+         */
+        private void handleSync(SyncMessageFormat message) throws IOException {
+            if (DEBUG) System.out.println("[Gossiper]: " + message);
+            sendDigest(tenant(), this.channel, message.getAddress().getInetSocketAddress(),
+                    replyTo(message.getUserInfo().getUsername()));
+        }
+
+        /**
+         * Handles a digest: the files of its segment that are not in the digest are offered to the peer.
+         */
+        private void handleDigest(DigestMessageFormat message) throws IOException {
+            if (DEBUG) System.out.println("[Gossiper]: " + message);
+            BloomFilter filter = new BloomFilter(message.getFilter(), message.getHashCount(), message.getSeed());
+            Tenant tenant = tenant();
+            InetSocketAddress peer = message.getAddress().getInetSocketAddress();
+            String peerUser = replyTo(message.getUserInfo().getUsername());
+            digestPeers.add(digestKey(tenant, peer, peerUser));
+            Set<String> filenames = tenant.getSendSnapshot();
+            ledger.retain(tenant.getUsername(), filenames);
+            List<String> offeredFiles = new ArrayList<>();
+            for (String filename : filenames) {
+                if (BloomFilter.segment(filename, message.getSegments()) != message.getSegment()) {
+                    continue; // another digest packet tells about the file
+                }
+                // a file in the digest is only skipped this round: the filter may give false positives
+                if ( ! filter.mightContain(filename) && isRouted(tenant, filename, peer) && isDue(tenant, filename, peer, peerUser)) {
+                    // the peer has not received the file yet, and leads to one of its recipients
+                    offeredFiles.add(filename);
+                }
+            }
+            if (!offeredFiles.isEmpty()) {
+                sendOfferBatch(tenant, this.channel, offeredFiles, peer, peerUser);
+            }
+        }
+
+        /**
+         * Handles a delete: the peer already holds the file, which is deleted from the receive directory.
+         */
+        private void handleDelete(DeleteView delete, SocketAddress source) throws IOException {
+            if (DEBUG) System.out.println("[Gossiper]: " + delete);
+            delete(tenant(), delete.getFilename(), source, replyTo(delete.getUsername()));
+        }
+
+        /**
+         * Handles a batch delete: the peer already holds the files, which are deleted from the receive directory.
+         */
+        private void handleDeleteBatch(BatchView delete, SocketAddress source) throws IOException {
+            if (DEBUG) System.out.println("[Gossiper]: " + delete);
+            Tenant tenant = tenant();
+            String peerUser = replyTo(delete.getUsername());
+            while (delete.next()) {
+                delete(tenant, delete.getFilename(), source, peerUser);
+            }
+        }
+
+        /**
+         * Deletes a file the peer already holds from the receive directory of the tenant.
+         */
+        private void delete(Tenant tenant, String filename, SocketAddress source, String peerUser) throws IOException {
+            ledger.delivered(tenant.getUsername(), filename, source, peerUser);
+            boolean deleted = tenant.getRecvIndex().delete(filename);
+            EventBus bus = eventBus;
+            if (deleted && bus != null) {
+                bus.publish(new MailDeleted(tenant.getUsername(), tenant.getRecvDirectory().resolve(filename)));
+            } else if (deleted) {
+                collectBlobs();
+            }
+            if (DEBUG) System.out.println("[Gossiper]:" + (deleted ? " file deleted" : " file not found") + " -> " + filename);
+        }
+
+        @Override
+        public void close() {
+            try {
+                this.channel.close();
+            } catch (IOException ioe) {
+                System.err.println("[Gossiper]: error while closing " + getName() + "\n\t cause -> " + ioe.getMessage());
+            }
+        }
+    }
 }
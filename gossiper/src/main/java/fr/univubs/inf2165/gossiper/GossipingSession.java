@@ -6,10 +6,9 @@ import fr.univubs.inf2165.gossiper.format.Util;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.nio.channels.DatagramChannel;
-import java.nio.file.DirectoryStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.util.Collection;
 
 /**
  * This class represents a gossiping session with a peer. In order to be able
@@ -21,7 +20,12 @@ import java.nio.file.Path;
 public class GossipingSession extends Thread implements Closeable {
 
     private Gossiper gossiper;
+    private Tenant tenant;
     private Address peerAddress;
+    /**
+     * The user of the peer to which the messages are addressed, null for the user the peer was started with
+     */
+    private String peerUser;
 
     private DatagramChannel channel = null; // the channel
     private boolean close = true; // true if the session is closed.
@@ -34,10 +38,38 @@ public class GossipingSession extends Thread implements Closeable {
      * @throws IOException if the session can not be opened.
      */
     public GossipingSession(Gossiper gossiper, Address peerAddress) throws IOException {
+        this(gossiper, gossiper.getDefaultTenant(), peerAddress);
+    }
+
+    /**
+     * Constructs a new GossipingSession object for one of the users hosted by the gossiper.
+     *
+     * @param gossiper The gossiper server
+     * @param tenant The hosted user which gossips
+     * @param peerAddress The address of the peer.
+     * @throws IOException if the session can not be opened.
+     */
+    public GossipingSession(Gossiper gossiper, Tenant tenant, Address peerAddress) throws IOException {
+        this(gossiper, tenant, peerAddress, null);
+    }
+
+    /**
+     * Constructs a new GossipingSession object with one of the users hosted by the peer.
+     *
+     * @param gossiper The gossiper server
+     * @param tenant The hosted user which gossips
+     * @param peerAddress The address of the peer.
+     * @param peerUser The user of the peer to which the messages are addressed, null for the user the peer was started with
+     * @throws IOException if the session can not be opened.
+     */
+    public GossipingSession(Gossiper gossiper, Tenant tenant, Address peerAddress, String peerUser) throws IOException {
         Util.checkNotNull("GossipingSession -> gossiper", gossiper);
+        Util.checkNotNull("GossipingSession -> tenant", tenant);
         Util.checkNotNull("GossipingSession -> peerAddress", peerAddress);
         this.gossiper = gossiper;
+        this.tenant = tenant;
         this.peerAddress = peerAddress;
+        this.peerUser = peerUser;
         this.open();
     }
 
@@ -66,44 +98,47 @@ public class GossipingSession extends Thread implements Closeable {
 
     @Override
     public void run() {
-        try {
-            // offering files to the peer
-            offeringFiles(this.gossiper.getUserDirectory());
-        } catch(IOException ioe) {
-            System.err.println("I/O error occurs: " + ioe.getMessage());
-        }
+        gossip(this.tenant);
     }
 
     /**
+     * Offers the files of a hosted user to the peer. A session can gossip for
+     * several users in turn, on the same channel.
      *
-     * @param dir
-     * @throws IOException
+     * @param tenant The hosted user which gossips. Must not be null.
      */
-    private void offeringFiles(Path dir) throws IOException {
-        //Set<Path> fileList = new HashSet<>();
-        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
-            stream.forEach( (path) -> {
-                try {
-                    if (Files.isDirectory(path)) {
-                        if ( ! path.equals(this.gossiper.getRecvDirectory())) {
-                            offeringFiles(path);
-                        }
-                    } else { // path is a file
-                        // if the file is not in the send directory make a copy of the file in the send directory
-                        if(path.getParent().equals(this.gossiper.getSendDirectory())) {
-                            this.send(MessageType.OFFER, path.getFileName().toString());
-                        } else {
-                            Path filepath = this.gossiper.getSendDirectory().resolve(path.getFileName());
-                            if( ! Files.exists(filepath)) {
-                                Files.copy(path, filepath);
-                            }
-                        }
-                    }
-                } catch(IOException ioe) {
-                    ioe.printStackTrace(System.out);
-                    System.err.println("GossipingSession -> offeringFiles -> I/O error occurs: " + ioe.getMessage());
+    public void gossip(Tenant tenant) {
+        gossip(tenant, this.peerUser);
+    }
+
+    /**
+     * Offers the files of a hosted user to one of the users hosted by the peer. A session
+     * can gossip for several users in turn, and with several users of the peer, on the
+     * same channel.
+     *
+     * @param tenant The hosted user which gossips. Must not be null.
+     * @param peerUser The user of the peer to which the messages are addressed, null for the user the peer was started with
+     */
+    public void gossip(Tenant tenant, String peerUser) {
+        Util.checkNotNull("GossipingSession -> tenant", tenant);
+        try {
+            // offering files to the peer
+            InetSocketAddress peer = this.peerAddress.getInetSocketAddress();
+            boolean antiEntropy = this.gossiper.isAntiEntropy();
+            if ( ! antiEntropy || ! this.gossiper.isDigestAnswered(tenant, peer, peerUser)) {
+                // only the files leading to their recipients through this peer, also when
+                // the peer did not answer the last sync (older peer, lost or overfull digest)
+                Collection<String> filenames = this.gossiper.getOfferedFiles(tenant, peer, peerUser);
+                if ( ! filenames.isEmpty()) {
+                    this.gossiper.sendOfferBatch(tenant, channel, filenames, peer, peerUser);
                 }
-            });
+            }
+            if (antiEntropy) {
+                // the peer answers with a digest, then only the missing files are offered
+                this.gossiper.sendSync(tenant, channel, peer, peerUser);
+            }
+        } catch(IOException ioe) {
+            System.err.println("I/O error occurs: " + ioe.getMessage());
         }
     }
 
@@ -117,15 +152,15 @@ public class GossipingSession extends Thread implements Closeable {
     public void send(MessageType messageType, String filename) throws IOException {
         switch (messageType) {
             case OFFER:{
-                this.gossiper.sendOffer(channel, filename, this.peerAddress.getInetSocketAddress());
+                this.gossiper.sendOffer(this.tenant, channel, filename, this.peerAddress.getInetSocketAddress(), this.peerUser);
                 break;
             }
             case REQUEST: {
-                this.gossiper.sendRequest(channel, filename, this.peerAddress.getInetSocketAddress());
+                this.gossiper.sendRequest(this.tenant, channel, filename, this.peerAddress.getInetSocketAddress(), this.peerUser);
                 break;
             }
             case DELETE: {
-                this.gossiper.sendDelete(channel, filename, this.peerAddress.getInetSocketAddress());
+                this.gossiper.sendDelete(this.tenant, channel, filename, this.peerAddress.getInetSocketAddress(), this.peerUser);
                 break;
             }
         }
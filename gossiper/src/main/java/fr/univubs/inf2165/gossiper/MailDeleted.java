@@ -0,0 +1,23 @@
+package fr.univubs.inf2165.gossiper;
+
+import java.nio.file.Path;
+
+/**
+ * This event is published once a mail has been deleted from the receive directory
+ * of a user, either by a POP3 client or by a gossiped delete.
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public class MailDeleted extends MailEvent {
+
+    /**
+     * Constructs a new MailDeleted object.
+     *
+     * @param username The user name. Must not be null.
+     * @param path     The path of the deleted mail file. Must not be null.
+     */
+    public MailDeleted(String username, Path path) {
+        super(username, path);
+    }
+}
@@ -0,0 +1,36 @@
+package fr.univubs.inf2165.gossiper;
+
+import java.nio.file.Path;
+
+/**
+ * This event is published once a received mail is durable in the receive directory
+ * of a user. It carries the Message-ID parsed during the reception, so that the
+ * subscribers never have to read the file.
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public class MailDelivered extends MailEvent {
+
+    private final String messageId;
+
+    /**
+     * Constructs a new MailDelivered object.
+     *
+     * @param username  The user name. Must not be null.
+     * @param path      The path of the mail file. Must not be null.
+     * @param messageId The Message-ID of the mail, null if it has none
+     */
+    public MailDelivered(String username, Path path, String messageId) {
+        super(username, path);
+        this.messageId = messageId;
+    }
+
+    /**
+     * Return the Message-ID of the mail.
+     * @return the Message-ID of the mail, null if it has none.
+     */
+    public String getMessageId() {
+        return this.messageId;
+    }
+}
@@ -0,0 +1,52 @@
+package fr.univubs.inf2165.gossiper;
+
+import fr.univubs.inf2165.gossiper.format.Util;
+
+import java.nio.file.Path;
+
+/**
+ * This class is the base of the events published on an {@link EventBus} when a mail
+ * of a user appears in, is expected in or disappears from its receive directory (maildrop).
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public abstract class MailEvent {
+
+    private final String username;
+    private final Path path;
+
+    /**
+     * Constructs a new MailEvent object.
+     *
+     * @param username The user name. Must not be null.
+     * @param path     The path of the mail file. Must not be null.
+     */
+    protected MailEvent(String username, Path path) {
+        Util.checkNotNull("MailEvent -> username", username);
+        Util.checkNotNull("MailEvent -> path", path);
+        this.username = username;
+        this.path = path;
+    }
+
+    public String getUsername() {
+        return this.username;
+    }
+
+    public Path getPath() {
+        return this.path;
+    }
+
+    /**
+     * Return the name of the mail file.
+     * @return the name of the mail file.
+     */
+    public String getFilename() {
+        return this.path.getFileName().toString();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " {" + this.username + " | " + getFilename() + "}";
+    }
+}
@@ -0,0 +1,49 @@
+package fr.univubs.inf2165.gossiper;
+
+import fr.univubs.inf2165.gossiper.format.Util;
+
+import java.nio.file.Path;
+
+/**
+ * This event is published when a mail offered with its content (size and hash) has
+ * been requested, so that the file receiver can check the mail on arrival.
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public class MailExpected extends MailEvent {
+
+    private final long size;
+    private final String hash;
+
+    /**
+     * Constructs a new MailExpected object.
+     *
+     * @param username The user name. Must not be null.
+     * @param path     The path the mail file will have. Must not be null.
+     * @param size     The size of the mail file in bytes
+     * @param hash     The SHA-256 hash of the mail file, in hexadecimal. Must not be null.
+     */
+    public MailExpected(String username, Path path, long size, String hash) {
+        super(username, path);
+        Util.checkNotNull("MailExpected -> hash", hash);
+        this.size = size;
+        this.hash = hash;
+    }
+
+    /**
+     * Return the size of the mail file.
+     * @return the size of the mail file in bytes.
+     */
+    public long getSize() {
+        return this.size;
+    }
+
+    /**
+     * Return the SHA-256 hash of the mail file.
+     * @return the hash of the mail file, in hexadecimal.
+     */
+    public String getHash() {
+        return this.hash;
+    }
+}
@@ -0,0 +1,699 @@
+package fr.univubs.inf2165.gossiper;
+
+import fr.univubs.inf2165.gossiper.format.AbstractBatchMessageFormat;
+import fr.univubs.inf2165.gossiper.format.BatchView;
+import fr.univubs.inf2165.gossiper.format.FileInfo;
+import fr.univubs.inf2165.gossiper.format.MessageTemplate;
+import fr.univubs.inf2165.gossiper.format.MessageType;
+import fr.univubs.inf2165.gossiper.format.ReliableView;
+import fr.univubs.inf2165.gossiper.format.RequestOfferView;
+import fr.univubs.inf2165.gossiper.format.Util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is the outbound queue of the datagrams sent to the peers. Each peer
+ * has its own queue:
+ * <ul>
+ *     <li>the file names offered or requested one at a time are coalesced, and sent
+ *     in batch messages when a batch is full or when the flush delay has elapsed. The
+ *     offered file names carry the contents of their files, encoded as in the messages
+ *     sent directly by the gossiper;</li>
+ *     <li>the datagrams are paced by a token bucket, so that a burst does not overrun
+ *     the receive buffer of the peer;</li>
+ *     <li>optionally, the datagrams are sent reliably: each one is wrapped in a reliable
+ *     message with a sequence number, and retransmitted until it is acknowledged. The
+ *     retransmission timeout adapts to the measured round trip time (Jacobson/Karn).</li>
+ * </ul>
+ * A single thread sends the datagrams of all the peers, on the channel of the gossiper
+ * so that the peers see its bound port as the source, and send their acks and replies
+ * to it. The acks are read by the receivers of the gossiper (see {@link #acknowledge}).
+ * The queue of a peer is bounded: the datagrams queued beyond are dropped and counted.
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public class Outbox extends Thread implements Closeable {
+
+    /**
+     * The default sending rate to a peer (bytes per second)
+     */
+    public static final long DEFAULT_RATE = 2L * 1024 * 1024;
+    /**
+     * The default burst size to a peer (bytes)
+     */
+    public static final int DEFAULT_BURST = 64 * 1024;
+    /**
+     * The default delay before coalesced file names are sent (milliseconds)
+     */
+    public static final long DEFAULT_FLUSH_DELAY = 20;
+    /**
+     * The maximum number of datagrams and file names queued to a peer
+     */
+    public static final int MAX_QUEUED = 1024;
+
+    /**
+     * The maximum number of unacknowledged reliable messages to a peer
+     */
+    private static final int WINDOW = AckWindow.SIZE;
+    /**
+     * The number of transmissions of a reliable message before it is dropped
+     */
+    private static final int MAX_TRANSMISSIONS = 6;
+    /**
+     * The initial, minimum and maximum retransmission timeouts (nanoseconds)
+     */
+    private static final long INITIAL_RTO = TimeUnit.SECONDS.toNanos(1);
+    private static final long MIN_RTO = TimeUnit.MILLISECONDS.toNanos(200);
+    private static final long MAX_RTO = TimeUnit.SECONDS.toNanos(60);
+
+    private final DatagramChannel channel;
+    /**
+     * The epoch of the reliable messages, so that the peers can tell a restart of this outbox
+     */
+    private final int epoch = ThreadLocalRandom.current().nextInt();
+    private long rate;
+    private final long burst;
+    private final long flushDelay;
+
+    /**
+     * The queues by peer, guarded by this
+     */
+    private final Map<InetSocketAddress, PeerQueue> queues = new HashMap<>();
+
+    private boolean closed = false;
+    private boolean reliable = false;
+    /**
+     * The number of datagrams and file names dropped because the queue of their peer was full
+     */
+    private long dropped = 0;
+
+    /**
+     * Constructs a new Outbox object with the default rate, burst and flush delay.
+     *
+     * @param channel The bound channel on which the datagrams are sent, not closed by the outbox. Must not be null.
+     */
+    public Outbox(DatagramChannel channel) {
+        this(channel, DEFAULT_RATE, DEFAULT_BURST, DEFAULT_FLUSH_DELAY);
+    }
+
+    /**
+     * Constructs a new Outbox object.
+     *
+     * @param channel    The bound channel on which the datagrams are sent, not closed by the outbox. Must not be null.
+     * @param rate       The sending rate to a peer (bytes per second)
+     * @param burst      The number of bytes that can be sent at once to a peer
+     * @param flushDelay The delay before coalesced file names are sent (milliseconds)
+     */
+    public Outbox(DatagramChannel channel, long rate, int burst, long flushDelay) {
+        super("Outbox");
+        Util.checkNotNull("Outbox -> channel", channel);
+        if (rate <= 0 || burst <= 0 || flushDelay < 0) {
+            throw new IllegalArgumentException("Invalid outbox parameters -> rate=" + rate + " burst=" + burst + " flushDelay=" + flushDelay);
+        }
+        setDaemon(true);
+        this.rate = rate;
+        this.burst = burst;
+        this.flushDelay = TimeUnit.MILLISECONDS.toNanos(flushDelay);
+        this.channel = channel;
+    }
+
+    /**
+     * Queues a file name offered or requested to the given peer. File names queued
+     * with the same templates are sent together in batch messages, or in a single
+     * message if there is only one.
+     *
+     * @param target        The peer. Must not be null.
+     * @param template      The template of the single message (OFFER | REQUEST). Must not be null.
+     * @param batchTemplate The template of the batch message (OFFER_BATCH | REQUEST_BATCH). Must not be null.
+     * @param filename      The file name bytes
+     * @return false if the queue of the peer is full and the file name has been dropped.
+     */
+    public boolean queue(InetSocketAddress target, MessageTemplate template, MessageTemplate batchTemplate, byte[] filename) {
+        return queue(target, template, batchTemplate, filename, false, null);
+    }
+
+    /**
+     * Queues a file name offered to the given peer with the content (size and hash) of the
+     * file. The messages end with the contents of their files, the unknown size for the
+     * files whose content is unknown.
+     *
+     * @param target        The peer. Must not be null.
+     * @param template      The template of the single message (OFFER). Must not be null.
+     * @param batchTemplate The template of the batch message (OFFER_BATCH). Must not be null.
+     * @param filename      The file name bytes
+     * @param content       The content of the file, null if unknown
+     * @return false if the queue of the peer is full and the file name has been dropped.
+     */
+    public boolean queue(InetSocketAddress target, MessageTemplate template, MessageTemplate batchTemplate,
+                         byte[] filename, FileInfo content) {
+        return queue(target, template, batchTemplate, filename, true, content);
+    }
+
+    private synchronized boolean queue(InetSocketAddress target, MessageTemplate template, MessageTemplate batchTemplate,
+                                       byte[] filename, boolean withContents, FileInfo content) {
+        Util.checkNotNull("Outbox -> target", target);
+        Util.checkNotNull("Outbox -> template", template);
+        Util.checkNotNull("Outbox -> batchTemplate", batchTemplate);
+        PeerQueue queue = getQueue(target);
+        if (queue.size() >= MAX_QUEUED) {
+            this.dropped++;
+            return false;
+        }
+        Pending pending = queue.pendings.get(template);
+        if (pending == null) {
+            pending = new Pending(template, batchTemplate, System.nanoTime() + this.flushDelay, withContents);
+            queue.pendings.put(template, pending);
+        }
+        pending.add(filename, content);
+        queue.queued++;
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * Queues a datagram to the given peer. The datagram is copied from the buffer
+     * position to its limit.
+     *
+     * @param target   The peer. Must not be null.
+     * @param datagram The datagram. Must not be null.
+     * @return false if the queue of the peer is full and the datagram has been dropped.
+     */
+    public synchronized boolean queue(InetSocketAddress target, ByteBuffer datagram) {
+        Util.checkNotNull("Outbox -> target", target);
+        Util.checkNotNull("Outbox -> datagram", datagram);
+        PeerQueue queue = getQueue(target);
+        if (queue.size() >= MAX_QUEUED) {
+            this.dropped++;
+            return false;
+        }
+        ByteBuffer copy = ByteBuffer.allocate(datagram.remaining());
+        copy.put(datagram).flip();
+        queue.datagrams.add(copy);
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * Acknowledges the reliable messages sent to the given peer.
+     *
+     * @param source The peer which sent the ack
+     * @param epoch  The epoch of the acknowledged messages, the acks of another epoch are ignored
+     * @param base   The first sequence number not received by the peer
+     * @param bitmap The bitmap of the sequence numbers received after the base
+     */
+    public synchronized void acknowledge(InetSocketAddress source, int epoch, int base, long bitmap) {
+        PeerQueue queue = this.queues.get(source);
+        if (queue == null || epoch != this.epoch) {
+            return;
+        }
+        long now = System.nanoTime();
+        Iterator<InFlight> iterator = queue.inFlight.values().iterator();
+        while (iterator.hasNext()) {
+            InFlight inFlight = iterator.next();
+            int distance = inFlight.sequence - base;
+            if (distance < 0 || (distance > 0 && distance <= AckWindow.SIZE && (bitmap & (1L << (distance - 1))) != 0)) {
+                if (inFlight.transmissions == 1) { // Karn: no sample from a retransmitted message
+                    queue.sample(now - inFlight.sent);
+                }
+                iterator.remove();
+            }
+        }
+        notifyAll();
+    }
+
+    @Override
+    public void run() {
+        List<Outgoing> outgoing = new ArrayList<>();
+        try {
+            while (true) {
+                synchronized (this) {
+                    if (this.closed) {
+                        return;
+                    }
+                    long wait = process(System.nanoTime(), outgoing);
+                    if (outgoing.isEmpty()) {
+                        if (wait < 0) {
+                            wait(); // nothing to send
+                        } else {
+                            TimeUnit.NANOSECONDS.timedWait(this, Math.max(wait, 1));
+                        }
+                        continue;
+                    }
+                }
+                // sent without the lock, so that the queuing threads never wait for the network
+                for (Outgoing datagram : outgoing) {
+                    send(datagram.datagram, datagram.target);
+                }
+                outgoing.clear();
+            }
+        } catch (InterruptedException ie) {
+            // the outbox has been closed
+        }
+    }
+
+    /**
+     * Moves the due coalesced file names to the datagram queues, then takes the datagrams
+     * allowed by the token buckets. The lock must be held.
+     *
+     * @param now      The current time (nanoseconds)
+     * @param outgoing The list to which the datagrams to send are added
+     * @return the delay before the next datagram can be sent (nanoseconds), -1 if nothing is queued.
+     */
+    private long process(long now, List<Outgoing> outgoing) {
+        long wait = -1;
+        Iterator<Map.Entry<InetSocketAddress, PeerQueue>> iterator = this.queues.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<InetSocketAddress, PeerQueue> entry = iterator.next();
+            PeerQueue queue = entry.getValue();
+            // coalesced file names
+            Iterator<Pending> pendings = queue.pendings.values().iterator();
+            while (pendings.hasNext()) {
+                Pending pending = pendings.next();
+                if (pending.due <= now || pending.isFull(getPacketSize())) {
+                    queue.datagrams.addAll(pending.encode(getPacketSize()));
+                    queue.queued -= pending.filenames.size();
+                    pendings.remove();
+                } else {
+                    wait = min(wait, pending.due - now);
+                }
+            }
+            // timed out reliable messages
+            retransmit(queue, now, entry.getKey());
+            // paced datagrams, retransmissions first
+            queue.refill(now, this.rate, this.burst);
+            while (!queue.retransmissions.isEmpty() || (!queue.datagrams.isEmpty() && queue.inFlight.size() < WINDOW)) {
+                boolean retransmission = !queue.retransmissions.isEmpty();
+                if (retransmission && !queue.inFlight.containsKey(queue.retransmissions.peek().sequence)) {
+                    queue.retransmissions.poll(); // acknowledged meanwhile
+                    continue;
+                }
+                int size = retransmission ? queue.retransmissions.peek().datagram.limit() : queue.datagrams.peek().remaining();
+                if (queue.tokens < Math.min(size, this.burst)) {
+                    wait = min(wait, (Math.min(size, this.burst) - queue.tokens) * 1_000_000_000L / this.rate);
+                    break;
+                }
+                queue.tokens -= size;
+                if (retransmission) {
+                    InFlight inFlight = queue.retransmissions.poll();
+                    inFlight.sent = now;
+                    inFlight.transmissions++;
+                    inFlight.retransmitting = false;
+                    outgoing.add(new Outgoing(inFlight.datagram.duplicate().rewind(), entry.getKey()));
+                } else if (this.reliable) {
+                    ByteBuffer datagram = queue.datagrams.poll();
+                    InFlight inFlight = new InFlight(this.epoch, queue.nextSequence++, datagram, now);
+                    queue.inFlight.put(inFlight.sequence, inFlight);
+                    outgoing.add(new Outgoing(inFlight.datagram.duplicate().rewind(), entry.getKey()));
+                } else {
+                    outgoing.add(new Outgoing(queue.datagrams.poll(), entry.getKey()));
+                }
+            }
+            if (!queue.inFlight.isEmpty() && queue.retransmissions.isEmpty()) {
+                wait = min(wait, Math.max(0, queue.nextTimeout() - now));
+            }
+            if (queue.isIdle(this.burst)) {
+                iterator.remove();
+            }
+        }
+        return wait;
+    }
+
+    /**
+     * Schedules the retransmission of the reliable messages of a peer whose timeout has
+     * elapsed, and drops the ones sent too many times. The lock must be held.
+     */
+    private void retransmit(PeerQueue queue, long now, InetSocketAddress target) {
+        boolean timedOut = false;
+        Iterator<InFlight> iterator = queue.inFlight.values().iterator();
+        while (iterator.hasNext()) {
+            InFlight inFlight = iterator.next();
+            if (inFlight.retransmitting || inFlight.sent + queue.rto > now) {
+                continue;
+            }
+            timedOut = true;
+            if (inFlight.transmissions >= MAX_TRANSMISSIONS) {
+                System.err.println("[Gossiper]: message dropped after " + inFlight.transmissions + " transmissions -> "
+                        + MessageType.getMessageType(inFlight.datagram.get(ReliableView.HEADER_SIZE)) + " to " + target);
+                iterator.remove();
+            } else {
+                inFlight.retransmitting = true;
+                queue.retransmissions.add(inFlight);
+            }
+        }
+        if (timedOut) { // exponential backoff
+            queue.rto = Math.min(queue.rto * 2, MAX_RTO);
+        }
+    }
+
+    /**
+     * Sends a datagram to the given peer. A datagram which does not fit in the send
+     * buffer of a non blocking channel is dropped.
+     */
+    private void send(ByteBuffer datagram, InetSocketAddress target) {
+        try {
+            if (this.channel.send(datagram, target) == 0) {
+                synchronized (this) {
+                    this.dropped++;
+                }
+                return;
+            }
+            if (Gossiper.DEBUG) System.out.println("[Gossiper]: packet sent -> " + MessageType.getMessageType(datagram.get(0)) + " to " + target);
+        } catch (IOException ioe) {
+            System.err.println("[Gossiper]: error while sending to " + target + "\n\t cause -> " + ioe.getMessage());
+        }
+    }
+
+    /**
+     * Return the queue of the given peer, created if needed. The lock must be held.
+     */
+    private PeerQueue getQueue(InetSocketAddress target) {
+        PeerQueue queue = this.queues.get(target);
+        if (queue == null) {
+            queue = new PeerQueue(System.nanoTime(), this.burst);
+            this.queues.put(target, queue);
+        }
+        return queue;
+    }
+
+    /**
+     * Return the minimum of two delays, -1 meaning no delay.
+     */
+    private static long min(long wait, long delay) {
+        return wait < 0 ? delay : Math.min(wait, delay);
+    }
+
+    /**
+     * Return the sending rate to a peer (bytes per second).
+     * @return the sending rate to a peer (bytes per second).
+     */
+    public synchronized long getRate() {
+        return this.rate;
+    }
+
+    /**
+     * Sets the sending rate to a peer.
+     *
+     * @param rate The sending rate to a peer (bytes per second), positive
+     */
+    public synchronized void setRate(long rate) {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("The rate must be positive -> " + rate);
+        }
+        this.rate = rate;
+        notifyAll();
+    }
+
+    /**
+     * Return the number of datagrams and file names dropped because the queue of their
+     * peer was full or the send buffer of the channel was.
+     * @return the number of dropped datagrams and file names.
+     */
+    public synchronized long getDropped() {
+        return this.dropped;
+    }
+
+    /**
+     * Return the number of datagrams sent reliably and not acknowledged yet.
+     * @return the number of datagrams in flight.
+     */
+    public synchronized int getInFlightCount() {
+        int count = 0;
+        for (PeerQueue queue : this.queues.values()) {
+            count += queue.inFlight.size();
+        }
+        return count;
+    }
+
+    /**
+     * Return true if the datagrams are sent reliably.
+     * @return true if the datagrams are sent reliably.
+     */
+    public synchronized boolean isReliable() {
+        return this.reliable;
+    }
+
+    /**
+     * Enables or disables the reliable sending. The peers must understand the
+     * reliable and ack messages.
+     *
+     * @param reliable true to send the datagrams reliably.
+     */
+    public synchronized void setReliable(boolean reliable) {
+        this.reliable = reliable;
+    }
+
+    /**
+     * Return the maximum size of the datagrams packed for the outbox: when the datagrams
+     * are sent reliably, the reliable header must still fit in a single unfragmented packet.
+     *
+     * @return the maximum size of a datagram queued to the outbox in bytes.
+     */
+    public synchronized int getPacketSize() {
+        return AbstractBatchMessageFormat.MAX_PACKET_SIZE - (this.reliable ? ReliableView.HEADER_SIZE : 0);
+    }
+
+    /**
+     * Closes the outbox. The queued datagrams are dropped, the channel is left open.
+     */
+    @Override
+    public synchronized void close() {
+        this.closed = true;
+        this.queues.clear();
+        notifyAll();
+    }
+
+    /**
+     * The queue of a peer: the coalesced file names, the datagrams ready to be sent
+     * and the token bucket.
+     */
+    private static class PeerQueue {
+
+        /**
+         * The coalesced file names by template, so that the names sent by different tenants are not mixed
+         */
+        private final Map<MessageTemplate, Pending> pendings = new HashMap<>();
+        private final ArrayDeque<ByteBuffer> datagrams = new ArrayDeque<>();
+        /**
+         * The number of coalesced file names
+         */
+        private int queued = 0;
+        private long tokens;
+        private long refilled;
+
+        /*
+         * Reliable sending: the unacknowledged messages by sequence number, the ones to
+         * retransmit, and the retransmission timeout estimator.
+         */
+        private final Map<Integer, InFlight> inFlight = new LinkedHashMap<>();
+        private final ArrayDeque<InFlight> retransmissions = new ArrayDeque<>();
+        private int nextSequence = 0;
+        private long srtt = -1;
+        private long rttvar;
+        private long rto = INITIAL_RTO;
+
+        private PeerQueue(long now, long burst) {
+            this.tokens = burst;
+            this.refilled = now;
+        }
+
+        /**
+         * Return the number of datagrams and file names waiting to be sent.
+         */
+        private int size() {
+            return this.datagrams.size() + this.queued;
+        }
+
+        private void refill(long now, long rate, long burst) {
+            long elapsed = now - this.refilled;
+            long added = elapsed * rate / 1_000_000_000L;
+            if (added > 0) {
+                this.tokens = Math.min(burst, this.tokens + added);
+                this.refilled = now;
+            }
+        }
+
+        /**
+         * Updates the retransmission timeout with a round trip time sample (RFC 6298).
+         */
+        private void sample(long rtt) {
+            if (this.srtt < 0) {
+                this.srtt = rtt;
+                this.rttvar = rtt / 2;
+            } else {
+                this.rttvar = (3 * this.rttvar + Math.abs(this.srtt - rtt)) / 4;
+                this.srtt = (7 * this.srtt + rtt) / 8;
+            }
+            this.rto = Math.max(MIN_RTO, Math.min(MAX_RTO, this.srtt + 4 * this.rttvar));
+        }
+
+        /**
+         * Return the time at which the oldest unacknowledged message times out.
+         */
+        private long nextTimeout() {
+            long timeout = Long.MAX_VALUE;
+            for (InFlight inFlight : this.inFlight.values()) {
+                if (!inFlight.retransmitting) {
+                    timeout = Math.min(timeout, inFlight.sent + this.rto);
+                }
+            }
+            return timeout;
+        }
+
+        /**
+         * Return true if the queue can be removed. The queue of a peer to which reliable
+         * messages have been sent is kept, so that its sequence numbers keep increasing.
+         */
+        private boolean isIdle(long burst) {
+            return this.pendings.isEmpty() && this.datagrams.isEmpty() && this.tokens >= burst
+                    && this.nextSequence == 0;
+        }
+    }
+
+    /**
+     * A reliable message sent and not acknowledged yet.
+     */
+    private static class InFlight {
+
+        private final int sequence;
+        private final ByteBuffer datagram;
+        private long sent;
+        private int transmissions = 1;
+        private boolean retransmitting = false;
+
+        private InFlight(int epoch, int sequence, ByteBuffer message, long sent) {
+            this.sequence = sequence;
+            this.datagram = ByteBuffer.allocate(ReliableView.HEADER_SIZE + message.remaining());
+            ReliableView.encodeHeader(this.datagram, epoch, sequence);
+            this.datagram.put(message).flip();
+            this.sent = sent;
+        }
+    }
+
+    /**
+     * A datagram taken from a queue, to be sent without the lock.
+     */
+    private static class Outgoing {
+        private final ByteBuffer datagram;
+        private final InetSocketAddress target;
+
+        private Outgoing(ByteBuffer datagram, InetSocketAddress target) {
+            this.datagram = datagram;
+            this.target = target;
+        }
+    }
+
+    /**
+     * File names waiting to be sent in a batch message.
+     */
+    private static class Pending {
+
+        private final MessageTemplate template;
+        private final MessageTemplate batchTemplate;
+        private final long due;
+        private final List<byte[]> filenames = new ArrayList<>();
+        /**
+         * The contents of the files, null if the messages carry no content
+         */
+        private final List<FileInfo> contents;
+        private int size;
+
+        private Pending(MessageTemplate template, MessageTemplate batchTemplate, long due, boolean withContents) {
+            this.template = template;
+            this.batchTemplate = batchTemplate;
+            this.due = due;
+            this.contents = withContents ? new ArrayList<>() : null;
+            this.size = batchTemplate.getPrefixSize() + 2;
+        }
+
+        private void add(byte[] filename, FileInfo content) {
+            this.filenames.add(filename);
+            this.size += 1 + filename.length;
+            if (this.contents != null) {
+                this.contents.add(content);
+                this.size += FileInfo.CONTENT_SIZE;
+            }
+        }
+
+        /**
+         * Return true if the file names fill a batch packet of the given size.
+         */
+        private boolean isFull(int packetSize) {
+            return this.size >= packetSize;
+        }
+
+        /**
+         * Encodes the file names in a single message, or in batch messages.
+         */
+        private List<ByteBuffer> encode(int packetSize) {
+            List<ByteBuffer> datagrams = new ArrayList<>();
+            if (this.filenames.size() == 1) {
+                byte[] filename = this.filenames.get(0);
+                FileInfo content = this.contents != null ? this.contents.get(0) : null;
+                ByteBuffer datagram = ByteBuffer.allocate(this.template.getPrefixSize() + 1 + filename.length + FileInfo.CONTENT_SIZE);
+                this.template.write(datagram, filename);
+                if (content != null) {
+                    RequestOfferView.encodeContent(datagram, content.getFileSize(), content.getHash());
+                }
+                datagram.flip();
+                datagrams.add(datagram);
+                return datagrams;
+            }
+            int countIndex = this.batchTemplate.getPrefixSize();
+            int contentSize = this.contents != null ? FileInfo.CONTENT_SIZE : 0;
+            ByteBuffer datagram = null;
+            int first = 0;
+            int count = 0;
+            for (int i = 0; i < this.filenames.size(); i++) {
+                byte[] filename = this.filenames.get(i);
+                if (datagram != null && datagram.position() + 1 + filename.length + (count + 1) * contentSize
+                        > packetSize) {
+                    datagrams.add(finish(datagram, countIndex, first, count));
+                    datagram = null;
+                }
+                if (datagram == null) {
+                    datagram = ByteBuffer.allocate(packetSize);
+                    this.batchTemplate.writePrefix(datagram);
+                    datagram.putShort((short) 0);
+                    first = i;
+                    count = 0;
+                }
+                BatchView.putFile(datagram, filename);
+                count++;
+            }
+            datagrams.add(finish(datagram, countIndex, first, count));
+            return datagrams;
+        }
+
+        /**
+         * Sets the count of a batch message and appends the contents of its files, from the given index.
+         */
+        private ByteBuffer finish(ByteBuffer datagram, int countIndex, int first, int count) {
+            BatchView.setCount(datagram, countIndex, count);
+            if (this.contents != null) {
+                for (FileInfo content : this.contents.subList(first, first + count)) {
+                    if (content != null) {
+                        BatchView.putContent(datagram, content.getFileSize(), content.getHash());
+                    } else {
+                        BatchView.putContent(datagram, FileInfo.UNKNOWN_SIZE, null);
+                    }
+                }
+            }
+            datagram.flip();
+            return datagram;
+        }
+    }
+}
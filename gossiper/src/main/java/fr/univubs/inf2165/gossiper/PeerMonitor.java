@@ -0,0 +1,32 @@
+package fr.univubs.inf2165.gossiper;
+
+import java.net.InetSocketAddress;
+
+/**
+ * This interface is implemented by the objects which watch the liveness of the peers,
+ * for instance from their beacons. The gossiper consults it before sending a datagram
+ * to a peer or connecting to it, so that no time is wasted on the departed peers.
+ *
+ * An unknown peer is not suspected.
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public interface PeerMonitor {
+
+    /**
+     * Return true if the peer listening on the given gossiping address is suspected to be down.
+     *
+     * @param peer The gossiping (UDP) address of the peer
+     * @return true if the peer is suspected to be down.
+     */
+    boolean isSuspected(InetSocketAddress peer);
+
+    /**
+     * Return true if all the known peers of the given user are suspected to be down.
+     *
+     * @param username The user name
+     * @return true if all the known peers of the given user are suspected to be down.
+     */
+    boolean isSuspected(String username);
+}
@@ -0,0 +1,94 @@
+package fr.univubs.inf2165.gossiper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * This class reads the recipients of a mail from its To, Cc and Bcc headers. Only
+ * the headers are read, up to the empty line which ends them. A recipient is known
+ * by the user name of its address, that is to say the part before the '@'.
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public final class RecipientReader {
+
+    /**
+     * The maximum number of characters of headers read
+     */
+    public static final int MAX_HEADERS_LENGTH = 64 * 1024;
+
+    private RecipientReader() {
+    }
+
+    /**
+     * Return the user names of the recipients of the given mail.
+     *
+     * @param file The mail file
+     * @return the user names of the recipients, empty if the file is not a mail or has no recipient.
+     * @throws IOException if the file can't be read.
+     */
+    public static Set<String> read(Path file) throws IOException {
+        Set<String> recipients = new HashSet<>();
+        // ISO-8859-1 decodes any byte, the addresses being ASCII
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.ISO_8859_1)) {
+            StringBuilder field = null;
+            int length = 0;
+            String line;
+            while ((line = reader.readLine()) != null && ! line.isEmpty() && length < MAX_HEADERS_LENGTH) {
+                length += line.length();
+                if (line.charAt(0) == ' ' || line.charAt(0) == '\t') {
+                    if (field != null) { // continuation of a folded header
+                        field.append(line);
+                    }
+                    continue;
+                }
+                if (field != null) {
+                    parse(field.toString(), recipients);
+                    field = null;
+                }
+                int colon = line.indexOf(':');
+                if (colon > 0 && isRecipientField(line.substring(0, colon).trim())) {
+                    field = new StringBuilder(line.substring(colon + 1));
+                }
+            }
+            if (field != null) {
+                parse(field.toString(), recipients);
+            }
+        }
+        return recipients.isEmpty() ? Collections.emptySet() : recipients;
+    }
+
+    private static boolean isRecipientField(String name) {
+        return "To".equalsIgnoreCase(name) || "Cc".equalsIgnoreCase(name) || "Bcc".equalsIgnoreCase(name);
+    }
+
+    /**
+     * Adds the user names of the addresses of a header value to the given set.
+     * The addresses are separated by commas, and may be written as {@code Name <user@host>}.
+     *
+     * @param addresses  The value of the header
+     * @param recipients The set of user names
+     */
+    static void parse(String addresses, Set<String> recipients) {
+        for (String address : addresses.split(",")) {
+            int open = address.lastIndexOf('<');
+            int close = address.lastIndexOf('>');
+            if (open >= 0 && close > open) {
+                address = address.substring(open + 1, close);
+            }
+            address = address.trim();
+            int at = address.indexOf('@');
+            String username = (at >= 0 ? address.substring(0, at) : address).trim();
+            if ( ! username.isEmpty() && username.indexOf(' ') < 0) {
+                recipients.add(username);
+            }
+        }
+    }
+}
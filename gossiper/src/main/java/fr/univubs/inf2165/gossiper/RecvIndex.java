@@ -0,0 +1,235 @@
+package fr.univubs.inf2165.gossiper;
+
+import fr.univubs.inf2165.gossiper.format.Util;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * This class is the index of the files of the receive directory. It is loaded at
+ * startup and kept up to date by a {@link DirectoryWatcher}, so that offers are
+ * answered from memory without any file system access.
+ *
+ * When a {@link BlobStore} is given, the files found at startup are stored in it, so
+ * that a file received by several hosted users occupies the disk once.
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public class RecvIndex implements DirectoryWatcher.Listener {
+
+    private final Path recvDirectory;
+    private final DirectoryWatcher watcher;
+    private final FilenameSet filenames;
+    /**
+     * The store of the file contents, null if the files are not stored
+     */
+    private final BlobStore blobStore;
+    /**
+     * The hashes of the stored contents of the received files, in hexadecimal
+     */
+    private final Set<String> hashes = ConcurrentHashMap.newKeySet();
+    /**
+     * Notified of the names of the files created in the receive directory, null if none
+     */
+    private volatile Consumer<String> listener;
+
+    /**
+     * Constructs a new RecvIndex object.
+     *
+     * @param recvDirectory The receive directory. Must not be null.
+     * @param watcher The watcher notifying the changes. Must not be null.
+     */
+    public RecvIndex(Path recvDirectory, DirectoryWatcher watcher) {
+        this(recvDirectory, watcher, null);
+    }
+
+    /**
+     * Constructs a new RecvIndex object which stores the received files.
+     *
+     * @param recvDirectory The receive directory. Must not be null.
+     * @param watcher The watcher notifying the changes. Must not be null.
+     * @param blobStore The store of the file contents, null to leave the files as they are.
+     */
+    public RecvIndex(Path recvDirectory, DirectoryWatcher watcher, BlobStore blobStore) {
+        Util.checkNotNull("RecvIndex -> recvDirectory", recvDirectory);
+        Util.checkNotNull("RecvIndex -> watcher", watcher);
+        this.recvDirectory = recvDirectory;
+        this.watcher = watcher;
+        this.blobStore = blobStore;
+        this.filenames = new FilenameSet();
+    }
+
+    /**
+     * Loads the index and starts watching the receive directory.
+     *
+     * @throws IOException if the receive directory can not be read or watched.
+     */
+    public void open() throws IOException {
+        // register first so that no change is lost during the scan
+        this.watcher.register(this.recvDirectory, this);
+        scan();
+        if (this.blobStore != null) {
+            store();
+        }
+        System.out.println("[Gossiper]: recv index -> " + this.filenames.size() + " files");
+    }
+
+    /**
+     * Sets the listener notified of the names of the files created in the receive
+     * directory, as seen by the directory watcher.
+     *
+     * @param listener The listener, null if none
+     */
+    public void setListener(Consumer<String> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Return the names of the received files.
+     * @return the names of the received files.
+     */
+    public FilenameSet getFilenames() {
+        return this.filenames;
+    }
+
+    /**
+     * Return true if the given file has been received.
+     *
+     * @param filename The file name
+     * @return true if the given file has been received.
+     */
+    public boolean contains(String filename) {
+        return this.filenames.contains(filename);
+    }
+
+    /**
+     * Deletes a received file. The file system is only accessed if the file is in the index.
+     *
+     * @param filename The file name
+     * @return true if the file has been deleted.
+     * @throws IOException if the file can not be deleted.
+     */
+    public boolean delete(String filename) throws IOException {
+        if ( ! this.filenames.contains(filename)) {
+            return false;
+        }
+        this.filenames.remove(filename);
+        return Files.deleteIfExists(this.recvDirectory.resolve(filename));
+    }
+
+    /**
+     * Adds a delivered file to the index, without waiting for the directory watcher.
+     *
+     * @param filename The file name
+     */
+    public void received(String filename) {
+        this.filenames.add(filename);
+    }
+
+    /**
+     * Adds a delivered file whose content is stored to the index.
+     *
+     * @param filename The file name
+     * @param hash     The SHA-256 hash of the stored content, in hexadecimal
+     */
+    public void received(String filename, String hash) {
+        this.filenames.add(filename);
+        this.hashes.add(hash);
+    }
+
+    /**
+     * Return true if the given content has been stored from a received file.
+     *
+     * @param hash The SHA-256 hash of the content, in hexadecimal
+     * @return true if a received file has held the content.
+     */
+    public boolean references(String hash) {
+        return this.hashes.contains(hash);
+    }
+
+    /**
+     * Removes a file deleted by another component from the index, without waiting
+     * for the directory watcher.
+     *
+     * @param filename The file name
+     */
+    public void removed(String filename) {
+        this.filenames.remove(filename);
+    }
+
+    @Override
+    public void created(Path path) {
+        if ( ! isHidden(path)) {
+            this.filenames.add(path.getFileName().toString());
+            Consumer<String> listener = this.listener;
+            if (listener != null) {
+                listener.accept(path.getFileName().toString());
+            }
+        }
+    }
+
+    @Override
+    public void modified(Path path) {
+    }
+
+    @Override
+    public void deleted(Path path) {
+        this.filenames.remove(path.getFileName().toString());
+    }
+
+    @Override
+    public void overflowed(Path dir) {
+        try {
+            this.filenames.clear();
+            scan();
+        } catch (IOException ioe) {
+            System.err.println("[Gossiper]: error while rescanning -> " + dir + "\n\t cause -> " + ioe.getMessage());
+        }
+    }
+
+    /**
+     * Stores the received files in the blob store. Only done at startup: a file
+     * created meanwhile may still be being written by the receiver.
+     */
+    private void store() throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.recvDirectory, Files::isRegularFile)) {
+            for (Path path : stream) {
+                if (isHidden(path)) {
+                    continue;
+                }
+                try {
+                    this.hashes.add(this.blobStore.ingest(path));
+                } catch (IOException ioe) {
+                    System.err.println("[Gossiper]: error while storing -> " + path + "\n\t cause -> " + ioe.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Return true if the given file is hidden, such as the directory of the files
+     * being received by the file receiver, which is never indexed.
+     */
+    private static boolean isHidden(Path path) {
+        return path.getFileName().toString().startsWith(".");
+    }
+
+    /**
+     * Adds the files of the receive directory to the index.
+     */
+    private void scan() throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.recvDirectory)) {
+            for (Path path : stream) {
+                if ( ! isHidden(path)) {
+                    this.filenames.add(path.getFileName().toString());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package fr.univubs.inf2165.gossiper;
+
+import java.net.InetSocketAddress;
+import java.util.Collection;
+
+/**
+ * This interface is implemented by the objects which know the peers hosting the users,
+ * for instance from the user names carried by their beacons. The gossiper consults it
+ * to offer a mail only to the peers of its recipients, rather than to every peer.
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public interface RoutingTable {
+
+    /**
+     * Return the gossiping addresses of the reachable peers hosting the given user.
+     *
+     * @param username The user name
+     * @return the gossiping (UDP) addresses of the peers, empty if the user is unknown
+     *         or none of its peers is reachable.
+     */
+    Collection<InetSocketAddress> getRoutes(String username);
+}
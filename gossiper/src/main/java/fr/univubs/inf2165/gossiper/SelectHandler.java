@@ -0,0 +1,23 @@
+package fr.univubs.inf2165.gossiper;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+
+/**
+ * This interface is implemented by the objects attached to the selection keys of a
+ * selector shared by several components: the thread running the selector calls the
+ * handler attached to each selected key.
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public interface SelectHandler {
+
+    /**
+     * Called when the channel of the given key is ready. The handler must not block.
+     *
+     * @param key The selected key
+     * @throws IOException if an I/O error occurs.
+     */
+    void selected(SelectionKey key) throws IOException;
+}
@@ -0,0 +1,448 @@
+package fr.univubs.inf2165.gossiper;
+
+import fr.univubs.inf2165.gossiper.format.FileInfo;
+import fr.univubs.inf2165.gossiper.format.Util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * This class is the index of the files offered by a gossiper, that is to say the
+ * files of the send directory. Files found anywhere else under the user directory
+ * (except in the receive directory) are copied into the send directory, or, when a
+ * {@link BlobStore} is given, stored once in the latter and linked into the send
+ * directory, so that an unchanged file is never copied again.
+ *
+ * The index is built once at startup and then kept up to date by a
+ * {@link DirectoryWatcher}, so that gossiping sessions never walk the user directory.
+ * It is persisted in the user directory, which allows to skip the scan of the send
+ * directory on restart when the latter has not been modified meanwhile.
+ *
+ * <pre>
+ *     Index file format (UTF-8 text):
+ *              last modified time of the send directory (ms)
+ *              filename
+ *              ...
+ * </pre>
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public class SendIndex implements DirectoryWatcher.Listener {
+
+    /**
+     * The name of the index file, in the user directory
+     */
+    public static final String INDEX_FILENAME = ".send-index";
+
+    private final Path userDirectory;
+    private final Path sendDirectory;
+    private final Path recvDirectory;
+    private final Path indexFile;
+    private final DirectoryWatcher watcher;
+    /**
+     * The store of the file contents, null if the files are copied
+     */
+    private final BlobStore blobStore;
+
+    /**
+     * The names of the files of the send directory
+     */
+    private final Set<String> filenames;
+    /**
+     * The recipients of the offered files, read on demand
+     */
+    private final ConcurrentMap<String, Set<String>> recipients = new ConcurrentHashMap<>();
+    /**
+     * The contents (size and hash) of the offered files, computed on demand
+     */
+    private final ConcurrentMap<String, FileInfo> contents = new ConcurrentHashMap<>();
+    /**
+     * The hashes of the contents stored or hashed from the files of the user, in hexadecimal
+     */
+    private final Set<String> hashes = ConcurrentHashMap.newKeySet();
+    /**
+     * The last snapshot of the file names
+     */
+    private volatile Set<String> snapshot = Set.of();
+    /**
+     * true if the file names have changed since the last snapshot
+     */
+    private volatile boolean dirty = true;
+    /**
+     * true if the file names have changed since the last save
+     */
+    private volatile boolean unsaved = false;
+
+    /**
+     * Constructs a new SendIndex object.
+     *
+     * @param userDirectory The user directory. Must not be null.
+     * @param sendDirectory The send directory. Must not be null.
+     * @param recvDirectory The receive directory, never indexed. Must not be null.
+     * @param watcher The watcher notifying the changes. Must not be null.
+     */
+    public SendIndex(Path userDirectory, Path sendDirectory, Path recvDirectory, DirectoryWatcher watcher) {
+        this(userDirectory, sendDirectory, recvDirectory, watcher, null);
+    }
+
+    /**
+     * Constructs a new SendIndex object which links the files into the send directory.
+     *
+     * @param userDirectory The user directory. Must not be null.
+     * @param sendDirectory The send directory. Must not be null.
+     * @param recvDirectory The receive directory, never indexed. Must not be null.
+     * @param watcher The watcher notifying the changes. Must not be null.
+     * @param blobStore The store of the file contents, null to copy the files.
+     */
+    public SendIndex(Path userDirectory, Path sendDirectory, Path recvDirectory, DirectoryWatcher watcher,
+                     BlobStore blobStore) {
+        Util.checkNotNull("SendIndex -> userDirectory", userDirectory);
+        Util.checkNotNull("SendIndex -> sendDirectory", sendDirectory);
+        Util.checkNotNull("SendIndex -> recvDirectory", recvDirectory);
+        Util.checkNotNull("SendIndex -> watcher", watcher);
+        this.userDirectory = userDirectory;
+        this.sendDirectory = sendDirectory;
+        this.recvDirectory = recvDirectory;
+        this.indexFile = userDirectory.resolve(INDEX_FILENAME);
+        this.watcher = watcher;
+        this.blobStore = blobStore;
+        this.filenames = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Builds the index and starts watching the user directory. The persisted index
+     * is used if the send directory has not been modified since it was saved.
+     *
+     * @throws IOException if the user directory can not be read or watched.
+     */
+    public void open() throws IOException {
+        // register first so that no change is lost during the scan
+        registerAll(this.userDirectory);
+        if ( ! load()) {
+            scanSendDirectory();
+        }
+        System.out.println("[Gossiper]: send index -> " + this.filenames.size() + " files");
+    }
+
+    /**
+     * Return an immutable snapshot of the names of the offered files.
+     * @return an immutable snapshot of the names of the offered files.
+     */
+    public Set<String> snapshot() {
+        if (this.dirty) {
+            synchronized (this) {
+                if (this.dirty) {
+                    this.dirty = false;
+                    this.snapshot = Set.copyOf(this.filenames);
+                }
+            }
+        }
+        return this.snapshot;
+    }
+
+    /**
+     * Return true if the given file is in the send directory.
+     *
+     * @param filename The file name
+     * @return true if the given file is in the send directory.
+     */
+    public boolean contains(String filename) {
+        return this.filenames.contains(filename);
+    }
+
+    /**
+     * Return the user names of the recipients of an offered file. The headers of
+     * the file are read once, then kept until the file changes.
+     *
+     * @param filename The file name
+     * @return the user names of the recipients, empty if unknown.
+     */
+    public Set<String> getRecipients(String filename) {
+        Set<String> cached = this.recipients.get(filename);
+        if (cached != null) {
+            return cached;
+        }
+        Set<String> read;
+        try {
+            read = RecipientReader.read(this.sendDirectory.resolve(filename));
+        } catch (IOException ioe) {
+            return Collections.emptySet();
+        }
+        if (this.filenames.contains(filename)) {
+            this.recipients.put(filename, read);
+        }
+        return read;
+    }
+
+    /**
+     * Return the information of an offered file with its content (size and hash).
+     * The file is hashed once, then the content is kept until the file changes.
+     *
+     * @param filename The file name
+     * @return the information of the file, null if the file can't be read.
+     */
+    public FileInfo getFileInfo(String filename) {
+        FileInfo cached = this.contents.get(filename);
+        if (cached != null) {
+            return cached;
+        }
+        FileInfo read;
+        try {
+            Path file = this.sendDirectory.resolve(filename);
+            long size = Files.size(file);
+            read = new FileInfo(filename, size, BlobStore.digest(file));
+            this.hashes.add(BlobStore.toHex(read.getHash()));
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+        if (this.filenames.contains(filename)) {
+            this.contents.put(filename, read);
+        }
+        return read;
+    }
+
+    /**
+     * Return true if the given content has been stored or hashed from a file of the user.
+     *
+     * @param hash The SHA-256 hash of the content, in hexadecimal
+     * @return true if the user has held the content.
+     */
+    public boolean references(String hash) {
+        return this.hashes.contains(hash);
+    }
+
+    /**
+     * Return the number of indexed files.
+     * @return the number of indexed files.
+     */
+    public int size() {
+        return this.filenames.size();
+    }
+
+    @Override
+    public void created(Path path) {
+        if (isIndexFile(path) || path.equals(this.recvDirectory)) {
+            return;
+        }
+        if (path.getParent().equals(this.sendDirectory)) {
+            this.recipients.remove(path.getFileName().toString());
+            this.contents.remove(path.getFileName().toString());
+            add(path.getFileName().toString());
+        } else if (Files.isDirectory(path)) {
+            try {
+                registerAll(path);
+            } catch (IOException ioe) {
+                System.err.println("[Gossiper]: error while indexing -> " + path + "\n\t cause -> " + ioe.getMessage());
+            }
+        } else {
+            copyToSendDirectory(path, false);
+        }
+    }
+
+    @Override
+    public void modified(Path path) {
+        if (path.getParent().equals(this.sendDirectory)) {
+            this.recipients.remove(path.getFileName().toString());
+            this.contents.remove(path.getFileName().toString());
+        } else if ( ! isIndexFile(path) && Files.isRegularFile(path)) {
+            copyToSendDirectory(path, true);
+        }
+    }
+
+    @Override
+    public void deleted(Path path) {
+        if (path.getParent().equals(this.sendDirectory)) {
+            remove(path.getFileName().toString());
+        }
+    }
+
+    @Override
+    public void overflowed(Path dir) {
+        try {
+            if (dir.equals(this.sendDirectory)) {
+                scanSendDirectory();
+            } else {
+                registerAll(dir);
+            }
+        } catch (IOException ioe) {
+            System.err.println("[Gossiper]: error while rescanning -> " + dir + "\n\t cause -> " + ioe.getMessage());
+        }
+    }
+
+    @Override
+    public void processed() {
+        if (this.unsaved) {
+            save();
+        }
+    }
+
+    /**
+     * Return true if the given path is the index file or its temporary file.
+     */
+    private boolean isIndexFile(Path path) {
+        return path.getParent().equals(this.userDirectory) && path.getFileName().toString().startsWith(INDEX_FILENAME);
+    }
+
+    /**
+     * Adds a file name to the index.
+     */
+    private void add(String filename) {
+        if (this.filenames.add(filename)) {
+            this.dirty = true;
+            this.unsaved = true;
+        }
+    }
+
+    /**
+     * Removes a file name from the index.
+     */
+    private void remove(String filename) {
+        this.recipients.remove(filename);
+        this.contents.remove(filename);
+        if (this.filenames.remove(filename)) {
+            this.dirty = true;
+            this.unsaved = true;
+        }
+    }
+
+    /**
+     * Watches the given directory and its sub directories (except the receive
+     * directory), and copies their files into the send directory.
+     */
+    private void registerAll(Path start) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (dir.equals(recvDirectory)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                watcher.register(dir, SendIndex.this);
+                return dir.equals(sendDirectory) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && ! isIndexFile(file)) {
+                    copyToSendDirectory(file, false);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Rebuilds the index from the content of the send directory.
+     */
+    private void scanSendDirectory() throws IOException {
+        Set<String> found = ConcurrentHashMap.newKeySet();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.sendDirectory, Files::isRegularFile)) {
+            for (Path path : stream) {
+                found.add(path.getFileName().toString());
+            }
+        }
+        this.filenames.retainAll(found);
+        this.filenames.addAll(found);
+        this.dirty = true;
+        this.unsaved = true;
+        save();
+    }
+
+    /**
+     * Copies (or links) a file into the send directory and indexes it.
+     *
+     * @param path The file to copy
+     * @param replace true to replace an existing copy
+     */
+    private void copyToSendDirectory(Path path, boolean replace) {
+        Path filepath = this.sendDirectory.resolve(path.getFileName());
+        try {
+            if (this.blobStore != null) {
+                if (replace || ! Files.exists(filepath)) {
+                    // the source is stored rather than linked, since the user may edit it in place
+                    String hash = this.blobStore.put(path);
+                    this.blobStore.link(hash, filepath);
+                    this.hashes.add(hash);
+                }
+            } else if (replace) {
+                Files.copy(path, filepath, StandardCopyOption.REPLACE_EXISTING);
+            } else if ( ! Files.exists(filepath)) {
+                Files.copy(path, filepath);
+            }
+            if (replace) {
+                this.recipients.remove(path.getFileName().toString());
+                this.contents.remove(path.getFileName().toString());
+            }
+            add(path.getFileName().toString());
+        } catch (NoSuchFileException nsfe) {
+            // the file has been deleted meanwhile
+        } catch (IOException ioe) {
+            System.err.println("[Gossiper]: error while copying -> " + path + "\n\t cause -> " + ioe.getMessage());
+        }
+    }
+
+    /**
+     * Loads the persisted index if it is up to date.
+     *
+     * @return true if the persisted index has been loaded.
+     */
+    private boolean load() {
+        if ( ! Files.isRegularFile(this.indexFile)) {
+            return false;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(this.indexFile, StandardCharsets.UTF_8)) {
+            long lastModified = Long.parseLong(reader.readLine());
+            if (lastModified != Files.getLastModifiedTime(this.sendDirectory).toMillis()) {
+                return false;
+            }
+            String filename;
+            while ((filename = reader.readLine()) != null) {
+                if ( ! filename.isEmpty()) {
+                    add(filename);
+                }
+            }
+            this.unsaved = false;
+            return true;
+        } catch (IOException | NumberFormatException | NullPointerException e) {
+            System.err.println("[Gossiper]: the send index can not be loaded -> " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Saves the index in the user directory. The index is written in a temporary
+     * file which then replaces the previous index.
+     */
+    private synchronized void save() {
+        this.unsaved = false;
+        Path tmp = this.indexFile.resolveSibling(INDEX_FILENAME + ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                writer.write(Long.toString(Files.getLastModifiedTime(this.sendDirectory).toMillis()));
+                writer.newLine();
+                for (String filename : this.filenames) {
+                    writer.write(filename);
+                    writer.newLine();
+                }
+            }
+            Files.move(tmp, this.indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ioe) {
+            this.unsaved = true;
+            System.err.println("[Gossiper]: the send index can not be saved -> " + ioe.getMessage());
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package fr.univubs.inf2165.gossiper;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+
+/**
+ * This class caches the socket addresses of the peers, by IP address and port
+ * number as read from a message. Answering a peer then builds neither an
+ * InetAddress nor an InetSocketAddress once the peer is known.
+ *
+ * The cache is direct mapped: each (ip, port) pair has a single slot, and a new
+ * peer replaces the previous one of its slot. Entries are immutable, so the cache
+ * can be read and written concurrently without locking.
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public class SocketAddressCache {
+
+    /**
+     * The number of slots (power of 2)
+     */
+    private static final int CAPACITY = 1024;
+
+    private final Entry[] entries = new Entry[CAPACITY];
+
+    /**
+     * Return the socket address of the given IP address and port number.
+     *
+     * @param ip The IP address as a big endian integer
+     * @param port The port number
+     * @return the socket address.
+     * @throws UnknownHostException if the IP address is not valid.
+     */
+    public InetSocketAddress get(int ip, short port) throws UnknownHostException {
+        long key = ((long) ip << 16) | (port & 0xFFFF);
+        int slot = (int) ((key ^ (key >>> 21)) * 0x9E3779B1L >>> 22) & (CAPACITY - 1);
+        Entry entry = this.entries[slot];
+        if (entry == null || entry.key != key) {
+            byte[] address = {(byte) (ip >>> 24), (byte) (ip >>> 16), (byte) (ip >>> 8), (byte) ip};
+            entry = new Entry(key, new InetSocketAddress(InetAddress.getByAddress(address), port & 0xFFFF));
+            this.entries[slot] = entry;
+        }
+        return entry.address;
+    }
+
+    /**
+     * A cached socket address.
+     */
+    private static class Entry {
+
+        private final long key;
+        private final InetSocketAddress address;
+
+        private Entry(long key, InetSocketAddress address) {
+            this.key = key;
+            this.address = address;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package fr.univubs.inf2165.gossiper;
+
+import fr.univubs.inf2165.gossiper.format.MessageTemplate;
+import fr.univubs.inf2165.gossiper.format.MessageType;
+import fr.univubs.inf2165.gossiper.format.Util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+/**
+ * This class represents a user hosted by a gossiper. A gossiper can host many users
+ * on a single UDP/TCP endpoint: each one has its own send and receive directories
+ * and indexes, and gossips under its own user name, while the channels, the watcher
+ * of the directories, the outbound queue and the thread pools are shared by all of them.
+ *
+ * A peer addresses its messages to a tenant with a tenant message carrying the user name;
+ * the messages of a tenant other than the default one are addressed as well, so that the
+ * peers address their answers to it. The other messages are handled by the default tenant.
+ *
+ * The templates of the sent messages are encoded once, with the address of the gossiper.
+ * The contents of the files are kept in a {@link BlobStore} shared by the tenants, so
+ * that a mail sent to several hosted users is stored once.
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public class Tenant {
+
+    private final String username;
+    private final Path userDirectory;
+    /**
+     * The index of the offered files
+     */
+    private final SendIndex sendIndex;
+    /**
+     * The index of the received files
+     */
+    private final RecvIndex recvIndex;
+
+    /*
+     * Pre-encoded prefixes of the sent messages, built from the gossiper address and the user name
+     */
+    MessageTemplate offerTemplate;
+    MessageTemplate requestTemplate;
+    MessageTemplate deleteTemplate;
+    MessageTemplate offerBatchTemplate;
+    MessageTemplate requestBatchTemplate;
+    MessageTemplate deleteBatchTemplate;
+    MessageTemplate syncTemplate;
+    MessageTemplate digestTemplate;
+
+    /**
+     * Constructs a new Tenant object, and creates its directories if they don't exist.
+     *
+     * @param username      The user name. Must not be null.
+     * @param baseDirectory The base directory, which contains the user directories. Must not be null.
+     * @param watcher       The watcher of the directories, shared by the tenants. Must not be null.
+     * @param blobStore     The store of the file contents, shared by the tenants. Must not be null.
+     * @throws IOException if a directory can't be created.
+     */
+    Tenant(String username, Path baseDirectory, DirectoryWatcher watcher, BlobStore blobStore) throws IOException {
+        Util.checkNotNull("Tenant -> username", username);
+        Util.checkNotNull("Tenant -> baseDirectory", baseDirectory);
+        MessageTemplate.toInfoBytes(username); // checks that the user name fits in a message
+        this.username = username;
+        this.userDirectory = baseDirectory.resolve(username);
+        createDirectoryIfNotExists(getSendDirectory());
+        createDirectoryIfNotExists(getRecvDirectory());
+        this.sendIndex = new SendIndex(this.userDirectory, getSendDirectory(), getRecvDirectory(), watcher, blobStore);
+        this.recvIndex = new RecvIndex(getRecvDirectory(), watcher, blobStore);
+    }
+
+    /**
+     * Opens the indexes: the directories are scanned and watched.
+     *
+     * @throws IOException if a directory can't be read.
+     */
+    void open() throws IOException {
+        this.sendIndex.open();
+        this.recvIndex.open();
+    }
+
+    /**
+     * Encodes the prefixes of the sent messages.
+     *
+     * @param ip      The IP address of the gossiper as a big endian integer
+     * @param udpPort The UDP port of the gossiper
+     * @param tcpPort The TCP port of the gossiper
+     */
+    void createTemplates(int ip, short udpPort, short tcpPort) {
+        this.offerTemplate = new MessageTemplate(MessageType.OFFER, ip, udpPort, this.username);
+        this.requestTemplate = new MessageTemplate(MessageType.REQUEST, ip, tcpPort, this.username);
+        this.deleteTemplate = new MessageTemplate(MessageType.DELETE, this.username);
+        this.offerBatchTemplate = new MessageTemplate(MessageType.OFFER_BATCH, ip, udpPort, this.username);
+        this.requestBatchTemplate = new MessageTemplate(MessageType.REQUEST_BATCH, ip, tcpPort, this.username);
+        this.deleteBatchTemplate = new MessageTemplate(MessageType.DELETE_BATCH, ip, udpPort, this.username);
+        this.syncTemplate = new MessageTemplate(MessageType.SYNC, ip, udpPort, this.username);
+        this.digestTemplate = new MessageTemplate(MessageType.DIGEST, ip, udpPort, this.username);
+    }
+
+    /**
+     * Create a directory if it doesn't exist.
+     */
+    private static void createDirectoryIfNotExists(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            Files.createDirectories(dir);
+            System.out.println("[Gossiper]: I've just created the directory -> " + dir.toString());
+        }
+    }
+
+    public String getUsername() {
+        return this.username;
+    }
+
+    public Path getUserDirectory() {
+        return this.userDirectory;
+    }
+
+    public Path getSendDirectory() {
+        return this.userDirectory.resolve("send");
+    }
+
+    public Path getRecvDirectory() {
+        return this.userDirectory.resolve("recv");
+    }
+
+    /**
+     * Return the index of the offered files.
+     * @return the index of the offered files.
+     */
+    SendIndex getSendIndex() {
+        return this.sendIndex;
+    }
+
+    /**
+     * Return the index of the received files.
+     * @return the index of the received files.
+     */
+    RecvIndex getRecvIndex() {
+        return this.recvIndex;
+    }
+
+    /**
+     * Return true if the user has held the given content, in a file it has sent or received.
+     *
+     * @param hash The SHA-256 hash of the content, in hexadecimal
+     * @return true if the user has held the content.
+     */
+    boolean references(String hash) {
+        return this.sendIndex.references(hash) || this.recvIndex.references(hash);
+    }
+
+    /**
+     * Return an immutable snapshot of the names of the files to offer.
+     * @return an immutable snapshot of the names of the files to offer.
+     */
+    public Set<String> getSendSnapshot() {
+        return this.sendIndex.snapshot();
+    }
+
+    @Override
+    public String toString() {
+        return "Tenant {" + this.username + "}";
+    }
+}
@@ -0,0 +1,216 @@
+package fr.univubs.inf2165.gossiper;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is the table of the files being transferred to this node. When several
+ * peers offer the same file, it is only requested from the first one; the other ones
+ * are kept as alternates. If the file has not been received before the timeout, it is
+ * requested from the next alternate, so that the same mail is not received several
+ * times over TCP, nor lost if the first peer fails to send it.
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public class TransferTable {
+
+    /**
+     * The default time after which a requested file is requested from another peer (ms)
+     */
+    public static final long DEFAULT_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+    /**
+     * The maximum number of alternate peers kept for a file
+     */
+    public static final int MAX_ALTERNATES = 8;
+
+    private final Map<String, Transfer> transfers = new HashMap<>();
+    private final long timeout;
+    /**
+     * The earliest deadline of the transfers, Long.MAX_VALUE if none
+     */
+    private volatile long nextDeadline = Long.MAX_VALUE;
+
+    /**
+     * Constructs a new TransferTable object.
+     *
+     * @param timeout The time after which a requested file is requested from another peer (ms), positive
+     */
+    public TransferTable(long timeout) {
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("The timeout must be positive -> " + timeout);
+        }
+        this.timeout = timeout;
+    }
+
+    /**
+     * Constructs a new TransferTable object with the default timeout.
+     */
+    public TransferTable() {
+        this(DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * Records that a peer offers a file which has not been received. Return true if
+     * the file should be requested from the peer: no transfer of the file is in flight,
+     * or the one in flight has timed out. Otherwise the peer is kept as an alternate.
+     *
+     * @param username The user receiving the file
+     * @param filename The file name
+     * @param peer     The gossiping address of the offering peer
+     * @param now      The current time (ms)
+     * @return true if the file should be requested from the peer.
+     */
+    public synchronized boolean begin(String username, String filename, InetSocketAddress peer, long now) {
+        String key = key(username, filename);
+        Transfer transfer = this.transfers.get(key);
+        if (transfer == null || now >= transfer.deadline) {
+            if (transfer == null) {
+                transfer = new Transfer(username, filename);
+                this.transfers.put(key, transfer);
+            }
+            transfer.alternates.remove(peer);
+            transfer.start(peer, now + this.timeout);
+            this.nextDeadline = Math.min(this.nextDeadline, transfer.deadline);
+            return true;
+        }
+        if ( ! peer.equals(transfer.peer) && ! transfer.alternates.contains(peer)
+                && transfer.alternates.size() < MAX_ALTERNATES) {
+            transfer.alternates.add(peer);
+        }
+        return false;
+    }
+
+    /**
+     * Records that a file has been received: its transfer is no longer in flight.
+     *
+     * @param username The user receiving the file
+     * @param filename The file name
+     */
+    public synchronized void completed(String username, String filename) {
+        this.transfers.remove(key(username, filename));
+    }
+
+    /**
+     * Return true if a transfer of the file is in flight.
+     *
+     * @param username The user receiving the file
+     * @param filename The file name
+     * @return true if a transfer of the file is in flight.
+     */
+    public synchronized boolean isInFlight(String username, String filename) {
+        return this.transfers.containsKey(key(username, filename));
+    }
+
+    /**
+     * Return the users waiting for a file, whose transfer is in flight.
+     *
+     * @param filename The file name
+     * @return the names of the users waiting for the file, in no particular order.
+     */
+    public synchronized List<String> getReceivers(String filename) {
+        List<String> receivers = new ArrayList<>(1);
+        for (Transfer transfer : this.transfers.values()) {
+            if (transfer.filename.equals(filename)) {
+                receivers.add(transfer.username);
+            }
+        }
+        return receivers;
+    }
+
+    /**
+     * Restarts the timed out transfers with their next alternate, and forgets those
+     * without alternate. Does nothing until the earliest deadline.
+     *
+     * @param now The current time (ms)
+     * @return the restarted transfers, whose file should be requested from their new peer.
+     */
+    public List<Transfer> expire(long now) {
+        if (now < this.nextDeadline) {
+            return Collections.emptyList();
+        }
+        synchronized (this) {
+            List<Transfer> restarted = new ArrayList<>();
+            long next = Long.MAX_VALUE;
+            Iterator<Transfer> iterator = this.transfers.values().iterator();
+            while (iterator.hasNext()) {
+                Transfer transfer = iterator.next();
+                if (now >= transfer.deadline) {
+                    InetSocketAddress alternate = transfer.alternates.poll();
+                    if (alternate == null) {
+                        iterator.remove();
+                        continue;
+                    }
+                    transfer.start(alternate, now + this.timeout);
+                    restarted.add(transfer);
+                }
+                next = Math.min(next, transfer.deadline);
+            }
+            this.nextDeadline = next;
+            return restarted;
+        }
+    }
+
+    /**
+     * Return the number of transfers in flight.
+     * @return the number of transfers in flight.
+     */
+    public synchronized int size() {
+        return this.transfers.size();
+    }
+
+    private static String key(String username, String filename) {
+        return username + '/' + filename;
+    }
+
+    /**
+     * A file being transferred to this node.
+     */
+    public static class Transfer {
+        private final String username;
+        private final String filename;
+        private final Deque<InetSocketAddress> alternates = new ArrayDeque<>();
+        private InetSocketAddress peer;
+        private long deadline;
+
+        private Transfer(String username, String filename) {
+            this.username = username;
+            this.filename = filename;
+        }
+
+        private void start(InetSocketAddress peer, long deadline) {
+            this.peer = peer;
+            this.deadline = deadline;
+        }
+
+        public String getUsername() {
+            return this.username;
+        }
+
+        public String getFilename() {
+            return this.filename;
+        }
+
+        /**
+         * Return the peer from which the file is requested.
+         * @return the gossiping address of the peer from which the file is requested.
+         */
+        public InetSocketAddress getPeer() {
+            return this.peer;
+        }
+
+        @Override
+        public String toString() {
+            return "Transfer {username=" + this.username + " | filename=" + this.filename + " | peer=" + this.peer
+                    + " | alternates=" + this.alternates.size() + "}";
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package fr.univubs.inf2165.gossiper.format;
+
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class represents an abstract message format of a batch request or batch offer
+ * message. It contains the address, the user information and several file information,
+ * so that many files are offered (or requested) within a single datagram.
+ * @link{AbstractMessageFormat}
+ *
+ * <pre>
+ *     Format:
+ *                        -----------------------------------------------------------------
+ *             message =  |   address   |   userInfo   |   count   |   fileInfo * count   |
+ *                        -----------------------------------------------------------------
+ *          byte  ->             6              x            2                 x
+ * </pre>
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public abstract class AbstractBatchMessageFormat extends AbstractMessageFormat {
+
+    /**
+     * The maximum size of a batch packet in bytes. It fits in a single ethernet
+     * frame (1500 bytes MTU - 20 bytes IP header - 8 bytes UDP header).
+     */
+    public static final int MAX_PACKET_SIZE = 1472;
+
+    /**
+     * The size of the file count in bytes
+     */
+    private static final int COUNT_SIZE = 2;
+
+    /**
+     * The maximum number of files in a batch
+     */
+    private static final int MAX_COUNT = 0xFFFF;
+
+    private Address address;
+    private UserInfo userInfo;
+    private List<FileInfo> fileInfos;
+
+    /**
+     * Constructor with a buffer that contains batch message (request/offer) data.
+     * @param buffer The buffer form which message data are read.
+     */
+    protected AbstractBatchMessageFormat(ByteBuffer buffer) throws UnknownHostException {
+        super(buffer);
+        this.address = new Address(buffer);
+        this.userInfo = new UserInfo(buffer);
+        int count = buffer.getShort() & MAX_COUNT;
+        this.fileInfos = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            this.fileInfos.add(new FileInfo(buffer));
+        }
+    }
+
+    /**
+     * Constructor with the message type, the address, the user information and
+     * the file information list.
+     *
+     * @param messageType The message type. Must not be null
+     * @param address The address. Must not be null
+     * @param userInfo The user information. Must not be null
+     * @param fileInfos The file information list. Must not be null
+     */
+    protected AbstractBatchMessageFormat(MessageType messageType, Address address, UserInfo userInfo, List<FileInfo> fileInfos) {
+        super(messageType);
+        Util.checkNotNull("address", address);
+        Util.checkNotNull("userinfo", userInfo);
+        Util.checkNotNull("fileinfos", fileInfos);
+        if (fileInfos.size() > MAX_COUNT) {
+            throw new IllegalArgumentException("Too many files in the batch -> count = " + fileInfos.size());
+        }
+        this.address = address;
+        this.userInfo = userInfo;
+        this.fileInfos = fileInfos;
+    }
+
+    /**
+     * Return the size of a batch message header, that is to say the size of a batch
+     * message without any file information. That is useful to know how many file
+     * information can be added to a batch before reaching {@link #MAX_PACKET_SIZE}.
+     *
+     * @param userInfo The user information
+     * @return the size of a batch message header.
+     */
+    public static int getHeaderSize(UserInfo userInfo) {
+        return 1 + Address.SIZE + userInfo.getSize() + COUNT_SIZE;
+    }
+
+    /**
+     * Writes batch message data in the given buffer from the buffer current position.
+     * @param buffer The buffer in which data are written.
+     */
+    public void writeData(ByteBuffer buffer) {
+        this.address.writeData(buffer);
+        this.userInfo.writeData(buffer);
+        buffer.putShort((short) this.fileInfos.size());
+        for (FileInfo fileInfo : this.fileInfos) {
+            fileInfo.writeData(buffer);
+        }
+    }
+
+    /**
+     * Return the minimum size of a batch message. A batch may be empty.
+     *
+     * @return the minimum size of a batch message
+     */
+    public int getMinSize() {
+        return super.getMinSize() + Address.SIZE + UserInfo.MIN_SIZE + COUNT_SIZE;
+    }
+
+    /**
+     * Return the real size of a batch message. That allows to create
+     * a buffer with the required size before writing data.
+     *
+     * @return the real size of a batch message.
+     */
+    public int getSize() {
+        int size = super.getSize() + Address.SIZE + this.userInfo.getSize() + COUNT_SIZE;
+        for (FileInfo fileInfo : this.fileInfos) {
+            size += fileInfo.getSize();
+        }
+        return size;
+    }
+
+    /**
+     * Return the address.
+     * @return the address.
+     */
+    public Address getAddress() {
+        return this.address;
+    }
+
+    /**
+     * Return the user info.
+     * @return the user info.
+     */
+    public UserInfo getUserInfo() {
+        return this.userInfo;
+    }
+
+    /**
+     * Return the file info list.
+     * @return the file info list.
+     */
+    public List<FileInfo> getFileInfos() {
+        return Collections.unmodifiableList(this.fileInfos);
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + " {" + this.address +" | "+ this.userInfo +" | count="+ this.fileInfos.size() +"}";
+    }
+}
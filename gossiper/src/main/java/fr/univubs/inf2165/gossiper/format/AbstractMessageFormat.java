@@ -59,12 +59,23 @@ public abstract class AbstractMessageFormat {
      */
     public ByteBuffer getPacket() {
         ByteBuffer buffer = ByteBuffer.allocate(this.getSize());
-        buffer.put(this.messageType.getCode());
-        this.writeData(buffer);
+        this.writePacket(buffer);
         buffer.flip();
         return buffer;
     }
 
+    /**
+     * Writes the message (code and data) in the given buffer from the buffer current
+     * position. Unlike getPacket, the caller can reuse the same buffer for many messages.
+     *
+     * @param buffer The buffer in which the message is written. It must have
+     *               at least getSize() bytes remaining.
+     */
+    public void writePacket(ByteBuffer buffer) {
+        buffer.put(this.messageType.getCode());
+        this.writeData(buffer);
+    }
+
     /**
      * Writes the message data in the given buffer.
      * @param buffer The buffer in which data are written.
@@ -12,14 +12,17 @@ import java.nio.ByteBuffer;
  *
  * <pre>
  *     Format:
- *                        --------------------------------------------
- *             message =  |   address   |   userInfo   |   fileInfo  |
- *                        --------------------------------------------
- *          byte  ->             6              x             x
+ *                        --------------------------------------------------------
+ *             message =  |   address   |   userInfo   |   fileInfo  | content ? |
+ *                        --------------------------------------------------------
+ *          byte  ->             6              x             x          0 | 40
  * </pre>
  *
+ * The content of the file (size | hash) is optional, see @link{FileInfo}: it is only
+ * written when known, and ignored by the peers which read the message up to the file info.
+ *
  * @author Aliyou Sylla
- * @version 1.0.0
+ * @version 1.0.1
  */
 public abstract class AbstractRequestOfferMessageFormat extends AbstractMessageFormat {
 
@@ -36,6 +39,7 @@ public abstract class AbstractRequestOfferMessageFormat extends AbstractMessageF
         this.address = new Address(buffer);
         this.userInfo = new UserInfo(buffer);
         this.fileInfo = new FileInfo(buffer);
+        this.fileInfo.readContent(buffer);
     }
 
     /**
@@ -65,6 +69,9 @@ public abstract class AbstractRequestOfferMessageFormat extends AbstractMessageF
         this.address.writeData(buffer);
         this.userInfo.writeData(buffer);
         this.fileInfo.writeData(buffer);
+        if (this.fileInfo.hasContent()) {
+            this.fileInfo.writeContent(buffer);
+        }
     }
 
     /**
@@ -85,7 +92,8 @@ public abstract class AbstractRequestOfferMessageFormat extends AbstractMessageF
      * @return the real size of a request/offer message.
      */
     public int getSize() {
-        return super.getSize() + Address.SIZE + this.userInfo.getSize() + this.fileInfo.getSize();
+        return super.getSize() + Address.SIZE + this.userInfo.getSize() + this.fileInfo.getSize()
+                + (this.fileInfo.hasContent() ? FileInfo.CONTENT_SIZE : 0);
     }
 
     /**
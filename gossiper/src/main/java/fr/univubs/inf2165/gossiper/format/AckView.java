@@ -0,0 +1,92 @@
+package fr.univubs.inf2165.gossiper.format;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class is the flyweight view of an ack message. An ack acknowledges all the
+ * reliable messages whose sequence number is lower than the base, and selectively
+ * the following ones: the bit i of the bitmap acknowledges the sequence number
+ * base + 1 + i. @link{MessageView} @link{ReliableView}
+ *
+ * The epoch is the one of the acknowledged messages, so that the acks of a previous
+ * epoch of the sender do not acknowledge the messages of the current one.
+ *
+ * <pre>
+ *     Format:
+ *                        ------------------------------------------
+ *             message =  |  code  |  epoch  |   base   |  bitmap  |
+ *                        ------------------------------------------
+ *          byte  ->          1         4          4          8
+ * </pre>
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public class AckView extends MessageView {
+
+    /**
+     * The size of an ack message in bytes
+     */
+    public static final int SIZE = CODE_SIZE + 4 + 4 + 8;
+
+    /**
+     * Wraps the view around the ack message starting at the buffer current position.
+     *
+     * @param buffer The buffer containing message data. Must not be null.
+     * @return this view.
+     * @throws IllegalArgumentException if the buffer does not contain a valid message.
+     */
+    public AckView wrap(ByteBuffer buffer) {
+        wrapBuffer(buffer);
+        return this;
+    }
+
+    @Override
+    protected void parse() {
+        checkAvailable(this.start, SIZE);
+    }
+
+    /**
+     * Return the epoch of the acknowledged messages.
+     * @return the epoch of the acknowledged messages.
+     */
+    public int getEpoch() {
+        return this.buffer.getInt(this.start + CODE_SIZE);
+    }
+
+    /**
+     * Return the sequence number of the first message not received yet.
+     * @return the sequence number of the first message not received yet.
+     */
+    public int getBase() {
+        return this.buffer.getInt(this.start + CODE_SIZE + 4);
+    }
+
+    /**
+     * Return the bitmap of the messages received after the base.
+     * @return the bitmap of the messages received after the base.
+     */
+    public long getBitmap() {
+        return this.buffer.getLong(this.start + CODE_SIZE + 8);
+    }
+
+    /**
+     * Writes an ack message in the given buffer from its current position.
+     *
+     * @param dst The buffer in which the message is written
+     * @param epoch The epoch of the acknowledged messages
+     * @param base The sequence number of the first message not received yet
+     * @param bitmap The bitmap of the messages received after the base
+     */
+    public static void encode(ByteBuffer dst, int epoch, int base, long bitmap) {
+        dst.put(MessageType.ACK.getCode());
+        dst.putInt(epoch);
+        dst.putInt(base);
+        dst.putLong(bitmap);
+    }
+
+    @Override
+    public String toString() {
+        return "Message [type=" + getMessageType() + "] {epoch=" + getEpoch() + " | base=" + getBase() + " | bitmap=" + Long.toBinaryString(getBitmap()) + "}";
+    }
+}
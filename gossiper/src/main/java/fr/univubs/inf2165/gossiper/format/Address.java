@@ -39,6 +39,7 @@ public class Address {
     public Address(ByteBuffer buffer) throws UnknownHostException {
         Util.checkNotNull("buffer", buffer);
         byte[] ipBytes = new byte[IP_SIZE];
+        buffer.get(ipBytes);
         this.ip = (Inet4Address) Inet4Address.getByAddress(ipBytes);
         this.port = buffer.getShort();
     }
@@ -75,7 +76,7 @@ public class Address {
      * @throws UnknownHostException
      */
     public InetSocketAddress getInetSocketAddress() throws UnknownHostException {
-        return new InetSocketAddress(this.ip, this.port);
+        return new InetSocketAddress(this.ip, this.port & 0xFFFF);
     }
 
     /**
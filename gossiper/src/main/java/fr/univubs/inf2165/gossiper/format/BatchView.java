@@ -0,0 +1,289 @@
+package fr.univubs.inf2165.gossiper.format;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class is the flyweight view of a batch request, offer or delete message. The
+ * file names are read with a cursor: {@link #next()} moves the cursor to the next file.
+ * @link{MessageView} @link{AbstractBatchMessageFormat}
+ *
+ * <pre>
+ *     Format:
+ *                        -----------------------------------------------------------------------------------------------
+ *             message =  |  code  |   address   |   userInfo   |   count   |   fileInfo * count   |   content * count ?  |
+ *                        -----------------------------------------------------------------------------------------------
+ *          byte  ->          1           6              x            2                 x               0 | 40 * count
+ * </pre>
+ *
+ * A batch offer may end with the contents (size | hash) of its files, in the same order,
+ * see @link{FileInfo}. The peers which read the message up to the last file ignore them.
+ * The content of a file is unknown when its size is FileInfo.UNKNOWN_SIZE.
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public class BatchView extends MessageView {
+
+    /**
+     * The size of the file count in bytes
+     */
+    private static final int COUNT_SIZE = 2;
+
+    private int usernameOffset;
+    private int usernameLength;
+    private int count;
+    private int entriesOffset;
+    /**
+     * The index of the contents of the files, -1 if the message has none
+     */
+    private int contentsOffset;
+
+    private int next;
+    private int read;
+    private int filenameOffset;
+    private int filenameLength;
+
+    /**
+     * Wraps the view around the batch message starting at the buffer current position.
+     * The cursor is placed before the first file.
+     *
+     * @param buffer The buffer containing message data. Must not be null.
+     * @return this view.
+     * @throws IllegalArgumentException if the buffer does not contain a valid message.
+     */
+    public BatchView wrap(ByteBuffer buffer) {
+        wrapBuffer(buffer);
+        return this;
+    }
+
+    @Override
+    protected void parse() {
+        int index = this.start + CODE_SIZE;
+        checkAvailable(index, ADDRESS_SIZE);
+        index += ADDRESS_SIZE;
+        this.usernameLength = readInfoLength(index);
+        this.usernameOffset = index + 1;
+        index = this.usernameOffset + this.usernameLength;
+        checkAvailable(index, COUNT_SIZE);
+        this.count = this.buffer.getShort(index) & 0xFFFF;
+        this.entriesOffset = index + COUNT_SIZE;
+        // checks all the entries once, so that the cursor never reads out of the message
+        index = this.entriesOffset;
+        for (int i = 0; i < this.count; i++) {
+            index += 1 + readInfoLength(index);
+        }
+        this.contentsOffset = this.count > 0
+                && this.buffer.limit() - index >= this.count * FileInfo.CONTENT_SIZE ? index : -1;
+        rewind();
+    }
+
+    /**
+     * Places the cursor before the first file.
+     */
+    public void rewind() {
+        this.next = this.entriesOffset;
+        this.read = 0;
+        this.filenameOffset = -1;
+        this.filenameLength = 0;
+    }
+
+    /**
+     * Moves the cursor to the next file.
+     *
+     * @return true if there is a next file, false if the cursor is after the last file.
+     */
+    public boolean next() {
+        if (this.read >= this.count) {
+            return false;
+        }
+        this.filenameLength = this.buffer.get(this.next) & 0xFF;
+        this.filenameOffset = this.next + 1;
+        this.next = this.filenameOffset + this.filenameLength;
+        this.read++;
+        return true;
+    }
+
+    /**
+     * Return the IP address as a big endian integer.
+     * @return the IP address as a big endian integer.
+     */
+    public int getIp() {
+        return this.buffer.getInt(this.start + CODE_SIZE);
+    }
+
+    /**
+     * Return the port number (UDP port for an offer or a delete, TCP port for a request).
+     * @return the port number.
+     */
+    public short getPort() {
+        return this.buffer.getShort(this.start + CODE_SIZE + 4);
+    }
+
+    /**
+     * Return the number of files.
+     * @return the number of files.
+     */
+    public int getCount() {
+        return this.count;
+    }
+
+    /**
+     * Return the index of the user name in the buffer.
+     * @return the index of the user name in the buffer.
+     */
+    public int getUsernameOffset() {
+        return this.usernameOffset;
+    }
+
+    /**
+     * Return the length of the user name in bytes.
+     * @return the length of the user name in bytes.
+     */
+    public int getUsernameLength() {
+        return this.usernameLength;
+    }
+
+    /**
+     * Return the index of the current file name in the buffer.
+     * @return the index of the current file name in the buffer.
+     */
+    public int getFilenameOffset() {
+        return this.filenameOffset;
+    }
+
+    /**
+     * Return the length of the current file name in bytes.
+     * @return the length of the current file name in bytes.
+     */
+    public int getFilenameLength() {
+        return this.filenameLength;
+    }
+
+    /**
+     * Return the user name. This allocates a string.
+     * @return the user name.
+     */
+    public String getUsername() {
+        return getString(this.usernameOffset, this.usernameLength);
+    }
+
+    /**
+     * Return the current file name. This allocates a string.
+     * @return the current file name.
+     */
+    public String getFilename() {
+        return getString(this.filenameOffset, this.filenameLength);
+    }
+
+    /**
+     * Return true if the message carries the content (size | hash) of the current file.
+     * @return true if the size and the hash of the current file are known.
+     */
+    public boolean hasContent() {
+        return getFileSize() >= 0;
+    }
+
+    /**
+     * Return the size of the current file.
+     * @return the size of the current file in bytes, FileInfo.UNKNOWN_SIZE if unknown.
+     */
+    public long getFileSize() {
+        if (this.contentsOffset < 0 || this.read == 0) {
+            return FileInfo.UNKNOWN_SIZE;
+        }
+        return this.buffer.getLong(this.contentsOffset + (this.read - 1) * FileInfo.CONTENT_SIZE);
+    }
+
+    /**
+     * Return the SHA-256 hash of the current file in hexadecimal. This allocates a string.
+     * @return the hash of the current file, null if unknown.
+     */
+    public String getHash() {
+        if ( ! hasContent()) {
+            return null;
+        }
+        return getHex(this.contentsOffset + (this.read - 1) * FileInfo.CONTENT_SIZE + 8, FileInfo.HASH_SIZE);
+    }
+
+    /**
+     * Return the size of a batch message header for a user name of the given length.
+     *
+     * @param usernameLength The length of the user name in bytes
+     * @return the size of a batch message header.
+     */
+    public static int getHeaderSize(int usernameLength) {
+        return CODE_SIZE + ADDRESS_SIZE + 1 + usernameLength + COUNT_SIZE;
+    }
+
+    /**
+     * Writes a batch message header with no file in the given buffer from its current
+     * position. Files are then added with putFile and the count is set with setCount.
+     *
+     * @param dst The buffer in which the message is written
+     * @param messageType The message type (OFFER_BATCH | REQUEST_BATCH | DELETE_BATCH)
+     * @param ip The IP address as a big endian integer
+     * @param port The port number
+     * @param username The user name bytes
+     * @return the index of the count in the buffer.
+     */
+    public static int encodeHeader(ByteBuffer dst, MessageType messageType, int ip, short port, byte[] username) {
+        dst.put(messageType.getCode());
+        putAddress(dst, ip, port);
+        putInfo(dst, username);
+        int countIndex = dst.position();
+        dst.putShort((short) 0);
+        return countIndex;
+    }
+
+    /**
+     * Adds a file to a batch message being written in the given buffer.
+     *
+     * @param dst The buffer in which the message is written
+     * @param filename The file name bytes
+     */
+    public static void putFile(ByteBuffer dst, byte[] filename) {
+        putInfo(dst, filename);
+    }
+
+    /**
+     * Adds a file to a batch message being written in the given buffer. The file
+     * name is copied from another buffer, for instance a received message.
+     *
+     * @param dst The buffer in which the message is written
+     * @param src The buffer containing the file name
+     * @param filenameOffset The index of the file name in the source buffer
+     * @param filenameLength The length of the file name
+     */
+    public static void putFile(ByteBuffer dst, ByteBuffer src, int filenameOffset, int filenameLength) {
+        putInfo(dst, src, filenameOffset, filenameLength);
+    }
+
+    /**
+     * Adds the content (size | hash) of a file at the end of a batch message being written
+     * in the given buffer. The contents are added after all the files, in the same order.
+     *
+     * @param dst The buffer in which the message is written
+     * @param size The size of the file, FileInfo.UNKNOWN_SIZE if unknown
+     * @param hash The SHA-256 hash of the file, null if unknown
+     */
+    public static void putContent(ByteBuffer dst, long size, byte[] hash) {
+        MessageView.putContent(dst, size, hash);
+    }
+
+    /**
+     * Sets the number of files of a batch message written in the given buffer.
+     *
+     * @param dst The buffer in which the message is written
+     * @param countIndex The index of the count, as returned by encodeHeader
+     * @param count The number of files
+     */
+    public static void setCount(ByteBuffer dst, int countIndex, int count) {
+        dst.putShort(countIndex, (short) count);
+    }
+
+    @Override
+    public String toString() {
+        return "Message [type=" + getMessageType() + "] {port=" + getPort()
+                + " | username=" + getUsername() + " | count=" + this.count + "}";
+    }
+}
@@ -0,0 +1,35 @@
+package fr.univubs.inf2165.gossiper.format;
+
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * This class represents the batch delete message format. It asks the peer to delete
+ * the received files it has offered. The address contains the UDP port of the
+ * sender. @link{AbstractBatchMessageFormat}
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public class DeleteBatchMessageFormat extends AbstractBatchMessageFormat {
+
+    /**
+     * Constructor with a buffer containing batch delete message data.
+     * @param buffer The buffer from which batch delete message data are read. Must not be null.
+     */
+    public DeleteBatchMessageFormat(ByteBuffer buffer) throws UnknownHostException {
+        super(buffer);
+    }
+
+    /**
+     * Constructor with the address, the user information and the file information list.
+     *
+     * @param address The address. Must not be null
+     * @param userInfo The user information. Must not be null
+     * @param fileInfos The file information list. Must not be null
+     */
+    public DeleteBatchMessageFormat(Address address, UserInfo userInfo, List<FileInfo> fileInfos) {
+        super(MessageType.DELETE_BATCH, address, userInfo, fileInfos);
+    }
+}
@@ -0,0 +1,130 @@
+package fr.univubs.inf2165.gossiper.format;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class is the flyweight view of a delete message.
+ * @link{MessageView} @link{DeleteMessageFormat}
+ *
+ * <pre>
+ *     Format:
+ *                        ----------------------------------------
+ *             message =  |  code  |   userInfo   |   fileInfo   |
+ *                        ----------------------------------------
+ *          byte ->           1            x              x
+ * </pre>
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public class DeleteView extends MessageView {
+
+    private int usernameOffset;
+    private int usernameLength;
+    private int filenameOffset;
+    private int filenameLength;
+
+    /**
+     * Wraps the view around the delete message starting at the buffer current position.
+     *
+     * @param buffer The buffer containing message data. Must not be null.
+     * @return this view.
+     * @throws IllegalArgumentException if the buffer does not contain a valid message.
+     */
+    public DeleteView wrap(ByteBuffer buffer) {
+        wrapBuffer(buffer);
+        return this;
+    }
+
+    @Override
+    protected void parse() {
+        int index = this.start + CODE_SIZE;
+        this.usernameLength = readInfoLength(index);
+        this.usernameOffset = index + 1;
+        index = this.usernameOffset + this.usernameLength;
+        this.filenameLength = readInfoLength(index);
+        this.filenameOffset = index + 1;
+    }
+
+    /**
+     * Return the index of the user name in the buffer.
+     * @return the index of the user name in the buffer.
+     */
+    public int getUsernameOffset() {
+        return this.usernameOffset;
+    }
+
+    /**
+     * Return the length of the user name in bytes.
+     * @return the length of the user name in bytes.
+     */
+    public int getUsernameLength() {
+        return this.usernameLength;
+    }
+
+    /**
+     * Return the index of the file name in the buffer.
+     * @return the index of the file name in the buffer.
+     */
+    public int getFilenameOffset() {
+        return this.filenameOffset;
+    }
+
+    /**
+     * Return the length of the file name in bytes.
+     * @return the length of the file name in bytes.
+     */
+    public int getFilenameLength() {
+        return this.filenameLength;
+    }
+
+    /**
+     * Return the user name. This allocates a string.
+     * @return the user name.
+     */
+    public String getUsername() {
+        return getString(this.usernameOffset, this.usernameLength);
+    }
+
+    /**
+     * Return the file name. This allocates a string.
+     * @return the file name.
+     */
+    public String getFilename() {
+        return getString(this.filenameOffset, this.filenameLength);
+    }
+
+    /**
+     * Writes a delete message in the given buffer from its current position.
+     *
+     * @param dst The buffer in which the message is written
+     * @param username The user name bytes
+     * @param filename The file name bytes
+     */
+    public static void encode(ByteBuffer dst, byte[] username, byte[] filename) {
+        dst.put(MessageType.DELETE.getCode());
+        putInfo(dst, username);
+        putInfo(dst, filename);
+    }
+
+    /**
+     * Writes a delete message in the given buffer from its current position. The file
+     * name is copied from another buffer, for instance a received message.
+     *
+     * @param dst The buffer in which the message is written
+     * @param username The user name bytes
+     * @param src The buffer containing the file name
+     * @param filenameOffset The index of the file name in the source buffer
+     * @param filenameLength The length of the file name
+     */
+    public static void encode(ByteBuffer dst, byte[] username, ByteBuffer src, int filenameOffset, int filenameLength) {
+        dst.put(MessageType.DELETE.getCode());
+        putInfo(dst, username);
+        putInfo(dst, src, filenameOffset, filenameLength);
+    }
+
+    @Override
+    public String toString() {
+        return "Message [type=" + getMessageType() + "] {username=" + getUsername() + " | filename=" + getFilename() + "}";
+    }
+}
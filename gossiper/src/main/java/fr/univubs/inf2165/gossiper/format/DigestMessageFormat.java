@@ -0,0 +1,206 @@
+package fr.univubs.inf2165.gossiper.format;
+
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+
+/**
+ * This class represents a digest message format. It is the answer to a sync message
+ * and contains a Bloom filter of the files the sender has already received, so that
+ * the peer only offers the files that are missing. The address contains the UDP port
+ * of the sender. @link{AbstractMessageFormat}
+ *
+ * <pre>
+ *     Format:
+ *                        ------------------------------------------------------------------------------------
+ *             message =  |  address  |  userInfo  |  segment  |  segments  |  seed  |  k  |  n  |  filter bits  |
+ *                        ------------------------------------------------------------------------------------
+ *          byte ->             6           x            1            1         4      1     2          n
+ * </pre>
+ *
+ * With k the number of hash functions of the filter and n the size of the filter in bytes.
+ * So that each digest message fits in a datagram, the received files are split into
+ * segments by the hash of their name (see BloomFilter.segment): a digest message only
+ * tells about the files of its segment.
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public class DigestMessageFormat extends AbstractMessageFormat {
+
+    /**
+     * The size of the segment, the number of segments, the seed, the number of hash
+     * functions and the filter size in bytes
+     */
+    public static final int FILTER_HEADER_SIZE = 1 + 1 + 4 + 1 + 2;
+
+    /**
+     * The maximum size of the filter bits in bytes, so that a digest message (code,
+     * address, shortest userInfo and filter header) fits in a batch packet
+     * (see AbstractBatchMessageFormat.MAX_PACKET_SIZE).
+     */
+    public static final int MAX_FILTER_SIZE = AbstractBatchMessageFormat.MAX_PACKET_SIZE
+            - (1 + Address.SIZE + UserInfo.MIN_SIZE + FILTER_HEADER_SIZE);
+
+    /**
+     * The maximum number of segments of a digest
+     */
+    public static final int MAX_SEGMENTS = 255;
+
+    private Address address;
+    private UserInfo userInfo;
+    private int segment;
+    private int segments;
+    private int seed;
+    private byte hashCount;
+    private byte[] filter;
+
+    /**
+     * Constructor with a buffer that contains digest message data.
+     * @param buffer The buffer form which message data are read.
+     */
+    public DigestMessageFormat(ByteBuffer buffer) throws UnknownHostException {
+        super(buffer);
+        this.address = new Address(buffer);
+        this.userInfo = new UserInfo(buffer);
+        this.segment = buffer.get() & 0xFF;
+        this.segments = buffer.get() & 0xFF;
+        if (this.segment >= this.segments) {
+            throw new IllegalArgumentException("The segment is out of range -> " + this.segment + "/" + this.segments);
+        }
+        this.seed = buffer.getInt();
+        this.hashCount = buffer.get();
+        int n = buffer.getShort() & 0xFFFF;
+        if (buffer.remaining() < n) {
+            throw new IllegalArgumentException("The filter can't be read -> Not enough data in the buffer");
+        }
+        this.filter = new byte[n];
+        buffer.get(this.filter);
+    }
+
+    /**
+     * Constructor with the address, the user information and the filter.
+     *
+     * @param address The address. Must not be null
+     * @param userInfo The user information. Must not be null
+     * @param segment The segment of the received files the filter holds
+     * @param segments The number of segments, from 1 to MAX_SEGMENTS
+     * @param seed The seed of the filter hash functions
+     * @param hashCount The number of hash functions of the filter
+     * @param filter The filter bits. Must not be null
+     */
+    public DigestMessageFormat(Address address, UserInfo userInfo, int segment, int segments, int seed, byte hashCount,
+                               byte[] filter) {
+        super(MessageType.DIGEST);
+        Util.checkNotNull("address", address);
+        Util.checkNotNull("userinfo", userInfo);
+        Util.checkNotNull("filter", filter);
+        if (filter.length > MAX_FILTER_SIZE) {
+            throw new IllegalArgumentException("The filter is too long -> length = " + filter.length);
+        }
+        if (segments < 1 || segments > MAX_SEGMENTS || segment < 0 || segment >= segments) {
+            throw new IllegalArgumentException("The segment is out of range -> " + segment + "/" + segments);
+        }
+        this.address = address;
+        this.userInfo = userInfo;
+        this.segment = segment;
+        this.segments = segments;
+        this.seed = seed;
+        this.hashCount = hashCount;
+        this.filter = filter;
+    }
+
+    /**
+     * Write digest message data in the given buffer from the buffer current position.
+     * @param buffer The buffer in which data are written.
+     */
+    public void writeData(ByteBuffer buffer) {
+        this.address.writeData(buffer);
+        this.userInfo.writeData(buffer);
+        buffer.put((byte) this.segment);
+        buffer.put((byte) this.segments);
+        buffer.putInt(this.seed);
+        buffer.put(this.hashCount);
+        buffer.putShort((short) this.filter.length);
+        buffer.put(this.filter);
+    }
+
+    /**
+     * Return the minimum size of a digest message.
+     *
+     * @return the minimum size of a digest message
+     */
+    public int getMinSize() {
+        return super.getMinSize() + Address.SIZE + UserInfo.MIN_SIZE + FILTER_HEADER_SIZE;
+    }
+
+    /**
+     * Return the real size of a digest message.
+     *
+     * @return the real size of a digest message.
+     */
+    public int getSize() {
+        return super.getSize() + Address.SIZE + this.userInfo.getSize() + FILTER_HEADER_SIZE + this.filter.length;
+    }
+
+    /**
+     * Return the address.
+     * @return the address.
+     */
+    public Address getAddress() {
+        return this.address;
+    }
+
+    /**
+     * Return the user info.
+     * @return the user info.
+     */
+    public UserInfo getUserInfo() {
+        return this.userInfo;
+    }
+
+    /**
+     * Return the segment of the received files the filter holds.
+     * @return the segment of the received files the filter holds.
+     */
+    public int getSegment() {
+        return this.segment;
+    }
+
+    /**
+     * Return the number of segments the received files are split into.
+     * @return the number of segments.
+     */
+    public int getSegments() {
+        return this.segments;
+    }
+
+    /**
+     * Return the seed of the filter hash functions.
+     * @return the seed of the filter hash functions.
+     */
+    public int getSeed() {
+        return this.seed;
+    }
+
+    /**
+     * Return the number of hash functions of the filter.
+     * @return the number of hash functions of the filter.
+     */
+    public byte getHashCount() {
+        return this.hashCount;
+    }
+
+    /**
+     * Return the filter bits.
+     * @return the filter bits.
+     */
+    public byte[] getFilter() {
+        return this.filter;
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + " {" + this.address + " | " + this.userInfo + " | segment=" + this.segment + "/" + this.segments
+                + " | filter=" + this.filter.length + " bytes}";
+    }
+}
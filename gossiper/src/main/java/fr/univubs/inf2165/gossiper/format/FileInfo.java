@@ -6,11 +6,39 @@ import java.nio.ByteBuffer;
  * This class represents file information in the exchanged messages.
  * It contains file name. @link{AbstractInfo}
  *
+ * An offered file may also carry its content: its size and the SHA-256 hash of its
+ * bytes. The content is not part of the info itself, it is written in a trailer at
+ * the end of the message, which the peers not knowing it ignore.
+ *
+ * <pre>
+ *     Content:
+ *                ----------------------
+ *                |  size  |    hash   |
+ *                ----------------------
+ *     byte ->        8         32
+ * </pre>
+ *
  * @author Aliyou Sylla
- * @version 1.0.0
+ * @version 1.0.1
  */
 public class FileInfo extends AbstractInfo {
 
+    /**
+     * The size of the hash of the content in bytes (SHA-256)
+     */
+    public static final int HASH_SIZE = 32;
+    /**
+     * The size of the content (size | hash) in bytes
+     */
+    public static final int CONTENT_SIZE = 8 + HASH_SIZE;
+    /**
+     * The size written for a file whose content is unknown
+     */
+    public static final long UNKNOWN_SIZE = -1;
+
+    private long size = UNKNOWN_SIZE;
+    private byte[] hash;
+
     /**
      * Constructor with a buffer containing file information.
      * @param buffer The buffer from which data are read. Must not be null.
@@ -28,6 +56,18 @@ public class FileInfo extends AbstractInfo {
         super(filename);
     }
 
+    /**
+     * Constructor with the filename and the content of the file.
+     *
+     * @param filename The file name. Must not be null
+     * @param size     The size of the file in bytes
+     * @param hash     The SHA-256 hash of the file. Must not be null
+     */
+    public FileInfo(String filename, long size, byte[] hash) {
+        super(filename);
+        setContent(size, hash);
+    }
+
     /**
      * Return the file name
      * @return the file name
@@ -44,8 +84,76 @@ public class FileInfo extends AbstractInfo {
         super.setData(filename);
     }
 
+    /**
+     * Return true if the content of the file is known.
+     * @return true if the size and the hash of the file are known.
+     */
+    public boolean hasContent() {
+        return this.hash != null;
+    }
+
+    /**
+     * Return the size of the file.
+     * @return the size of the file in bytes, UNKNOWN_SIZE if unknown.
+     */
+    public long getFileSize() {
+        return this.size;
+    }
+
+    /**
+     * Return the SHA-256 hash of the file.
+     * @return the hash of the file, null if unknown.
+     */
+    public byte[] getHash() {
+        return this.hash == null ? null : this.hash.clone();
+    }
+
+    /**
+     * Set the content of the file.
+     *
+     * @param size The size of the file in bytes
+     * @param hash The SHA-256 hash of the file. Must not be null
+     */
+    public void setContent(long size, byte[] hash) {
+        Util.checkNotNull("hash", hash);
+        if (size < 0 || hash.length != HASH_SIZE) {
+            throw new IllegalArgumentException("Invalid content -> size = " + size + " | hash length = " + hash.length);
+        }
+        this.size = size;
+        this.hash = hash.clone();
+    }
+
+    /**
+     * Reads the content of the file from the given buffer, if there is one.
+     *
+     * @param buffer The buffer from which the content is read, at the end of the message.
+     */
+    void readContent(ByteBuffer buffer) {
+        if (buffer.remaining() < CONTENT_SIZE) {
+            return; // sent by a peer which does not know the content
+        }
+        long size = buffer.getLong();
+        byte[] hash = new byte[HASH_SIZE];
+        buffer.get(hash);
+        if (size >= 0) {
+            this.size = size;
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * Writes the content of the file in the given buffer, the unknown size if unknown.
+     *
+     * @param buffer The buffer in which the content is written.
+     */
+    void writeContent(ByteBuffer buffer) {
+        buffer.putLong(this.size);
+        buffer.put(this.hash != null ? this.hash : new byte[HASH_SIZE]);
+    }
+
     @Override
     public String toString() {
-        return super.toString() + "filename=" + this.getFilename();
+        return super.toString() + "filename=" + this.getFilename()
+                + (hasContent() ? " | size=" + this.size + " | hash=" + Util.toHex(this.hash) : "");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,28 @@
+package fr.univubs.inf2165.gossiper.format;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * This interface represents a decoder of a message type. A decoder reads the message
+ * starting at the buffer current position, either as a message format or as a
+ * reused view. @link{MessageRegistry}
+ *
+ * @param <M> The type of the decoded message
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+@FunctionalInterface
+public interface MessageDecoder<M> {
+
+    /**
+     * Decodes the message contained in the given buffer.
+     *
+     * @param buffer The buffer containing message data
+     * @return the decoded message.
+     * @throws IOException if the message can't be decoded.
+     * @throws IllegalArgumentException if the buffer does not contain a valid message.
+     */
+    M decode(ByteBuffer buffer) throws IOException;
+}
@@ -0,0 +1,25 @@
+package fr.univubs.inf2165.gossiper.format;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+
+/**
+ * This interface represents a handler of a decoded message. @link{MessageRegistry}
+ *
+ * @param <M> The type of the handled message
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+@FunctionalInterface
+public interface MessageHandler<M> {
+
+    /**
+     * Handles a received message.
+     *
+     * @param message The decoded message
+     * @param source  The address from which the message has been received, null if unknown
+     * @throws IOException if an I/O error occurs while handling the message.
+     */
+    void handle(M message, SocketAddress source) throws IOException;
+}
@@ -0,0 +1,106 @@
+package fr.univubs.inf2165.gossiper.format;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+
+/**
+ * This class maps the message codes to their decoder and their handler. A received
+ * message is dispatched with a single array access on its code, so that a new message
+ * type is supported by registering it, without editing any central switch.
+ *
+ * The message types are registered before the receiving thread is started. The
+ * dispatch is not synchronized.
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public class MessageRegistry {
+
+    private final Entry<?>[] entries = new Entry<?>[256];
+
+    /**
+     * Registers the decoder and the handler of the given message type, replacing
+     * the previous ones if any.
+     *
+     * @param messageType The message type. Must not be null.
+     * @param decoder     The decoder. Must not be null.
+     * @param handler     The handler. Must not be null.
+     * @param <M>         The type of the decoded message
+     */
+    public <M> void register(MessageType messageType, MessageDecoder<? extends M> decoder, MessageHandler<? super M> handler) {
+        Util.checkNotNull("MessageRegistry -> messageType", messageType);
+        register(messageType.getCode(), decoder, handler);
+    }
+
+    /**
+     * Registers the decoder and the handler of the given message code, replacing
+     * the previous ones if any. The code does not need to be a known message type.
+     *
+     * @param code    The message code
+     * @param decoder The decoder. Must not be null.
+     * @param handler The handler. Must not be null.
+     * @param <M>     The type of the decoded message
+     */
+    public <M> void register(byte code, MessageDecoder<? extends M> decoder, MessageHandler<? super M> handler) {
+        Util.checkNotNull("MessageRegistry -> decoder", decoder);
+        Util.checkNotNull("MessageRegistry -> handler", handler);
+        this.entries[code & 0xFF] = new Entry<M>(decoder, handler);
+    }
+
+    /**
+     * Removes the decoder and the handler of the given message code.
+     *
+     * @param code The message code
+     */
+    public void unregister(byte code) {
+        this.entries[code & 0xFF] = null;
+    }
+
+    /**
+     * Return true if a decoder is registered for the given message code.
+     *
+     * @param code The message code
+     * @return true if a decoder is registered for the given message code.
+     */
+    public boolean isRegistered(byte code) {
+        return this.entries[code & 0xFF] != null;
+    }
+
+    /**
+     * Decodes the message starting at the buffer current position and hands it
+     * to the handler registered for its code.
+     *
+     * @param buffer The buffer containing message data. Must not be empty.
+     * @param source The address from which the message has been received, null if unknown
+     * @return false if no handler is registered for the message code, true otherwise.
+     * @throws IOException if the message can't be decoded or handled.
+     * @throws IllegalArgumentException if the buffer does not contain a valid message.
+     */
+    public boolean dispatch(ByteBuffer buffer, SocketAddress source) throws IOException {
+        Entry<?> entry = this.entries[buffer.get(buffer.position()) & 0xFF];
+        if (entry == null) {
+            return false;
+        }
+        entry.dispatch(buffer, source);
+        return true;
+    }
+
+    /**
+     * A decoder and its handler.
+     */
+    private static class Entry<M> {
+
+        private final MessageDecoder<? extends M> decoder;
+        private final MessageHandler<? super M> handler;
+
+        private Entry(MessageDecoder<? extends M> decoder, MessageHandler<? super M> handler) {
+            this.decoder = decoder;
+            this.handler = handler;
+        }
+
+        private void dispatch(ByteBuffer buffer, SocketAddress source) throws IOException {
+            this.handler.handle(this.decoder.decode(buffer), source);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package fr.univubs.inf2165.gossiper.format;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class is a pre-encoded message template. The fixed part of the messages sent
+ * by a node (code | address | userInfo) never changes, so it is encoded once and
+ * then copied in front of each message. Sending a message only appends the file
+ * information, without resolving any name nor creating any message object.
+ * @link{MessageView}
+ *
+ * <pre>
+ *     Prefix:
+ *                        -------------------------------------------
+ *             prefix  =  |  code  |   address ?   |   userInfo   |
+ *                        -------------------------------------------
+ *          byte  ->          1           6 | 0             x
+ * </pre>
+ *
+ * The delete message has no address. A template is immutable and can be shared by threads.
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public final class MessageTemplate {
+
+    /**
+     * The maximum length of a user name or a file name in bytes
+     */
+    private static final int MAX_INFO_LENGTH = 255;
+
+    /**
+     * The encoded prefix, never modified nor exposed
+     */
+    private final byte[] prefix;
+    private final MessageType messageType;
+
+    /**
+     * Constructs a new template with an address.
+     *
+     * @param messageType The message type. Must not be null.
+     * @param ip          The IP address as a big endian integer
+     * @param port        The port number
+     * @param username    The user name. Must not be null.
+     */
+    public MessageTemplate(MessageType messageType, int ip, short port, String username) {
+        this(messageType, true, ip, port, username);
+    }
+
+    /**
+     * Constructs a new template without address (delete message).
+     *
+     * @param messageType The message type. Must not be null.
+     * @param username    The user name. Must not be null.
+     */
+    public MessageTemplate(MessageType messageType, String username) {
+        this(messageType, false, 0, (short) 0, username);
+    }
+
+    private MessageTemplate(MessageType messageType, boolean hasAddress, int ip, short port, String username) {
+        Util.checkNotNull("MessageTemplate -> messageType", messageType);
+        Util.checkNotNull("MessageTemplate -> username", username);
+        byte[] usernameBytes = toInfoBytes(username);
+        ByteBuffer buffer = ByteBuffer.allocate(MessageView.CODE_SIZE
+                + (hasAddress ? MessageView.ADDRESS_SIZE : 0) + 1 + usernameBytes.length);
+        buffer.put(messageType.getCode());
+        if (hasAddress) {
+            MessageView.putAddress(buffer, ip, port);
+        }
+        MessageView.putInfo(buffer, usernameBytes);
+        this.prefix = buffer.array();
+        this.messageType = messageType;
+    }
+
+    /**
+     * Writes the prefix in the given buffer from its current position.
+     *
+     * @param dst The buffer in which the prefix is written
+     */
+    public void writePrefix(ByteBuffer dst) {
+        dst.put(this.prefix);
+    }
+
+    /**
+     * Writes a whole message (prefix | fileInfo) in the given buffer from its current position.
+     *
+     * @param dst      The buffer in which the message is written
+     * @param filename The file name bytes, at most 255 bytes
+     */
+    public void write(ByteBuffer dst, byte[] filename) {
+        dst.put(this.prefix);
+        MessageView.putInfo(dst, filename);
+    }
+
+    /**
+     * Writes a whole message (prefix | fileInfo) in the given buffer from its current
+     * position. The file name is copied from another buffer, for instance a received message.
+     *
+     * @param dst            The buffer in which the message is written
+     * @param src            The buffer containing the file name
+     * @param filenameOffset The index of the file name in the source buffer
+     * @param filenameLength The length of the file name
+     */
+    public void write(ByteBuffer dst, ByteBuffer src, int filenameOffset, int filenameLength) {
+        dst.put(this.prefix);
+        MessageView.putInfo(dst, src, filenameOffset, filenameLength);
+    }
+
+    /**
+     * Return the size of the prefix in bytes.
+     * @return the size of the prefix in bytes.
+     */
+    public int getPrefixSize() {
+        return this.prefix.length;
+    }
+
+    /**
+     * Return the message type.
+     * @return the message type.
+     */
+    public MessageType getMessageType() {
+        return this.messageType;
+    }
+
+    /**
+     * Return the given user name or file name as bytes.
+     *
+     * @param data The user name or file name. Must not be null.
+     * @return the UTF-8 bytes.
+     * @throws IllegalArgumentException if the encoded name is longer than 255 bytes.
+     */
+    public static byte[] toInfoBytes(String data) {
+        Util.checkNotNull("MessageTemplate -> data", data);
+        byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_INFO_LENGTH) {
+            throw new IllegalArgumentException("The string is too long -> length = " + bytes.length);
+        }
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return "MessageTemplate [type=" + this.messageType + "] {size=" + this.prefix.length + "}";
+    }
+}
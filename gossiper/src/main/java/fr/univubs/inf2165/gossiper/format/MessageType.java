@@ -26,7 +26,58 @@ public enum MessageType {
     /**
      * The beacon message type
      */
-    BEACON((byte) 4);
+    BEACON((byte) 4),
+
+    /**
+     * The batch offer message type
+     */
+    OFFER_BATCH((byte) 5),
+
+    /**
+     * The batch request message type
+     */
+    REQUEST_BATCH((byte) 6),
+
+    /**
+     * The sync message type (asks a peer for its digest)
+     */
+    SYNC((byte) 7),
+
+    /**
+     * The digest message type
+     */
+    DIGEST((byte) 8),
+
+    /**
+     * The reliable message type (a sequence number followed by another message)
+     */
+    RELIABLE((byte) 9),
+
+    /**
+     * The acknowledgement message type (acknowledges reliable messages)
+     */
+    ACK((byte) 10),
+
+    /**
+     * The tenant message type (the name of a hosted user followed by another message)
+     */
+    TENANT((byte) 11),
+
+    /**
+     * The batch delete message type
+     */
+    DELETE_BATCH((byte) 12);
+
+    /**
+     * The message types indexed by code, so that a code is decoded with a single array access
+     */
+    private static final MessageType[] BY_CODE = new MessageType[256];
+
+    static {
+        for (MessageType messageType : values()) {
+            BY_CODE[messageType.code & 0xFF] = messageType;
+        }
+    }
 
     private byte code;
 
@@ -49,11 +100,6 @@ public enum MessageType {
      * @return The corresponding message type to the given code.
      */
     public static MessageType getMessageType(byte code) {
-        for (MessageType messageType : MessageType.values()) {
-            if (messageType.getCode() == code) {
-                return messageType;
-            }
-        }
-        return null;
+        return BY_CODE[code & 0xFF];
     }
-}
\ No newline at end of file
+}
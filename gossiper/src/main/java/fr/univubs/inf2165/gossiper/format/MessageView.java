@@ -0,0 +1,206 @@
+package fr.univubs.inf2165.gossiper.format;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This is the abstract flyweight view of an exchanged message. Unlike the message
+ * formats (@link{AbstractMessageFormat}), a view copies nothing: it is wrapped around
+ * a buffer containing a message and gives access to the message fields by their
+ * position in the buffer. A single view can be wrapped around many buffers in turn,
+ * so that reading a message allocates nothing.
+ *
+ * The static encode methods of the views write a message in a buffer given by the
+ * caller, which can be reused from one message to another.
+ *
+ * A view is not thread safe, and is only valid as long as the wrapped buffer content
+ * is not modified.
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public abstract class MessageView {
+
+    /**
+     * The size of the message type in bytes
+     */
+    protected static final int CODE_SIZE = 1;
+    /**
+     * The size of an address in bytes
+     */
+    protected static final int ADDRESS_SIZE = Address.SIZE;
+
+    /**
+     * The wrapped buffer
+     */
+    protected ByteBuffer buffer;
+    /**
+     * The index of the message type in the buffer
+     */
+    protected int start;
+
+    /**
+     * Wraps the view around the message starting at the buffer current position and
+     * ending at the buffer limit. The buffer position and limit are left unchanged.
+     *
+     * @param buffer The buffer containing message data. Must not be null.
+     * @throws IllegalArgumentException if the buffer does not contain a valid message.
+     */
+    protected void wrapBuffer(ByteBuffer buffer) {
+        Util.checkNotNull("buffer", buffer);
+        this.buffer = buffer;
+        this.start = buffer.position();
+        checkAvailable(this.start, CODE_SIZE);
+        this.parse();
+    }
+
+    /**
+     * Reads the position of the message fields. Called each time the view is wrapped.
+     *
+     * @throws IllegalArgumentException if the buffer does not contain a valid message.
+     */
+    protected abstract void parse();
+
+    /**
+     * Return the message type.
+     * @return the message type, null if unknown.
+     */
+    public MessageType getMessageType() {
+        return MessageType.getMessageType(this.buffer.get(this.start));
+    }
+
+    /**
+     * Return the wrapped buffer.
+     * @return the wrapped buffer.
+     */
+    public ByteBuffer getBuffer() {
+        return this.buffer;
+    }
+
+    /**
+     * Checks that there is at least the given number of bytes from the given index.
+     */
+    protected void checkAvailable(int index, int length) {
+        if (index + length > this.buffer.limit()) {
+            throw new IllegalArgumentException("Data can't be read from the buffer \n\t cause -> not enough data in the buffer");
+        }
+    }
+
+    /**
+     * Return the length of the info (n | data) starting at the given index, after
+     * checking that the whole info is in the buffer.
+     */
+    protected int readInfoLength(int index) {
+        checkAvailable(index, 1);
+        int n = this.buffer.get(index) & 0xFF;
+        if (n == 0) {
+            throw new IllegalArgumentException("The data can't be read -> empty info");
+        }
+        checkAvailable(index + 1, n);
+        return n;
+    }
+
+    /**
+     * Return the data of an info as a string. This allocates a string and is meant
+     * for the paths that need one anyway (file system, logs).
+     */
+    protected String getString(int offset, int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = this.buffer.get(offset + i);
+        }
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Return true if the data of an info is equal to the given bytes.
+     */
+    protected boolean dataEquals(int offset, int length, byte[] data) {
+        if (length != data.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (this.buffer.get(offset + i) != data[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes an info (n | data) in the given buffer from its current position.
+     *
+     * @param dst The buffer in which data are written
+     * @param data The data, at most 255 bytes
+     */
+    protected static void putInfo(ByteBuffer dst, byte[] data) {
+        dst.put((byte) data.length);
+        dst.put(data);
+    }
+
+    /**
+     * Writes an info (n | data) in the given buffer from its current position. The
+     * data are copied from another buffer, for instance a received message.
+     *
+     * @param dst The buffer in which data are written
+     * @param src The buffer containing the data
+     * @param offset The index of the data in the source buffer
+     * @param length The length of the data, at most 255 bytes
+     */
+    protected static void putInfo(ByteBuffer dst, ByteBuffer src, int offset, int length) {
+        dst.put((byte) length);
+        for (int i = 0; i < length; i++) {
+            dst.put(src.get(offset + i));
+        }
+    }
+
+    /**
+     * Writes the content of a file (size | hash) in the given buffer from its current position.
+     *
+     * @param dst The buffer in which data are written
+     * @param size The size of the file, FileInfo.UNKNOWN_SIZE if unknown
+     * @param hash The SHA-256 hash of the file, null if unknown
+     */
+    protected static void putContent(ByteBuffer dst, long size, byte[] hash) {
+        if (hash == null || size < 0) {
+            dst.putLong(FileInfo.UNKNOWN_SIZE);
+            dst.put(new byte[FileInfo.HASH_SIZE]);
+        } else {
+            dst.putLong(size);
+            dst.put(hash, 0, FileInfo.HASH_SIZE);
+        }
+    }
+
+    /**
+     * Return the bytes at the given index in hexadecimal. This allocates a string.
+     */
+    protected String getHex(int offset, int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = this.buffer.get(offset + i);
+        }
+        return Util.toHex(data);
+    }
+
+    /**
+     * Writes an address in the given buffer from its current position.
+     *
+     * @param dst The buffer in which data are written
+     * @param ip The IP address, as a big endian integer
+     * @param port The port number
+     */
+    protected static void putAddress(ByteBuffer dst, int ip, short port) {
+        dst.putInt(ip);
+        dst.putShort(port);
+    }
+
+    /**
+     * Return the given IP address as a big endian integer.
+     *
+     * @param ip The IP address (4 bytes)
+     * @return the IP address as a big endian integer.
+     */
+    public static int toInt(byte[] ip) {
+        return ((ip[0] & 0xFF) << 24) | ((ip[1] & 0xFF) << 16) | ((ip[2] & 0xFF) << 8) | (ip[3] & 0xFF);
+    }
+}
@@ -0,0 +1,34 @@
+package fr.univubs.inf2165.gossiper.format;
+
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * This class represents the batch offer message format. The address contains
+ * the UDP port of the offering gossiper. @link{AbstractBatchMessageFormat}
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public class OfferBatchMessageFormat extends AbstractBatchMessageFormat {
+
+    /**
+     * Constructor with a buffer containing batch offer message data.
+     * @param buffer The buffer from which batch offer message data are read. Must not be null.
+     */
+    public OfferBatchMessageFormat(ByteBuffer buffer) throws UnknownHostException {
+        super(buffer);
+    }
+
+    /**
+     * Constructor with the address, the user information and the file information list.
+     *
+     * @param address The address. Must not be null
+     * @param userInfo The user information. Must not be null
+     * @param fileInfos The file information list. Must not be null
+     */
+    public OfferBatchMessageFormat(Address address, UserInfo userInfo, List<FileInfo> fileInfos) {
+        super(MessageType.OFFER_BATCH, address, userInfo, fileInfos);
+    }
+}
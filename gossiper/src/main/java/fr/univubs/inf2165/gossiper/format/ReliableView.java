@@ -0,0 +1,94 @@
+package fr.univubs.inf2165.gossiper.format;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class is the flyweight view of a reliable message. A reliable message carries
+ * a sequence number and another message, which is acknowledged by the receiver with
+ * an ack message. @link{MessageView} @link{AckView}
+ *
+ * The epoch is chosen by the sender when it starts, and its sequence numbers start at 0
+ * in each epoch: a receiver seeing a new epoch knows the sender has restarted.
+ *
+ * <pre>
+ *     Format:
+ *                        ------------------------------------------------
+ *             message =  |  code  |  epoch  |   sequence   |  message  |
+ *                        ------------------------------------------------
+ *          byte  ->          1         4            4            x
+ * </pre>
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public class ReliableView extends MessageView {
+
+    /**
+     * The size of the reliable header in bytes
+     */
+    public static final int HEADER_SIZE = CODE_SIZE + 4 + 4;
+
+    /**
+     * Wraps the view around the reliable message starting at the buffer current position.
+     *
+     * @param buffer The buffer containing message data. Must not be null.
+     * @return this view.
+     * @throws IllegalArgumentException if the buffer does not contain a valid message.
+     */
+    public ReliableView wrap(ByteBuffer buffer) {
+        wrapBuffer(buffer);
+        return this;
+    }
+
+    @Override
+    protected void parse() {
+        checkAvailable(this.start, HEADER_SIZE + CODE_SIZE);
+    }
+
+    /**
+     * Return the epoch of the sender.
+     * @return the epoch of the sender.
+     */
+    public int getEpoch() {
+        return this.buffer.getInt(this.start + CODE_SIZE);
+    }
+
+    /**
+     * Return the sequence number.
+     * @return the sequence number.
+     */
+    public int getSequence() {
+        return this.buffer.getInt(this.start + CODE_SIZE + 4);
+    }
+
+    /**
+     * Return a buffer positioned on the carried message. The buffer shares the
+     * content of the wrapped buffer.
+     *
+     * @return a buffer positioned on the carried message.
+     */
+    public ByteBuffer getMessage() {
+        ByteBuffer message = this.buffer.duplicate();
+        message.position(this.start + HEADER_SIZE);
+        return message;
+    }
+
+    /**
+     * Writes a reliable message header in the given buffer from its current position.
+     * The carried message is then written after the header.
+     *
+     * @param dst The buffer in which the header is written
+     * @param epoch The epoch of the sender
+     * @param sequence The sequence number
+     */
+    public static void encodeHeader(ByteBuffer dst, int epoch, int sequence) {
+        dst.put(MessageType.RELIABLE.getCode());
+        dst.putInt(epoch);
+        dst.putInt(sequence);
+    }
+
+    @Override
+    public String toString() {
+        return "Message [type=" + getMessageType() + "] {epoch=" + getEpoch() + " | sequence=" + getSequence() + "}";
+    }
+}
@@ -0,0 +1,34 @@
+package fr.univubs.inf2165.gossiper.format;
+
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * This class represents the batch request message format. The address contains
+ * the TCP port on which the requesting gossiper receives files. @link{AbstractBatchMessageFormat}
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public class RequestBatchMessageFormat extends AbstractBatchMessageFormat {
+
+    /**
+     * Constructor with a buffer containing batch request message data.
+     * @param buffer The buffer from which batch request message data are read. Must not be null.
+     */
+    public RequestBatchMessageFormat(ByteBuffer buffer) throws UnknownHostException {
+        super(buffer);
+    }
+
+    /**
+     * Constructor with the address, the user information and the file information list.
+     *
+     * @param address The address. Must not be null
+     * @param userInfo The user information. Must not be null
+     * @param fileInfos The file information list. Must not be null
+     */
+    public RequestBatchMessageFormat(Address address, UserInfo userInfo, List<FileInfo> fileInfos) {
+        super(MessageType.REQUEST_BATCH, address, userInfo, fileInfos);
+    }
+}
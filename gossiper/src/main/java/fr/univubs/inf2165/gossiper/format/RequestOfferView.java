@@ -0,0 +1,206 @@
+package fr.univubs.inf2165.gossiper.format;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class is the flyweight view of a request or offer message.
+ * @link{MessageView} @link{AbstractRequestOfferMessageFormat}
+ *
+ * <pre>
+ *     Format:
+ *                        -------------------------------------------------------------------
+ *             message =  |  code  |   address   |   userInfo   |   fileInfo  |   content ?   |
+ *                        -------------------------------------------------------------------
+ *          byte  ->          1           6              x             x          0 | 40
+ * </pre>
+ *
+ * The content (size | hash) of the offered file is optional, see @link{FileInfo}.
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public class RequestOfferView extends MessageView {
+
+    private int usernameOffset;
+    private int usernameLength;
+    private int filenameOffset;
+    private int filenameLength;
+    /**
+     * The index of the content of the file, -1 if the message has none
+     */
+    private int contentOffset;
+
+    /**
+     * Wraps the view around the request/offer message starting at the buffer current position.
+     *
+     * @param buffer The buffer containing message data. Must not be null.
+     * @return this view.
+     * @throws IllegalArgumentException if the buffer does not contain a valid message.
+     */
+    public RequestOfferView wrap(ByteBuffer buffer) {
+        wrapBuffer(buffer);
+        return this;
+    }
+
+    @Override
+    protected void parse() {
+        int index = this.start + CODE_SIZE;
+        checkAvailable(index, ADDRESS_SIZE);
+        index += ADDRESS_SIZE;
+        this.usernameLength = readInfoLength(index);
+        this.usernameOffset = index + 1;
+        index = this.usernameOffset + this.usernameLength;
+        this.filenameLength = readInfoLength(index);
+        this.filenameOffset = index + 1;
+        index = this.filenameOffset + this.filenameLength;
+        this.contentOffset = this.buffer.limit() - index >= FileInfo.CONTENT_SIZE
+                && this.buffer.getLong(index) >= 0 ? index : -1;
+    }
+
+    /**
+     * Return the IP address as a big endian integer.
+     * @return the IP address as a big endian integer.
+     */
+    public int getIp() {
+        return this.buffer.getInt(this.start + CODE_SIZE);
+    }
+
+    /**
+     * Return the port number (UDP port for an offer, TCP port for a request).
+     * @return the port number.
+     */
+    public short getPort() {
+        return this.buffer.getShort(this.start + CODE_SIZE + 4);
+    }
+
+    /**
+     * Return the index of the user name in the buffer.
+     * @return the index of the user name in the buffer.
+     */
+    public int getUsernameOffset() {
+        return this.usernameOffset;
+    }
+
+    /**
+     * Return the length of the user name in bytes.
+     * @return the length of the user name in bytes.
+     */
+    public int getUsernameLength() {
+        return this.usernameLength;
+    }
+
+    /**
+     * Return the index of the file name in the buffer.
+     * @return the index of the file name in the buffer.
+     */
+    public int getFilenameOffset() {
+        return this.filenameOffset;
+    }
+
+    /**
+     * Return the length of the file name in bytes.
+     * @return the length of the file name in bytes.
+     */
+    public int getFilenameLength() {
+        return this.filenameLength;
+    }
+
+    /**
+     * Return the user name. This allocates a string.
+     * @return the user name.
+     */
+    public String getUsername() {
+        return getString(this.usernameOffset, this.usernameLength);
+    }
+
+    /**
+     * Return the file name. This allocates a string.
+     * @return the file name.
+     */
+    public String getFilename() {
+        return getString(this.filenameOffset, this.filenameLength);
+    }
+
+    /**
+     * Return true if the message carries the content (size | hash) of the file.
+     * @return true if the size and the hash of the file are known.
+     */
+    public boolean hasContent() {
+        return this.contentOffset >= 0;
+    }
+
+    /**
+     * Return the size of the file.
+     * @return the size of the file in bytes, FileInfo.UNKNOWN_SIZE if the message has no content.
+     */
+    public long getFileSize() {
+        return hasContent() ? this.buffer.getLong(this.contentOffset) : FileInfo.UNKNOWN_SIZE;
+    }
+
+    /**
+     * Return the SHA-256 hash of the file in hexadecimal. This allocates a string.
+     * @return the hash of the file, null if the message has no content.
+     */
+    public String getHash() {
+        return hasContent() ? getHex(this.contentOffset + 8, FileInfo.HASH_SIZE) : null;
+    }
+
+    /**
+     * Writes the content (size | hash) of the file at the end of a request/offer message
+     * written in the given buffer.
+     *
+     * @param dst The buffer in which the message is written
+     * @param size The size of the file in bytes
+     * @param hash The SHA-256 hash of the file
+     */
+    public static void encodeContent(ByteBuffer dst, long size, byte[] hash) {
+        putContent(dst, size, hash);
+    }
+
+    /**
+     * Writes a request/offer message in the given buffer from its current position.
+     *
+     * @param dst The buffer in which the message is written
+     * @param messageType The message type (OFFER | REQUEST)
+     * @param ip The IP address as a big endian integer
+     * @param port The port number
+     * @param username The user name bytes
+     * @param filename The file name bytes
+     */
+    public static void encode(ByteBuffer dst, MessageType messageType, int ip, short port, byte[] username, byte[] filename) {
+        dst.put(messageType.getCode());
+        putAddress(dst, ip, port);
+        putInfo(dst, username);
+        putInfo(dst, filename);
+    }
+
+    /**
+     * Writes a request/offer message in the given buffer from its current position.
+     * The file name is copied from another buffer, for instance a received message.
+     *
+     * @param dst The buffer in which the message is written
+     * @param messageType The message type (OFFER | REQUEST)
+     * @param ip The IP address as a big endian integer
+     * @param port The port number
+     * @param username The user name bytes
+     * @param src The buffer containing the file name
+     * @param filenameOffset The index of the file name in the source buffer
+     * @param filenameLength The length of the file name
+     */
+    public static void encode(ByteBuffer dst, MessageType messageType, int ip, short port, byte[] username,
+                              ByteBuffer src, int filenameOffset, int filenameLength) {
+        dst.put(messageType.getCode());
+        putAddress(dst, ip, port);
+        putInfo(dst, username);
+        putInfo(dst, src, filenameOffset, filenameLength);
+    }
+
+    @Override
+    public String toString() {
+        int ip = getIp();
+        return "Message [type=" + getMessageType() + "] {ip=" + (ip >>> 24) + "." + ((ip >> 16) & 0xFF) + "."
+                + ((ip >> 8) & 0xFF) + "." + (ip & 0xFF) + " | port=" + getPort()
+                + " | username=" + getUsername() + " | filename=" + getFilename()
+                + (hasContent() ? " | size=" + getFileSize() + " | hash=" + getHash() : "") + "}";
+    }
+}
@@ -0,0 +1,101 @@
+package fr.univubs.inf2165.gossiper.format;
+
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+
+/**
+ * This class represents a sync message format. A gossiper sends a sync message
+ * to a peer to ask for the digest of the files the peer has already received.
+ * The address contains the UDP port on which the digest is expected. @link{AbstractMessageFormat}
+ *
+ * <pre>
+ *     Format:
+ *                        -------------------------------
+ *             message =  |   address   |   userInfo   |
+ *                        -------------------------------
+ *          byte ->             6             x
+ * </pre>
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public class SyncMessageFormat extends AbstractMessageFormat {
+
+    private Address address;
+    /**
+     * Information about the user
+     */
+    private UserInfo userInfo;
+
+    /**
+     * Constructor with a buffer that contains sync message data.
+     * @param buffer The buffer form which message data are read.
+     */
+    public SyncMessageFormat(ByteBuffer buffer) throws UnknownHostException {
+        super(buffer);
+        this.address = new Address(buffer);
+        this.userInfo = new UserInfo(buffer);
+    }
+
+    /**
+     * Constructor with the address and the user information.
+     *
+     * @param address The address. Must not be null
+     * @param userInfo The user information. Must not be null
+     */
+    public SyncMessageFormat(Address address, UserInfo userInfo) {
+        super(MessageType.SYNC);
+        Util.checkNotNull("address", address);
+        Util.checkNotNull("userinfo", userInfo);
+        this.address = address;
+        this.userInfo = userInfo;
+    }
+
+    /**
+     * Write sync message data in the given buffer from the buffer current position.
+     * @param buffer The buffer in which data are written.
+     */
+    public void writeData(ByteBuffer buffer) {
+        this.address.writeData(buffer);
+        this.userInfo.writeData(buffer);
+    }
+
+    /**
+     * Return the minimum size of a sync message.
+     *
+     * @return the minimum size of a sync message
+     */
+    public int getMinSize() {
+        return super.getMinSize() + Address.SIZE + UserInfo.MIN_SIZE;
+    }
+
+    /**
+     * Return the real size of a sync message.
+     *
+     * @return the real size of a sync message.
+     */
+    public int getSize() {
+        return super.getSize() + Address.SIZE + this.userInfo.getSize();
+    }
+
+    /**
+     * Return the address.
+     * @return the address.
+     */
+    public Address getAddress() {
+        return this.address;
+    }
+
+    /**
+     * Return the user info.
+     * @return the user info.
+     */
+    public UserInfo getUserInfo() {
+        return this.userInfo;
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + " {" + this.address + " | " + this.userInfo + "}";
+    }
+}
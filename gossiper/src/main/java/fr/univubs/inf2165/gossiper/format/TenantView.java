@@ -0,0 +1,107 @@
+package fr.univubs.inf2165.gossiper.format;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class is the flyweight view of a tenant message. A tenant message carries the
+ * name of the user it is addressed to, among the users hosted by the receiving gossiper,
+ * and another message. An empty name addresses the user the gossiper was started with.
+ * A gossiper receiving a tenant message answers with tenant messages addressed to the
+ * sender of the carried message. @link{MessageView}
+ *
+ * <pre>
+ *     Format:
+ *                        ---------------------------------------
+ *             message =  |  code  |   userInfo   |   message   |
+ *                        ---------------------------------------
+ *          byte  ->          1            x             x
+ * </pre>
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public class TenantView extends MessageView {
+
+    private int targetOffset;
+    private int targetLength;
+
+    /**
+     * Wraps the view around the tenant message starting at the buffer current position.
+     *
+     * @param buffer The buffer containing message data. Must not be null.
+     * @return this view.
+     * @throws IllegalArgumentException if the buffer does not contain a valid message.
+     */
+    public TenantView wrap(ByteBuffer buffer) {
+        wrapBuffer(buffer);
+        return this;
+    }
+
+    @Override
+    protected void parse() {
+        int index = this.start + CODE_SIZE;
+        this.targetLength = readInfoLength(index);
+        this.targetOffset = index + 1;
+        checkAvailable(this.targetOffset + this.targetLength, CODE_SIZE);
+    }
+
+    /**
+     * Return the length of the name of the addressed user in bytes.
+     * @return the length of the name of the addressed user, 0 for the user the gossiper was started with.
+     */
+    public int getTargetLength() {
+        return this.targetLength;
+    }
+
+    /**
+     * Return the name of the addressed user. This allocates a string.
+     * @return the name of the addressed user, empty for the user the gossiper was started with.
+     */
+    public String getTarget() {
+        return getString(this.targetOffset, this.targetLength);
+    }
+
+    /**
+     * Return a buffer positioned on the carried message. The buffer shares the
+     * content of the wrapped buffer.
+     *
+     * @return a buffer positioned on the carried message.
+     */
+    public ByteBuffer getMessage() {
+        ByteBuffer message = this.buffer.duplicate();
+        message.position(this.targetOffset + this.targetLength);
+        return message;
+    }
+
+    /**
+     * Writes a tenant message header in the given buffer from its current position.
+     * The carried message is then written after the header.
+     *
+     * @param dst    The buffer in which the header is written
+     * @param target The name bytes of the addressed user, empty for the user the peer was started with
+     */
+    public static void encodeHeader(ByteBuffer dst, byte[] target) {
+        dst.put(MessageType.TENANT.getCode());
+        putInfo(dst, target);
+    }
+
+    /**
+     * Writes a tenant message header in the given buffer from its current position. The
+     * name of the addressed user is copied from another buffer, for instance the sender
+     * of a received message.
+     *
+     * @param dst          The buffer in which the header is written
+     * @param src          The buffer containing the name of the addressed user
+     * @param targetOffset The index of the name in the source buffer
+     * @param targetLength The length of the name
+     */
+    public static void encodeHeader(ByteBuffer dst, ByteBuffer src, int targetOffset, int targetLength) {
+        dst.put(MessageType.TENANT.getCode());
+        putInfo(dst, src, targetOffset, targetLength);
+    }
+
+    @Override
+    public String toString() {
+        return "Message [type=" + getMessageType() + "] {target=" + getTarget() + "}";
+    }
+}
@@ -13,4 +13,42 @@ public class Util {
             throw new IllegalArgumentException(name +" == null");
         }
     }
+
+    /**
+     * Return the given bytes in hexadecimal.
+     *
+     * @param bytes The bytes
+     * @return the bytes in hexadecimal.
+     */
+    public static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Return the bytes of the given hexadecimal string.
+     *
+     * @param hex The hexadecimal string, of even length
+     * @return the bytes.
+     * @throws IllegalArgumentException if the string is not hexadecimal.
+     */
+    public static byte[] fromHex(String hex) {
+        checkNotNull("hex", hex);
+        if (hex.length() % 2 != 0) {
+            throw new IllegalArgumentException("Invalid hexadecimal string -> " + hex);
+        }
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(hex.charAt(2 * i), 16);
+            int low = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new IllegalArgumentException("Invalid hexadecimal string -> " + hex);
+            }
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+        return bytes;
+    }
 }
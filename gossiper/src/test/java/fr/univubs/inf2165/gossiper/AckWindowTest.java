@@ -0,0 +1,79 @@
+package fr.univubs.inf2165.gossiper;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AckWindowTest {
+
+    @org.junit.jupiter.api.Test
+    void receive() {
+        System.out.println("receive");
+        AckWindow instance = new AckWindow(7, 10);
+        assertTrue(instance.receive(7, 10));
+        assertEquals(11, instance.getBase());
+        // out of order
+        assertTrue(instance.receive(7, 13));
+        assertTrue(instance.receive(7, 12));
+        assertEquals(11, instance.getBase());
+        assertEquals(0b11L, instance.getBitmap());
+        // duplicates
+        assertFalse(instance.receive(7, 12));
+        assertFalse(instance.receive(7, 10));
+        // the gap is filled, the base moves over the received ones
+        assertTrue(instance.receive(7, 11));
+        assertEquals(14, instance.getBase());
+        assertEquals(0L, instance.getBitmap());
+    }
+
+    @org.junit.jupiter.api.Test
+    void receiveWrapAround() {
+        System.out.println("receiveWrapAround");
+        AckWindow instance = new AckWindow(7, Integer.MAX_VALUE);
+        assertTrue(instance.receive(7, Integer.MAX_VALUE));
+        assertTrue(instance.receive(7, Integer.MIN_VALUE + 1));
+        assertEquals(Integer.MIN_VALUE, instance.getBase());
+        assertEquals(1L, instance.getBitmap());
+        assertTrue(instance.receive(7, Integer.MIN_VALUE));
+        assertEquals(Integer.MIN_VALUE + 2, instance.getBase());
+        assertFalse(instance.receive(7, Integer.MAX_VALUE));
+    }
+
+    @org.junit.jupiter.api.Test
+    void receiveFarAhead() {
+        System.out.println("receiveFarAhead");
+        AckWindow instance = new AckWindow(7);
+        assertTrue(instance.receive(7, 1000));
+        // the messages the peer may still retransmit stay in the window
+        assertEquals(1000 - AckWindow.SIZE, instance.getBase());
+        assertTrue(instance.receive(7, 999));
+        assertFalse(instance.receive(7, 1000));
+        assertFalse(instance.receive(7, 1000 - AckWindow.SIZE - 1));
+    }
+
+    @org.junit.jupiter.api.Test
+    void receiveFirstLost() {
+        System.out.println("receiveFirstLost");
+        AckWindow instance = new AckWindow(7);
+        // the sequence number 0 is lost, the ack does not acknowledge it
+        assertTrue(instance.receive(7, 1));
+        assertEquals(0, instance.getBase());
+        assertEquals(1L, instance.getBitmap());
+        // its retransmission is received
+        assertTrue(instance.receive(7, 0));
+        assertEquals(2, instance.getBase());
+    }
+
+    @org.junit.jupiter.api.Test
+    void receiveRestarted() {
+        System.out.println("receiveRestarted");
+        AckWindow instance = new AckWindow(7);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(instance.receive(7, i));
+        }
+        // the restarted peer sends from 0 again, in a new epoch
+        assertTrue(instance.receive(8, 0));
+        assertEquals(8, instance.getEpoch());
+        assertEquals(1, instance.getBase());
+        assertTrue(instance.receive(8, 1));
+        assertFalse(instance.receive(8, 1));
+    }
+}
@@ -0,0 +1,58 @@
+package fr.univubs.inf2165.gossiper;
+
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlobStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @org.junit.jupiter.api.Test
+    void put() throws IOException {
+        System.out.println("put");
+        BlobStore instance = new BlobStore(this.dir.resolve(BlobStore.DIRECTORY_NAME));
+        Path source = Files.writeString(this.dir.resolve("mail"), "hello", StandardCharsets.UTF_8);
+        String hash = instance.put(source);
+        assertEquals("2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824", hash);
+        assertTrue(instance.contains(hash));
+        assertFalse(Files.isSameFile(source, instance.getBlob(hash)));
+        assertEquals(hash, instance.put(source));
+    }
+
+    @org.junit.jupiter.api.Test
+    void link() throws IOException {
+        System.out.println("link");
+        BlobStore instance = new BlobStore(this.dir.resolve(BlobStore.DIRECTORY_NAME));
+        String hash = instance.put(Files.writeString(this.dir.resolve("mail"), "hello", StandardCharsets.UTF_8));
+        Path alice = Files.writeString(this.dir.resolve("alice"), "old", StandardCharsets.UTF_8);
+        Path bob = this.dir.resolve("bob");
+        instance.link(hash, alice);
+        instance.link(hash, bob);
+        assertEquals("hello", Files.readString(alice, StandardCharsets.UTF_8));
+        assertTrue(Files.isSameFile(alice, bob));
+    }
+
+    @org.junit.jupiter.api.Test
+    void ingest() throws IOException {
+        System.out.println("ingest");
+        BlobStore instance = new BlobStore(this.dir.resolve(BlobStore.DIRECTORY_NAME));
+        Path first = Files.writeString(this.dir.resolve("first"), "hello", StandardCharsets.UTF_8);
+        Path second = Files.writeString(this.dir.resolve("second"), "hello", StandardCharsets.UTF_8);
+        String hash = instance.ingest(first);
+        assertTrue(Files.isSameFile(first, instance.getBlob(hash)));
+        assertEquals(hash, instance.ingest(second));
+        assertTrue(Files.isSameFile(first, second));
+        assertEquals(0, instance.collect());
+        Files.delete(first);
+        Files.delete(second);
+        assertEquals(1, instance.collect());
+        assertFalse(instance.contains(hash));
+    }
+}
@@ -0,0 +1,60 @@
+package fr.univubs.inf2165.gossiper;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    @org.junit.jupiter.api.Test
+    void mightContain() {
+        System.out.println("mightContain");
+        BloomFilter instance = new BloomFilter(1000, 60000, 42);
+        for (int i = 0; i < 1000; i++) {
+            instance.add("mail-" + i);
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(instance.mightContain("mail-" + i));
+        }
+        int falsePositives = 0;
+        for (int i = 1000; i < 11000; i++) {
+            if (instance.mightContain("mail-" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 300, "too many false positives -> " + falsePositives);
+    }
+
+    @org.junit.jupiter.api.Test
+    void getBits() {
+        System.out.println("getBits");
+        BloomFilter instance = new BloomFilter(10, 60000, 7);
+        instance.add("mail");
+        BloomFilter copy = new BloomFilter(instance.getBits().clone(), instance.getHashCount(), instance.getSeed());
+        assertTrue(copy.mightContain("mail"));
+    }
+
+    @org.junit.jupiter.api.Test
+    void getHashCount() {
+        System.out.println("getHashCount");
+        assertEquals(7, new BloomFilter(1000, 60000, 0).getHashCount());
+        // 4 bits per element when the size is capped
+        assertEquals(3, new BloomFilter(1000, 500, 0).getHashCount());
+        assertEquals(48000, BloomFilter.getCapacity(60000));
+    }
+
+    @org.junit.jupiter.api.Test
+    void segment() {
+        System.out.println("segment");
+        int[] counts = new int[8];
+        for (int i = 0; i < 8000; i++) {
+            String filename = "mail-" + i;
+            byte[] data = filename.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+            int segment = BloomFilter.segment(filename, 8);
+            assertEquals(segment, BloomFilter.segment(data, 0, data.length, 8));
+            counts[segment]++;
+        }
+        for (int count : counts) {
+            assertTrue(count > 750 && count < 1250, "uneven segments -> " + count);
+        }
+        assertEquals(0, BloomFilter.segment("mail", 1));
+    }
+}
@@ -0,0 +1,40 @@
+package fr.univubs.inf2165.gossiper;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventBusTest {
+
+    @org.junit.jupiter.api.Test
+    void publish() {
+        System.out.println("publish");
+        EventBus instance = new EventBus();
+        List<String> received = new ArrayList<>();
+        instance.subscribe(new EventBus.Listener() {
+            @Override
+            public void delivered(MailDelivered event) {
+                throw new IllegalStateException("failing listener");
+            }
+        });
+        EventBus.Listener listener = new EventBus.Listener() {
+            @Override
+            public void delivered(MailDelivered event) {
+                received.add("delivered " + event.getFilename() + " " + event.getMessageId());
+            }
+
+            @Override
+            public void deleted(MailDeleted event) {
+                received.add("deleted " + event.getUsername() + " " + event.getFilename());
+            }
+        };
+        instance.subscribe(listener);
+        instance.publish(new MailDelivered("alice", Paths.get("alice", "recv", "<m1@h>"), "<m1@h>"));
+        instance.publish(new MailDeleted("alice", Paths.get("alice", "recv", "<m1@h>")));
+        instance.unsubscribe(listener);
+        instance.publish(new MailDeleted("alice", Paths.get("alice", "recv", "<m2@h>")));
+        assertEquals(List.of("delivered <m1@h> <m1@h>", "deleted alice <m1@h>"), received);
+    }
+}
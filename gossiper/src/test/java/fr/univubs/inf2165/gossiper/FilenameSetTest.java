@@ -0,0 +1,52 @@
+package fr.univubs.inf2165.gossiper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilenameSetTest {
+
+    @org.junit.jupiter.api.Test
+    void add() {
+        System.out.println("add");
+        FilenameSet instance = new FilenameSet();
+        assertTrue(instance.add("mail"));
+        assertFalse(instance.add("mail"));
+        assertEquals(1, instance.size());
+        assertTrue(instance.contains("mail"));
+        assertFalse(instance.contains("mai"));
+    }
+
+    @org.junit.jupiter.api.Test
+    void contains() {
+        System.out.println("contains");
+        FilenameSet instance = new FilenameSet();
+        instance.add("mail");
+        byte[] data = "<-mail->".getBytes(StandardCharsets.UTF_8);
+        assertTrue(instance.contains(data, 2, 4));
+        assertFalse(instance.contains(data, 1, 4));
+    }
+
+    @org.junit.jupiter.api.Test
+    void remove() {
+        System.out.println("remove");
+        FilenameSet instance = new FilenameSet();
+        Set<String> expected = new HashSet<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            String filename = "mail-" + random.nextInt(5000);
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(filename), instance.add(filename));
+            } else {
+                assertEquals(expected.remove(filename), instance.remove(filename));
+            }
+        }
+        assertEquals(expected.size(), instance.size());
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(expected.contains("mail-" + i), instance.contains("mail-" + i));
+        }
+    }
+}
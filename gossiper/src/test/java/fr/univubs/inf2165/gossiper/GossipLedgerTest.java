@@ -0,0 +1,71 @@
+package fr.univubs.inf2165.gossiper;
+
+import java.net.InetSocketAddress;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GossipLedgerTest {
+
+    private final InetSocketAddress peer = new InetSocketAddress("127.0.0.1", 4000);
+
+    @org.junit.jupiter.api.Test
+    void backoff() {
+        System.out.println("backoff");
+        GossipLedger instance = new GossipLedger();
+        instance.setBackoff(10, 40);
+        assertTrue(instance.shouldOffer("alice", "mail", this.peer, 0));
+        instance.offered("alice", "mail", this.peer, 0);
+        assertFalse(instance.shouldOffer("alice", "mail", this.peer, 9));
+        assertTrue(instance.shouldOffer("alice", "mail", this.peer, 10));
+        instance.offered("alice", "mail", this.peer, 10);
+        assertFalse(instance.shouldOffer("alice", "mail", this.peer, 29));
+        assertTrue(instance.shouldOffer("alice", "mail", this.peer, 30));
+        instance.offered("alice", "mail", this.peer, 30);
+        instance.offered("alice", "mail", this.peer, 70);
+        assertFalse(instance.shouldOffer("alice", "mail", this.peer, 109));
+        assertTrue(instance.shouldOffer("alice", "mail", this.peer, 110));
+    }
+
+    @org.junit.jupiter.api.Test
+    void delivered() {
+        System.out.println("delivered");
+        GossipLedger instance = new GossipLedger();
+        instance.setReplication(2);
+        InetSocketAddress other = new InetSocketAddress("127.0.0.1", 4001);
+        InetSocketAddress third = new InetSocketAddress("127.0.0.1", 4002);
+        instance.seen("alice", "mail", 0, 0);
+        instance.delivered("alice", "mail", this.peer);
+        assertFalse(instance.shouldOffer("alice", "mail", this.peer, 0));
+        assertTrue(instance.shouldOffer("alice", "mail", other, 0));
+        instance.delivered("alice", "mail", other);
+        assertEquals(2, instance.getDeliveredCount("alice", "mail"));
+        assertFalse(instance.shouldOffer("alice", "mail", third, 0));
+        instance.retain("alice", Set.of());
+        assertFalse(instance.contains("alice", "mail"));
+    }
+
+    @org.junit.jupiter.api.Test
+    void expired() {
+        System.out.println("expired");
+        GossipLedger instance = new GossipLedger();
+        instance.setTimeToLive(100);
+        instance.seen("alice", "mail", 0, 0);
+        assertTrue(instance.shouldOffer("alice", "mail", this.peer, 100));
+        assertFalse(instance.shouldOffer("alice", "mail", this.peer, 101));
+        instance.seen("alice", "relayed", 0, GossipLedger.DEFAULT_MAX_HOPS);
+        assertFalse(instance.shouldOffer("alice", "relayed", this.peer, 0));
+    }
+
+    @org.junit.jupiter.api.Test
+    void unlimited() {
+        System.out.println("unlimited");
+        GossipLedger instance = new GossipLedger();
+        assertTrue(instance.shouldOffer("alice", "mail", this.peer, 0));
+        for (int port = 4001; port < 4010; port++) {
+            instance.delivered("alice", "mail", new InetSocketAddress("127.0.0.1", port));
+        }
+        assertFalse(instance.shouldOffer("alice", "mail", new InetSocketAddress("127.0.0.1", 4001), 0));
+        assertTrue(instance.shouldOffer("alice", "mail", this.peer, Long.MAX_VALUE / 2));
+    }
+}
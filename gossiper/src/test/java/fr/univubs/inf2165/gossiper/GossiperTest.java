@@ -0,0 +1,258 @@
+package fr.univubs.inf2165.gossiper;
+
+import fr.univubs.inf2165.gossiper.format.AbstractBatchMessageFormat;
+import fr.univubs.inf2165.gossiper.format.Address;
+import fr.univubs.inf2165.gossiper.format.DeleteBatchMessageFormat;
+import fr.univubs.inf2165.gossiper.format.DigestMessageFormat;
+import fr.univubs.inf2165.gossiper.format.FileInfo;
+import fr.univubs.inf2165.gossiper.format.MessageType;
+import fr.univubs.inf2165.gossiper.format.OfferBatchMessageFormat;
+import fr.univubs.inf2165.gossiper.format.UserInfo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.BindException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GossiperTest {
+
+    @org.junit.jupiter.api.Test
+    void reliable(@org.junit.jupiter.api.io.TempDir Path directory) throws Exception {
+        System.out.println("reliable");
+        short alicePort = freePort();
+        short bobPort = freePort();
+        Gossiper alice = new Gossiper("alice", directory.resolve("a"), alicePort, alicePort, "127.0.0.1");
+        Gossiper bob = new Gossiper("bob", directory.resolve("b"), bobPort, bobPort, "127.0.0.1");
+        Path mail = bob.getRecvDirectory().resolve("mail1");
+        Files.write(mail, "hello".getBytes());
+        bob.getDefaultTenant().getRecvIndex().received("mail1");
+        alice.setReliable(true);
+        bob.setReliable(true);
+        try (Selector selector = Selector.open()) {
+            alice.register(selector);
+            bob.register(selector);
+            Thread thread = new Thread(() -> select(selector));
+            thread.setDaemon(true);
+            thread.start();
+
+            // the delete is sent from the port of alice, and acked by bob to it
+            alice.sendDelete(null, "mail1", new InetSocketAddress("127.0.0.1", bobPort));
+            await(() -> ! Files.exists(mail));
+            await(() -> alice.getInFlightCount() == 0);
+            assertEquals(0, alice.getDroppedCount());
+            assertEquals(0, bob.getInFlightCount());
+        } finally {
+            alice.stopServer();
+            bob.stopServer();
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void standalone(@org.junit.jupiter.api.io.TempDir Path directory) throws Exception {
+        System.out.println("standalone");
+        short bobPort = freePort();
+        Gossiper bob = new Gossiper("bob", directory.resolve("b"), bobPort, bobPort, "127.0.0.1");
+        try (Selector selector = Selector.open()) {
+            bob.register(selector);
+            InetSocketAddress alice = new InetSocketAddress("127.0.0.1", 4000);
+            assertTrue(bob.getTransferTable().begin("bob", "mail1", alice, System.currentTimeMillis()));
+
+            // without the bus of the mail events, the transfer ends when the file is moved in place
+            Path tmp = Files.write(directory.resolve("mail1.tmp"), "hello".getBytes());
+            Files.move(tmp, bob.getRecvDirectory().resolve("mail1"), StandardCopyOption.ATOMIC_MOVE);
+            await(() -> ! bob.getTransferTable().isInFlight("bob", "mail1"));
+            assertFalse(bob.getTransferTable().isInFlight("bob", "mail1"));
+        } finally {
+            bob.stopServer();
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void digest(@org.junit.jupiter.api.io.TempDir Path directory) throws Exception {
+        System.out.println("digest");
+        short bobPort = freePort();
+        Gossiper bob = new Gossiper("bob", directory.resolve("b"), bobPort, bobPort, "127.0.0.1");
+        for (int i = 0; i < 5000; i++) {
+            bob.getDefaultTenant().getRecvIndex().received("mail-" + i);
+        }
+        try (DatagramChannel sender = DatagramChannel.open();
+             DatagramChannel receiver = DatagramChannel.open()) {
+            receiver.bind(new InetSocketAddress("127.0.0.1", 0));
+            bob.sendDigest(sender, (InetSocketAddress) receiver.getLocalAddress());
+
+            // each segment fits in a packet, and together they hold all the received files
+            ByteBuffer buffer = ByteBuffer.allocate(65507);
+            java.util.Map<Integer, DigestMessageFormat> digests = new java.util.HashMap<>();
+            int segments = 0;
+            while ((segments == 0 || digests.size() < segments) && receive(receiver, buffer)) {
+                assertTrue(buffer.remaining() <= AbstractBatchMessageFormat.MAX_PACKET_SIZE);
+                DigestMessageFormat message = new DigestMessageFormat(buffer);
+                segments = message.getSegments();
+                digests.put(message.getSegment(), message);
+            }
+            assertTrue(segments > 1);
+            assertEquals(segments, digests.size());
+            for (int i = 0; i < 5000; i++) {
+                String filename = "mail-" + i;
+                DigestMessageFormat message = digests.get(BloomFilter.segment(filename, segments));
+                BloomFilter filter = new BloomFilter(message.getFilter(), message.getHashCount(), message.getSeed());
+                assertTrue(filter.mightContain(filename));
+            }
+        } finally {
+            bob.stopServer();
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void deleteBatch(@org.junit.jupiter.api.io.TempDir Path directory) throws Exception {
+        System.out.println("deleteBatch");
+        short bobPort = freePort();
+        short alicePort = freePort();
+        Gossiper bob = new Gossiper("bob", directory.resolve("b"), bobPort, bobPort, "127.0.0.1");
+        for (int i = 0; i < 3; i++) {
+            bob.getDefaultTenant().getRecvIndex().received("mail" + i);
+        }
+        try (Selector selector = Selector.open();
+             DatagramChannel alice = DatagramChannel.open()) {
+            alice.bind(new InetSocketAddress("127.0.0.1", alicePort));
+            bob.register(selector);
+            Thread thread = new Thread(() -> select(selector));
+            thread.setDaemon(true);
+            thread.start();
+
+            // the files bob already holds are all answered in a single batch delete
+            OfferBatchMessageFormat offer = new OfferBatchMessageFormat(new Address("127.0.0.1", alicePort),
+                    new UserInfo("alice"), Arrays.asList(new FileInfo("mail0"), new FileInfo("mail1"), new FileInfo("mail2")));
+            alice.send(offer.getPacket(), new InetSocketAddress("127.0.0.1", bobPort));
+            ByteBuffer buffer = ByteBuffer.allocate(AbstractBatchMessageFormat.MAX_PACKET_SIZE);
+            assertTrue(receive(alice, buffer));
+            DeleteBatchMessageFormat delete = new DeleteBatchMessageFormat(buffer);
+            assertEquals(MessageType.DELETE_BATCH, delete.getMessageType());
+            assertEquals(3, delete.getFileInfos().size());
+            assertEquals("mail2", delete.getFileInfos().get(2).getFilename());
+        } finally {
+            bob.stopServer();
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void tenants(@org.junit.jupiter.api.io.TempDir Path directory) throws Exception {
+        System.out.println("tenants");
+        short alicePort = freePort();
+        short bobPort = freePort();
+        Path send = Files.createDirectories(directory.resolve("a").resolve("alice").resolve("send"));
+        Files.write(send.resolve("mail1"), "hello carol".getBytes());
+        Gossiper alice = new Gossiper("alice", directory.resolve("a"), alicePort, alicePort, "127.0.0.1");
+        Gossiper bob = new Gossiper("bob", directory.resolve("b"), bobPort, bobPort, "127.0.0.1");
+        Tenant carol = bob.addTenant("carol");
+        bob.setEventBus(new EventBus());
+        try (Selector selector = Selector.open();
+             ServerSocketChannel server = ServerSocketChannel.open()) {
+            // stands for the file receiver of bob's node, shared by its users
+            server.bind(new InetSocketAddress("127.0.0.1", bobPort));
+            Path[] received = new Path[1];
+            Thread receiver = new Thread(() -> {
+                try (SocketChannel client = server.accept()) {
+                    ByteArrayOutputStream content = new ByteArrayOutputStream();
+                    ByteBuffer buffer = ByteBuffer.allocate(1024);
+                    while (client.read(buffer) != -1) {
+                        content.write(buffer.array(), 0, buffer.position());
+                        buffer.clear();
+                    }
+                    Path path = bob.getRecvDirectory("mail1").resolve("mail1");
+                    Files.write(path, content.toByteArray());
+                    String user = path.getParent().equals(carol.getRecvDirectory()) ? "carol" : "bob";
+                    bob.getEventBus().publish(new MailDelivered(user, path, "mail1"));
+                    client.write(ByteBuffer.wrap(new byte[]{0x06}));
+                    received[0] = path;
+                } catch (IOException ioe) {
+                    ioe.printStackTrace();
+                }
+            });
+            receiver.setDaemon(true);
+            receiver.start();
+            alice.register(selector);
+            bob.register(selector);
+            Thread thread = new Thread(() -> select(selector));
+            thread.setDaemon(true);
+            thread.start();
+
+            // the offer is addressed to carol, who requests the file from alice
+            alice.sendOffer(alice.getDefaultTenant(), null, "mail1", new InetSocketAddress("127.0.0.1", bobPort), "carol");
+            receiver.join(5000);
+            assertEquals(carol.getRecvDirectory().resolve("mail1"), received[0]);
+            assertEquals("hello carol", new String(Files.readAllBytes(received[0])));
+            assertTrue(carol.getRecvIndex().contains("mail1"));
+            assertFalse(bob.getDefaultTenant().getRecvIndex().contains("mail1"));
+            assertFalse(bob.getTransferTable().isInFlight("carol", "mail1"));
+        } finally {
+            alice.stopServer();
+            bob.stopServer();
+        }
+    }
+
+    /**
+     * Return a free UDP port, below 32768 as the ports are shorts.
+     */
+    private static short freePort() throws IOException {
+        for (int port = 20000 + new Random().nextInt(10000); ; port++) {
+            try (DatagramChannel channel = DatagramChannel.open()) {
+                channel.bind(new InetSocketAddress("127.0.0.1", port));
+                return (short) port;
+            } catch (BindException be) {
+                // in use, the next one is tried
+            }
+        }
+    }
+
+    private static void select(Selector selector) {
+        try {
+            while (selector.isOpen()) {
+                selector.select(100);
+                for (SelectionKey key : selector.selectedKeys()) {
+                    ((SelectHandler) key.attachment()).selected(key);
+                }
+                selector.selectedKeys().clear();
+            }
+        } catch (Exception e) {
+            // the selector has been closed
+        }
+    }
+
+    /**
+     * Receives a datagram in the given buffer, flipped, waiting five seconds at most.
+     */
+    private static boolean receive(DatagramChannel channel, ByteBuffer buffer) throws IOException, InterruptedException {
+        channel.configureBlocking(false);
+        buffer.clear();
+        for (int i = 0; i < 500; i++) {
+            if (channel.receive(buffer) != null) {
+                buffer.flip();
+                return true;
+            }
+            Thread.sleep(10);
+        }
+        return false;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 100 && ! condition.getAsBoolean(); i++) {
+            Thread.sleep(50);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
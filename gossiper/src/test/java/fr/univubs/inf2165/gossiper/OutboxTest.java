@@ -0,0 +1,111 @@
+package fr.univubs.inf2165.gossiper;
+
+import fr.univubs.inf2165.gossiper.format.*;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutboxTest {
+
+    @org.junit.jupiter.api.Test
+    void queue() throws IOException {
+        System.out.println("queue");
+        try (DatagramChannel receiver = DatagramChannel.open();
+             DatagramChannel channel = DatagramChannel.open();
+             Outbox instance = new Outbox(channel, Outbox.DEFAULT_RATE, Outbox.DEFAULT_BURST, 50)) {
+            receiver.bind(new InetSocketAddress("127.0.0.1", 0));
+            channel.bind(new InetSocketAddress("127.0.0.1", 0));
+            InetSocketAddress target = (InetSocketAddress) receiver.getLocalAddress();
+            int ip = MessageView.toInt(target.getAddress().getAddress());
+            MessageTemplate offer = new MessageTemplate(MessageType.OFFER, ip, (short) 4000, "aliyou");
+            MessageTemplate offerBatch = new MessageTemplate(MessageType.OFFER_BATCH, ip, (short) 4000, "aliyou");
+            instance.start();
+            for (int i = 0; i < 3; i++) {
+                instance.queue(target, offer, offerBatch, MessageTemplate.toInfoBytes("mail" + i));
+            }
+
+            // the three offers are coalesced in a single batch
+            ByteBuffer buffer = ByteBuffer.allocate(AbstractBatchMessageFormat.MAX_PACKET_SIZE);
+            // sent from the bound channel, to which the peer answers
+            assertEquals(channel.getLocalAddress(), receiver.receive(buffer));
+            buffer.flip();
+            OfferBatchMessageFormat message = new OfferBatchMessageFormat(buffer);
+            assertEquals(3, message.getFileInfos().size());
+            assertEquals("mail2", message.getFileInfos().get(2).getFilename());
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void contents() throws IOException {
+        System.out.println("contents");
+        try (DatagramChannel receiver = DatagramChannel.open();
+             DatagramChannel channel = DatagramChannel.open();
+             Outbox instance = new Outbox(channel, Outbox.DEFAULT_RATE, Outbox.DEFAULT_BURST, 50)) {
+            receiver.bind(new InetSocketAddress("127.0.0.1", 0));
+            channel.bind(new InetSocketAddress("127.0.0.1", 0));
+            InetSocketAddress target = (InetSocketAddress) receiver.getLocalAddress();
+            int ip = MessageView.toInt(target.getAddress().getAddress());
+            MessageTemplate offer = new MessageTemplate(MessageType.OFFER, ip, (short) 4000, "aliyou");
+            MessageTemplate offerBatch = new MessageTemplate(MessageType.OFFER_BATCH, ip, (short) 4000, "aliyou");
+            instance.start();
+            instance.queue(target, offer, offerBatch, MessageTemplate.toInfoBytes("mail0"), new FileInfo("mail0", 42, new byte[FileInfo.HASH_SIZE]));
+            instance.queue(target, offer, offerBatch, MessageTemplate.toInfoBytes("mail1"), null);
+
+            // the coalesced offers carry the contents of their files
+            ByteBuffer buffer = ByteBuffer.allocate(AbstractBatchMessageFormat.MAX_PACKET_SIZE);
+            receiver.receive(buffer);
+            buffer.flip();
+            BatchView view = new BatchView().wrap(buffer);
+            assertEquals(2, view.getCount());
+            assertTrue(view.next());
+            assertEquals(42, view.getFileSize());
+            assertTrue(view.next());
+            assertFalse(view.hasContent());
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void reliableSize() throws IOException {
+        System.out.println("reliableSize");
+        try (DatagramChannel receiver = DatagramChannel.open();
+             DatagramChannel channel = DatagramChannel.open();
+             Outbox instance = new Outbox(channel, Outbox.DEFAULT_RATE, Outbox.DEFAULT_BURST, 50)) {
+            receiver.bind(new InetSocketAddress("127.0.0.1", 0));
+            channel.bind(new InetSocketAddress("127.0.0.1", 0));
+            InetSocketAddress target = (InetSocketAddress) receiver.getLocalAddress();
+            int ip = MessageView.toInt(target.getAddress().getAddress());
+            MessageTemplate offer = new MessageTemplate(MessageType.OFFER, ip, (short) 4000, "aliyou");
+            MessageTemplate offerBatch = new MessageTemplate(MessageType.OFFER_BATCH, ip, (short) 4000, "aliyou");
+            instance.setReliable(true);
+            instance.start();
+            for (int i = 0; i < 200; i++) {
+                instance.queue(target, offer, offerBatch, MessageTemplate.toInfoBytes("mail-" + i + "@example.org"));
+            }
+
+            // the full batch and its reliable header fit in a single packet
+            ByteBuffer buffer = ByteBuffer.allocate(2 * AbstractBatchMessageFormat.MAX_PACKET_SIZE);
+            receiver.receive(buffer);
+            assertTrue(buffer.position() <= AbstractBatchMessageFormat.MAX_PACKET_SIZE, "datagram size -> " + buffer.position());
+            assertTrue(buffer.position() > AbstractBatchMessageFormat.MAX_PACKET_SIZE - 64);
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void bounded() throws IOException {
+        System.out.println("bounded");
+        try (DatagramChannel channel = DatagramChannel.open();
+             Outbox instance = new Outbox(channel)) {
+            InetSocketAddress target = new InetSocketAddress("127.0.0.1", 4000);
+            ByteBuffer datagram = ByteBuffer.allocate(1);
+            for (int i = 0; i < Outbox.MAX_QUEUED; i++) {
+                assertTrue(instance.queue(target, datagram.rewind()));
+            }
+            assertFalse(instance.queue(target, datagram.rewind()));
+            assertEquals(1, instance.getDropped());
+        }
+    }
+}
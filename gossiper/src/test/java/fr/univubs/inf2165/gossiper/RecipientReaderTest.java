@@ -0,0 +1,40 @@
+package fr.univubs.inf2165.gossiper;
+
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecipientReaderTest {
+
+    @TempDir
+    Path dir;
+
+    @org.junit.jupiter.api.Test
+    void parse() {
+        System.out.println("parse");
+        Set<String> recipients = new HashSet<>();
+        RecipientReader.parse(" Alice <alice@node1>, bob@node2 ,carol, , Undisclosed recipients", recipients);
+        assertEquals(Set.of("alice", "bob", "carol"), recipients);
+    }
+
+    @org.junit.jupiter.api.Test
+    void read() throws IOException {
+        System.out.println("read");
+        Path mail = Files.writeString(this.dir.resolve("mail"), "From: dave@node4\r\n"
+                + "To: alice@node1,\r\n bob@node2\r\n"
+                + "Cc: <carol@node3>\r\n"
+                + "Subject: To: eve@node5\r\n"
+                + "\r\n"
+                + "To: mallory@node6\r\n", StandardCharsets.UTF_8);
+        assertEquals(Set.of("alice", "bob", "carol"), RecipientReader.read(mail));
+        Path notMail = Files.writeString(this.dir.resolve("notes"), "some notes\n", StandardCharsets.UTF_8);
+        assertTrue(RecipientReader.read(notMail).isEmpty());
+    }
+}
@@ -0,0 +1,43 @@
+package fr.univubs.inf2165.gossiper;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransferTableTest {
+
+    private final InetSocketAddress first = new InetSocketAddress("127.0.0.1", 4000);
+    private final InetSocketAddress second = new InetSocketAddress("127.0.0.1", 4001);
+
+    @org.junit.jupiter.api.Test
+    void begin() {
+        System.out.println("begin");
+        TransferTable instance = new TransferTable(100);
+        assertTrue(instance.begin("alice", "mail", this.first, 0));
+        assertFalse(instance.begin("alice", "mail", this.second, 10));
+        assertFalse(instance.begin("alice", "mail", this.first, 20));
+        assertTrue(instance.begin("bob", "mail", this.second, 20));
+        instance.completed("alice", "mail");
+        assertFalse(instance.isInFlight("alice", "mail"));
+        assertTrue(instance.begin("alice", "mail", this.second, 30));
+    }
+
+    @org.junit.jupiter.api.Test
+    void expire() {
+        System.out.println("expire");
+        TransferTable instance = new TransferTable(100);
+        instance.begin("alice", "mail", this.first, 0);
+        instance.begin("alice", "mail", this.second, 10);
+        assertTrue(instance.expire(99).isEmpty());
+        List<TransferTable.Transfer> restarted = instance.expire(100);
+        assertEquals(1, restarted.size());
+        assertEquals(this.second, restarted.get(0).getPeer());
+        assertFalse(instance.begin("alice", "mail", this.first, 150));
+        restarted = instance.expire(200);
+        assertEquals(1, restarted.size());
+        assertEquals(this.first, restarted.get(0).getPeer());
+        assertTrue(instance.expire(300).isEmpty());
+        assertEquals(0, instance.size());
+    }
+}
@@ -37,6 +37,22 @@ class AddressTest {
         }
     }
 
+    @org.junit.jupiter.api.Test
+    void readData() throws IOException {
+        System.out.println("readData");
+        Address instance = new Address("10.1.2.3", (short) 60525);
+        ByteBuffer buffer = ByteBuffer.allocate(Address.SIZE + 1);
+        buffer.put((byte) 42); // the address does not start the buffer
+        instance.writeData(buffer);
+        buffer.flip();
+        buffer.get();
+        Address read = new Address(buffer);
+        assertFalse(buffer.hasRemaining());
+        assertEquals(InetAddress.getByName("10.1.2.3"), read.getIp());
+        assertEquals((short) 60525, read.getPort());
+        assertEquals(instance.getInetSocketAddress(), read.getInetSocketAddress());
+    }
+
     @org.junit.jupiter.api.Test
     void getInetSocketAddress() {
         System.out.println("getInetSocketAddress");
@@ -0,0 +1,94 @@
+package fr.univubs.inf2165.gossiper.format;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchViewTest {
+
+    @org.junit.jupiter.api.Test
+    void wrap() {
+        System.out.println("wrap");
+        try {
+            Address address = new Address("127.0.0.1", (short) 4000);
+            OfferBatchMessageFormat message = new OfferBatchMessageFormat(address, new UserInfo("aliyou"),
+                    Arrays.asList(new FileInfo("mail1"), new FileInfo("mail2")));
+            BatchView instance = new BatchView().wrap(message.getPacket());
+            assertEquals(MessageType.OFFER_BATCH, instance.getMessageType());
+            assertEquals(MessageView.toInt(address.getIp().getAddress()), instance.getIp());
+            assertEquals((short) 4000, instance.getPort());
+            assertEquals("aliyou", instance.getUsername());
+            assertEquals(2, instance.getCount());
+            assertTrue(instance.next());
+            assertEquals("mail1", instance.getFilename());
+            assertTrue(instance.next());
+            assertEquals("mail2", instance.getFilename());
+            assertFalse(instance.next());
+        } catch(IOException ioe) {
+            ioe.printStackTrace();
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void encodeHeader() throws IOException {
+        System.out.println("encodeHeader");
+        byte[] username = "aliyou".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(AbstractBatchMessageFormat.MAX_PACKET_SIZE);
+        int countIndex = BatchView.encodeHeader(buffer, MessageType.REQUEST_BATCH, 0x7F000001, (short) 5000, username);
+        assertEquals(BatchView.getHeaderSize(username.length), buffer.position());
+        BatchView.putFile(buffer, "mail1".getBytes(StandardCharsets.UTF_8));
+        BatchView.setCount(buffer, countIndex, 1);
+        buffer.flip();
+
+        RequestBatchMessageFormat message = new RequestBatchMessageFormat(buffer);
+        assertEquals("127.0.0.1", message.getAddress().getIp().getHostAddress());
+        assertEquals((short) 5000, message.getAddress().getPort());
+        assertEquals(1, message.getFileInfos().size());
+        assertEquals("mail1", message.getFileInfos().get(0).getFilename());
+    }
+
+    @org.junit.jupiter.api.Test
+    void content() throws IOException {
+        System.out.println("content");
+        byte[] username = "aliyou".getBytes(StandardCharsets.UTF_8);
+        byte[] hash = new byte[FileInfo.HASH_SIZE];
+        hash[0] = (byte) 0xAB;
+        ByteBuffer buffer = ByteBuffer.allocate(AbstractBatchMessageFormat.MAX_PACKET_SIZE);
+        int countIndex = BatchView.encodeHeader(buffer, MessageType.OFFER_BATCH, 0x7F000001, (short) 4000, username);
+        BatchView.putFile(buffer, "mail1".getBytes(StandardCharsets.UTF_8));
+        BatchView.putFile(buffer, "mail2".getBytes(StandardCharsets.UTF_8));
+        BatchView.setCount(buffer, countIndex, 2);
+        BatchView.putContent(buffer, 5, hash);
+        BatchView.putContent(buffer, FileInfo.UNKNOWN_SIZE, null);
+        buffer.flip();
+
+        BatchView instance = new BatchView().wrap(buffer);
+        assertFalse(instance.hasContent());
+        assertTrue(instance.next());
+        assertTrue(instance.hasContent());
+        assertEquals(5, instance.getFileSize());
+        assertEquals(Util.toHex(hash), instance.getHash());
+        assertTrue(instance.next());
+        assertFalse(instance.hasContent());
+        assertNull(instance.getHash());
+
+        // the peers which do not know the contents read the files only
+        OfferBatchMessageFormat message = new OfferBatchMessageFormat(buffer);
+        assertEquals(2, message.getFileInfos().size());
+        assertEquals("mail2", message.getFileInfos().get(1).getFilename());
+    }
+
+    @org.junit.jupiter.api.Test
+    void wrapTruncated() {
+        System.out.println("wrapTruncated");
+        byte[] username = "aliyou".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        int countIndex = BatchView.encodeHeader(buffer, MessageType.OFFER_BATCH, 0x7F000001, (short) 4000, username);
+        BatchView.setCount(buffer, countIndex, 3);
+        buffer.flip();
+        assertThrows(IllegalArgumentException.class, () -> new BatchView().wrap(buffer));
+    }
+}
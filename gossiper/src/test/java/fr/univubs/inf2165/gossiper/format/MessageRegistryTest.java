@@ -0,0 +1,38 @@
+package fr.univubs.inf2165.gossiper.format;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageRegistryTest {
+
+    @org.junit.jupiter.api.Test
+    void dispatch() throws IOException {
+        System.out.println("dispatch");
+        List<String> received = new ArrayList<>();
+        MessageRegistry instance = new MessageRegistry();
+        instance.register(MessageType.DELETE, new DeleteView()::wrap, (delete, source) -> received.add(delete.getFilename()));
+
+        DeleteMessageFormat message = new DeleteMessageFormat(new UserInfo("aliyou"), new FileInfo("mail1"));
+        assertTrue(instance.dispatch(message.getPacket(), null));
+        assertEquals(List.of("mail1"), received);
+
+        ByteBuffer unknown = ByteBuffer.wrap(new byte[] {(byte) 200, 0});
+        assertFalse(instance.dispatch(unknown, null));
+        instance.unregister(MessageType.DELETE.getCode());
+        assertFalse(instance.isRegistered(MessageType.DELETE.getCode()));
+    }
+
+    @org.junit.jupiter.api.Test
+    void getMessageType() {
+        System.out.println("getMessageType");
+        for (MessageType messageType : MessageType.values()) {
+            assertEquals(messageType, MessageType.getMessageType(messageType.getCode()));
+        }
+        assertNull(MessageType.getMessageType((byte) 0));
+        assertNull(MessageType.getMessageType((byte) -1));
+    }
+}
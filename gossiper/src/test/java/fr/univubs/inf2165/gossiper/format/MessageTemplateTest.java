@@ -0,0 +1,34 @@
+package fr.univubs.inf2165.gossiper.format;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageTemplateTest {
+
+    @org.junit.jupiter.api.Test
+    void write() throws IOException {
+        System.out.println("write");
+        Address address = new Address("127.0.0.1", (short) 4000);
+        OfferMessageFormat message = new OfferMessageFormat(address, new UserInfo("aliyou"), new FileInfo("mail1"));
+        MessageTemplate instance = new MessageTemplate(MessageType.OFFER,
+                MessageView.toInt(address.getIp().getAddress()), (short) 4000, "aliyou");
+        ByteBuffer buffer = ByteBuffer.allocate(AbstractBatchMessageFormat.MAX_PACKET_SIZE);
+        instance.write(buffer, MessageTemplate.toInfoBytes("mail1"));
+        buffer.flip();
+        assertEquals(message.getPacket(), buffer);
+    }
+
+    @org.junit.jupiter.api.Test
+    void writeDelete() {
+        System.out.println("writeDelete");
+        DeleteMessageFormat message = new DeleteMessageFormat(new UserInfo("aliyou"), new FileInfo("mail1"));
+        MessageTemplate instance = new MessageTemplate(MessageType.DELETE, "aliyou");
+        ByteBuffer buffer = ByteBuffer.allocate(AbstractBatchMessageFormat.MAX_PACKET_SIZE);
+        instance.write(buffer, MessageTemplate.toInfoBytes("mail1"));
+        buffer.flip();
+        assertEquals(message.getPacket(), buffer);
+        assertEquals(1 + 1 + 6, instance.getPrefixSize());
+    }
+}
@@ -0,0 +1,41 @@
+package fr.univubs.inf2165.gossiper.format;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OfferBatchMessageFormatTest {
+
+    @org.junit.jupiter.api.Test
+    void getPacket() {
+        System.out.println("getPacket");
+        try {
+            Address address = new Address("127.0.0.1", (short) 4000);
+            UserInfo userInfo = new UserInfo("aliyou");
+            List<FileInfo> fileInfos = Arrays.asList(new FileInfo("mail1"), new FileInfo("mail2"));
+            OfferBatchMessageFormat instance = new OfferBatchMessageFormat(address, userInfo, fileInfos);
+            ByteBuffer buffer = instance.getPacket();
+            assertEquals(instance.getSize(), buffer.remaining());
+
+            OfferBatchMessageFormat read = new OfferBatchMessageFormat(buffer);
+            assertEquals(MessageType.OFFER_BATCH, read.getMessageType());
+            assertEquals(address.getIp(), read.getAddress().getIp());
+            assertEquals(address.getPort(), read.getAddress().getPort());
+            assertEquals("aliyou", read.getUserInfo().getUsername());
+            assertEquals(2, read.getFileInfos().size());
+            assertEquals("mail2", read.getFileInfos().get(1).getFilename());
+        } catch(IOException ioe) {
+            ioe.printStackTrace();
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void getHeaderSize() {
+        System.out.println("getHeaderSize");
+        UserInfo userInfo = new UserInfo("aliyou");
+        assertEquals(1 + Address.SIZE + userInfo.getSize() + 2, AbstractBatchMessageFormat.getHeaderSize(userInfo));
+    }
+}
@@ -0,0 +1,78 @@
+package fr.univubs.inf2165.node;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import fr.univubs.inf2165.gossiper.Gossiper;
+
+/**
+ * Main
+ */
+public class Main {
+
+    /**
+     * Prints how to use the program.
+     */
+    private static void usage() {
+        System.out.println("Usage: Node <multicast Address> <multicast port> <username> <baseDirectory> <UDPport> <TCPport> <POP3port> [IP] [delay]");
+        System.out.println("With:");
+        System.out.println("\t multicast address:  multicast address");
+        System.out.println("\t multicast port:     multicast port");
+        System.out.println("\t username:           user name");
+        System.out.println("\t base_directory:     directory that contains user directories");
+        System.out.println("\t UDPport:            local UDP port number");
+        System.out.println("\t TCPport:            local TCP port number for receiving files");
+        System.out.println("\t POP3port:           local port number of the POP3 server");
+        System.out.println("\t IP                  local IP address - localhost by default");
+        System.out.println("\t delay               delay (seconds) before announcing it's presence - 5 seconds by default");
+        System.out.println("Other users can be hosted on the same endpoint with -Dgossiper.tenants=user1,user2");
+        System.exit(-1);
+    }
+
+    /**
+     * Main
+     *
+     * @param args The arguments of the program.
+     */
+    public static void main(String[] args) {
+
+        if (args.length < 7 || "-h".equals(args[0].trim().toLowerCase())) {
+            usage();
+        }
+
+        String groupAddress = args[0];
+        short groupPort = Short.valueOf(args[1]);
+        String username = args[2];
+        Path baseDirectory = Paths.get(args[3]);
+        short udpPort = Short.valueOf(args[4]);
+        short tcpPort = Short.valueOf(args[5]);
+        int pop3Port = Integer.parseInt(args[6]);
+
+        try {
+            Gossiper gossiper;
+            if (args.length > 7) {
+                gossiper = new Gossiper(username, baseDirectory, udpPort, tcpPort, args[7]);
+            } else {
+                gossiper = new Gossiper(username, baseDirectory, udpPort, tcpPort);
+            }
+            // other users hosted on the same endpoint, -Dgossiper.tenants=user1,user2
+            for (String tenant : System.getProperty("gossiper.tenants", "").split(",")) {
+                if ( ! tenant.trim().isEmpty()) {
+                    gossiper.addTenant(tenant.trim());
+                }
+            }
+
+            int delay = (args.length > 8) ? Integer.parseInt(args[8]) : 5;
+            Node node = new Node(groupAddress, groupPort, gossiper, pop3Port, delay);
+            Runtime.getRuntime().addShutdownHook(new Thread(node::close));
+            node.start();
+            node.join();
+
+        } catch (IOException | InterruptedException | IllegalArgumentException ioe) {
+            System.err.println(ioe.getMessage());
+            usage();
+        }
+    }
+
+}
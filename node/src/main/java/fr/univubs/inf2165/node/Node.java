@@ -0,0 +1,163 @@
+package fr.univubs.inf2165.node;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import fr.univubs.inf2165.discover.Discover;
+import fr.univubs.inf2165.filereceiver.FileReceiver;
+import fr.univubs.inf2165.gossiper.EventBus;
+import fr.univubs.inf2165.gossiper.Gossiper;
+import fr.univubs.inf2165.gossiper.MailDeleted;
+import fr.univubs.inf2165.gossiper.MailDelivered;
+import fr.univubs.inf2165.gossiper.MailExpected;
+import fr.univubs.inf2165.gossiper.Tenant;
+import fr.univubs.inf2165.pop3.MaildropIndex;
+import fr.univubs.inf2165.pop3.POP3Server;
+
+/**
+ * This class runs all the components of a peer in a single process: the discovery of
+ * the neighbors, the gossiper, the file receiver and the POP3 server. The components
+ * share an {@link EventBus}, so that a mail delivered by the file receiver or deleted
+ * by a POP3 client is known at once by the others, without watching or listing the
+ * directories.
+ *
+ * The maildrop of a user is the receive directory of the user, where the file receiver
+ * delivers the mails.
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public class Node implements Closeable {
+
+    private final Gossiper gossiper;
+    private final EventBus eventBus;
+    private final FileReceiver fileReceiver;
+    private final MaildropIndex maildropIndex;
+    private final POP3Server pop3Server;
+    private final Discover discover;
+
+    /**
+     * Constructs a new Node object.
+     *
+     * @param groupAddress The multicast address of the beacons. Must not be null.
+     * @param groupPort    The multicast port of the beacons
+     * @param gossiper     The gossiper, whose TCP port is used by the file receiver. Must not be null.
+     * @param pop3Port     The port of the POP3 server
+     * @param delay        The delay (seconds) before announcing the presence
+     * @throws IOException if a component can't be created.
+     */
+    public Node(String groupAddress, short groupPort, Gossiper gossiper, int pop3Port, int delay) throws IOException {
+        if (gossiper == null) {
+            throw new NullPointerException("gossiper == null");
+        }
+        this.gossiper = gossiper;
+        this.eventBus = new EventBus();
+        this.gossiper.setEventBus(this.eventBus);
+
+        // the maildrops are the receive directories, kept up to date by the events
+        this.maildropIndex = new MaildropIndex(this::getMaildrop);
+        this.maildropIndex.setLive(true);
+        this.maildropIndex.setListener((user, file) -> this.eventBus.publish(new MailDeleted(user, file)));
+        this.eventBus.subscribe(new EventBus.Listener() {
+            @Override
+            public void delivered(MailDelivered event) {
+                if (event.getMessageId() != null) {
+                    maildropIndex.delivered(event.getUsername(), event.getPath());
+                }
+            }
+
+            @Override
+            public void deleted(MailDeleted event) {
+                maildropIndex.deleted(event.getUsername(), event.getPath());
+            }
+        });
+
+        this.fileReceiver = new FileReceiver(gossiper.getTcpPort(), gossiper.getRecvDirectory(), gossiper.getIP());
+        this.fileReceiver.setDaemon(true);
+        // the receiver is shared by the hosted users: each file goes to the user waiting for it
+        this.fileReceiver.setDirectoryResolver(gossiper::getRecvDirectory);
+        this.fileReceiver.setDeliveryListener((path, headers) ->
+                this.eventBus.publish(new MailDelivered(getRecipient(path), path, headers.getMessageId())));
+        // the files requested with their content are checked on arrival
+        this.eventBus.subscribe(new EventBus.Listener() {
+            @Override
+            public void expected(MailExpected event) {
+                if (gossiper.getTenant(event.getUsername()) != null) {
+                    fileReceiver.expect(event.getFilename(), event.getSize(), event.getHash());
+                }
+            }
+        });
+        this.pop3Server = new POP3Server(pop3Port, gossiper.getBaseDirectory(), this.maildropIndex);
+        this.pop3Server.setDaemon(true);
+        this.discover = new Discover(groupAddress, groupPort, gossiper, delay);
+    }
+
+    /**
+     * Return the maildrop of a user: the receive directory of the user if hosted here.
+     */
+    private Path getMaildrop(String user) {
+        Tenant tenant = this.gossiper.getTenant(user);
+        return tenant != null ? tenant.getRecvDirectory() : this.gossiper.getBaseDirectory().resolve(user).resolve("recv");
+    }
+
+    /**
+     * Return the hosted user whose receive directory contains the given received file,
+     * the user the gossiper was started with if none.
+     */
+    private String getRecipient(Path path) {
+        for (Tenant tenant : this.gossiper.getTenants()) {
+            if (tenant.getRecvDirectory().equals(path.getParent())) {
+                return tenant.getUsername();
+            }
+        }
+        return this.gossiper.getUsername();
+    }
+
+    /**
+     * Starts all the components.
+     *
+     * @throws InterruptedException if interrupted while the gossiper starts.
+     */
+    public void start() throws InterruptedException {
+        this.fileReceiver.start();
+        this.pop3Server.start();
+        if (this.gossiper.getReceiveChannels() > 1) {
+            // each channel is read by its own thread, otherwise discover's selector reads it
+            this.gossiper.start();
+            Thread.sleep(1000);
+        }
+        this.discover.start();
+    }
+
+    /**
+     * Waits until the discovery stops.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public void join() throws InterruptedException {
+        this.discover.join();
+    }
+
+    public Gossiper getGossiper() {
+        return this.gossiper;
+    }
+
+    public EventBus getEventBus() {
+        return this.eventBus;
+    }
+
+    public MaildropIndex getMaildropIndex() {
+        return this.maildropIndex;
+    }
+
+    /**
+     * Stops the discovery, the gossiper and the file receiver.
+     */
+    @Override
+    public void close() {
+        this.discover.stopServer();
+        this.gossiper.stopServer();
+        this.fileReceiver.stopServer();
+    }
+}
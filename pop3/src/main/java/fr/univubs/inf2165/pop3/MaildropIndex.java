@@ -0,0 +1,238 @@
+package fr.univubs.inf2165.pop3;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import fr.ubs.io.MailFile;
+
+/**
+ * This class is the index of the mails of the maildrops, shared by the sessions of
+ * a POP3 server. A file is parsed once to know whether it is a mail (it has a
+ * Message-ID), instead of at each authentication.
+ *
+ * When the index is live, it is kept up to date by the component which delivers the
+ * mails (in the same process), and a maildrop is only listed the first time it is
+ * opened. Otherwise the maildrop is listed at each authentication, as the files may
+ * have been written by another process, and only the new files are parsed.
+ *
+ * @author Aliyou Sylla
+ * @version 1.0.1
+ */
+public class MaildropIndex {
+
+    /**
+     * This interface is implemented by the objects notified of the mails deleted by the POP3 clients.
+     */
+    public interface Listener {
+
+        /**
+         * Called once a mail has been deleted by a client.
+         *
+         * @param user The user
+         * @param file The deleted mail file
+         */
+        void deleted(String user, Path file);
+    }
+
+    /**
+     * Gives the maildrop of a user
+     */
+    private final Function<String, Path> maildrops;
+    private final ConcurrentMap<String, Maildrop> users = new ConcurrentHashMap<>();
+    private volatile boolean live = false;
+    private volatile Listener listener;
+
+    /**
+     * Constructor with the base directory, which contains a maildrop per user.
+     *
+     * @param baseDirectory The base directory. Must not be null.
+     */
+    public MaildropIndex(Path baseDirectory) {
+        this(resolver(baseDirectory));
+    }
+
+    /**
+     * Constructor with the function giving the maildrop of a user.
+     *
+     * @param maildrops The function giving the maildrop of a user. Must not be null.
+     */
+    public MaildropIndex(Function<String, Path> maildrops) {
+        if (maildrops == null) {
+            throw new NullPointerException("maildrops == null");
+        }
+        this.maildrops = maildrops;
+    }
+
+    /**
+     * Return the function giving the maildrops in the given base directory.
+     */
+    private static Function<String, Path> resolver(Path baseDirectory) {
+        if (baseDirectory == null) {
+            throw new NullPointerException("baseDirectory == null");
+        }
+        return baseDirectory::resolve;
+    }
+
+    /**
+     * Return the maildrop of the given user.
+     *
+     * @param user The user
+     * @return the maildrop of the user.
+     */
+    public Path getMaildrop(String user) {
+        return this.maildrops.apply(user);
+    }
+
+    /**
+     * Return the mails of the maildrop of the given user, sorted by file name.
+     *
+     * @param user The user
+     * @return the mail files.
+     * @throws IOException if the maildrop can't be listed.
+     */
+    public List<File> list(String user) throws IOException {
+        return maildrop(user).list();
+    }
+
+    /**
+     * Adds a mail delivered in the maildrop of a user.
+     *
+     * @param user The user
+     * @param file The mail file, which has a Message-ID
+     */
+    public void delivered(String user, Path file) {
+        maildrop(user).put(file, true);
+    }
+
+    /**
+     * Removes a mail deleted from the maildrop of a user by another component.
+     *
+     * @param user The user
+     * @param file The deleted mail file
+     */
+    public void deleted(String user, Path file) {
+        maildrop(user).remove(file);
+    }
+
+    /**
+     * Removes a mail deleted by a client, and notifies the listener.
+     *
+     * @param user The user
+     * @param file The deleted mail file
+     */
+    void removed(String user, File file) {
+        Path path = file.toPath();
+        maildrop(user).remove(path);
+        Listener listener = this.listener;
+        if (listener != null) {
+            listener.deleted(user, path);
+        }
+    }
+
+    private Maildrop maildrop(String user) {
+        return this.users.computeIfAbsent(user, u -> new Maildrop(getMaildrop(u)));
+    }
+
+    /**
+     * Return true if the index is kept up to date by the delivering component.
+     * @return true if the index is kept up to date by the delivering component.
+     */
+    public boolean isLive() {
+        return this.live;
+    }
+
+    /**
+     * Sets whether the index is kept up to date by the delivering component, in
+     * which case the maildrops are listed only once.
+     *
+     * @param live true if every delivery is notified to the index
+     */
+    public void setLive(boolean live) {
+        this.live = live;
+    }
+
+    /**
+     * Sets the listener notified of the mails deleted by the clients.
+     *
+     * @param listener The listener, null if none
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * The files of a maildrop, and whether each one is a mail.
+     */
+    private class Maildrop {
+        private final Path directory;
+        private final Map<Path, Boolean> files = new HashMap<>();
+        private boolean listed = false;
+
+        private Maildrop(Path directory) {
+            this.directory = directory;
+        }
+
+        private synchronized void put(Path file, boolean mail) {
+            this.files.put(file, mail);
+        }
+
+        private synchronized void remove(Path file) {
+            this.files.remove(file);
+        }
+
+        private synchronized List<File> list() throws IOException {
+            if ( ! this.listed || ! live) {
+                scan();
+                this.listed = true;
+            }
+            TreeSet<Path> mails = new TreeSet<>();
+            for (Map.Entry<Path, Boolean> entry : this.files.entrySet()) {
+                if (entry.getValue()) {
+                    mails.add(entry.getKey());
+                }
+            }
+            List<File> list = new ArrayList<>(mails.size());
+            for (Path mail : mails) {
+                list.add(mail.toFile());
+            }
+            return Collections.unmodifiableList(list);
+        }
+
+        /**
+         * Lists the maildrop: the new files are parsed, the removed ones forgotten.
+         */
+        private void scan() throws IOException {
+            if ( ! Files.isDirectory(this.directory)) {
+                this.files.clear();
+                return;
+            }
+            Map<Path, Boolean> found = new HashMap<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory)) {
+                for (Path path : stream) {
+                    if (path.getFileName().toString().startsWith(".") || ! Files.isRegularFile(path)) {
+                        continue; // the lock and the files being received
+                    }
+                    Boolean mail = this.files.get(path);
+                    if (mail == null) {
+                        mail = new MailFile(path.toFile()).getMessageId() != null;
+                    }
+                    found.put(path, mail);
+                }
+            }
+            this.files.clear();
+            this.files.putAll(found);
+        }
+    }
+}
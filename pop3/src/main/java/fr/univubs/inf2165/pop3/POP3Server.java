@@ -35,6 +35,11 @@ public final class POP3Server extends Thread {
 
     private Map<SelectionKey, Session> sessions; // map of opened sessions
 
+    /**
+     * The index of the maildrops, shared by the sessions
+     */
+    private MaildropIndex maildropIndex;
+
     /**
      * Constructor with the local port number and the base directory.
      *
@@ -42,6 +47,21 @@ public final class POP3Server extends Thread {
      * @param baseDirectory The base directory. Must not be null.
      */
     public POP3Server(int port, Path baseDirectory) {
+        this(port, baseDirectory, new MaildropIndex(baseDirectory));
+    }
+
+    /**
+     * Constructor with the local port number, the base directory and the index of the maildrops.
+     *
+     * @param port The local port number
+     * @param baseDirectory The base directory. Must not be null.
+     * @param maildropIndex The index of the maildrops. Must not be null.
+     */
+    public POP3Server(int port, Path baseDirectory, MaildropIndex maildropIndex) {
+        if(maildropIndex == null) {
+            throw new NullPointerException("maildropIndex == null");
+        }
+        this.maildropIndex = maildropIndex;
         if(baseDirectory == null) {
             throw new NullPointerException("baseDirectory == null");
         }
@@ -94,6 +114,14 @@ public final class POP3Server extends Thread {
         }
     }
 
+    /**
+     * Return the index of the maildrops.
+     * @return the index of the maildrops.
+     */
+    public MaildropIndex getMaildropIndex() {
+        return this.maildropIndex;
+    }
+
     /**
      * @param key
      * @param selector
@@ -111,7 +139,7 @@ public final class POP3Server extends Thread {
                 SelectionKey k = socketChannel.register(selector, SelectionKey.OP_READ);
 
                 // create a client session associated to this key
-                Session session = new Session(socketChannel, this.rootDirectory);
+                Session session = new Session(socketChannel, this.rootDirectory, this.maildropIndex);
                 session.open();
                 sessions.put(k, session);
             }
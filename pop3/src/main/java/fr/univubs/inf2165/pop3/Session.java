@@ -16,7 +16,6 @@ import java.util.HashSet;
 import java.util.Set;
 
 import fr.ubs.io.LockableDirectory;
-import fr.ubs.io.MailFile;
 
 /**
  * This class manages a client session.
@@ -30,6 +29,10 @@ public class Session implements Closeable {
     private boolean closed = true;
 
     private Path baseDirectory;
+    /**
+     * The index of the maildrops, shared by the sessions
+     */
+    private MaildropIndex maildropIndex;
     /**
      * user maildrop
      */
@@ -41,7 +44,7 @@ public class Session implements Closeable {
     private State state = null;
     private String error; // error message
 
-    private HashMap<Integer, MailFile> mails;
+    private HashMap<Integer, File> mails;
     private Set<Integer> deletedMessages;
 
     private LockableDirectory lockableUserDirectory = null;
@@ -53,8 +56,20 @@ public class Session implements Closeable {
      * @param baseDirectory Base directory
      */
     public Session(SocketChannel socketChannel, Path baseDirectory) {
+        this(socketChannel, baseDirectory, new MaildropIndex(baseDirectory));
+    }
+
+    /**
+     * Constructor with the client socket channel, the base directory and the index of the maildrops.
+     *
+     * @param socketChannel the socket channel
+     * @param baseDirectory Base directory
+     * @param maildropIndex The index of the maildrops
+     */
+    public Session(SocketChannel socketChannel, Path baseDirectory, MaildropIndex maildropIndex) {
         this.socketChannel = socketChannel;
         this.baseDirectory = baseDirectory;
+        this.maildropIndex = maildropIndex;
         this.builder = new StringBuilder();
         this.mails = new HashMap<>();
         this.deletedMessages = new HashSet<>();
@@ -277,10 +292,12 @@ public class Session implements Closeable {
         if(this.state == State.TRANSACTION) {
             this.state = State.UPDATE;
             for(Integer messageNumber : deletedMessages) { 
-                MailFile mailFile = this.mails.get(messageNumber);
-                if( ! mailFile.getFile().delete()) {
+                File mailFile = this.mails.get(messageNumber);
+                if( ! mailFile.delete()) {
                     errorCode = 1;
                     this.error = "-ERR some deleted messages not removed";
+                } else {
+                    this.maildropIndex.removed(this.user, mailFile);
                 }
             }
         }
@@ -294,7 +311,7 @@ public class Session implements Closeable {
     private int user(String[] command) {
         int errorCode = 0;
         this.user = command[1];
-        this.maildrop = this.baseDirectory.resolve(this.user);
+        this.maildrop = this.maildropIndex.getMaildrop(this.user);
         //System.out.println("maildrop : " + this.maildrop);
         if(this.maildrop.toFile().exists()) {
             sendReply("+OK welcome " + this.user);
@@ -314,12 +331,9 @@ public class Session implements Closeable {
             try {
                 lock();
                 int number = 0;
-                for(File file : this.maildrop.toFile().listFiles()) {
-                    MailFile mailFile = new MailFile(file);
-                    if(mailFile.getMessageId() != null) {
-                        number++;
-                        mails.put(number, mailFile);
-                    }
+                for(File file : this.maildropIndex.list(this.user)) {
+                    number++;
+                    mails.put(number, file);
                 }
             } catch(IOException ioe) {
                 errorCode = 22;
@@ -335,12 +349,12 @@ public class Session implements Closeable {
     private int stat(String[] command) { // drop listings
         long size = 0;
         int nb = this.mails.size() - this.deletedMessages.size();
-        for(MailFile mailfile : this.mails.values()) {
-            size += mailfile.getFile().length();
+        for(File mailfile : this.mails.values()) {
+            size += mailfile.length();
         }
         for(int messageNumber : deletedMessages) {
             if(this.mails.containsKey(messageNumber)) {
-                size -= this.mails.get(messageNumber).getFile().length();
+                size -= this.mails.get(messageNumber).length();
             }
         }
         sendReply("+OK "+ nb +" ("+ size +")");
@@ -352,7 +366,7 @@ public class Session implements Closeable {
         int messageNumber = command.length > 1 ? getMessageNumber(command[1]) : -1;
         if(messageNumber != -1) {
             if(this.mails.containsKey(messageNumber)) {
-                long size = this.mails.get(messageNumber).getFile().length();
+                long size = this.mails.get(messageNumber).length();
                 sendReply("+OK "+ messageNumber +" "+ size);
             } else {
                 errorCode = 3;
@@ -362,7 +376,7 @@ public class Session implements Closeable {
             if( ! this.mails.isEmpty()) {
                 sendReply("+OK "+ this.mails.size() +" messages");
                 for(Integer key : this.mails.keySet()) {
-                    String reply = key + " " + this.mails.get(key).getFile().length();
+                    String reply = key + " " + this.mails.get(key).length();
                     sendReply(reply);
                 }
             } else {
@@ -386,10 +400,10 @@ public class Session implements Closeable {
         int messageNumber = getMessageNumber(command[1]);
         // messageId exits and not refer to deleted message
         if(this.mails.containsKey(messageNumber) && ! this.deletedMessages.contains(messageNumber)) {
-            MailFile mailFile = this.mails.get(messageNumber);
-            sendReply("+OK " + mailFile.getFile().length());
+            File mailFile = this.mails.get(messageNumber);
+            sendReply("+OK " + mailFile.length());
 
-            try (BufferedReader reader = new BufferedReader(new FileReader(mailFile.getFile()))) {
+            try (BufferedReader reader = new BufferedReader(new FileReader(mailFile))) {
                 String line;
                 while ((line = reader.readLine()) != null) {
                     if(line.startsWith(".")) {